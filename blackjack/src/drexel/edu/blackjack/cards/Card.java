@@ -105,6 +105,9 @@ public class Card {
 	private RANK rank = null;
 	private SUIT suit = null;
 	
+	// What toString() returns, worked out once as it never changes
+	private final String name;
+	
 	public RANK getRank() {
 		return rank;
 	}
@@ -125,10 +128,93 @@ public class Card {
 		
 		this.rank = rank;
 		this.suit = suit;	
+		
+		// This used to append this.rank and this.suit, but that was making
+		// strings like 'TWOSPADES'. By appending the getRank() and getSuit(),
+		// it now properly makes strings like 2S
+		this.name = rank.getRank() + suit.getSuit();
+	}
+	
+	/******************************
+	* The shared cards*/
+	/******************************/
+	
+	// How many suits there are, for working out codes
+	private static final int SUITS = SUIT.values().length;
+	
+	/**
+	 * How many different cards there are, and so how many
+	 * codes, which run from 0 to one less than this
+	 */
+	public static final int NUMBER_OF_CODES = RANK.values().length * SUITS;
+	
+	// One of each card, by code, so that shoes don't have to make them
+	private static final Card[] CARDS = new Card[NUMBER_OF_CODES];
+	static {
+		for( RANK rank : RANK.values() ) {
+			for( SUIT suit : SUIT.values() ) {
+				Card card = new Card( rank, suit );
+				CARDS[card.getCode()] = card;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the shared instance of a card. Cards don't change,
+	 * so there only needs to be one of each.
+	 * @param rank a valid rank
+	 * @param suit a valid suit
+	 * @return The card
+	 */
+	public static Card valueOf( RANK rank, SUIT suit ) {
+		if( rank == null || suit == null) {
+			throw new IllegalArgumentException( "The rank or suit cannot be null");
+		}
+		return CARDS[rank.ordinal() * SUITS + suit.ordinal()];
+	}
+	
+	/**
+	 * Gets the shared instance of a card from its code.
+	 * @param code From 0 to {@link #NUMBER_OF_CODES} - 1
+	 * @return The card
+	 * @see #getCode()
+	 */
+	public static Card valueOf( int code ) {
+		if( code < 0 || code >= NUMBER_OF_CODES ) {
+			throw new IllegalArgumentException( "There is no card with the code " + code );
+		}
+		return CARDS[code];
+	}
+	
+	/**
+	 * A number for the card, from 0 to {@link #NUMBER_OF_CODES} - 1:
+	 * the rank's ordinal times the number of suits, plus the suit's
+	 * ordinal. It's the same order the binary framing uses.
+	 * @return The card's code
+	 */
+	public int getCode() {
+		return rank.ordinal() * SUITS + suit.ordinal();
 	}
 	
 	
 	
+	/**
+	 * Gets the point value of the card, counting an Ace as one (1).
+	 * Unlike getValues() it doesn't make an array, which is why hands
+	 * use it; an Ace's other value is always ten more.
+	 * @return The card's hard point value
+	 */
+	public int getValue() {
+		return Math.min( rank.ordinal() + 1, 10 );
+	}
+	
+	/**
+	 * @return True if the card is an Ace, and so can also count as eleven (11)
+	 */
+	public boolean isAce() {
+		return rank == RANK.ACE;
+	}
+	
 	/**
 	 *Gets the point value of the card. An Array is used since the Ace card, 
 	 * can be take a value of 1 or 11, so need to return an array of those two values .
@@ -184,16 +270,7 @@ public class Card {
 	 * For example, 2S, 4C, 5H, AC
 	 */
 	public String toString() {
-		
-		StringBuilder str = new StringBuilder();
-
-		// This used to append this.rank and this.suit, but that was making
-		// strings like 'TWOSPADES'. By appending the getRank() and getSuit(),
-		// it now properly makes strings like 2S
-		str.append(this.rank.getRank());
-		str.append(this.suit.getSuit() );
-		
-		return str.toString();
+		return name;
 	}
 
 	/* (non-Javadoc)
@@ -42,10 +42,26 @@ public interface DealerShoeInterface {
    * card from the deck. The same card shouldn't be returned
    * multiple times. Though, if there are four decks, then up
    * to four Ace of Hearts can be returned, but not a fifth.
+   * <P>
+   * Cards are the shared instances from {@link Card#valueOf(int)},
+   * so whether one is faceup is up to the hand it goes in.
    * 
-   * @return The topmost card that is 'dealt'
+   * @return The topmost card that is 'dealt', or null if there
+   * are none left
    */
-	DealtCard dealTopCard();
+	Card dealTopCard();
+	
+	/**
+	 * Deals several cards off the top at once, as if by
+	 * calling dealTopCard() that many times.
+	 * 
+	 * @param n How many cards to deal
+	 * @param cards Where to put them
+	 * @param offset Where in the array the first one goes
+	 * @return How many were dealt, which is less than n only
+	 * if the shoe ran out
+	 */
+	int deal(int n, Card[] cards, int offset);
 	
 	/**
 	 * If there's no more cards that can be dealt with dealTopCard().
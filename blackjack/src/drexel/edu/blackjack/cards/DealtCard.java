@@ -15,6 +15,10 @@ package drexel.edu.blackjack.cards;
 /**
  * The concept of a card that has been dealt and
  * might be faceup or facedown.
+ * <P>
+ * Shoes don't make these; they deal the shared {@link Card}s,
+ * and the {@link Hand} keeps track of which are faceup. This
+ * is for building a hand one card at a time by hand.
  * 
  * @author Duc
  */
@@ -13,11 +13,9 @@
 package drexel.edu.blackjack.cards;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import drexel.edu.blackjack.db.game.TableRules;
 import drexel.edu.blackjack.server.game.User;
 
 /**
@@ -66,8 +64,52 @@ public class Hand {
 		TIE
 	}
 	
-	private final ArrayList<DealtCard> cards = new ArrayList<DealtCard>();
-	private final HashSet<Integer> points = new HashSet<Integer>();
+	/**
+	 * Where the dealer stands, unless the game's rules say
+	 * otherwise
+	 */
+	public static final int DEFAULT_DEALER_STAND_POINT = TableRules.DEFAULT_DEALER_STAND_POINT;
+	
+	private final ArrayList<Card> cards = new ArrayList<Card>();
+	
+	// The hand's total with every ace as 1, and how many aces there
+	// are. Its possible values are that total plus 10 for each ace
+	// counted as 11 instead, so these are all it takes to answer
+	// anything about its points.
+	private int hardTotal = 0;
+	private int aces = 0;
+	
+	// Goes up whenever a card is received or turned over, so that
+	// the views below know when they're out of date
+	private int version = 0;
+	
+	// The hand as its owner sees it, and as everyone else does. They're
+	// built when first asked for after a change, and then reused for
+	// every message and every viewer until the next change.
+	private volatile View ownerView = null;
+	private volatile View publicView = null;
+	
+	/**
+	 * What a hand looks like to someone, and which version of the
+	 * hand it was made from. It's never changed, so it can be
+	 * handed around without a lock.
+	 */
+	private static final class View {
+		private final int version;
+		private final String text;
+		
+		View(int version, String text) {
+			this.version = version;
+			this.text = text;
+		}
+	}
+	
+	// What a facedown card looks like to someone who isn't the owner
+	private static final String FACEDOWN = "X";
+	
+	// Which cards are faceup, a bit per card in the order they came.
+	// No hand can get anywhere near 64 cards without busting.
+	private long faceup = 0;
 	private final User user;
 	
 	/**
@@ -76,32 +118,35 @@ public class Hand {
 	 */
 	public Hand(User user) {
 		this.user = user;
-		points.add(0);
 	}
 	
 	/**
 	 * get a card from dealer, it must be faceup or facedown using DealtCard class
-	 * this method also interprets the card and calculate all possible values 
-	 * there are many other simpler ways, but this is more generic
 	 * @param card
+	 * @see #receiveCard(Card, boolean)
 	 */
 	public void receiveCard(DealtCard card) {
+		receiveCard(Card.valueOf(card.getRank(), card.getSuit()), card.isFaceUp());
+	}
+	
+	/**
+	 * get a card from dealer, faceup or facedown.
+	 * this method also adds the card to the hand's points
+	 * @param card The card, usually the shared instance from the shoe
+	 * @param isFaceUp True if everyone can see it
+	 */
+	public void receiveCard(Card card, boolean isFaceUp) {
 		
+		if (isFaceUp) {
+			faceup |= 1L << cards.size();
+		}
 		cards.add(card);
+		version++;
 		
-		ArrayList<Integer> temp = new ArrayList<Integer>();
-		
-		for (int v: card.getValues()) {
-			// calculate all ways to interpret the card value(s) (Ace)
-			ArrayList<Integer> spoints = new ArrayList<Integer>(points);
-			for (int i=0; i<spoints.size(); i++) {
-				spoints.set(i, spoints.get(i) + v);
-			}
-			temp.addAll(spoints);
+		hardTotal += card.getValue();
+		if (card.isAce()) {
+			aces++;
 		}
-		
-		points.clear();
-		points.addAll(temp);
 	}
 	
 	/**
@@ -117,21 +162,35 @@ public class Hand {
 	 * Get all possible point values that the hand could
 	 * have. There are multiple ones as some cards (like
 	 * Ace) have multiple point values.
-	 * @return all possibly interpreted values of hand
+	 * @return all possibly interpreted values of hand, lowest first
 	 */
 	public List<Integer> getPossibleValues() {
-		return new ArrayList<Integer>(points);
+		ArrayList<Integer> values = new ArrayList<Integer>(aces + 1);
+		for (int i=0; i<=aces; i++) {
+			values.add(hardTotal + 10*i);
+		}
+		return values;
+	}
+	
+	/**
+	 * Get the best point value of the hand, which is the highest
+	 * one that isn't over 21, or the lowest one if they all are.
+	 * At most one ace can count as 11 without busting.
+	 * @return the best value of the hand
+	 */
+	public int getBestValue() {
+		return (aces > 0 && hardTotal + 10 <= 21) ? hardTotal + 10 : hardTotal;
 	}
 	
 	/**
 	 * Get a list of the faceup cards in the hand
 	 * @return List of faceup cards
 	 */
-	public List<DealtCard> getFaceupCards() {
-		ArrayList<DealtCard> temp = new ArrayList<DealtCard>();
-		for (DealtCard c:cards) {
-			if (c.isFaceUp()) {
-				temp.add(c);
+	public List<Card> getFaceupCards() {
+		ArrayList<Card> temp = new ArrayList<Card>();
+		for (int i=0; i<cards.size(); i++) {
+			if (isFaceUp(i)) {
+				temp.add(cards.get(i));
 			}
 		}
 		return temp;
@@ -141,28 +200,59 @@ public class Hand {
 	 * Get a list of facedown cards in the deck
 	 * @return List of facedown cards
 	 */
-	public List<DealtCard> getFacedownCards() {
-		ArrayList<DealtCard> temp = new ArrayList<DealtCard>();
-		for (DealtCard c:cards) {
-			if (!c.isFaceUp()) {
-				temp.add(c);
+	public List<Card> getFacedownCards() {
+		ArrayList<Card> temp = new ArrayList<Card>();
+		for (int i=0; i<cards.size(); i++) {
+			if (!isFaceUp(i)) {
+				temp.add(cards.get(i));
 			}
 		}
 		return temp;
 	}
 	
+	/**
+	 * Whether a card in the hand is faceup
+	 * @param index Which card, in the order they were received
+	 * @return True if it's faceup
+	 */
+	public boolean isFaceUp(int index) {
+		return (faceup & (1L << index)) != 0;
+	}
+	
+	/**
+	 * Turns all the facedown cards in the hand faceup. Cards
+	 * can only be turned up, not the other way around.
+	 * @return True if there were any facedown cards
+	 */
+	public boolean turnFaceUp() {
+		long all = (cards.size() >= 64 ? -1L : (1L << cards.size()) - 1);
+		boolean changed = (faceup != all);
+		if (changed) {
+			faceup = all;
+			version++;
+		}
+		return changed;
+	}
+	
+	/**
+	 * How many times the hand has changed: once for each card
+	 * received, and once for each time cards were turned over.
+	 * Anything built from the hand is up to date as long as
+	 * this hasn't changed.
+	 * @return The hand's version
+	 */
+	public int getVersion() {
+		return version;
+	}
+	
 	/**
 	 * Determines if the hand is busted
 	 * @return true if the hand is definitely busted
 	 */
 	public boolean getIsBusted() {
-		for (int i: points) {
-			if (i<=21) {
-				// not busted if any way to calculate points <= 21
-				return false;
-			}
-		}
-		return true;
+		// not busted if any way to calculate points <= 21, and
+		// counting every ace as 1 is the lowest
+		return hardTotal > 21;
 	}
 	
 	/**
@@ -174,10 +264,7 @@ public class Hand {
 	public boolean getIsBlackJack() {
 		// a black jack if there are only two cards, and possible value is 21
 		if (cards.size() != 2) return false;
-		for (int i:points) {
-			if (i == 21) return true;
-		}
-		return false;
+		return getBestValue() == 21;
 	}
 	
 	@Deprecated
@@ -199,19 +286,7 @@ public class Hand {
 	 * @return
 	 */
 	public String toStringIfThisPlayer() {
-		StringBuilder b = new StringBuilder();
-		String separator = ""; 
-		for (Card c:this.getFacedownCards()) {
-			b.append(separator);
-			b.append(c.toString());
-			separator = " ";
-		}
-		for (Card c:this.getFaceupCards()) {
-			b.append(separator);
-			b.append(c.toString());
-			separator = " ";
-		}
-		return b.toString();
+		return toString(true);
 	}
 	
 	@Deprecated
@@ -229,19 +304,7 @@ public class Hand {
 	 * @return
 	 */
 	public String toStringIfNotThisPlayer() {
-		StringBuilder b = new StringBuilder();
-		String separator = ""; 
-		for (Card c:this.getFacedownCards()) {
-			b.append(separator);
-			b.append("X");
-			separator = " ";
-		}
-		for (Card c:this.getFaceupCards()) {
-			b.append(separator);
-			b.append(c.toString());
-			separator = " ";
-		}
-		return b.toString();
+		return toString(false);
 	}
 	
 	/**
@@ -257,22 +320,7 @@ public class Hand {
 	 * @see #toStringIfThisPlayer()
 	 */
 	public String toString(User callingUser) {
-		StringBuilder b = new StringBuilder();
-		String separator = ""; 
-		for (Card c:this.getFacedownCards()) {
-			b.append(separator);
-			if (callingUser == user) 
-				b.append(c.toString());
-			else
-				b.append("X");
-			separator = " ";
-		}
-		for (Card c:this.getFaceupCards()) {
-			b.append(separator);
-			b.append(c.toString());
-			separator = " ";
-		}
-		return b.toString();
+		return toString(callingUser == user);
 	}
 
 	
@@ -281,25 +329,47 @@ public class Hand {
 	 * @param isOwner True if this is being constructed for the
 	 * 'owner' of the hand, who can see facedown card values,
 	 * or false otherwise
+	 * <P>
+	 * The string is only built the first time it's asked for after
+	 * the hand changes; until the next change, the same one is
+	 * returned to everyone who asks.
 	 * @return String representation of the hand
 	 * @see #toStringIfNotThisPlayer()
 	 * @see #toStringIfThisPlayer()
 	 */
 	public String toString(boolean isOwner) {
-		StringBuilder b = new StringBuilder();
-		String separator = ""; 
-		for (Card c:this.getFacedownCards()) {
-			b.append(separator);
-			if (isOwner) 
-				b.append(c.toString());
-			else
-				b.append("X");
-			separator = " ";
+		View view = (isOwner ? ownerView : publicView);
+		int current = version;
+		if (view == null || view.version != current) {
+			view = new View(current, render(isOwner));
+			if (isOwner) {
+				ownerView = view;
+			} else {
+				publicView = view;
+			}
+		}
+		return view.text;
+	}
+	
+	/**
+	 * <b>UI:</b> Builds the string for toString(boolean): facedown
+	 * cards first, then faceup ones, each in the order received,
+	 * separated by spaces. Cards' strings never change, so it's
+	 * just a matter of putting them together.
+	 */
+	private String render(boolean isOwner) {
+		StringBuilder b = new StringBuilder(cards.size() * 4);
+		for (int i=0; i<cards.size(); i++) {
+			if (!isFaceUp(i)) {
+				if (b.length() > 0) b.append(' ');
+				b.append(isOwner ? cards.get(i).toString() : FACEDOWN);
+			}
 		}
-		for (Card c:this.getFaceupCards()) {
-			b.append(separator);
-			b.append(c.toString());
-			separator = " ";
+		for (int i=0; i<cards.size(); i++) {
+			if (isFaceUp(i)) {
+				if (b.length() > 0) b.append(' ');
+				b.append(cards.get(i).toString());
+			}
 		}
 		return b.toString();
 	}
@@ -311,32 +381,46 @@ public class Hand {
 	 * Dealer must hit soft 16 to stand
 	 * than 16 will be the point for dealer to stand.
 	 * Otherwise, just pass <b>null</b>, default stand point is 17.
+	 * <P>
+	 * This parses the rules every time it's called; the game
+	 * already has them parsed, so the dealer passes its
+	 * {@link TableRules#getDealerStandPoint()} to
+	 * {@link #getDealerShouldHit(int)} instead.
 	 */
 	public boolean getDealerShouldHit(ArrayList<String> rules) {
-		int pointsToStand = 17;
-		Pattern pattern = Pattern.compile(".*soft\\s(\\d{2})\\sto\\sstand.*");
-		if (rules != null) {
-			for (String s:rules) {
-				Matcher matcher = pattern.matcher(s);
-				if (matcher.find()) {
-					try {
-						pointsToStand = Integer.parseInt(matcher.group(1));
-						break; // found the rule
-					} catch (Exception e) {
-						// doing nothing, let 17 be the point to stand
-					}
-				}
-			}
-		}
-		for (int p:this.getPossibleValues()) {
-			if (p >= pointsToStand) {
-				return false;
-			}
-		}
-		return true;
+		return getDealerShouldHit(getDealerStandPoint(rules));
+	}
+	
+	/**
+	 * Whether the dealer's hand should hit, given where it
+	 * stands.
+	 * @param pointsToStand Where the dealer stands: once any
+	 * total of the hand reaches this
+	 * @return True if the dealer should hit
+	 */
+	public boolean getDealerShouldHit(int pointsToStand) {
+		// stand if any possible value reaches it, and the highest
+		// is the one with every ace as 11
+		return hardTotal + 10*aces < pointsToStand;
 	}
 	
 	
+	/**
+	 * Finds the point the dealer stands at, from a game's rules.
+	 * If there is one rule that has the form:
+	 * Dealer must hit soft 16 to stand
+	 * than 16 will be the point. Otherwise it's 17.
+	 * @param rules rules of the game to parse, or null
+	 * @return The point the dealer stands at
+	 * @see TableRules#parse(int, List)
+	 */
+	public static int getDealerStandPoint(List<String> rules) {
+		if (rules == null) {
+			return DEFAULT_DEALER_STAND_POINT;
+		}
+		return TableRules.parse(1, rules).getDealerStandPoint();
+	}
+	
 	/**
 	 * Take this hand, presumed to be a player hand, and
 	 * compare it to the dealer's hand. Report what the
@@ -362,34 +446,9 @@ public class Hand {
 		}
 		
 		// No one busted. Therefore, it comes down to point comparisons
-		// So what's the best possible value for this hand?
-		Integer thisHandValue = null;
-		if( getPossibleValues() != null ) {
-			for( Integer value : getPossibleValues() ) {
-				if( thisHandValue == null || (value > thisHandValue && value <= 21) ) {
-					thisHandValue = value;
-				}
-			}
-		}
-		
-		// And what about the dealer?
-		Integer dealerHandValue = null;
-		if( dealerHand.getPossibleValues() != null ) {
-			for( Integer value : dealerHand.getPossibleValues() ) {
-				if( dealerHandValue == null || (value > dealerHandValue && value <= 21 ) ) {
-					dealerHandValue = value;
-				}
-			}
-		}
-		
-		// Really, they should be null. And because they shouldn't be if they are? I'm going
-		// to give them a value of 1.
-		if( thisHandValue == null ) {
-			thisHandValue = 1;
-		}
-		if( dealerHandValue == null ) {
-			dealerHandValue = 1;
-		}
+		// of the best possible value for each hand
+		int thisHandValue = getBestValue();
+		int dealerHandValue = dealerHand.getBestValue();
 		
 		// Otherwise we compare
 		if( thisHandValue > dealerHandValue ) {
@@ -39,8 +39,8 @@ public class RiggedDealerShoe extends SimpleDealerShoe {
 	private Card whatITellYou;
 	
 	// Some variables for our ALWAYS_DEAL_BLACKJACK mode
-	private static final DealtCard ACE_DIAMONDS_CARD = new DealtCard( Card.RANK.ACE, Card.SUIT.DIAMONDS );
-	private static final DealtCard QUEEN_HEARTS_CARD = new DealtCard( Card.RANK.QUEEN, Card.SUIT.HEARTS );
+	private static final Card ACE_DIAMONDS_CARD = Card.valueOf( Card.RANK.ACE, Card.SUIT.DIAMONDS );
+	private static final Card QUEEN_HEARTS_CARD = Card.valueOf( Card.RANK.QUEEN, Card.SUIT.HEARTS );
 	private boolean blackjackDealAce = false;
 	
 	private int mode = FAIR_AND_SQUARE;
@@ -57,9 +57,9 @@ public class RiggedDealerShoe extends SimpleDealerShoe {
 	}
 
 	@Override
-	public DealtCard dealTopCard() {
+	public Card dealTopCard() {
 		
-		DealtCard cardToReturn = null;
+		Card cardToReturn = null;
 		
 		if( mode == ALWAYS_DEAL_BLACKJACK ) {
 			blackjackDealAce = !blackjackDealAce;
@@ -69,7 +69,7 @@ public class RiggedDealerShoe extends SimpleDealerShoe {
 				cardToReturn = QUEEN_HEARTS_CARD;
 			}
 		} else if( mode == DEAL_WHAT_I_TELL_YOU && whatITellYou != null ) {
-			cardToReturn = new DealtCard(whatITellYou);
+			cardToReturn = Card.valueOf(whatITellYou.getRank(), whatITellYou.getSuit());
 			whatITellYou = null;
 		}
 		
@@ -80,6 +80,20 @@ public class RiggedDealerShoe extends SimpleDealerShoe {
 		return cardToReturn;
 	}
 
+	@Override
+	public int deal(int n, Card[] cards, int offset) {
+		// One at a time, so the rigging applies to each
+		int dealt = 0;
+		while( dealt < n ) {
+			Card card = dealTopCard();
+			if( card == null ) {
+				break;
+			}
+			cards[offset + dealt++] = card;
+		}
+		return dealt;
+	}
+
 	/**
 	 * If mode is set to {@link #DEAL_WHAT_I_TELL_YOU}, it will
 	 * deal this card.
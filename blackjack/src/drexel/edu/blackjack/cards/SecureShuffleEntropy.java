@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SecureShuffleEntropy.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Shuffle seeds from a cryptographically strong generator, made in
+ * bulk, one generator per thread, with every seed committed to in an audit
+ * log when it's handed out and revealed there when its shoe is done with it.
+ ******************************************************************************/
+package drexel.edu.blackjack.cards;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * <b>SECURITY:</b> Seeds come from a DRBG, as in NIST
+ * SP 800-90A, which the JVM seeds from the system's own
+ * entropy. As each seed is handed out, its commitment is
+ * logged to the {@value #AUDIT_LOGGER} logger; when its
+ * shoe is shuffled again, the seed itself is logged, so
+ * every shuffle can be checked against what was committed
+ * before any of its cards were dealt.
+ * <P>
+ * <b>CONCURRENT:</b> Each thread that asks for seeds has
+ * its own generator, so threads never wait on each other
+ * for one. A generator makes {@link #BLOCK_SEEDS} seeds at a
+ * time and hands them out one by one. The only thing that's
+ * shared is the count of shuffles, which numbers them.
+ *
+ * @author Jennifer
+ */
+public class SecureShuffleEntropy implements ShuffleEntropy {
+
+	/**
+	 * What the audit log is called
+	 */
+	public static final String AUDIT_LOGGER	= "drexel.edu.blackjack.cards.ShuffleAudit";
+
+	/**
+	 * How many seeds a generator makes at a time
+	 */
+	public static final int BLOCK_SEEDS		= 128;
+
+	// The one the server uses
+	private static SecureShuffleEntropy defaultEntropy = null;
+
+	// Whether seeds are written to the audit log
+	private final boolean audited;
+
+	// CONCURRENT: How many seeds have been handed out, by everyone
+	private final AtomicLong shuffles = new AtomicLong();
+
+	// Each thread's generator
+	private final ThreadLocal<Generator> generators = new ThreadLocal<Generator>() {
+		@Override
+		protected Generator initialValue() {
+			return new Generator();
+		}
+	};
+
+	// The audit log, and our logger for anything else
+	private final static Logger AUDIT = BlackjackLogger.createLogger(AUDIT_LOGGER);
+	private final static Logger LOGGER = BlackjackLogger.createLogger(SecureShuffleEntropy.class.getName());
+
+	/************************************************************
+	 * Constructors
+	 ***********************************************************/
+
+	/**
+	 * Makes a source of seeds.
+	 *
+	 * @param audited Whether its seeds are written to the
+	 * audit log, which should be true unless it's not for
+	 * real play, like in a simulation
+	 */
+	public SecureShuffleEntropy( boolean audited ) {
+		this.audited = audited;
+	}
+
+	/**
+	 * Gets the source of seeds that the server's shoes use,
+	 * which is audited, creating it the first time.
+	 *
+	 * @return The source
+	 */
+	public static synchronized SecureShuffleEntropy getDefault() {
+		if( defaultEntropy == null ) {
+			defaultEntropy = new SecureShuffleEntropy( true );
+		}
+		return defaultEntropy;
+	}
+
+	/************************************************************
+	 * Public methods
+	 ***********************************************************/
+
+	@Override
+	public ShuffleSeed nextSeed() {
+		ShuffleSeed seed = generators.get().nextSeed( shuffles.incrementAndGet() );
+		if( audited ) {
+			AUDIT.info( "Committed to " + seed + "." );
+		}
+		return seed;
+	}
+
+	@Override
+	public void retire( ShuffleSeed seed ) {
+		if( audited && seed != null ) {
+			AUDIT.info( "Revealed shuffle " + seed.getNumber() + " seed " + seed.getSeedAsHex() + "." );
+		}
+	}
+
+	/************************************************************
+	 * Private classes
+	 ***********************************************************/
+
+	/**
+	 * <b>STATEFUL:</b> One thread's generator, its block of
+	 * seeds, and how far through them it is.
+	 */
+	private static class Generator {
+
+		private final SecureRandom random = createRandom();
+		private final MessageDigest digest = ShuffleSeed.createDigest();
+		private final byte[] block = new byte[BLOCK_SEEDS * ShuffleSeed.SEED_BYTES];
+		private final byte[] seed = new byte[ShuffleSeed.SEED_BYTES];
+		private int position = block.length;
+
+		ShuffleSeed nextSeed( long number ) {
+			if( position == block.length ) {
+				random.nextBytes( block );
+				position = 0;
+			}
+			System.arraycopy( block, position, seed, 0, seed.length );
+
+			// Seeds aren't left lying around once they're handed out
+			Arrays.fill( block, position, position + seed.length, (byte)0 );
+			position += seed.length;
+			return new ShuffleSeed( number, seed, digest );
+		}
+
+		private static SecureRandom createRandom() {
+			try {
+				return SecureRandom.getInstance( "DRBG" );
+			} catch( NoSuchAlgorithmException e ) {
+				LOGGER.warning( "No DRBG in this JVM, so using its default SecureRandom for shuffles." );
+				return new SecureRandom();
+			}
+		}
+	}
+
+}
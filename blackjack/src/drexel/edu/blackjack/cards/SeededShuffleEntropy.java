@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SeededShuffleEntropy.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Shuffle seeds that all follow from one number, so that a shoe is
+ * shuffled the same way every time the same number is used. For load tests
+ * and simulations that have to be repeatable, never for real play.
+ ******************************************************************************/
+package drexel.edu.blackjack.cards;
+
+import java.security.MessageDigest;
+import java.util.SplittableRandom;
+
+/**
+ * <b>SECURITY:</b> Anyone who knows the number knows every
+ * shuffle, so this is only for runs that have to come out
+ * the same every time, like load tests, and never for real
+ * play. The seeds aren't logged, as there's nothing to audit.
+ * <P>
+ * <b>CONCURRENT:</b> Seeds are handed out one at a time,
+ * in order. The same shuffles only come from the same
+ * number if the shoes ask for seeds in the same order,
+ * so a table with one of these should shuffle all its
+ * shoes on one thread.
+ *
+ * @author Jennifer
+ */
+public class SeededShuffleEntropy implements ShuffleEntropy {
+
+	private final SplittableRandom random;
+	private final MessageDigest digest = ShuffleSeed.createDigest();
+	private long shuffles = 0;
+
+	/**
+	 * @param seed What all the shuffles follow from
+	 */
+	public SeededShuffleEntropy( long seed ) {
+		this.random = new SplittableRandom( seed );
+	}
+
+	@Override
+	public synchronized ShuffleSeed nextSeed() {
+		byte[] seed = new byte[ShuffleSeed.SEED_BYTES];
+		for( int i = 0; i < seed.length; i += 8 ) {
+			long bits = random.nextLong();
+			for( int j = 0; j < 8; j++ ) {
+				seed[i + j] = (byte)(bits >>> (8 * j));
+			}
+		}
+		return new ShuffleSeed( ++shuffles, seed, digest );
+	}
+
+	@Override
+	public void retire( ShuffleSeed seed ) {
+		// Nothing to reveal that isn't already known
+	}
+
+}
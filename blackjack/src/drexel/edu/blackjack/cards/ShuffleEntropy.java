@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - ShuffleEntropy.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Defines where a dealer shoe gets the randomness for its shuffles,
+ * so that it can be swapped for a stronger, faster, or repeatable source.
+ ******************************************************************************/
+package drexel.edu.blackjack.cards;
+
+/**
+ * <b>SECURITY:</b> Hands out the seeds that shoes shuffle
+ * with, one per shuffle. Each seed is committed to, by its
+ * {@link ShuffleSeed#getCommitment()}, when it's handed out,
+ * and can be revealed once the shoe is done with it, so
+ * that anyone can check afterwards that the cards came out
+ * of the shoe in the order the seed says they should have.
+ * <P>
+ * <b>CONCURRENT:</b> Any number of shoes, on any number of
+ * threads, can get seeds from the same source at once.
+ *
+ * @author Jennifer
+ */
+public interface ShuffleEntropy {
+
+	/**
+	 * Gets the seed for a new shuffle, which is never the
+	 * same as any other.
+	 *
+	 * @return The seed, already committed to
+	 */
+	public ShuffleSeed nextSeed();
+
+	/**
+	 * Told when a shoe is done with a seed, because it has
+	 * been shuffled again, so that the seed can be revealed.
+	 *
+	 * @param seed A seed from {@link #nextSeed()}
+	 */
+	public void retire( ShuffleSeed seed );
+
+}
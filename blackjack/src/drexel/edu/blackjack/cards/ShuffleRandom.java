@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - ShuffleRandom.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: The random numbers a shoe is shuffled with, all worked out from
+ * the shuffle's seed, so that the shuffle can be repeated from the seed.
+ ******************************************************************************/
+package drexel.edu.blackjack.cards;
+
+import java.security.GeneralSecurityException;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * <b>SECURITY:</b> Random numbers from the AES-256
+ * keystream of a {@link ShuffleSeed}: the seed is the key,
+ * and the stream is counter mode from zero, as in a NIST
+ * CTR_DRBG. Without the seed, the numbers can't be told
+ * from random; with it, they can all be worked out again.
+ * AES is done in hardware on most processors, so this is
+ * much faster than asking a SecureRandom for each number.
+ * <P>
+ * <b>STATEFUL:</b> It's {@link #reset(ShuffleSeed)} for
+ * each shuffle, and then gives the numbers for that
+ * shuffle. Unlike java.util.Random, it's only meant to be
+ * used by one thread at a time: the one shuffling its
+ * shoe.
+ *
+ * @author Jennifer
+ */
+public class ShuffleRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	// How much of the keystream is worked out at a time
+	private static final int BLOCK_BYTES	= 512;
+
+	// The keystream is the cipher run over zeros
+	private static final byte[] ZEROS		= new byte[BLOCK_BYTES];
+
+	// Counter mode starts at zero; the key is what's different
+	private static final IvParameterSpec START = new IvParameterSpec( new byte[16] );
+
+	private final transient Cipher cipher;
+	private final byte[] block = new byte[BLOCK_BYTES];
+	private int position = BLOCK_BYTES;
+	private boolean keyed = false;
+
+	/**
+	 * Makes one, which has to be reset with a seed before
+	 * it's used.
+	 *
+	 * @throws IllegalStateException If the JVM has no AES
+	 */
+	public ShuffleRandom() {
+		super( 0 );
+		try {
+			cipher = Cipher.getInstance( "AES/CTR/NoPadding" );
+		} catch( GeneralSecurityException e ) {
+			throw new IllegalStateException( "This JVM has no AES in counter mode.", e );
+		}
+	}
+
+	/**
+	 * Starts the numbers for a shuffle.
+	 *
+	 * @param seed The shuffle's seed
+	 */
+	public void reset( ShuffleSeed seed ) {
+		try {
+			cipher.init( Cipher.ENCRYPT_MODE, new SecretKeySpec( seed.getSeed(), "AES" ), START );
+		} catch( GeneralSecurityException e ) {
+			throw new IllegalStateException( "Couldn't start the shuffle's keystream.", e );
+		}
+		position = BLOCK_BYTES;
+		keyed = true;
+	}
+
+	/**
+	 * The next bits of the keystream. Everything else in
+	 * Random, like nextInt(int), is made from this.
+	 */
+	@Override
+	protected int next( int bits ) {
+		if( !keyed ) {
+			throw new IllegalStateException( "A shuffle's random numbers need its seed first." );
+		}
+		if( position == BLOCK_BYTES ) {
+			try {
+				cipher.update( ZEROS, 0, BLOCK_BYTES, block, 0 );
+			} catch( GeneralSecurityException e ) {
+				throw new IllegalStateException( "Couldn't continue the shuffle's keystream.", e );
+			}
+			position = 0;
+		}
+		int word = ((block[position] & 0xff) << 24) | ((block[position + 1] & 0xff) << 16) |
+				((block[position + 2] & 0xff) << 8) | (block[position + 3] & 0xff);
+		position += 4;
+		return word >>> (32 - bits);
+	}
+
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - ShuffleSeed.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: The secret behind one shuffle of a dealer shoe, and the public
+ * commitment to it that lets the shuffle be audited afterwards.
+ ******************************************************************************/
+package drexel.edu.blackjack.cards;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * <b>SECURITY:</b> A shuffle's seed, its number, and the
+ * SHA-256 hash of the seed, which is its commitment. The
+ * commitment can be made public as soon as the shuffle's
+ * done, as nothing about the seed can be worked out from
+ * it. Once the shoe's been dealt out, the seed can be made
+ * public too: the shuffle is entirely decided by the seed,
+ * through a {@link ShuffleRandom}, so anyone can shuffle a
+ * shoe with it, and check that it hashes to the commitment.
+ * <P>
+ * It never changes once it's made.
+ *
+ * @author Jennifer
+ */
+public final class ShuffleSeed {
+
+	/**
+	 * How many bytes are in a seed
+	 */
+	public static final int SEED_BYTES	= 32;
+
+	// Used to print bytes as hex
+	private static final char[] HEX		= "0123456789abcdef".toCharArray();
+
+	private final long number;
+	private final byte[] seed;
+	private final byte[] commitment;
+
+	/**
+	 * Makes a seed, working out its commitment.
+	 *
+	 * @param number Which shuffle this is, for the record
+	 * @param seed The seed's {@link #SEED_BYTES} bytes, which
+	 * are copied
+	 * @param digest Hashes the commitment; it's reset first
+	 * @throws IllegalArgumentException If the seed is the wrong size
+	 */
+	public ShuffleSeed( long number, byte[] seed, MessageDigest digest ) {
+		if( seed == null || seed.length != SEED_BYTES ) {
+			throw new IllegalArgumentException( "A shuffle seed has to be " + SEED_BYTES + " bytes." );
+		}
+		this.number = number;
+		this.seed = seed.clone();
+		digest.reset();
+		this.commitment = digest.digest( this.seed );
+	}
+
+	/**
+	 * Makes a seed that's been revealed, so a shuffle can be
+	 * checked, or played again.
+	 *
+	 * @param number Which shuffle it was
+	 * @param hexSeed The seed, as from {@link #getSeedAsHex()}
+	 * @return The seed, with its commitment worked out again
+	 * @throws IllegalArgumentException If it isn't a seed
+	 */
+	public static ShuffleSeed reveal( long number, String hexSeed ) {
+		if( hexSeed == null || hexSeed.length() != SEED_BYTES * 2 ) {
+			throw new IllegalArgumentException( "A shuffle seed has to be " + (SEED_BYTES * 2) + " hex digits." );
+		}
+		byte[] seed = new byte[SEED_BYTES];
+		for( int i = 0; i < SEED_BYTES; i++ ) {
+			seed[i] = (byte)Integer.parseInt( hexSeed.substring( 2 * i, 2 * i + 2 ), 16 );
+		}
+		return new ShuffleSeed( number, seed, createDigest() );
+	}
+
+	/**
+	 * @return A new SHA-256 digest, which every JVM has
+	 */
+	public static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance( "SHA-256" );
+		} catch( NoSuchAlgorithmException e ) {
+			throw new IllegalStateException( "This JVM has no SHA-256.", e );
+		}
+	}
+
+	/**
+	 * @return Which shuffle this is
+	 */
+	public long getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return A copy of the seed, which is only to be
+	 * made public once the shoe is done with it
+	 */
+	public byte[] getSeed() {
+		return seed.clone();
+	}
+
+	/**
+	 * @return The seed in hex, which is only to be made
+	 * public once the shoe is done with it
+	 */
+	public String getSeedAsHex() {
+		return toHex( seed );
+	}
+
+	/**
+	 * @return The commitment, in hex, which can be made
+	 * public at any time
+	 */
+	public String getCommitment() {
+		return toHex( commitment );
+	}
+
+	/**
+	 * @param other Another seed
+	 * @return True if both have the same seed, so would
+	 * shuffle the same way
+	 */
+	public boolean sameSeedAs( ShuffleSeed other ) {
+		return other != null && Arrays.equals( seed, other.seed );
+	}
+
+	/**
+	 * Doesn't give away the seed, so it's safe to log.
+	 */
+	@Override
+	public String toString() {
+		return "shuffle " + number + " commitment " + getCommitment();
+	}
+
+	private static String toHex( byte[] bytes ) {
+		char[] str = new char[bytes.length * 2];
+		for( int i = 0; i < bytes.length; i++ ) {
+			str[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+			str[2 * i + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String( str );
+	}
+
+}
@@ -12,62 +12,127 @@
  ******************************************************************************/
 package drexel.edu.blackjack.cards;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Random;
 
 /**
  * Implements a dealer's shoe that plays fair and square.
+ * <P>
+ * The shoe is an array of card codes, as from
+ * {@link Card#getCode()}, and the index of the next one to
+ * deal. Dealing moves the index along and hands back the
+ * shared {@link Card} for the code, so nothing is made or
+ * moved; shuffling puts the index back at the start and
+ * mixes the whole array in place.
+ * <P>
+ * <b>SECURITY:</b> Unless it's given a java.util.Random to
+ * shuffle with, which is only for tests, each shuffle gets
+ * a new seed from a {@link ShuffleEntropy}, and the order
+ * of the cards is worked out from that seed alone, by a
+ * {@link ShuffleRandom}. So a shuffle can be checked, or
+ * repeated, by anyone who has its seed.
  * 
  * @author Duc
  */
 public class SimpleDealerShoe implements DealerShoeInterface {
 	
 	private final int numDecks;
-	private final ArrayList<Card> deck;
-	private final ArrayList<Card> bin;
+	private final byte[] cards;
+	private int next = 0;
+	
+	// Shuffles are either from a seed, with the numbers from the
+	// shuffle random, or, for tests, from a plain random
+	private final Random random;
+	private final ShuffleEntropy entropy;
+	private ShuffleSeed seed = null;
 
 	/**
 	 * Constructs the shoe around a specified number of
 	 * decks. Cards start sequentially ordered unless
-	 * shuffled.
+	 * shuffled, which is done with seeds from
+	 * {@link SecureShuffleEntropy#getDefault()}.
 	 * 
 	 * @param numDeck The number of decks
 	 */
 	public SimpleDealerShoe(int numDeck) {
+		this(numDeck, (ShuffleEntropy)null);
+	}
+
+	/**
+	 * Constructs the shoe around a specified number of
+	 * decks, shuffling with seeds from the given source.
+	 * Cards start sequentially ordered unless shuffled.
+	 * 
+	 * @param numDeck The number of decks
+	 * @param entropy Where the shuffles' seeds come from, or
+	 * null for {@link SecureShuffleEntropy#getDefault()}
+	 */
+	public SimpleDealerShoe(int numDeck, ShuffleEntropy entropy) {
+		this(numDeck, new ShuffleRandom(), entropy == null ? SecureShuffleEntropy.getDefault() : entropy);
+	}
+
+	/**
+	 * Constructs the shoe around a specified number of
+	 * decks, shuffling with the given random numbers.
+	 * Cards start sequentially ordered unless shuffled.
+	 * 
+	 * @param numDeck The number of decks
+	 * @param random Where the shuffles' random numbers come from
+	 */
+	public SimpleDealerShoe(int numDeck, Random random) {
+		this(numDeck, random, null);
+	}
+	
+	private SimpleDealerShoe(int numDeck, Random random, ShuffleEntropy entropy) {
 		numDecks = numDeck;
-		deck = new ArrayList<Card>();
-		bin = new ArrayList<Card>();
-		for (int i=0; i < numDeck; i++) {
-			for (Card.SUIT suit:Card.SUIT.values()) {
-				for (Card.RANK rank: Card.RANK.values()) {
-					deck.add(new Card(rank, suit));
-				}
-			}
+		this.random = random;
+		this.entropy = entropy;
+		cards = new byte[Math.max(0, numDeck) * Card.NUMBER_OF_CODES];
+		for (int i=0; i < cards.length; i++) {
+			cards[i] = (byte)(i % Card.NUMBER_OF_CODES);
 		}
 	}
 
 	@Override
 	public void shuffle() {
-		// Was a bug: before you shuffle, you need to return all the dealt
-		// cards from the bin to the deck, THEN reshuffle ALL the cards
-		// Otherwise cards in the bin never get returned to the deck and
-		// you eventually run out
-		deck.addAll( bin );
-		bin.clear();
-		Collections.shuffle(deck);
+		// The last shuffle's seed is done with, and this one gets
+		// a new one
+		if (entropy != null) {
+			if (seed != null) {
+				entropy.retire(seed);
+			}
+			seed = entropy.nextSeed();
+			((ShuffleRandom)random).reset(seed);
+		}
+		
+		// All the dealt cards go back in, then the whole shoe is
+		// shuffled, Fisher-Yates style
+		next = 0;
+		for (int i = cards.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			byte card = cards[i];
+			cards[i] = cards[j];
+			cards[j] = card;
+		}
 	}
 
 	@Override
-	public DealtCard dealTopCard() {
+	public Card dealTopCard() {
 		if (isEmpty()) return null;
-		Card c = deck.remove(0);
-		bin.add(c);
-		return new DealtCard(c);
+		return Card.valueOf(cards[next++]);
+	}
+
+	@Override
+	public int deal(int n, Card[] into, int offset) {
+		int dealt = Math.min(n, cards.length - next);
+		for (int i = 0; i < dealt; i++) {
+			into[offset + i] = Card.valueOf(cards[next++]);
+		}
+		return Math.max(0, dealt);
 	}
 
 	@Override
 	public boolean isEmpty() {
-		return deck.size() == 0;
+		return next >= cards.length;
 	}
 
 	@Override
@@ -77,20 +142,28 @@ public class SimpleDealerShoe implements DealerShoeInterface {
 
 	@Override
 	public int getNumberOfDealtCards() {
-		return bin.size();
+		return next;
 	}
 
 	@Override
 	public float getPercentageOfDealtCards() {
-		// Fixed a bug where unless you cast, it does integer
-		// division and therefore only returns 0 or 1, nothing
-		// else in between ever.
-		return (float)bin.size()/(float)(bin.size() + deck.size());
+		return cards.length == 0 ? 1f : (float)next/(float)cards.length;
 	}
 
 	@Override
 	public int getTotalNumberOfCards() {
-		return deck.size();
+		return cards.length;
+	}
+	
+	/**
+	 * <b>SECURITY:</b> The seed the cards were last shuffled
+	 * with, which is secret until the shoe is shuffled again.
+	 * 
+	 * @return The seed, or null if the shoe hasn't been shuffled,
+	 * or is shuffled with a plain Random
+	 */
+	public ShuffleSeed getSeed() {
+		return seed;
 	}
 
 }
@@ -102,6 +102,10 @@ public class BlackjackCLClient {
 	// This system property is set true if we should show the message frame
 	private static final String SHOW_MESSAGES			= "showmessages";
 	
+	// This system property is set to 'binary' to ask the server for binary framing
+	private static final String FRAMING					= "framing";
+	private static final String BINARY_FRAMING			= "binary";
+	
 	// Our logger
 	private final static Logger LOGGER = BlackjackLogger.createLogger(BlackjackCLClient.class .getName()); 
 	
@@ -254,6 +258,15 @@ public class BlackjackCLClient {
             // Create the helper to handle output
             output = new ClientOutputToServerHelper( socket, isHeadless() );
             
+            // Switch to binary framing if asked, before any screen talks to the server
+            if( BINARY_FRAMING.equals(System.getProperty(FRAMING)) ) {
+            	if( output.negotiateBinaryFraming( input ) ) {
+            		LOGGER.info( "Switched to binary framing." );
+            	} else {
+            		LOGGER.warning( "The server did not switch to binary framing, so continuing with text." );
+            	}
+            }
+            
             if (debugMode) {
             	
             	setScreen(new DebugClientScreen(this, input, output), true);
@@ -14,9 +14,8 @@
  ******************************************************************************/
 package drexel.edu.blackjack.client.in;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.Socket;
 import java.util.Collections;
 import java.util.HashSet;
@@ -25,8 +24,12 @@ import java.util.logging.Logger;
 
 import drexel.edu.blackjack.client.BlackjackCLClient;
 import drexel.edu.blackjack.client.MessageFrame;
+import drexel.edu.blackjack.server.BinaryCodec;
+import drexel.edu.blackjack.server.BlackjackServer;
 import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.util.BinaryFramer;
 import drexel.edu.blackjack.util.BlackjackLogger;
+import drexel.edu.blackjack.util.LineFramer;
 
 /**
  * This threaded class is designed to read input from the 
@@ -34,6 +37,11 @@ import drexel.edu.blackjack.util.BlackjackLogger;
  * it passes it off to listeners who have registered interest
  * in particular response codes.
  * <P>
+ * Input is read as bytes and split into lines, or into binary
+ * frames once the connection has switched to binary framing
+ * (see {@link #expectBinaryFraming(BinaryCodec)}). Either way,
+ * listeners get the same response codes.
+ * <P>
  * Synchronization techniques modeled after reading this
  * extremely old (but perhaps still relevant) article:
  * http://www.javaworld.com/jw-03-1999/jw-03-toolbox.html 
@@ -46,8 +54,44 @@ public class ClientInputFromServerThread extends Thread {
 	 * Local variables go here
 	 *********************************************************/
 
+	/**
+	 * The longest line, binary frame, or decoded binary message
+	 * that will be accepted from the server
+	 */
+	public static final int MAX_MESSAGE_LENGTH = 256 * 1024;
+	
+	// How many bytes to read from the socket at a time
+	private static final int READ_BUFFER_SIZE = 4096;
+
 	// Need to keep track of what we're reading input from
-	private BufferedReader reader = null;
+	private InputStream in = null;
+	
+	// Splits what's read into lines
+	private LineFramer framer = new LineFramer( MAX_MESSAGE_LENGTH, BlackjackServer.EOL );
+	private LineFramer.LineListener lineListener = new LineFramer.LineListener() {
+		@Override
+		public boolean lineReceived( CharSequence line ) {
+			handleLine( line.toString() );
+			return binaryFramer == null;
+		}
+	};
+	
+	// Or, once the connection switches to binary framing, into frames
+	private BinaryCodec codec = null;
+	private BinaryFramer binaryFramer = null;
+	private BinaryFramer.FrameListener frameListener = new BinaryFramer.FrameListener() {
+		@Override
+		public boolean frameReceived( byte[] data, int offset, int length ) throws IOException {
+			handleFrame( data, offset, length );
+			return true;
+		}
+	};
+	
+	// While asking to switch to binary framing, the codec to switch to.
+	// Guarded by the negotiation lock, as is the outcome.
+	private final Object negotiationLock = new Object();
+	private BinaryCodec pendingCodec = null;
+	private Boolean negotiationOutcome = null;
 
 	// Multiple listeners
 	private Set<MessagesFromServerListener> listeners = null;
@@ -91,9 +135,9 @@ public class ClientInputFromServerThread extends Thread {
 			addListener( MessageFrame.getDefaultMessageFrame() );
 		}
 		
-		// Create a reader for the socket
+		// Get the stream for the socket
 		try {
-			reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			in = socket.getInputStream();
 		} catch (IOException e) {
 			LOGGER.severe( "Had an error trying to open a reader from our established socket." );
 			e.printStackTrace();
@@ -107,49 +151,28 @@ public class ClientInputFromServerThread extends Thread {
 	@Override
 	public void run() {
 		
-		if( reader == null ) {
+		if( in == null ) {
 			LOGGER.severe( "Was unable to open a reader on the socket, so I can't run!" );
 		} else {
 			try {
 
 				// Keep reading responses as long as we can, and not told to stop
-				String inputLine = reader.readLine();
+				byte[] buffer = new byte[READ_BUFFER_SIZE];
+				int count = in.read( buffer );
 				
-				while ( inputLine != null ) {
-					
-					// If we're debuging
-					LOGGER.fine( "<<<< " + inputLine );
+				while ( count >= 0 ) {
 					
-					// What we due depends on if we're processing a multiline message or not
-					if( this.processingMultilineMessage ) {
-						// If we ARE, then we keep appending to the multi-line message
-						// until we hit a newline all by itself. Then we deliver it
-						if( isEndOfMultilineMessage(inputLine) ) {
-							ResponseCode code = ResponseCode.getCodeFromString( multilineMessage.toString() );
-							processingMultilineMessage = false;
-							multilineMessage = null;
-							deliverMessageFromServer( code );
-						} else {
-							multilineMessage.append( "\n" );
-							multilineMessage.append( inputLine );
-						}
-					} else {
-						// If it's a singleline message, we deliver it right away
-						// Otherwise we go into multiline mode
-						ResponseCode code = ResponseCode.getCodeFromString( inputLine );
-						if( code == null ) {
-							LOGGER.severe( "Expected to receive a new response code but instead received something else, so ignoring." );
-							LOGGER.severe( "Received: " + inputLine );
-						} else if( code.isMultilineCode() ) {
-							multilineMessage = new StringBuilder( inputLine );
-							processingMultilineMessage = true;
-						} else {
-							deliverMessageFromServer( code );
-						}
+					// Lines, until we switch to binary framing, then frames
+					int consumed = 0;
+					if( binaryFramer == null ) {
+						consumed = framer.feed( buffer, 0, count, lineListener );
+					}
+					if( binaryFramer != null ) {
+						binaryFramer.feed( buffer, consumed, count - consumed, frameListener );
 					}
 					
-					// And read the next line
-					inputLine = reader.readLine();
+					// And read some more
+					count = in.read( buffer );
 		       }	
 				
 				LOGGER.info( "Apparently the client just disconnected." );
@@ -158,10 +181,13 @@ public class ClientInputFromServerThread extends Thread {
 			} finally {
 				// Always nice to clean up after ourselves
 				try {
-					reader.close();
+					in.close();
 				} catch (IOException e) {
 					// At this point we're about to end anyway, so ignore it
 				}
+				
+				// Nobody should be left waiting to switch
+				resolveNegotiation( false );
 			}
 		}
 		
@@ -170,6 +196,143 @@ public class ClientInputFromServerThread extends Thread {
 		
 	}
 
+	/**
+	 * Called before sending the BINARY command, so the response
+	 * to it is recognized. If it says the server is switching,
+	 * everything read after it is decoded as binary frames.
+	 * 
+	 * @param codec The codec to decode frames with
+	 */
+	public void expectBinaryFraming( BinaryCodec codec ) {
+		synchronized( negotiationLock ) {
+			pendingCodec = codec;
+			negotiationOutcome = null;
+		}
+	}
+
+	/**
+	 * Waits for the response to the BINARY command.
+	 * 
+	 * @param timeout How long to wait, in milliseconds
+	 * @return true if the server switched to binary framing,
+	 * false if it didn't or didn't answer in time
+	 */
+	public boolean awaitBinaryFraming( long timeout ) {
+		long giveUpAt = System.currentTimeMillis() + timeout;
+		synchronized( negotiationLock ) {
+			while( negotiationOutcome == null ) {
+				long remaining = giveUpAt - System.currentTimeMillis();
+				if( remaining <= 0 ) {
+					return false;
+				}
+				try {
+					negotiationLock.wait( remaining );
+				} catch (InterruptedException e) {
+					return false;
+				}
+			}
+			return negotiationOutcome.booleanValue();
+		}
+	}
+
+	/**
+	 * Handles one line of text from the server.
+	 * 
+	 * @param inputLine The line, without its EOL
+	 */
+	private void handleLine( String inputLine ) {
+		
+		// If we're debuging
+		LOGGER.fine( "<<<< " + inputLine );
+		
+		// What we due depends on if we're processing a multiline message or not
+		if( this.processingMultilineMessage ) {
+			// If we ARE, then we keep appending to the multi-line message
+			// until we hit a newline all by itself. Then we deliver it
+			if( isEndOfMultilineMessage(inputLine) ) {
+				ResponseCode code = ResponseCode.getCodeFromString( multilineMessage.toString() );
+				processingMultilineMessage = false;
+				multilineMessage = null;
+				deliverMessageFromServer( code );
+			} else {
+				multilineMessage.append( "\n" );
+				multilineMessage.append( inputLine );
+			}
+		} else {
+			// If it's a singleline message, we deliver it right away
+			// Otherwise we go into multiline mode
+			ResponseCode code = ResponseCode.getCodeFromString( inputLine );
+			if( code == null ) {
+				LOGGER.severe( "Expected to receive a new response code but instead received something else, so ignoring." );
+				LOGGER.severe( "Received: " + inputLine );
+			} else if( isAnswerToBinaryRequest( code ) ) {
+				// It's between us and the server, so nobody else needs to see it
+			} else if( code.isMultilineCode() ) {
+				multilineMessage = new StringBuilder( inputLine );
+				processingMultilineMessage = true;
+			} else {
+				deliverMessageFromServer( code );
+			}
+		}
+	}
+
+	/**
+	 * Handles one binary frame from the server. Each frame is a
+	 * whole message, even a multiline one.
+	 * 
+	 * @param data Where the frame body is
+	 * @param offset Where in the array it starts
+	 * @param length How long it is
+	 * @throws IOException If the frame is malformed
+	 */
+	private void handleFrame( byte[] data, int offset, int length ) throws IOException {
+		
+		ResponseCode code = codec.decodeResponse( data, offset, length );
+		LOGGER.fine( "<<<< " + code );
+		if( code == null ) {
+			LOGGER.severe( "Expected to receive a new response code but instead received something else, so ignoring." );
+		} else {
+			deliverMessageFromServer( code );
+		}
+	}
+
+	/**
+	 * If we're waiting on the answer to a BINARY command, this
+	 * is it. If the server is switching, so do we.
+	 * 
+	 * @param code A response from the server
+	 * @return true if it was the answer
+	 */
+	private boolean isAnswerToBinaryRequest( ResponseCode code ) {
+		synchronized( negotiationLock ) {
+			if( pendingCodec == null ) {
+				return false;
+			}
+			if( code.hasSameCode( ResponseCode.CODE.SWITCHING_TO_BINARY ) ) {
+				codec = pendingCodec;
+				binaryFramer = new BinaryFramer( MAX_MESSAGE_LENGTH );
+			}
+			resolveNegotiation( codec != null );
+			return true;
+		}
+	}
+
+	/**
+	 * Lets whoever is waiting for the answer to a BINARY
+	 * command know how it went.
+	 * 
+	 * @param switched Whether the server switched
+	 */
+	private void resolveNegotiation( boolean switched ) {
+		synchronized( negotiationLock ) {
+			if( pendingCodec != null ) {
+				pendingCodec = null;
+				negotiationOutcome = Boolean.valueOf( switched );
+				negotiationLock.notifyAll();
+			}
+		}
+	}
+
 	/**
 	 * A multiline message is terminated with an empty line,
 	 * basically.
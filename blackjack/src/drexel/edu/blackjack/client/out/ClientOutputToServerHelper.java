@@ -16,6 +16,7 @@
 package drexel.edu.blackjack.client.out;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.util.Collections;
@@ -24,12 +25,18 @@ import java.util.Set;
 import java.util.logging.Logger;
 
 import drexel.edu.blackjack.client.MessageFrame;
+import drexel.edu.blackjack.client.in.ClientInputFromServerThread;
+import drexel.edu.blackjack.server.BinaryCodec;
+import drexel.edu.blackjack.server.commands.BinaryCommand;
 import drexel.edu.blackjack.server.commands.HitCommand;
 import drexel.edu.blackjack.server.commands.StandCommand;
 import drexel.edu.blackjack.util.BlackjackLogger;
 
 /**
- * This class is used to write output to the server.
+ * This class is used to write output to the server. Commands
+ * are written as lines of text, or as binary frames once
+ * {@link #negotiateBinaryFraming(ClientInputFromServerThread)}
+ * has switched the connection over.
  * 
  * @author Jennifer
  */
@@ -42,8 +49,17 @@ public class ClientOutputToServerHelper extends Thread {
 	// For listeners
 	private Set<MessagesToServerListener> listeners = null;
 	
+	// How long to wait for the server to answer a BINARY command, in milliseconds
+	private static final long BINARY_NEGOTIATION_TIMEOUT = 10000;
+
 	// Need to keep track of what we're writing output to
 	private PrintWriter writer = null;
+	private OutputStream stream = null;
+	
+	// Set once we've switched to binary framing. Guarded by the write
+	// lock, which also keeps frames in the order they were encoded.
+	private final Object writeLock = new Object();
+	private BinaryCodec codec = null;
 
 	// And a logger for errors
 	private final static Logger LOGGER = BlackjackLogger.createLogger(ClientOutputToServerHelper.class.getName()); 
@@ -69,7 +85,8 @@ public class ClientOutputToServerHelper extends Thread {
 		}
 		
 		try {
-			writer = new PrintWriter(socket.getOutputStream(), true);
+			stream = socket.getOutputStream();
+			writer = new PrintWriter(stream, true);
 		} catch (IOException e) {
 			LOGGER.severe( "Had an error trying to open a writer to our established socket." );
 			e.printStackTrace();
@@ -109,8 +126,15 @@ public class ClientOutputToServerHelper extends Thread {
 		
 		// Otherwise, try to do what we can do
 		try {
-			writer.println( text );
-			writer.flush();
+			synchronized( writeLock ) {
+				if( codec == null ) {
+					writer.println( text );
+					writer.flush();
+				} else {
+					stream.write( codec.encodeCommand( text ) );
+					stream.flush();
+				}
+			}
 		} catch( Exception e ) {
 			LOGGER.severe( "Had a problem writing to the socket." );
 			e.printStackTrace();
@@ -120,6 +144,32 @@ public class ClientOutputToServerHelper extends Thread {
 		// If we got this far, assume success!
 		return true;
 	}
+
+	/**
+	 * Asks the server to switch the connection to binary framing,
+	 * and waits for its answer. This needs to be done before
+	 * anything else is sent.
+	 * 
+	 * @param input The thread reading from the server, which will
+	 * switch along with us
+	 * @return True if the connection switched, false if it's still
+	 * using text
+	 */
+	public boolean negotiateBinaryFraming( ClientInputFromServerThread input ) {
+		
+		BinaryCodec newCodec = new BinaryCodec( ClientInputFromServerThread.MAX_MESSAGE_LENGTH );
+		input.expectBinaryFraming( newCodec );
+		if( !sendRawText( BinaryCommand.COMMAND_WORD ) ) {
+			return false;
+		}
+		if( !input.awaitBinaryFraming( BINARY_NEGOTIATION_TIMEOUT ) ) {
+			return false;
+		}
+		synchronized( writeLock ) {
+			codec = newCodec;
+		}
+		return true;
+	}
 	
 	/**
 	 * Given a username, formulate the proper command
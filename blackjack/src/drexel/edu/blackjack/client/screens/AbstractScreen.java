@@ -30,6 +30,7 @@ import drexel.edu.blackjack.client.in.MessagesFromServerListener;
 import drexel.edu.blackjack.client.out.ClientOutputToServerHelper;
 import drexel.edu.blackjack.client.screens.util.ClientSideGame;
 import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.server.commands.CapabilitiesCommand;
 import drexel.edu.blackjack.server.game.Game;
 import drexel.edu.blackjack.server.game.GameState;
 import drexel.edu.blackjack.util.BlackjackLogger;
@@ -795,10 +796,17 @@ public abstract class AbstractScreen implements MessagesFromServerListener {
 				!code.hasSameCode( ResponseCode.CODE.CAPABILITIES_FOLLOW ) ) {
 			updateStatus( "Internal error, sorry. Can't display the capabilities list." );
 		} else {
-			updateStatus( "The server supports " + (code.getNumberOfLines()-1) + " protocol commands in this current state." );
-			updateStatus( "They are: " );
+			// Protocol extensions are listed along with the commands, but aren't commands
+			List<String> commands = new ArrayList<String>();
 			for( int i = 1; i < code.getNumberOfLines(); i++ ) {
-				updateStatus( i + ". " + code.getMultiline(i) );
+				if( !CapabilitiesCommand.PIPELINING.equals( code.getMultiline(i) ) ) {
+					commands.add( code.getMultiline(i) );
+				}
+			}
+			updateStatus( "The server supports " + commands.size() + " protocol commands in this current state." );
+			updateStatus( "They are: " );
+			for( int i = 0; i < commands.size(); i++ ) {
+				updateStatus( (i+1) + ". " + commands.get(i) );
 			}
 		}				
 	}
@@ -74,6 +74,10 @@ public class InSessionScreen extends AbstractScreen {
 	// Which of the states the screen is in
 	private Integer state;
 	
+	// What we synchronize on when looking at or changing the state. The
+	// state itself can't be used, as it's replaced every time it changes.
+	private final Object stateLock = new Object();
+	
 	// And keep a copy to itself for the singleton pattern
 	private static InSessionScreen inSessionScreen = null;
 	
@@ -134,7 +138,7 @@ public class InSessionScreen extends AbstractScreen {
 	public void processMessage(ResponseCode code) {
 		if( this.isActive ) {
 			
-			synchronized( state ) {
+			synchronized( stateLock ) {
 				// This is bad.
 				if( code == null ) {
 					reset();
@@ -288,7 +292,7 @@ public class InSessionScreen extends AbstractScreen {
 	public void displayMenu() {
 		
 		if( this.isActive ) {
-			synchronized(state) {
+			synchronized(stateLock) {
 				if( state == NEED_BET ) {
 					System.out.println( "***********************************************************" );
 					System.out.println( "                 Making a Bet Screen                       " );
@@ -394,7 +398,7 @@ public class InSessionScreen extends AbstractScreen {
 	public void handleUserInput(String str) {
 		if( this.isActive ) {
 
-			synchronized( state ) {
+			synchronized( stateLock ) {
 				
 				if( str == null ) {
 					reset();
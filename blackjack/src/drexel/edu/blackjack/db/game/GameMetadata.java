@@ -34,6 +34,11 @@ public class GameMetadata implements Serializable {
 	private final int minPlayers;
 	private final int maxPlayers;
 	
+	// The rules that change how the table is dealt, parsed from the
+	// ones above. They're worked out again whenever a game is read
+	// back in, so they aren't stored.
+	private final transient TableRules tableRules;
+	
 	private GameMetadata(String id, int numDecks, ArrayList<String> rules,
 			int minBet, int maxBet, int minPlayers, int maxPlayers) {
 		this.id = id;
@@ -43,6 +48,17 @@ public class GameMetadata implements Serializable {
 		this.maxBet = maxBet;
 		this.minPlayers = minPlayers;
 		this.maxPlayers = maxPlayers;
+		this.tableRules = TableRules.parse(numDecks, rules);
+	}
+	
+	/**
+	 * Games that are read back in don't have their table rules,
+	 * so this makes them again, the same way the constructor does.
+	 * 
+	 * @return A copy of what was read in, with table rules
+	 */
+	private Object readResolve() {
+		return new GameMetadata(id, numDecks, rules, minBet, maxBet, minPlayers, maxPlayers);
 	}
 	
 	public String getId() {
@@ -57,6 +73,14 @@ public class GameMetadata implements Serializable {
 		return rules;
 	}
 
+	/**
+	 * @return The rules that change how the table is dealt,
+	 * already parsed from {@link #getRules()}
+	 */
+	public TableRules getTableRules() {
+		return tableRules;
+	}
+
 	public int getMinBet() {
 		return minBet;
 	}
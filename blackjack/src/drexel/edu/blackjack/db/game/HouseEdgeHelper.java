@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - HouseEdgeHelper.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: This is a batch program an administrator can use to estimate the
+ * house edge of the games hosted in the server, by simulating a very large
+ * number of hands of each one.
+ ******************************************************************************/
+package drexel.edu.blackjack.db.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import drexel.edu.blackjack.server.sim.HouseEdgeResult;
+import drexel.edu.blackjack.server.sim.HouseEdgeSimulator;
+
+/**
+ * Simulates hands of each game in the game database, and
+ * prints the player's expected value, its variance and 95%
+ * confidence interval, and the house edge. System properties
+ * change what's run:
+ * <UL>
+ * <LI>-Dgame=id to only simulate one game
+ * <LI>-Dhands=N for how many hands per game (100000000)
+ * <LI>-Dstrategy=basic or mimic_the_dealer (basic)
+ * <LI>-Dseats=N for how many players are at the table (1)
+ * <LI>-Dseed=N to get the same results again
+ * </UL>
+ *
+ * @author Jennifer
+ */
+public class HouseEdgeHelper {
+	public static void main(String[] args) {
+
+		long hands = Long.getLong("hands", 100000000L);
+		int seats = Integer.getInteger("seats", 1);
+		long seed = Long.getLong("seed", System.nanoTime());
+		String gameId = System.getProperty("game");
+		HouseEdgeSimulator.Strategy strategy;
+		try {
+			strategy = HouseEdgeSimulator.Strategy.valueOf(System.getProperty("strategy", "basic").toUpperCase());
+		} catch (IllegalArgumentException e) {
+			System.out.println("Unknown strategy, use basic or mimic_the_dealer.");
+			return;
+		}
+
+		GameManagerInterface gm = FlatfileGameManager.getDefaultGameManager();
+		List<GameMetadata> games = new ArrayList<GameMetadata>();
+		if (gameId == null) {
+			games.addAll(gm.getGames());
+		} else if (gm.getGame(gameId) != null) {
+			games.add(gm.getGame(gameId));
+		}
+		if (games.isEmpty()) {
+			System.out.println("No games to simulate.");
+			return;
+		}
+
+		System.out.println("Seed " + seed + ", " + hands + " hands per game, " +
+				strategy.toString().toLowerCase() + " strategy, " + seats + " seat(s)");
+		for (GameMetadata g: games) {
+			HouseEdgeSimulator simulator = new HouseEdgeSimulator(g, strategy, seats);
+			long start = System.currentTimeMillis();
+			HouseEdgeResult result = simulator.simulate(hands, seed);
+			long elapsed = System.currentTimeMillis() - start;
+
+			System.out.println("*** " + g.getId() + ": " + simulator.getDecks() + " deck(s), dealer stands on " +
+					simulator.getStandPoint());
+			System.out.println(result.toString());
+			System.out.println("(" + elapsed + " ms, " + result.getShuffles() + " shuffles)");
+		}
+	}
+}
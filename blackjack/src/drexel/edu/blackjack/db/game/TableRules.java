@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - TableRules.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: The rules a table is dealt by, worked out once from a game's
+ * metadata, so that the dealer and the shoe can follow them without looking
+ * at the free-text rules again.
+ ******************************************************************************/
+package drexel.edu.blackjack.db.game;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A game's rules are free text, meant for players to read.
+ * A few of them change how the table is dealt, and this is
+ * what those come to:
+ * <UL>
+ * <LI><i>Dealer must hit soft 16 to stand</i> makes the
+ * dealer stand once any total of the hand, counting each
+ * ace as 1 or 11, reaches 16. Without it, that's 17.
+ * <LI><i>Reshuffle when 75% of the shoe is dealt</i> has
+ * the shoe shuffled before a hand once more than that much
+ * of it has been dealt, up to 90%. Without it, that's half.
+ * </UL>
+ * Rules that don't match either are only shown to players.
+ * <P>
+ * The rules are parsed when they're made, by {@link #parse(int, List)};
+ * after that, everything here is a plain field read. They
+ * never change, so they can be shared by any number of
+ * threads.
+ *
+ * @author Jennifer
+ */
+public class TableRules {
+
+	/**
+	 * Where the dealer stands, unless the game's rules say
+	 * otherwise
+	 */
+	public static final int DEFAULT_DEALER_STAND_POINT = 17;
+
+	/**
+	 * How much of the shoe is dealt before it's shuffled,
+	 * unless the game's rules say otherwise
+	 */
+	public static final float DEFAULT_RESHUFFLE_PENETRATION = 0.5f;
+
+	/**
+	 * The most of the shoe that can be dealt before it's
+	 * shuffled, so there are always cards left to finish
+	 * a hand with
+	 */
+	public static final float MAX_RESHUFFLE_PENETRATION = 0.9f;
+
+	/**
+	 * The rules of a single deck game that doesn't say
+	 * anything else
+	 */
+	public static final TableRules DEFAULT = new TableRules( 1,
+			DEFAULT_DEALER_STAND_POINT, DEFAULT_RESHUFFLE_PENETRATION );
+
+	// How a rule giving a different stand point is written
+	private static final Pattern STAND_POINT_RULE = Pattern.compile( ".*soft\\s(\\d{2})\\sto\\sstand.*" );
+
+	// How a rule giving a different reshuffle point is written
+	private static final Pattern PENETRATION_RULE = Pattern.compile( "(?i).*reshuffle\\D*(\\d{1,3})\\s?%.*" );
+
+	private final int numDecks;
+	private final int dealerStandPoint;
+	private final float reshufflePenetration;
+
+	/**
+	 * Makes rules from their parts. Use {@link #parse(int, List)}
+	 * to make them from a game's rules.
+	 *
+	 * @param numDecks How many decks are in the shoe, at
+	 * least 1
+	 * @param dealerStandPoint Where the dealer stands
+	 * @param reshufflePenetration How much of the shoe, from
+	 * 0 to {@link #MAX_RESHUFFLE_PENETRATION}, is dealt before
+	 * it's shuffled
+	 */
+	public TableRules( int numDecks, int dealerStandPoint, float reshufflePenetration ) {
+		this.numDecks = Math.max( 1, numDecks );
+		this.dealerStandPoint = dealerStandPoint;
+		this.reshufflePenetration = Math.max( 0f, Math.min( MAX_RESHUFFLE_PENETRATION, reshufflePenetration ) );
+	}
+
+	/**
+	 * Works out a table's rules from a game's.
+	 *
+	 * @param numDecks How many decks the game uses
+	 * @param rules The game's rules, or null if it has none
+	 * @return The table's rules
+	 */
+	public static TableRules parse( int numDecks, List<String> rules ) {
+
+		int dealerStandPoint = DEFAULT_DEALER_STAND_POINT;
+		float reshufflePenetration = DEFAULT_RESHUFFLE_PENETRATION;
+
+		if( rules != null ) {
+			boolean foundStandPoint = false;
+			boolean foundPenetration = false;
+			for( String rule : rules ) {
+				if( rule == null ) {
+					continue;
+				}
+				Matcher matcher = STAND_POINT_RULE.matcher( rule );
+				if( !foundStandPoint && matcher.find() ) {
+					dealerStandPoint = Integer.parseInt( matcher.group(1) );
+					foundStandPoint = true;
+				}
+				matcher = PENETRATION_RULE.matcher( rule );
+				if( !foundPenetration && matcher.find() ) {
+					int percent = Integer.parseInt( matcher.group(1) );
+					if( percent > 0 && percent <= 100 ) {
+						reshufflePenetration = percent / 100f;
+						foundPenetration = true;
+					}
+				}
+			}
+		}
+
+		return new TableRules( numDecks, dealerStandPoint, reshufflePenetration );
+	}
+
+	/**
+	 * @return How many decks are in the shoe
+	 */
+	public int getNumDecks() {
+		return numDecks;
+	}
+
+	/**
+	 * @return Where the dealer stands: once any total of the
+	 * hand reaches this, counting each ace as 1 or 11
+	 */
+	public int getDealerStandPoint() {
+		return dealerStandPoint;
+	}
+
+	/**
+	 * @return How much of the shoe, from 0 to
+	 * {@link #MAX_RESHUFFLE_PENETRATION}, can be dealt before
+	 * it has to be shuffled
+	 */
+	public float getReshufflePenetration() {
+		return reshufflePenetration;
+	}
+
+	@Override
+	public String toString() {
+		return numDecks + " decks, dealer stands on " + dealerStandPoint +
+				", reshuffle after " + Math.round( reshufflePenetration * 100 ) + "%";
+	}
+
+}
@@ -0,0 +1,530 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - BalanceLedger.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: A log that every change to a user's balance is appended to, so a
+ * bet or a payout only has to write a few bytes to disk instead of every
+ * user there is. The user file is rewritten now and then, and the log is
+ * replayed over it when the server starts.
+ ******************************************************************************/
+package drexel.edu.blackjack.db.user;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * An append-only log of balance changes. Each change is a
+ * record of {@value #RECORD_BYTES} bytes: its sequence
+ * number, the change, the balance it left, the username,
+ * and a CRC32 of all that. A record has the balance and
+ * not just the change, so replaying one that's already in
+ * the user file does no harm.
+ * <P>
+ * Changes are written by a thread of the ledger's own.
+ * Once the first one comes in, it waits the group commit
+ * window, -DledgerWindow=N milliseconds (5), for others to
+ * come in too, and then writes them all and forces them
+ * to disk at once, so with a lot of players betting at
+ * once, they all share one write. Whoever made a change
+ * can wait for it to be on disk, but doesn't have to; a
+ * game table shouldn't, as it would hold up every other
+ * table on its thread. If a write fails, the compactor is
+ * run, to save the changes in the user file instead.
+ * <P>
+ * Replaying cuts off a torn end, from a crash in the middle
+ * of a write. Anything else that's wrong with the ledger
+ * fails the replay, rather than quietly losing the changes
+ * after it.
+ * <P>
+ * Once there are -DledgerCompactAt=N records (10000), the
+ * ledger asks for the user file to be rewritten, after
+ * which it's {@link #truncate()}d.
+ * <P>
+ * <b>CONCURRENT:</b> Changes can be appended from any
+ * thread. A lock guards the records that aren't written
+ * yet, and another is held while writing, so appending
+ * never waits on the disk.
+ *
+ * @author Jennifer
+ */
+public class BalanceLedger {
+
+	/**
+	 * The system property with the group commit window, in
+	 * milliseconds
+	 */
+	public static final String WINDOW_PROPERTY		= "ledgerWindow";
+
+	/**
+	 * The system property with how many records the ledger
+	 * holds before the user file is rewritten
+	 */
+	public static final String COMPACT_PROPERTY		= "ledgerCompactAt";
+
+	/**
+	 * How many bytes the longest username can be, in UTF-8
+	 */
+	public static final int MAX_USERNAME_BYTES		= 64;
+
+	/**
+	 * How many bytes each record is
+	 */
+	public static final int RECORD_BYTES			= 88;
+
+	// Where the username is in a record, and where the CRC is
+	private static final int USERNAME_OFFSET		= 18;
+	private static final int CRC_OFFSET				= RECORD_BYTES - 4;
+
+	// What's after the username, up to the CRC
+	private static final byte[] PADDING				= new byte[CRC_OFFSET - USERNAME_OFFSET];
+
+	private static final Charset UTF8				= Charset.forName( "UTF-8" );
+
+	private final File file;
+	private final long window;
+	private final int compactAt;
+	private final Runnable compactor;
+
+	// CONCURRENT: Guards the records that haven't been written, and the
+	// sequence numbers. Waiters are told when more are on disk.
+	private final ReentrantLock lock				= new ReentrantLock();
+	private final Condition appended				= lock.newCondition();
+	private final Condition forced					= lock.newCondition();
+	private ByteBuffer pending						= ByteBuffer.allocate( 64 * RECORD_BYTES );
+	private long lastSequence						= 0;
+	private long durableSequence					= 0;
+	private boolean failed							= false;
+	private boolean closed							= false;
+
+	// CONCURRENT: Held while writing to the file, or truncating it
+	private final ReentrantLock ioLock				= new ReentrantLock();
+	private ByteBuffer writing						= ByteBuffer.allocate( 64 * RECORD_BYTES );
+	private FileChannel channel						= null;
+	private int recordsInFile						= 0;
+	private Thread writer							= null;
+
+	// Only used with the lock held
+	private final CRC32 crc							= new CRC32();
+
+	// And our logger
+	private final static Logger LOGGER = BlackjackLogger.createLogger(BalanceLedger.class.getName());
+
+	/**
+	 * Makes a ledger with the window and compaction size from
+	 * the system properties.
+	 *
+	 * @param file The file it's kept in
+	 * @param compactor Rewrites the user file and truncates
+	 * the ledger, when it's big enough; can be null
+	 */
+	public BalanceLedger( File file, Runnable compactor ) {
+		this( file, Long.getLong( WINDOW_PROPERTY, 5 ), Integer.getInteger( COMPACT_PROPERTY, 10000 ), compactor );
+	}
+
+	/**
+	 * @param file The file it's kept in
+	 * @param window How many milliseconds to wait for more
+	 * changes before writing, or 0 to write right away
+	 * @param compactAt How many records it can hold before
+	 * the compactor is run
+	 * @param compactor Rewrites the user file and truncates
+	 * the ledger, when it's big enough; can be null
+	 */
+	public BalanceLedger( File file, long window, int compactAt, Runnable compactor ) {
+		this.file = file;
+		this.window = Math.max( 0, window );
+		this.compactAt = Math.max( 1, compactAt );
+		this.compactor = compactor;
+	}
+
+	/**
+	 * @param username A username
+	 * @return True if it's short enough to go in a record
+	 */
+	public static boolean fits( String username ) {
+		return username != null && username.getBytes( UTF8 ).length <= MAX_USERNAME_BYTES;
+	}
+
+	/**
+	 * Adds a change to the ledger. It's written soon after,
+	 * and {@link #awaitDurable(long)} waits until it is.
+	 *
+	 * @param username Whose balance changed, which has to
+	 * {@link #fits(String)}
+	 * @param delta How much it changed by
+	 * @param balance What it is now
+	 * @return The change's sequence number
+	 * @throws IllegalArgumentException If the username doesn't fit
+	 */
+	public long append( String username, int delta, int balance ) {
+		byte[] name = (username == null ? null : username.getBytes( UTF8 ));
+		if( name == null || name.length > MAX_USERNAME_BYTES ) {
+			throw new IllegalArgumentException( "The username '" + username + "' won't fit in a ledger record." );
+		}
+		lock.lock();
+		try {
+			if( pending.remaining() < RECORD_BYTES ) {
+				ByteBuffer bigger = ByteBuffer.allocate( pending.capacity() * 2 );
+				pending.flip();
+				bigger.put( pending );
+				pending = bigger;
+			}
+			long sequence = ++lastSequence;
+			int start = pending.position();
+			pending.putLong( sequence );
+			pending.putInt( delta );
+			pending.putInt( balance );
+			pending.putShort( (short)name.length );
+			pending.put( name );
+			pending.put( PADDING, 0, CRC_OFFSET - USERNAME_OFFSET - name.length );
+			crc.reset();
+			crc.update( pending.array(), start, CRC_OFFSET );
+			pending.putInt( (int)crc.getValue() );
+
+			if( writer == null && !closed ) {
+				writer = new Thread( new Runnable() {
+					@Override
+					public void run() {
+						writeUntilClosed();
+					}
+				}, "BalanceLedgerWriter" );
+				writer.setDaemon( true );
+				writer.start();
+			}
+			appended.signal();
+			return sequence;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until a change is on disk.
+	 *
+	 * @param sequence The change's sequence number
+	 * @return True if it's on disk, or false if it couldn't
+	 * be written, or the wait was interrupted
+	 */
+	public boolean awaitDurable( long sequence ) {
+		lock.lock();
+		try {
+			while( durableSequence < sequence && !failed && !closed ) {
+				forced.await( 1, TimeUnit.SECONDS );
+			}
+			return durableSequence >= sequence;
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until everything appended so far is on disk.
+	 *
+	 * @return True if it is, or false if it couldn't be
+	 * written, or the wait was interrupted
+	 */
+	public boolean flush() {
+		long sequence;
+		lock.lock();
+		try {
+			sequence = lastSequence;
+		} finally {
+			lock.unlock();
+		}
+		return awaitDurable( sequence );
+	}
+
+	/**
+	 * Sets users' balances from what's in the ledger, in the
+	 * order the changes were made. If the ledger ends with
+	 * records that are short or don't check out, and there's
+	 * no good one after them, a crash tore the last write,
+	 * and they're cut off.
+	 *
+	 * @param users The users from the user file, by username
+	 * @return How many records there were
+	 * @throws IOException If the ledger couldn't be read, or
+	 * a bad record has good ones after it, so it's corrupt
+	 * and not just torn
+	 */
+	public int replay( Map<String, UserMetadata> users ) throws IOException {
+		ioLock.lock();
+		try {
+			if( !file.exists() ) {
+				return 0;
+			}
+			FileChannel in = open();
+			ByteBuffer record = ByteBuffer.allocate( RECORD_BYTES );
+			long position = 0;
+			int records = 0;
+			in.position( 0 );
+			while( true ) {
+				record.clear();
+				while( record.hasRemaining() && in.read( record ) >= 0 ) {
+					// Keep reading until it's full or the file ends
+				}
+				if( record.position() == 0 ) {
+					break;
+				}
+				if( record.hasRemaining() || !isIntact( record.array() ) ) {
+					if( hasIntactRecordAfter( in, position + RECORD_BYTES ) ) {
+						throw new IOException( "The balance ledger " + file + " has a bad record at byte " + position +
+								" with good ones after it, so it's corrupt. It has to be repaired by hand." );
+					}
+					LOGGER.warning( "The balance ledger " + file + " ends with a torn write at byte " + position +
+							", so it's being cut off there." );
+					in.truncate( position );
+					break;
+				}
+				record.flip();
+				record.getLong();
+				record.getInt();
+				int balance = record.getInt();
+				int length = record.getShort();
+				String username = new String( record.array(), USERNAME_OFFSET, length, UTF8 );
+				UserMetadata user = users.get( username );
+				if( user != null ) {
+					user.setBalance( balance );
+				}
+				position += RECORD_BYTES;
+				records++;
+			}
+			in.position( position );
+			recordsInFile = records;
+			return records;
+		} finally {
+			ioLock.unlock();
+		}
+	}
+
+	/**
+	 * Empties the ledger, once everything in it is in the
+	 * user file. Changes that were waiting to be written are
+	 * counted as on disk, as the user file has them.
+	 *
+	 * @return True if it was emptied
+	 */
+	public boolean truncate() {
+		ioLock.lock();
+		try {
+			lock.lock();
+			try {
+				pending.clear();
+				durableSequence = lastSequence;
+				failed = false;
+				forced.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			if( channel != null || file.exists() ) {
+				open().truncate( 0 );
+				channel.force( true );
+			}
+			recordsInFile = 0;
+			return true;
+		} catch( IOException e ) {
+			LOGGER.severe( "Couldn't truncate the balance ledger " + file + ": " + e.getMessage() );
+			return false;
+		} finally {
+			ioLock.unlock();
+		}
+	}
+
+	/**
+	 * @return How many records are in the file
+	 */
+	public int getRecordCount() {
+		ioLock.lock();
+		try {
+			return recordsInFile;
+		} finally {
+			ioLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes out whatever's left, and stops the writer.
+	 * Changes appended after this aren't written.
+	 */
+	public void close() {
+		Thread thread = null;
+		lock.lock();
+		try {
+			closed = true;
+			thread = writer;
+			appended.signalAll();
+			forced.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		if( thread != null ) {
+			try {
+				thread.join();
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		ioLock.lock();
+		try {
+			if( channel != null ) {
+				channel.close();
+				channel = null;
+			}
+		} catch( IOException e ) {
+			LOGGER.warning( "Couldn't close the balance ledger " + file + ": " + e.getMessage() );
+		} finally {
+			ioLock.unlock();
+		}
+	}
+
+	/******************************************************************************
+	 * Private methods
+	 *****************************************************************************/
+
+	/**
+	 * The writer's loop: waits for changes, gives others the
+	 * window to come in too, and writes them all at once
+	 */
+	private void writeUntilClosed() {
+		while( true ) {
+			lock.lock();
+			try {
+				while( pending.position() == 0 && !closed ) {
+					appended.awaitUninterruptibly();
+				}
+				if( pending.position() == 0 ) {
+					return;
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			// Let the rest of the group in
+			if( window > 0 && !closed ) {
+				try {
+					Thread.sleep( window );
+				} catch( InterruptedException e ) {
+					// Then write what there is
+				}
+			}
+
+			long batchEnd = 0;
+			boolean written = false;
+			ioLock.lock();
+			try {
+				lock.lock();
+				try {
+					ByteBuffer full = pending;
+					pending = writing;
+					writing = full;
+					batchEnd = lastSequence;
+				} finally {
+					lock.unlock();
+				}
+				writing.flip();
+				int records = writing.remaining() / RECORD_BYTES;
+				FileChannel out = open();
+				while( writing.hasRemaining() ) {
+					out.write( writing );
+				}
+				out.force( false );
+				recordsInFile += records;
+				written = true;
+			} catch( IOException e ) {
+				LOGGER.severe( "Couldn't write to the balance ledger " + file + ": " + e.getMessage() );
+			} finally {
+				writing.clear();
+				ioLock.unlock();
+			}
+
+			boolean compact = false;
+			lock.lock();
+			try {
+				if( written ) {
+					durableSequence = Math.max( durableSequence, batchEnd );
+				} else {
+					failed = true;
+				}
+				forced.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			ioLock.lock();
+			try {
+				compact = !written || recordsInFile >= compactAt;
+			} finally {
+				ioLock.unlock();
+			}
+			if( compact && compactor != null ) {
+				// Nobody waits on a write, so if it failed, the
+				// changes are saved by rewriting the user file
+				compactor.run();
+			} else if( !written ) {
+				LOGGER.severe( "Balance changes up to " + batchEnd + " weren't written, and there's nothing to save them instead." );
+			}
+		}
+	}
+
+	/**
+	 * Opens the file, if it isn't already, to add to the end
+	 * of it. The I/O lock has to be held.
+	 */
+	private FileChannel open() throws IOException {
+		if( channel == null ) {
+			channel = new RandomAccessFile( file, "rw" ).getChannel();
+			channel.position( channel.size() );
+		}
+		return channel;
+	}
+
+	/**
+	 * Looks for a record that checks out, from a position to
+	 * the end of the file. The I/O lock has to be held.
+	 */
+	private static boolean hasIntactRecordAfter( FileChannel in, long position ) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate( RECORD_BYTES );
+		for( long at = position; at + RECORD_BYTES <= in.size(); at += RECORD_BYTES ) {
+			record.clear();
+			while( record.hasRemaining() && in.read( record, at + record.position() ) >= 0 ) {
+				// Keep reading until it's full or the file ends
+			}
+			if( !record.hasRemaining() && isIntact( record.array() ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return True if a record's CRC matches, and its
+	 * username is a sensible length
+	 */
+	private static boolean isIntact( byte[] record ) {
+		CRC32 check = new CRC32();
+		check.update( record, 0, CRC_OFFSET );
+		int stored = ByteBuffer.wrap( record, CRC_OFFSET, 4 ).getInt();
+		int length = ByteBuffer.wrap( record, USERNAME_OFFSET - 2, 2 ).getShort();
+		return stored == (int)check.getValue() && length >= 0 && length <= MAX_USERNAME_BYTES;
+	}
+
+}
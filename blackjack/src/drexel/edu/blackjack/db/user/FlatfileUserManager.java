@@ -14,16 +14,23 @@
  ******************************************************************************/
 package drexel.edu.blackjack.db.user;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.util.BlackjackLogger;
 
 /**
  * User metadata is stored out in a flat file. The format
@@ -33,6 +40,18 @@ import java.util.Set;
  * To keep the user list persistent, this class uses serialization.
  * which requires writing permission, to write serialized file to disk
  * <p>
+ * Balance changes aren't saved by rewriting the file. They're appended
+ * to a {@link BalanceLedger} next to it instead, which is replayed over
+ * the file when it's loaded. The file is rewritten, and the ledger
+ * emptied, when the ledger gets big, or when everything is saved.
+ * <p>
+ * <b>CONCURRENT:</b> Connections and game tables all use the same
+ * manager, so everything that touches the users is synchronized. A
+ * balance change is only appended to the ledger, and nobody waits for it
+ * to reach the disk, so a game table isn't held up by it, and changes
+ * from different tables share a write. The ledger is closed, writing out
+ * whatever's left, when the server shuts down.
+ * <p>
  * <b>SECURITY:</b> There is a method here to handle username/password
  * authentication. Also, a user is prevented from logging in multiple times
  * which could tie up system resources and affect system availability.
@@ -46,10 +65,15 @@ public class FlatfileUserManager implements UserManagerInterface {
 	private static FlatfileUserManager tuserManager = null;
 	private HashMap<String, UserMetadata> users;
 	public final static String USER_RECORDS = "users_serialized";
+	public final static String LEDGER_SUFFIX = ".ledger";
 	private final String objectFile;
+	private final BalanceLedger ledger;
 	
 	// Maintain a list of logged in users, to prevent a user from being logged in twice
 	private Set<String> loggedInUserNames = new HashSet<String>();
+	
+	// And our logger
+	private final static Logger LOGGER = BlackjackLogger.createLogger(FlatfileUserManager.class.getName());
 
 	/**
 	 * Following the singleton design pattern, the constructor
@@ -57,30 +81,62 @@ public class FlatfileUserManager implements UserManagerInterface {
 	 */
 	private FlatfileUserManager(String filename) {
 		objectFile = filename;
+		ledger = new BalanceLedger(new File(filename + LEDGER_SUFFIX), new Runnable() {
+			@Override
+			public void run() {
+				compact();
+			}
+		});
 		if (!load()) {
 			users = new HashMap<String, UserMetadata>();
 		}
+		Runtime.getRuntime().addShutdownHook(new Thread("BalanceLedgerShutdown") {
+			@Override
+			public void run() {
+				ledger.close();
+			}
+		});
 	}
 
 	
+	/**
+	 * Loads the users from the file, and then replays the
+	 * balance ledger over them. If the ledger had anything
+	 * in it, the file is rewritten with it.
+	 * 
+	 * @throws IllegalStateException If the ledger couldn't be
+	 * replayed. Going on without it would lose the changes in
+	 * it the next time the file is rewritten.
+	 */
 	@Override
-	public boolean load() {
+	public synchronized boolean load() {
+		// Anything that's still on its way to the ledger is replayed too
+		ledger.flush();
 		try {
-			FileInputStream fis = new FileInputStream(USER_RECORDS);
+			FileInputStream fis = new FileInputStream(objectFile);
 			ObjectInputStream ois = new ObjectInputStream(fis);
 			users = (HashMap<String, UserMetadata>) ois.readObject();
 			ois.close();
 		} catch (FileNotFoundException e) {
-			users = new HashMap<String, UserMetadata>();
 			// when there is no stored file, we consider as loaded successfully
-			return true;
+			users = new HashMap<String, UserMetadata>();
 		} catch (Exception e) {
 			return false;
 		}
+		try {
+			int replayed = ledger.replay(users);
+			if (replayed > 0) {
+				LOGGER.info("Replayed " + replayed + " balance changes from the ledger over " + objectFile + ".");
+				return save();
+			}
+		} catch (IOException e) {
+			LOGGER.severe("Couldn't replay the balance ledger for " + objectFile + ": " + e.getMessage());
+			throw new IllegalStateException("Couldn't replay the balance ledger for " + objectFile, e);
+		}
 		return true;
 	}
 	
-	public boolean add(UserMetadata user) {
+	public synchronized boolean add(UserMetadata user) {
 		if (users.containsKey(user.getUsername())) {
 			return false;
 		}
@@ -91,20 +147,60 @@ public class FlatfileUserManager implements UserManagerInterface {
 			return false;
 	}
 
+	/**
+	 * Writes every user to a new file, forces it to disk, and
+	 * puts it in place of the old one, so a crash part way
+	 * through leaves the old one as it was. Everything in the
+	 * ledger is then in the file, so the ledger is emptied.
+	 */
 	@Override
-	public boolean save() {
+	public synchronized boolean save() {
+		File temporary = new File(objectFile + ".tmp");
 		try {
-			ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(USER_RECORDS));
+			FileOutputStream fos = new FileOutputStream(temporary);
+			ObjectOutputStream out = new ObjectOutputStream(fos);
 			out.writeObject(users);
+			out.flush();
+			fos.getFD().sync();
 			out.close();
+			Files.move(temporary.toPath(), new File(objectFile).toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 		} catch (Exception e) {
+			LOGGER.severe("Couldn't save the users to " + objectFile + ": " + e.getMessage());
 			return false;
 		}
+		return ledger.truncate();
+	}
+
+	/**
+	 * Changes the balance, and appends the change to the
+	 * ledger, which writes it within a few milliseconds. This
+	 * is called on game tables' threads, so it doesn't wait
+	 * for the write; if it fails, the ledger has everything
+	 * saved instead. A username too long for the ledger has
+	 * everything saved right away.
+	 */
+	@Override
+	public synchronized boolean adjustBalance(UserMetadata user, int delta) {
+		user.setBalance(user.getBalance() + delta);
+		if (!BalanceLedger.fits(user.getUsername())) {
+			return save();
+		}
+		ledger.append(user.getUsername(), delta, user.getBalance());
 		return true;
 	}
 
+	/**
+	 * Run by the ledger once it's big enough
+	 */
+	private void compact() {
+		if (save()) {
+			LOGGER.info("Rewrote " + objectFile + " and emptied its balance ledger.");
+		}
+	}
+
 	@Override
-	public UserMetadata loginUser(String username, String password) throws AlreadyLoggedInException {
+	public synchronized UserMetadata loginUser(String username, String password) throws AlreadyLoggedInException {
 		if (users.containsKey(username)) {
 			if (users.get(username).getPassword().equals(password)) {
 				// Make sure they aren't already logged in
@@ -120,7 +216,7 @@ public class FlatfileUserManager implements UserManagerInterface {
 	
 
 	@Override
-	public boolean logoutUser(String username) {
+	public synchronized boolean logoutUser(String username) {
 		
 		if( loggedInUserNames != null ) {
 			return loggedInUserNames.remove(username);
@@ -157,13 +253,13 @@ public class FlatfileUserManager implements UserManagerInterface {
 
 
 	@Override
-	public List<UserMetadata> getUsers() {
+	public synchronized List<UserMetadata> getUsers() {
 		return new ArrayList<UserMetadata>(users.values());
 	}
 
 
 	@Override
-	public boolean remove(String username) throws UserNotFoundException {
+	public synchronized boolean remove(String username) throws UserNotFoundException {
 		if (users.containsKey(username)) {
 			users.remove(username);
 			if (save())
@@ -177,7 +273,7 @@ public class FlatfileUserManager implements UserManagerInterface {
 
 
 	@Override
-	public boolean changePassword(String username, String newPassword)
+	public synchronized boolean changePassword(String username, String newPassword)
 			throws UserNotFoundException {
 		if (users.containsKey(username)) {
 			users.get(username).setPassword(newPassword);
@@ -62,6 +62,21 @@ public interface UserManagerInterface {
 	 */
 	public boolean save();
 	
+	/**
+	 * Changes a user's balance by some amount, and makes the
+	 * change persistent, without necessarily saving every
+	 * other user too. It's used for every bet and payout, on
+	 * the game tables' threads, so it should be cheap, and
+	 * shouldn't wait on the disk.
+	 * @param user The user, as returned by loginUser()
+	 * @param delta How much to add to their balance, which
+	 * is negative to take money out
+	 * @return True if the change was stored, or is on its
+	 * way to being stored. The balance is changed in memory
+	 * either way.
+	 */
+	public boolean adjustBalance(UserMetadata user, int delta);
+	
 	/**
 	 * This method tries to add a new user with his metadata to the
 	 * current list
@@ -0,0 +1,1095 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - BinaryCodec.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Encodes and decodes the compact binary form of the protocol, which
+ * a client can switch to with the BINARY command. It carries the same commands
+ * and responses as the text form, in fewer bytes.
+ ******************************************************************************/
+package drexel.edu.blackjack.server;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import drexel.edu.blackjack.cards.Card;
+import drexel.edu.blackjack.server.commands.AccountCommand;
+import drexel.edu.blackjack.server.commands.BetCommand;
+import drexel.edu.blackjack.server.commands.BinaryCommand;
+import drexel.edu.blackjack.server.commands.CapabilitiesCommand;
+import drexel.edu.blackjack.server.commands.CommandMetadata;
+import drexel.edu.blackjack.server.commands.GameStatusCommand;
+import drexel.edu.blackjack.server.commands.HitCommand;
+import drexel.edu.blackjack.server.commands.JoinSessionCommand;
+import drexel.edu.blackjack.server.commands.LeaveSessionCommand;
+import drexel.edu.blackjack.server.commands.ListgamesCommand;
+import drexel.edu.blackjack.server.commands.PasswordCommand;
+import drexel.edu.blackjack.server.commands.QuitCommand;
+import drexel.edu.blackjack.server.commands.StandCommand;
+import drexel.edu.blackjack.server.commands.UsernameCommand;
+import drexel.edu.blackjack.server.commands.VersionCommand;
+
+/**
+ * Each frame is a varint length (see {@link drexel.edu.blackjack.util.BinaryFramer})
+ * followed by a body. A command's body starts with a varint of
+ * its command id times two, plus one if it is tagged. A response's
+ * body starts with a varint of its numeric code times four, plus
+ * two if it has text and one if it is tagged. Id or code 0 means
+ * the line didn't fit that form, and is sent whole as tokens. The
+ * tag, if any, comes next as a token, then the parameters or text.
+ * Tags are never interned, since each is usually only used once.
+ * <P>
+ * Words in the text are sent as the smallest token that gives them
+ * back exactly: a card is a single byte, a number is a varint, and
+ * other short words are interned, the first time they're sent, to a
+ * handle that's one byte from then on. A single space between two
+ * words is implied, and any other whitespace is sent as it is.
+ * <P>
+ * Each end of a connection has its own codec. Handles are only
+ * good for the connection, and for the direction they were sent in.
+ * <P>
+ * Most of the work of encoding doesn't depend on the connection:
+ * finding the words, and turning cards and numbers into tokens. That
+ * is done once per message, into {@link Tokens} that any number of
+ * connections can share. Only the handles are put in per connection.
+ * <P>
+ * <b>CONCURRENT:</b> The encode methods must be called one at a
+ * time, in the order the frames are sent, since each frame can
+ * define handles that later ones use. The decode methods must be
+ * called one at a time, in the order the frames arrive. Encoding
+ * and decoding don't share anything, so one thread can do each.
+ * Tokenizing can be done on any thread.
+ * <P>
+ * <b>SECURITY:</b> There is a limit on how many handles can be
+ * defined, and how long an interned word can be, so a peer can't
+ * use up memory with them. A decoded command can't be any longer
+ * than a text command could be. PASSWORD parameters are never
+ * interned, so passwords aren't kept for the life of the connection.
+ *
+ * @author Jennifer
+ */
+public class BinaryCodec {
+
+	/**********************************************************************************
+	 * Constants here
+	 *********************************************************************************/
+
+	// The most handles each direction of a connection can define
+	public static final int MAX_HANDLES				= 1024;
+
+	// The longest word that can be interned
+	public static final int MAX_INTERNED_LENGTH		= 32;
+
+	// Token types. Words are STRING, INTERN, NUMBER, NEGATIVE,
+	// HANDLE, CARD and SHORT_HANDLE; the others are separators.
+	private static final int STRING					= 0x00;	// varint length, bytes
+	private static final int INTERN					= 0x01;	// varint length, bytes; defines the next handle
+	private static final int SPACE					= 0x02;	// varint length, whitespace bytes
+	private static final int NUMBER					= 0x03;	// varint
+	private static final int NEGATIVE				= 0x04;	// varint of the negated number
+	private static final int NEWLINE				= 0x05;	// a single newline
+	private static final int HANDLE					= 0x06;	// varint handle
+	private static final int CARD					= 0x40;	// plus the card's index
+	private static final int SHORT_HANDLE			= 0x80;	// plus a handle under 128
+
+	// How a card's index is worked out: rank ordinal times this, plus
+	// suit ordinal. Facedown cards, shown as X, come after all the others.
+	private static final int SUITS					= Card.SUIT.values().length;
+	private static final int FACEDOWN				= Card.RANK.values().length * SUITS;
+	private static final String FACEDOWN_NAME		= "X";
+
+	// What each card index is shown as
+	private static final String[] CARD_NAMES		= new String[FACEDOWN + 1];
+
+	// Maps the last character of a card to its suit ordinal plus one,
+	// and a one-character rank to its ordinal plus one
+	private static final int[] SUIT_BY_CHAR			= new int[128];
+	private static final int[] RANK_BY_CHAR			= new int[128];
+
+	// The one rank that's two characters, i.e. 10
+	private static String longRankName				= null;
+	private static int longRankOrdinal				= -1;
+
+	/**
+	 * The command word for each command id. The position in
+	 * this list is what's sent, so new commands can only be
+	 * added to the end.
+	 */
+	private static final String[] COMMAND_WORDS		= {
+		null,	// A command that's sent as a whole line of tokens
+		UsernameCommand.COMMAND_WORD,
+		PasswordCommand.COMMAND_WORD,
+		CapabilitiesCommand.COMMAND_WORD,
+		VersionCommand.COMMAND_WORD,
+		ListgamesCommand.COMMAND_WORD,
+		JoinSessionCommand.COMMAND_WORD,
+		LeaveSessionCommand.COMMAND_WORD,
+		BetCommand.COMMAND_WORD,
+		HitCommand.COMMAND_WORD,
+		StandCommand.COMMAND_WORD,
+		AccountCommand.COMMAND_WORD,
+		GameStatusCommand.COMMAND_WORD,
+		QuitCommand.COMMAND_WORD,
+		BinaryCommand.COMMAND_WORD
+	};
+
+	// The id of the command whose parameters are never interned
+	private static final int PASSWORD_ID			= 2;
+
+	// The protocol is ASCII text, and is read as UTF-8
+	private static final Charset CHARSET			= Charset.forName( "UTF-8" );
+
+	// Interning works on the raw bytes of a word; this turns them
+	// into a String one for one
+	private static final Charset BYTES				= Charset.forName( "ISO-8859-1" );
+
+	static {
+		for( Card.RANK rank : Card.RANK.values() ) {
+			String name = rank.getRank();
+			if( name.length() == 1 ) {
+				RANK_BY_CHAR[name.charAt(0)] = rank.ordinal() + 1;
+			} else {
+				longRankName = name;
+				longRankOrdinal = rank.ordinal();
+			}
+			for( Card.SUIT suit : Card.SUIT.values() ) {
+				CARD_NAMES[rank.ordinal() * SUITS + suit.ordinal()] = name + suit.getSuit();
+			}
+		}
+		for( Card.SUIT suit : Card.SUIT.values() ) {
+			SUIT_BY_CHAR[suit.getSuit().charAt(0)] = suit.ordinal() + 1;
+		}
+		CARD_NAMES[FACEDOWN] = FACEDOWN_NAME;
+	}
+
+	/**********************************************************************************
+	 * Local variables here
+	 *********************************************************************************/
+
+	// Words this end has interned, and their handles
+	private Map<String,Integer> sentHandles = new HashMap<String,Integer>();
+
+	// Words the other end has interned, in handle order
+	private List<byte[]> receivedHandles = new ArrayList<byte[]>();
+
+	// Where frame bodies are built up when encoding
+	private Body body = new Body();
+
+	// Where text is built up when decoding
+	private byte[] decoded = new byte[256];
+	private int decodedLength = 0;
+
+	// How long decoded text can be
+	private int maxDecodedLength = 0;
+
+	// Where decoding is up to in the frame body
+	private byte[] frame = null;
+	private int position = 0;
+	private int end = 0;
+
+	// Whether the last token decoded was a word, so a space goes before the next one
+	private boolean lastWasWord = false;
+
+	/**********************************************************************************
+	 * Constructor here
+	 *********************************************************************************/
+
+	/**
+	 * Creates a codec for one end of a connection.
+	 *
+	 * @param maxDecodedLength How many bytes, at most, the text
+	 * of a decoded command or response can be
+	 */
+	public BinaryCodec( int maxDecodedLength ) {
+		this.maxDecodedLength = maxDecodedLength;
+	}
+
+	/**********************************************************************************
+	 * Public methods here
+	 *********************************************************************************/
+
+	/**
+	 * Encodes a response, as queued for a text connection, into
+	 * a frame. It keeps the message's droppability. The message
+	 * is only tokenized the first time it's encoded, for any
+	 * connection, so this just puts in the handles.
+	 *
+	 * @param message The text message, with its EOL
+	 * @return The frame
+	 */
+	public EncodedMessage encodeResponse( EncodedMessage message ) {
+		return EncodedMessage.fromFrame( encode( message.getResponseTokens() ), message.isDroppable() );
+	}
+
+	/**
+	 * Encodes a response line into a frame.
+	 *
+	 * @param line The bytes of the line, without an EOL
+	 * @param offset Where in the array it starts
+	 * @param length How long it is
+	 * @return The frame, starting with its length
+	 */
+	public byte[] encodeResponse( byte[] line, int offset, int length ) {
+		return encode( tokenizeResponse( line, offset, length ) );
+	}
+
+	/**
+	 * Decodes a response frame.
+	 *
+	 * @param data Where the frame body is
+	 * @param offset Where in the array it starts
+	 * @param length How long it is
+	 * @return The response, or null if the frame held a whole
+	 * line that isn't a response
+	 * @throws IOException If the frame is malformed
+	 */
+	public ResponseCode decodeResponse( byte[] data, int offset, int length ) throws IOException {
+
+		startDecoding( data, offset, length );
+		int header = readVarint();
+		int code = header >>> 2;
+		if( code == 0 ) {
+			if( header != 0 ) {
+				throw new IOException( "Malformed response header." );
+			}
+			readText();
+			return ResponseCode.getCodeFromString( decodedString() );
+		}
+		if( code > 999 ) {
+			throw new IOException( "Response code " + code + " is out of range." );
+		}
+
+		String tag = null;
+		if( (header & 1) != 0 ) {
+			tag = readTag();
+		}
+		String text = null;
+		if( (header & 2) != 0 ) {
+			readText();
+			text = decodedString().trim();
+		}
+		if( position != end ) {
+			throw new IOException( "Malformed response." );
+		}
+		return ResponseCode.fromParts( Integer.valueOf( code ), text, tag );
+	}
+
+	/**
+	 * Encodes a command line into a frame. Only the words of
+	 * the line are kept, as that's all a command is made of.
+	 *
+	 * @param line The command, e.g. "BET 50" or "@7 LISTGAMES"
+	 * @return The frame, starting with its length
+	 */
+	public byte[] encodeCommand( String line ) {
+		return encode( tokenizeCommand( line ) );
+	}
+
+	/**
+	 * Decodes a command frame.
+	 *
+	 * @param data Where the frame body is
+	 * @param offset Where in the array it starts
+	 * @param length How long it is
+	 * @return The command
+	 * @throws IOException If the frame is malformed, or the
+	 * command is longer than a text command could be
+	 */
+	public CommandMetadata decodeCommand( byte[] data, int offset, int length ) throws IOException {
+
+		startDecoding( data, offset, length );
+		int header = readVarint();
+		int id = header >>> 1;
+		if( id >= COMMAND_WORDS.length ) {
+			throw new IOException( "Unknown command id " + id + "." );
+		}
+
+		CommandMetadata metadata = new CommandMetadata();
+		if( (header & 1) != 0 ) {
+			metadata.setTag( readTag() );
+		}
+		metadata.setCommandWord( COMMAND_WORDS[id] );
+
+		// The command is just its words, so separators are skipped
+		int total = id == 0 ? 0 : COMMAND_WORDS[id].length();
+		while( position < end ) {
+			decodedLength = 0;
+			if( readToken( true ) ) {
+				String word = decodedString();
+				total += word.length() + 1;
+				if( total > maxDecodedLength ) {
+					throw new IOException( "Decoded command exceeds the limit of " + maxDecodedLength + " bytes." );
+				}
+				if( metadata.getCommandWord() == null ) {
+					metadata.setCommandWord( word );
+				} else {
+					metadata.addParameter( word );
+				}
+			}
+		}
+		return metadata;
+	}
+
+	/**********************************************************************************
+	 * Methods for tokenizing here
+	 *********************************************************************************/
+
+	/**
+	 * Tokenizes a response from its parts, rather than from the
+	 * line they make, so nothing has to be parsed back out.
+	 *
+	 * @param code The numeric code
+	 * @param tag The tag, or null if it isn't tagged
+	 * @param text The text after the code, or null if there's none
+	 * @return The tokens, or null if the code isn't three digits
+	 * or the tag isn't valid, in which case the whole line has to
+	 * be tokenized instead
+	 */
+	static Tokens tokenizeResponse( int code, String tag, String text ) {
+
+		if( code < 100 || code > 999 || (tag != null && !ResponseCode.isValidTag( tag )) ) {
+			return null;
+		}
+
+		TokenWriter out = new TokenWriter();
+		out.writeVarint( (code << 2) | (text != null ? 2 : 0) | (tag != null ? 1 : 0) );
+		if( tag != null ) {
+			byte[] bytes = tag.getBytes( CHARSET );
+			out.writeWord( bytes, 0, bytes.length, false );
+		}
+		if( text != null ) {
+			byte[] bytes = text.getBytes( CHARSET );
+			out.writeText( bytes, 0, bytes.length, true );
+		}
+		return out.finish();
+	}
+
+	/**
+	 * Tokenizes a response line.
+	 *
+	 * @param line The bytes of the line, without an EOL
+	 * @param offset Where in the array it starts
+	 * @param length How long it is
+	 * @return The tokens
+	 */
+	static Tokens tokenizeResponse( byte[] line, int offset, int length ) {
+
+		TokenWriter out = new TokenWriter();
+		int lineEnd = offset + length;
+
+		// Is there a tag?
+		int position = offset;
+		int tagStart = -1;
+		int tagEnd = -1;
+		if( length > 0 && line[offset] == ResponseCode.TAG_PREFIX ) {
+			int space = offset + 1;
+			while( space < lineEnd && line[space] != ' ' ) {
+				space++;
+			}
+			if( space < lineEnd && ResponseCode.isValidTag( new String( line, offset + 1, space - offset - 1, BYTES ) ) ) {
+				tagStart = offset + 1;
+				tagEnd = space;
+				position = space + 1;
+			}
+		}
+
+		// Then there should be a code, with nothing but a space after it
+		int code = 0;
+		if( lineEnd - position >= 3 && line[position] >= '1' && line[position] <= '9' &&
+				isDigit( line[position+1] ) && isDigit( line[position+2] ) &&
+				(lineEnd - position == 3 || line[position+3] == ' ') ) {
+			code = (line[position] - '0') * 100 + (line[position+1] - '0') * 10 + (line[position+2] - '0');
+		}
+
+		if( code == 0 ) {
+			// Not in the usual form, so send the whole thing
+			out.writeVarint( 0 );
+			out.writeText( line, offset, lineEnd, true );
+		} else {
+			boolean hasText = lineEnd - position > 3;
+			out.writeVarint( (code << 2) | (hasText ? 2 : 0) | (tagStart >= 0 ? 1 : 0) );
+			if( tagStart >= 0 ) {
+				out.writeWord( line, tagStart, tagEnd - tagStart, false );
+			}
+			if( hasText ) {
+				out.writeText( line, position + 4, lineEnd, true );
+			}
+		}
+		return out.finish();
+	}
+
+	/**
+	 * Tokenizes a command line. Only the words of the line are
+	 * kept, as that's all a command is made of.
+	 *
+	 * @param line The command, e.g. "BET 50" or "@7 LISTGAMES"
+	 * @return The tokens
+	 */
+	static Tokens tokenizeCommand( String line ) {
+
+		TokenWriter out = new TokenWriter();
+		byte[] bytes = line.getBytes( CHARSET );
+		int lineEnd = bytes.length;
+
+		// Find the first word, which might be a tag
+		int start = skipWhitespace( bytes, 0, lineEnd );
+		int stop = skipWord( bytes, start, lineEnd );
+		int tagStart = -1;
+		int tagEnd = -1;
+		if( stop > start && bytes[start] == ResponseCode.TAG_PREFIX ) {
+			tagStart = start + 1;
+			tagEnd = stop;
+			start = skipWhitespace( bytes, stop, lineEnd );
+			stop = skipWord( bytes, start, lineEnd );
+		}
+
+		// Then the command word
+		int id = 0;
+		if( stop > start ) {
+			String word = new String( bytes, start, stop - start, BYTES );
+			for( int i = 1; i < COMMAND_WORDS.length; i++ ) {
+				if( COMMAND_WORDS[i].equalsIgnoreCase( word ) ) {
+					id = i;
+					break;
+				}
+			}
+		}
+
+		out.writeVarint( (id << 1) | (tagStart >= 0 ? 1 : 0) );
+		if( tagStart >= 0 ) {
+			out.writeWord( bytes, tagStart, tagEnd - tagStart, false );
+		}
+		if( id != 0 ) {
+			start = stop;
+		}
+		out.writeText( bytes, start, lineEnd, id != PASSWORD_ID );
+		return out.finish();
+	}
+
+	/**********************************************************************************
+	 * Private methods for encoding here
+	 *********************************************************************************/
+
+	/**
+	 * Encodes tokens into a frame, for this connection, by
+	 * putting in the words that might be sent by handle.
+	 *
+	 * @param tokens What to encode
+	 * @return The frame, starting with its length
+	 */
+	private byte[] encode( Tokens tokens ) {
+
+		body.length = 0;
+		int copied = 0;
+		for( int i = 0; i < tokens.slots.length; i++ ) {
+			body.copy( tokens.fixed, copied, tokens.slots[i] - copied );
+			writeSlot( tokens.keys[i], tokens.words[i], tokens.internable[i] );
+			copied = tokens.slots[i];
+		}
+		body.copy( tokens.fixed, copied, tokens.fixed.length - copied );
+		return body.toFrame();
+	}
+
+	/**
+	 * Writes a word by its handle, if it has one. Otherwise it's
+	 * interned, if it may be, or else written out.
+	 *
+	 * @param key The word, as the key it's interned under
+	 * @param word The bytes of the word
+	 * @param intern Whether it may be interned
+	 */
+	private void writeSlot( String key, byte[] word, boolean intern ) {
+
+		Integer handle = sentHandles.get( key );
+		if( handle != null ) {
+			if( handle.intValue() < SHORT_HANDLE ) {
+				body.writeByte( SHORT_HANDLE | handle.intValue() );
+			} else {
+				body.writeByte( HANDLE );
+				body.writeVarint( handle.intValue() );
+			}
+		} else if( intern && sentHandles.size() < MAX_HANDLES ) {
+			sentHandles.put( key, Integer.valueOf( sentHandles.size() ) );
+			body.writeByte( INTERN );
+			body.writeBytes( word, 0, word.length );
+		} else {
+			body.writeByte( STRING );
+			body.writeBytes( word, 0, word.length );
+		}
+	}
+
+	/**********************************************************************************
+	 * Private methods for decoding here
+	 *********************************************************************************/
+
+	/**
+	 * Gets ready to decode a frame body.
+	 */
+	private void startDecoding( byte[] data, int offset, int length ) {
+		frame = data;
+		position = offset;
+		end = offset + length;
+		decodedLength = 0;
+		lastWasWord = false;
+	}
+
+	/**
+	 * Reads the tag, which is a word token.
+	 *
+	 * @return The tag
+	 * @throws IOException If there isn't one
+	 */
+	private String readTag() throws IOException {
+		decodedLength = 0;
+		if( position >= end || !readToken( false ) ) {
+			throw new IOException( "Malformed tag." );
+		}
+		return decodedString();
+	}
+
+	/**
+	 * Reads tokens to the end of the frame, as text.
+	 *
+	 * @throws IOException If the tokens are malformed, or the text too long
+	 */
+	private void readText() throws IOException {
+		decodedLength = 0;
+		while( position < end ) {
+			readToken( false );
+		}
+	}
+
+	/**
+	 * Reads one token, and appends what it stands for to the
+	 * decoded text. A space is put between two words.
+	 *
+	 * @param wordsOnly If true, separators are read but not appended
+	 * @return true if it was a word, false if a separator
+	 * @throws IOException If the token is malformed
+	 */
+	private boolean readToken( boolean wordsOnly ) throws IOException {
+
+		int type = readByte();
+		int start = position;
+		int length = 0;
+		byte[] source = frame;
+		boolean word = true;
+
+		if( (type & SHORT_HANDLE) != 0 ) {
+			source = receivedHandle( type & ~SHORT_HANDLE );
+			start = 0;
+			length = source.length;
+		} else if( type >= CARD ) {
+			if( type - CARD > FACEDOWN ) {
+				throw new IOException( "Unknown token type " + type + "." );
+			}
+			appendWordSeparator();
+			appendString( CARD_NAMES[type - CARD] );
+			lastWasWord = true;
+			return true;
+		} else {
+			switch( type ) {
+			case STRING:
+				length = readLength();
+				start = position;
+				position += length;
+				break;
+			case INTERN:
+				length = readLength();
+				start = position;
+				if( length > MAX_INTERNED_LENGTH || receivedHandles.size() >= MAX_HANDLES ) {
+					throw new IOException( "Too many or too long interned words." );
+				}
+				byte[] interned = new byte[length];
+				System.arraycopy( frame, position, interned, 0, length );
+				receivedHandles.add( interned );
+				position += length;
+				break;
+			case SPACE:
+				length = readLength();
+				start = position;
+				position += length;
+				word = false;
+				break;
+			case NEWLINE:
+				source = null;
+				word = false;
+				break;
+			case NUMBER:
+			case NEGATIVE:
+				long number = readVarlong();
+				appendWordSeparator();
+				appendString( Long.toString( type == NEGATIVE ? -number : number ) );
+				lastWasWord = true;
+				return true;
+			case HANDLE:
+				source = receivedHandle( readVarint() );
+				start = 0;
+				length = source.length;
+				break;
+			default:
+				throw new IOException( "Unknown token type " + type + "." );
+			}
+		}
+
+		if( word ) {
+			appendWordSeparator();
+			append( source, start, length );
+		} else if( !wordsOnly ) {
+			if( source == null ) {
+				appendByte( '\n' );
+			} else {
+				append( source, start, length );
+			}
+		}
+		lastWasWord = word;
+		return word;
+	}
+
+	/**
+	 * Puts a space in the decoded text if the last token was a word.
+	 */
+	private void appendWordSeparator() throws IOException {
+		if( lastWasWord && decodedLength > 0 ) {
+			appendByte( ' ' );
+		}
+	}
+
+	/**
+	 * Looks up a handle the other end defined.
+	 */
+	private byte[] receivedHandle( int handle ) throws IOException {
+		if( handle < 0 || handle >= receivedHandles.size() ) {
+			throw new IOException( "Unknown handle " + handle + "." );
+		}
+		return receivedHandles.get( handle );
+	}
+
+	/**
+	 * Reads a varint length, and makes sure that many bytes are left.
+	 */
+	private int readLength() throws IOException {
+		int length = readVarint();
+		if( length > end - position ) {
+			throw new IOException( "Token runs past the end of the frame." );
+		}
+		return length;
+	}
+
+	/**
+	 * Reads an unsigned varint that has to fit in an int.
+	 */
+	private int readVarint() throws IOException {
+		long value = readVarlong();
+		if( value > Integer.MAX_VALUE ) {
+			throw new IOException( "Varint out of range." );
+		}
+		return (int)value;
+	}
+
+	/**
+	 * Reads an unsigned varint that has to fit in a long.
+	 */
+	private long readVarlong() throws IOException {
+		long value = 0;
+		for( int shift = 0; shift < 63; shift += 7 ) {
+			int b = readByte();
+			value |= (long)(b & 0x7F) << shift;
+			if( (b & 0x80) == 0 ) {
+				if( value < 0 ) {
+					throw new IOException( "Varint out of range." );
+				}
+				return value;
+			}
+		}
+		throw new IOException( "Varint out of range." );
+	}
+
+	/**
+	 * Reads one byte of the frame.
+	 */
+	private int readByte() throws IOException {
+		if( position >= end ) {
+			throw new IOException( "Frame ended early." );
+		}
+		return frame[position++] & 0xFF;
+	}
+
+	/**
+	 * Appends bytes to the decoded text.
+	 */
+	private void append( byte[] bytes, int start, int length ) throws IOException {
+		ensureDecodedRoom( length );
+		System.arraycopy( bytes, start, decoded, decodedLength, length );
+		decodedLength += length;
+	}
+
+	/**
+	 * Appends an ASCII string to the decoded text.
+	 */
+	private void appendString( String string ) throws IOException {
+		byte[] bytes = string.getBytes( BYTES );
+		append( bytes, 0, bytes.length );
+	}
+
+	/**
+	 * Appends one byte to the decoded text.
+	 */
+	private void appendByte( int b ) throws IOException {
+		ensureDecodedRoom( 1 );
+		decoded[decodedLength++] = (byte)b;
+	}
+
+	/**
+	 * Makes sure the decoded text has room for more bytes,
+	 * without going over the limit.
+	 */
+	private void ensureDecodedRoom( int more ) throws IOException {
+		if( decodedLength + more > maxDecodedLength ) {
+			throw new IOException( "Decoded text exceeds the limit of " + maxDecodedLength + " bytes." );
+		}
+		if( decoded.length - decodedLength < more ) {
+			byte[] bigger = new byte[Math.min( maxDecodedLength, Math.max( decoded.length * 2, decodedLength + more ) )];
+			System.arraycopy( decoded, 0, bigger, 0, decodedLength );
+			decoded = bigger;
+		}
+	}
+
+	/**
+	 * @return The decoded text so far, as a string
+	 */
+	private String decodedString() {
+		return new String( decoded, 0, decodedLength, CHARSET );
+	}
+
+	/**********************************************************************************
+	 * Private methods for both here
+	 *********************************************************************************/
+
+	/**
+	 * Is this byte a separator? Matches the default delimiters
+	 * of a StringTokenizer, as CommandMetadata does.
+	 */
+	private static boolean isWhitespace( byte b ) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+	}
+
+	/**
+	 * @return Where the run of whitespace starting at start ends
+	 */
+	private static int skipWhitespace( byte[] bytes, int start, int stop ) {
+		while( start < stop && isWhitespace( bytes[start] ) ) {
+			start++;
+		}
+		return start;
+	}
+
+	/**
+	 * @return Where the word starting at start ends
+	 */
+	private static int skipWord( byte[] bytes, int start, int stop ) {
+		while( start < stop && !isWhitespace( bytes[start] ) ) {
+			start++;
+		}
+		return start;
+	}
+
+	/**
+	 * @return true if the byte is an ASCII digit
+	 */
+	private static boolean isDigit( byte b ) {
+		return b >= '0' && b <= '9';
+	}
+
+	/**
+	 * Is the word a number that comes back exactly the same
+	 * after being turned into a long and back into a string?
+	 * That rules out leading zeroes, "-0", and anything too big.
+	 */
+	private static boolean isNumber( byte[] bytes, int start, int length ) {
+		int digits = start;
+		if( length > 1 && bytes[start] == '-' ) {
+			digits++;
+		}
+		int count = start + length - digits;
+		if( count < 1 || count > 18 ) {
+			return false;
+		}
+		if( bytes[digits] == '0' && (count > 1 || digits > start) ) {
+			return false;
+		}
+		for( int i = digits; i < start + length; i++ ) {
+			if( !isDigit( bytes[i] ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Works out the index of a card, as shown by {@link Card#toString()},
+	 * or a facedown card.
+	 *
+	 * @return The index, or -1 if the word isn't a card
+	 */
+	private static int cardIndex( byte[] bytes, int start, int length ) {
+
+		if( length < 1 ) {
+			return -1;
+		} else if( length == 1 ) {
+			return bytes[start] == FACEDOWN_NAME.charAt(0) ? FACEDOWN : -1;
+		}
+		int suitChar = bytes[start + length - 1];
+		if( suitChar < 0 || SUIT_BY_CHAR[suitChar] == 0 ) {
+			return -1;
+		}
+		int suit = SUIT_BY_CHAR[suitChar] - 1;
+		if( length == 2 ) {
+			int rankChar = bytes[start];
+			if( rankChar < 0 || RANK_BY_CHAR[rankChar] == 0 ) {
+				return -1;
+			}
+			return (RANK_BY_CHAR[rankChar] - 1) * SUITS + suit;
+		}
+		if( longRankName != null && length == longRankName.length() + 1 ) {
+			for( int i = 0; i < longRankName.length(); i++ ) {
+				if( bytes[start + i] != longRankName.charAt(i) ) {
+					return -1;
+				}
+			}
+			return longRankOrdinal * SUITS + suit;
+		}
+		return -1;
+	}
+
+
+	/**********************************************************************************
+	 * Classes for encoding here
+	 *********************************************************************************/
+
+	/**
+	 * A frame body, tokenized as far as it can be without knowing
+	 * the connection. Cards, numbers, separators and long words are
+	 * done; each word that might be sent by handle is left as a slot,
+	 * which {@link BinaryCodec#encode(Tokens)} fills in.
+	 * <P>
+	 * <b>CONCURRENT:</b> It's immutable, so the tokens of a message
+	 * can be shared by every connection it goes to.
+	 */
+	static final class Tokens {
+
+		// The body, without the words in the slots
+		private final byte[] fixed;
+
+		// Where in the body each slot is, and the word that goes there
+		private final int[] slots;
+		private final String[] keys;
+		private final byte[][] words;
+		private final boolean[] internable;
+
+		private Tokens( byte[] fixed, int[] slots, String[] keys, byte[][] words, boolean[] internable ) {
+			this.fixed = fixed;
+			this.slots = slots;
+			this.keys = keys;
+			this.words = words;
+			this.internable = internable;
+		}
+
+	}
+
+	/**
+	 * A frame body that's being built up.
+	 */
+	private static class Body {
+
+		protected byte[] bytes = new byte[256];
+		protected int length = 0;
+
+		/**
+		 * Writes a varint length, then the bytes.
+		 */
+		protected void writeBytes( byte[] source, int start, int count ) {
+			writeVarint( count );
+			copy( source, start, count );
+		}
+
+		/**
+		 * Writes the bytes as they are.
+		 */
+		protected void copy( byte[] source, int start, int count ) {
+			ensureRoom( count );
+			System.arraycopy( source, start, bytes, length, count );
+			length += count;
+		}
+
+		/**
+		 * Writes an unsigned varint.
+		 */
+		protected void writeVarint( long value ) {
+			while( (value & ~0x7FL) != 0 ) {
+				writeByte( (int)((value & 0x7F) | 0x80) );
+				value >>>= 7;
+			}
+			writeByte( (int)value );
+		}
+
+		/**
+		 * Writes one byte.
+		 */
+		protected void writeByte( int b ) {
+			ensureRoom( 1 );
+			bytes[length++] = (byte)b;
+		}
+
+		/**
+		 * Makes sure there's room for more bytes.
+		 */
+		private void ensureRoom( int more ) {
+			if( bytes.length - length < more ) {
+				byte[] bigger = new byte[Math.max( bytes.length * 2, length + more )];
+				System.arraycopy( bytes, 0, bigger, 0, length );
+				bytes = bigger;
+			}
+		}
+
+		/**
+		 * Puts the length in front of what's been built up.
+		 *
+		 * @return The frame
+		 */
+		protected byte[] toFrame() {
+			int lengthBytes = 1;
+			for( int value = length >>> 7; value != 0; value >>>= 7 ) {
+				lengthBytes++;
+			}
+			byte[] frame = new byte[lengthBytes + length];
+			int index = 0;
+			int value = length;
+			while( (value & ~0x7F) != 0 ) {
+				frame[index++] = (byte)((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			frame[index++] = (byte)value;
+			System.arraycopy( bytes, 0, frame, index, length );
+			return frame;
+		}
+
+	}
+
+	/**
+	 * Builds up {@link Tokens}.
+	 */
+	private static final class TokenWriter extends Body {
+
+		// The slots so far
+		private List<Integer> slots = new ArrayList<Integer>();
+		private List<String> keys = new ArrayList<String>();
+		private List<byte[]> words = new ArrayList<byte[]>();
+		private List<Boolean> internable = new ArrayList<Boolean>();
+
+		/**
+		 * Writes the words and whitespace of some text as tokens.
+		 *
+		 * @param source Where the text is
+		 * @param start Where it starts
+		 * @param stop Where it ends
+		 * @param intern Whether words may be interned
+		 */
+		private void writeText( byte[] source, int start, int stop, boolean intern ) {
+
+			int position = start;
+			boolean afterWord = false;
+			while( position < stop ) {
+				if( isWhitespace( source[position] ) ) {
+					int runStart = position;
+					position = skipWhitespace( source, position, stop );
+					int runLength = position - runStart;
+					if( afterWord && position < stop && runLength == 1 && source[runStart] == ' ' ) {
+						// A single space between words is implied
+					} else if( runLength == 1 && source[runStart] == '\n' ) {
+						writeByte( NEWLINE );
+					} else {
+						writeByte( SPACE );
+						writeBytes( source, runStart, runLength );
+					}
+				} else {
+					int wordStart = position;
+					position = skipWord( source, position, stop );
+					writeWord( source, wordStart, position - wordStart, intern );
+					afterWord = true;
+				}
+			}
+		}
+
+		/**
+		 * Writes a word as the smallest token that gives it back
+		 * exactly, or leaves a slot for it if that depends on what
+		 * the connection has interned.
+		 *
+		 * @param source Where the word is
+		 * @param start Where it starts
+		 * @param count How long it is
+		 * @param intern Whether it may be interned
+		 */
+		private void writeWord( byte[] source, int start, int count, boolean intern ) {
+
+			int card = cardIndex( source, start, count );
+			if( card >= 0 ) {
+				writeByte( CARD + card );
+				return;
+			}
+
+			if( isNumber( source, start, count ) ) {
+				long number = Long.parseLong( new String( source, start, count, BYTES ) );
+				if( number < 0 ) {
+					writeByte( NEGATIVE );
+					writeVarint( -number );
+				} else {
+					writeByte( NUMBER );
+					writeVarint( number );
+				}
+				return;
+			}
+
+			if( count > MAX_INTERNED_LENGTH ) {
+				// Too long to ever have a handle
+				writeByte( STRING );
+				writeBytes( source, start, count );
+				return;
+			}
+
+			byte[] word = new byte[count];
+			System.arraycopy( source, start, word, 0, count );
+			slots.add( Integer.valueOf( length ) );
+			keys.add( new String( word, BYTES ) );
+			words.add( word );
+			internable.add( Boolean.valueOf( intern ) );
+		}
+
+		/**
+		 * @return The tokens written
+		 */
+		private Tokens finish() {
+			byte[] fixed = new byte[length];
+			System.arraycopy( bytes, 0, fixed, 0, length );
+			int[] slotArray = new int[slots.size()];
+			boolean[] internableArray = new boolean[slots.size()];
+			for( int i = 0; i < slotArray.length; i++ ) {
+				slotArray[i] = slots.get( i ).intValue();
+				internableArray[i] = internable.get( i ).booleanValue();
+			}
+			return new Tokens( fixed, slotArray, keys.toArray( new String[keys.size()] ),
+					words.toArray( new byte[words.size()][] ), internableArray );
+		}
+
+	}
+
+}
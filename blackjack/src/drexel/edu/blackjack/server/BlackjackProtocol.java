@@ -17,17 +17,21 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server;
 
+import drexel.edu.blackjack.db.user.FlatfileUserManager;
+import drexel.edu.blackjack.db.user.UserManagerInterface;
 import drexel.edu.blackjack.server.commands.BlackjackCommand;
 import drexel.edu.blackjack.server.commands.CommandMetadata;
+import drexel.edu.blackjack.server.commands.CommandTable;
 import drexel.edu.blackjack.server.game.User;
+import drexel.edu.blackjack.server.replay.CommandRecorder;
 import drexel.edu.blackjack.util.BlackjackLogger;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -73,8 +77,15 @@ public class BlackjackProtocol {
 	private static String COMMAND_FILENAME					= "commands.txt";
 	
 	// We keep a map of command classes to the command words that invoke them. We'll hash
-	// on an all lowercase version of the command word, since our server is case-insensitive
-	private static Map<String,BlackjackCommand> commands	= new HashMap<String,BlackjackCommand>();
+	// on an all lowercase version of the command word, since our server is case-insensitive.
+	// It keeps the order they were registered in, which is the order CAPABILITIES lists them.
+	private static Map<String,BlackjackCommand> commands	= new LinkedHashMap<String,BlackjackCommand>();
+	
+	// The same commands, in the table that incoming lines are actually looked up in
+	private static volatile CommandTable commandTable		= new CommandTable( commands.values() );
+	
+	// Unknown commands all share this, as there's nothing in it to parse
+	private static final CommandMetadata NO_METADATA		= new CommandMetadata();
 	
 	// This is the command to invoke if we can't find a valid command
 	private static BlackjackCommand unknownCommand = null;
@@ -153,10 +164,11 @@ public class BlackjackProtocol {
 	
 	// This is null until we're authenticated, then it points to the user associated
 	// with this instance of the protocol
-	private User user = null;
+	// CONCURRENT: This, the state, and the bet are read by the game's thread too
+	private volatile User user = null;
 	
 	// This is the state that the protocol connection is in.
-	private STATE state = null;
+	private volatile STATE state = null;
 	
 	// If the client is in the state where it's waiting for a password,
 	// the username attribute is set to what they said as a username.
@@ -164,13 +176,23 @@ public class BlackjackProtocol {
 	
 	// If the client has made a bet that hasn't been processed, this 
 	// will reflect the amount bet.
-	private Integer bet = null;
+	private volatile Integer bet = null;
 	
-	// Pointer to the server thread, for sending stuff
+	// Pointer to the client connection, for sending stuff
 	// CONCURRENT: Since there are multiple protocol instantiations
-	// they will correspond to multiple server threads, which handle
+	// they will correspond to multiple client connections, which handle
 	// the socket traffic
-	private BlackjackServerThread thread = null;
+	private ClientConnection connection = null;
+	
+	// Set by the BINARY command, until the connection acts on it, and
+	// then whether the connection is using binary framing
+	private boolean binaryFramingRequested = false;
+	private volatile boolean binaryFraming = false;
+	
+	// Where commands are recorded to be replayed, if they are, and
+	// which session this connection's commands are recorded under
+	private final CommandRecorder recorder = CommandRecorder.getDefault();
+	private final int session;
 	
 	
 	/******************************************************************
@@ -181,7 +203,7 @@ public class BlackjackProtocol {
 	// This attribute is the last time the client did any sort of
 	// command, even if it was pure garbage. It's system time in
 	// milliseconds
-	private Long lastCommand = null;
+	private volatile long lastCommand = 0;
 	
 	// This attribute is a custom-set timer that is used for timeouts
 	// where it's not just ANY activity that will prevent a timeout,
@@ -201,10 +223,10 @@ public class BlackjackProtocol {
 	 * already. Since everyone can share that list, it's done
 	 * as static variables.
 	 * 
-	 * @param thread The thread that handles the connection
-	 * for this protocol state
+	 * @param connection The client connection that this protocol
+	 * state belongs to
 	 */
-	public BlackjackProtocol( BlackjackServerThread thread ) {
+	public BlackjackProtocol( ClientConnection connection ) {
 		
 		// Only initialize it once
 		if( !isInitialized ) {
@@ -218,8 +240,11 @@ public class BlackjackProtocol {
 		// When we start up, we're waiting for the username, that's the first state
 		state = STATE.WAITING_FOR_USERNAME;
 		
-		// Keep a pointer to the thread
-		this.thread = thread;
+		// Keep a pointer to the connection
+		this.connection = connection;
+		
+		// And start a session in the transcript, if there is one
+		session = (recorder == null ? 0 : recorder.openSession());
 		
 		// And we start the timers
 		long time = System.currentTimeMillis();
@@ -241,17 +266,82 @@ public class BlackjackProtocol {
 	 */
 	public Set<BlackjackCommand> getAllValidCommands() {
 		
-		if( commands == null ) {
+		if( commandTable == null ) {
 			return null;
 		}
 		
-		// Not sure if I can cast i like that....
-		return new HashSet<BlackjackCommand>( commands.values() );
+		return new HashSet<BlackjackCommand>( commandTable.getCommands() );
+	}
+	
+	/**
+	 * Gets the table that command words are looked up in. It
+	 * also knows which commands are valid in each state.
+	 * 
+	 * @return The table
+	 */
+	public CommandTable getCommandTable() {
+		return commandTable;
 	}
 	
 	/*************************************************************
 	 * Private methods go here
 	 ************************************************************/
+	
+	/**
+	 * Runs a command that's been looked up, and gets its response
+	 * ready to go back to the client.
+	 * 
+	 * @param command The command, or null if the command word
+	 * wasn't one we know
+	 * @param metadata What the client sent
+	 * @param tag The client's tag for the command, or null
+	 * @return The response that should be sent back to the client
+	 */
+	private ResponseCode respond( BlackjackCommand command, CommandMetadata metadata, String tag ) {
+		
+		// A tag that can't be echoed back is a syntax error, and the error goes untagged
+		if( tag != null && !ResponseCode.isValidTag( tag ) ) {
+			setLastCommand( System.currentTimeMillis() );
+			return new ResponseCode( ResponseCode.CODE.SYNTAX_ERROR, 
+					"BlackjackProtocol.processInput() Invalid request tag" );
+		}
+
+		// Anything that could do something is recorded, before it does it
+		if( recorder != null && metadata != NO_METADATA ) {
+			recorder.record( session, metadata );
+		}
+		
+		// If we can't find it, we have to use our unknown command. Hope it's not null!
+		if( command == null ) {
+			command = unknownCommand;
+		}
+		
+		// We are going to use this response if we had a null command, at this point
+		ResponseCode response = null;
+		if( command != null ) {
+			response = command.execute( this, metadata );
+		}
+		if( response == null ) {
+			response = new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
+					"Received an unknown command, but had no command handler defined for it." );
+		}
+		
+		// Update the timer
+		setLastCommand( System.currentTimeMillis() );
+		
+		// A tagged command gets a tagged response. Multiline responses
+		// are only tagged on their first line. A shared response is
+		// copied first, as other connections are sending it too.
+		if( tag != null ) {
+			if( response.isShared() ) {
+				response = new ResponseCode( response );
+			}
+			response.setTag( tag );
+		}
+		
+		// Whatever we have, we return
+		return response;
+	}
 
 	/**
 	 * Instead of being hard-coded, the list of commands is in a 
@@ -346,6 +436,9 @@ public class BlackjackProtocol {
 			return false;
 		}
 		
+		// The table is what's actually used to look them up
+		commandTable = new CommandTable( commands.values() );
+		
 		// Recap what was read in
 		LOGGER.info( "We do " + (unknownCommand == null ? "NOT " : "") + "have an unknown command set." );
 		LOGGER.info( "We have " + commands.size() + " commands loaded successfully." );
@@ -354,61 +447,147 @@ public class BlackjackProtocol {
 	}
 
 	/*************************************************************
-	 * Protected methods go here
+	 * Input processing goes here
 	 ************************************************************/
 
 	/**
 	 * This is how we handle messages. This method is called whenever
 	 * a single-line command is received at the server. This
 	 * method is responsible for deserializing the command information
-	 * into a {@link CommandMetadata} object. It then uses a map
+	 * into a {@link CommandMetadata} object. It then uses a table
 	 * that matches command words, to the Command class that 
-	 * implements handling the command. Assuming it finds one,
+	 * implements handling the command. The command word is looked
+	 * up right where it is in the line, so a line that doesn't
+	 * start with one is turned away before anything is parsed.
+	 * Assuming it finds one,
 	 * it hands off the command metadata, and this protocol
 	 * state, to the object to process. Otherwise, it uses a
 	 * special UnknownCommand class to handle what to do when
 	 * a command that isn't recognized is received.
+	 * <P>
+	 * A client that pipelines commands can put a tag in front of
+	 * each one, e.g. "@7 LISTGAMES". The tag is taken off before
+	 * the command is processed, and put back in front of the
+	 * response, so the client can tell which command it answers.
+	 * Commands are processed one at a time, in the order received,
+	 * so responses always come back in that order too.
 	 * 
-	 * @param inputLine The message as received from the client
-	 * @return The message that should be sent back to the client
+	 * @param inputLine The message as received from the client. This
+	 * may be a reusable view of the line, so it's not kept around.
+	 * @return The response that should be sent back to the client
 	 */
-	protected String processInput(String inputLine) {
-		// This basically parses out the command word, and the parameters
-		CommandMetadata metadata = new CommandMetadata(inputLine);
-
-		// We'll keep whatever command we decide to use here
-		BlackjackCommand command = null;
+	public ResponseCode respondTo(CharSequence inputLine) {
+		
+		if( inputLine == null ) {
+			inputLine = "";
+		}
+		int length = inputLine.length();
+		
+		// Take off a request tag, if there is one
+		String tag = null;
+		int start = 0;
+		if( length > 0 && inputLine.charAt(0) == ResponseCode.TAG_PREFIX ) {
+			int end = 1;
+			while( end < length && !CommandMetadata.isWhitespace( inputLine.charAt(end) ) ) {
+				end++;
+			}
+			tag = inputLine.subSequence( 1, end ).toString();
+			start = end;
+		}
+		
+		// Find the command word, and look it up where it is
+		while( start < length && CommandMetadata.isWhitespace( inputLine.charAt(start) ) ) {
+			start++;
+		}
+		int end = start;
+		while( end < length && !CommandMetadata.isWhitespace( inputLine.charAt(end) ) ) {
+			end++;
+		}
+		BlackjackCommand command = commandTable.lookup( inputLine, start, end );
+		
+		// Only a command we know gets its parameters parsed out. Junk
+		// goes straight to the unknown command, without making anything.
+		CommandMetadata metadata = NO_METADATA;
+		if( command != null ) {
+			metadata = new CommandMetadata( command.getCommandWord(), inputLine, end );
+			metadata.setTag( tag );
+		}
+		return respond( command, metadata, tag );
+	}
 
+	/**
+	 * Handles a command that has already been parsed, either
+	 * by {@link #respondTo(CharSequence)} or, on a connection
+	 * that has switched to binary framing, by a {@link BinaryCodec}.
+	 * 
+	 * @param metadata The command
+	 * @return The response that should be sent back to the client
+	 */
+	public ResponseCode respondTo(CommandMetadata metadata) {
+		
 		// We use the command word to look up the command to use
 		String commandWord = metadata.getCommandWord();
 		if( commandWord == null ) {
 			LOGGER.info( "Command word was null. That's pretty odd." );
-		} else {
-			// Make it lowercase as we're case-insensitive, and hashed them in lowercase
-			commandWord = commandWord.toLowerCase();
-			command = commands.get( commandWord );
 		}
-		
-		// If we can't find it, we have to use our unknown command. Hope it's not null!
-		if( command == null ) {
-			command = unknownCommand;
+		return respond( commandTable.lookup( commandWord ), metadata, metadata.getTag() );
+	}
+
+	/**
+	 * Processes a line, as {@link #respondTo(CharSequence)} does,
+	 * for callers that want the response as a string.
+	 * 
+	 * @param inputLine The message as received from the client
+	 * @return The message that should be sent back to the client
+	 */
+	public String processInput(CharSequence inputLine) {
+		return respondTo( inputLine ).toString();
+	}
+
+	/**
+	 * Processes a parsed command, as {@link #respondTo(CommandMetadata)}
+	 * does, for callers that want the response as a string.
+	 * 
+	 * @param metadata The command
+	 * @return The message that should be sent back to the client
+	 */
+	public String processInput(CommandMetadata metadata) {
+		return respondTo( metadata ).toString();
+	}
+
+	/**
+	 * Called by the BINARY command. Once its response has been
+	 * queued, the connection switches to binary framing.
+	 */
+	public void requestBinaryFraming() {
+		if( !binaryFraming ) {
+			binaryFramingRequested = true;
 		}
-		
-		// We are going to use this response if we had a null command, at this point
-		String response = "Received an unknown command, but had no command handler defined for it.";
-		if( command != null ) {
-			response = command.processCommand( this, metadata );
-			// Do we need to force them to disconnect?
-			if( response.startsWith(ResponseCode.CODE.SUCCESSFULLY_QUIT.getCodeAsString() ) ) {
-				
-			}
+	}
+
+	/**
+	 * Has the connection switched to binary framing?
+	 * 
+	 * @return true if it has
+	 */
+	public boolean isBinaryFraming() {
+		return binaryFraming;
+	}
+
+	/**
+	 * Called by the connection after queuing each response. If
+	 * binary framing was requested, this returns true, just the
+	 * once, and from then on the connection is using it.
+	 * 
+	 * @return true if the connection should switch now
+	 */
+	public boolean takeBinaryFramingRequest() {
+		if( !binaryFramingRequested ) {
+			return false;
 		}
-		
-		// Update the timer
-		setLastCommand( System.currentTimeMillis() );
-		
-		// Whatever we have, we return
-		return response;
+		binaryFramingRequested = false;
+		binaryFraming = true;
+		return true;
 	}
 
 	/**
@@ -430,6 +609,7 @@ public class BlackjackProtocol {
 	 */
 	public static void setCommands(Map<String, BlackjackCommand> commands) {
 		BlackjackProtocol.commands = commands;
+		BlackjackProtocol.commandTable = new CommandTable( commands.values() );
 	}
 
 	/**
@@ -452,9 +632,29 @@ public class BlackjackProtocol {
 	 * properly authenticated user
 	 */
 	public void setUser(User user) {
-		// Don't just set them here, insert a reference to their server thread
+		// Don't just set them here, insert a reference to their connection
 		this.user = user;
-		user.setBlackjackServerThread( thread );
+		user.setClientConnection( connection );
+	}
+
+	/**
+	 * Called by the client connection once it has been closed, for
+	 * whatever reason. If a user had authenticated on it, they are
+	 * logged out so they can log in again later.
+	 */
+	public void logoutUserOnDisconnect() {
+		if( recorder != null ) {
+			recorder.recordClose( session );
+		}
+		if( user != null ) {
+			UserManagerInterface um = FlatfileUserManager.getDefaultUserManager();
+			String username = (user.getUserMetadata() == null 
+					? null 
+					: user.getUserMetadata().getUsername() );
+			if( um != null && username != null ) {
+				um.logoutUser(username);
+			}
+		}
 	}
 
 	/**
@@ -541,7 +741,7 @@ public class BlackjackProtocol {
 	 * was received
 	 */
 	public Long getLastCommand() {
-		return lastCommand;
+		return lastCommand == 0 ? null : lastCommand;
 	}
 
 	/**
@@ -556,7 +756,7 @@ public class BlackjackProtocol {
 	 * 1970 since the last command (successful or not)
 	 * was received
 	 */
-	public void setLastCommand(Long lastCommand) {
+	public void setLastCommand(long lastCommand) {
 		this.lastCommand = lastCommand;
 	}
 
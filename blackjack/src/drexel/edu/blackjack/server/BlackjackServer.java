@@ -29,8 +29,11 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocketFactory;
 import javax.net.ssl.TrustManagerFactory;
 
+import drexel.edu.blackjack.db.user.FlatfileUserManager;
 import drexel.edu.blackjack.server.locator.BlackjackLocatorThread;
+import drexel.edu.blackjack.server.nio.SelectorServer;
 import drexel.edu.blackjack.util.BlackjackLogger;
+import drexel.edu.blackjack.util.ThreadMode;
 
 /**
  * <b>SERVICE:</b> The main class for the blackjack server. It
@@ -40,8 +43,11 @@ import drexel.edu.blackjack.util.BlackjackLogger;
  * SERVICE.
  * <P>
  * <b>CONCURRENT:</b> It is in this main thread that the socket 
- * accepts connections, and creates a separate server thread for
- * each connection. This way, multiple clients can be handled.
+ * accepts connections. By default each connection is handed to
+ * one of a fixed number of selector loops (see the
+ * {@link drexel.edu.blackjack.server.nio} package); running with
+ * -Dtransport=thread instead creates a separate server thread for
+ * each connection. Either way, multiple clients can be handled.
  * The exact spot in the code where this is done is commented
  * with the word CONCURRENT.
  * <P>
@@ -93,6 +99,24 @@ public class BlackjackServer {
 	 */
 	public static final int MAX_BYTES_PER_LINE			= 1024;
 	
+	/************************************************************
+	 * Which transport services client connections. Set with
+	 * the 'transport' system property.
+	 ***********************************************************/
+	
+	// The name of the system property
+	private static final String TRANSPORT_PROPERTY		= "transport";
+	
+	// The default: all connections are shared by a few selector loops
+	private static final String TRANSPORT_NIO			= "nio";
+	
+	// The original: a thread for every connection
+	private static final String TRANSPORT_THREAD		= "thread";
+	
+	// How many selector loops the nio transport uses can be set with
+	// this system property. It defaults to the number of processors.
+	private static final String IO_THREADS_PROPERTY		= "iothreads";
+	
 	private final static Logger LOGGER = BlackjackLogger.createLogger(BlackjackServer.class .getName()); 
 	
 	/************************************************************
@@ -112,6 +136,21 @@ public class BlackjackServer {
 	 */
 	public static void main(String[] args) {
 		
+		// Don't quietly run something other than what was asked for
+		if( !ThreadMode.isRequestedModeAvailable() ) {
+			LOGGER.severe( "Virtual threads were requested with -D" + ThreadMode.THREADS_PROPERTY + "=" +
+					ThreadMode.VIRTUAL + ", but this runtime doesn't have them. They need Java 21 or later." );
+			System.exit(1);
+		}
+		
+		// A corrupt balance ledger is found now, not at the first login
+		try {
+			FlatfileUserManager.getDefaultUserManager();
+		} catch( IllegalStateException e ) {
+			LOGGER.severe( "Couldn't load the users, so not starting: " + e.getMessage() );
+			System.exit(1);
+		}
+		
 		BlackjackServer server = new BlackjackServer();
 		server.runServer();
 				
@@ -119,14 +158,12 @@ public class BlackjackServer {
 
 	/**
 	 * Start the socket, using TLS encryption, and listen 
-	 * for connections. When a connection is received,
-	 * create a thread to handle the connection.
+	 * for connections. When a connection is received, it is
+	 * handed to one of a few selector loops or, if the
+	 * 'thread' transport was asked for, given its own thread.
 	 */
 	private void runServer() {
 		
-		// We need to keep track of this
-		ServerSocket serverSocket = null;
-		
         try {
         	// SECURITY: In here is where it creates a secure server socket
             // Keystore
@@ -148,24 +185,14 @@ public class BlackjackServer {
             SSLContext sc = SSLContext.getInstance(SECURITY_PROTOCOL);
             sc.init(kmf.getKeyManagers(), tmf.getTrustManagers(),null);
 
-            // And finally for a socket
-            SSLServerSocketFactory ssf = sc.getServerSocketFactory();
-            
-            // SERVICE: This is where the socket binds to its predetermined port.
-            serverSocket = ssf.createServerSocket(PORT);
-            LOGGER.info( "Started a server on port " + PORT );
-            System.out.println( "The server is now ready to accept connections on port " + PORT + "." );
-            
-            // EXTRACREDIT: This is where we start our locator service, for handling
-            // client inquiries on the LAN about where a BJP 1.0 server is
-            BlackjackLocatorThread locatorThread = new BlackjackLocatorThread();
-            locatorThread.start();
-            
-            // Now we do an endless loop, accepting clients
-            while( true ) {
-            	// CONCURRENT: This is where each new connection gets its
-            	// own thread to deal with it
-            	new BlackjackServerThread( serverSocket.accept() ).start();
+            String transport = System.getProperty( TRANSPORT_PROPERTY, TRANSPORT_NIO );
+            if( transport.equalsIgnoreCase( TRANSPORT_THREAD ) ) {
+            	runThreadPerConnectionServer( sc );
+            } else {
+            	if( !transport.equalsIgnoreCase( TRANSPORT_NIO ) ) {
+            		LOGGER.warning( "Unknown transport '" + transport + "', using " + TRANSPORT_NIO + "." );
+            	}
+            	runSelectorServer( sc );
             }
             
         } catch (IOException e) {
@@ -192,7 +219,41 @@ public class BlackjackServer {
             System.err.println("Unrecoverable key exception." );
             e.printStackTrace();
             System.exit(1);
-        } finally {
+        }
+
+	}
+
+	/**
+	 * Binds a TLS server socket and, forever, gives each
+	 * connection that is accepted its own thread.
+	 * 
+	 * @param sc The SSL context to make the socket with
+	 * @throws IOException If the socket can't be bound or
+	 * accepting fails
+	 */
+	private void runThreadPerConnectionServer( SSLContext sc ) throws IOException {
+		
+		// We need to keep track of this
+		ServerSocket serverSocket = null;
+		
+		try {
+	        // And finally for a socket
+	        SSLServerSocketFactory ssf = sc.getServerSocketFactory();
+	        
+	        // SERVICE: This is where the socket binds to its predetermined port.
+	        serverSocket = ssf.createServerSocket(PORT);
+	        LOGGER.info( "Started a server on port " + PORT );
+	        System.out.println( "The server is now ready to accept connections on port " + PORT + "." );
+	        
+	        startLocatorService();
+	        
+	        // Now we do an endless loop, accepting clients
+	        while( true ) {
+	        	// CONCURRENT: This is where each new connection gets its
+	        	// own thread to deal with it
+	        	new BlackjackServerThread( serverSocket.accept() ).start();
+	        }
+		} finally {
         	// Always nice to clean up
         	if( serverSocket != null ) {
         		try {
@@ -202,8 +263,62 @@ public class BlackjackServer {
 					e.printStackTrace();
 				}
         	}
-        }
-
+		}
+	}
+	
+	/**
+	 * Binds a plain server socket channel and, forever, spreads
+	 * the connections that are accepted over a fixed number of
+	 * selector loops that do TLS themselves.
+	 * 
+	 * @param sc The SSL context to make engines with
+	 * @throws IOException If the socket can't be bound or
+	 * accepting fails
+	 */
+	private void runSelectorServer( SSLContext sc ) throws IOException {
+		
+		SelectorServer selectorServer = new SelectorServer( sc, getNumberOfIoThreads() );
+		try {
+			// SERVICE: This is where the socket binds to its predetermined port.
+			selectorServer.bind( PORT );
+	        LOGGER.info( "Started a selector server on port " + PORT );
+	        System.out.println( "The server is now ready to accept connections on port " + PORT + "." );
+	        
+	        startLocatorService();
+	        
+	        // CONCURRENT: Connections are handed to the selector loops in here
+	        selectorServer.acceptConnections();
+		} finally {
+			selectorServer.close();
+		}
+	}
+	
+	/**
+	 * EXTRACREDIT: This is where we start our locator service, for handling
+	 * client inquiries on the LAN about where a BJP 1.0 server is
+	 */
+	private void startLocatorService() {
+        BlackjackLocatorThread locatorThread = new BlackjackLocatorThread();
+        locatorThread.start();
+	}
+	
+	/**
+	 * Figures out how many selector loops to use, either from
+	 * the system property or from the number of processors.
+	 * 
+	 * @return How many selector loops to use
+	 */
+	private int getNumberOfIoThreads() {
+		int defaultThreads = Runtime.getRuntime().availableProcessors();
+		String value = System.getProperty( IO_THREADS_PROPERTY );
+		if( value != null ) {
+			try {
+				return Math.max( 1, Integer.parseInt( value.trim() ) );
+			} catch( NumberFormatException e ) {
+				LOGGER.warning( "Bad value '" + value + "' for " + IO_THREADS_PROPERTY + ", using " + defaultThreads + "." );
+			}
+		}
+		return defaultThreads;
 	}
 
 }
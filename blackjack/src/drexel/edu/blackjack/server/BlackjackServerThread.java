@@ -15,18 +15,18 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.util.logging.Logger;
 
-import drexel.edu.blackjack.db.user.FlatfileUserManager;
-import drexel.edu.blackjack.db.user.UserManagerInterface;
+import drexel.edu.blackjack.server.commands.CommandMetadata;
 import drexel.edu.blackjack.server.timeouts.IdleTimeoutDaemon;
+import drexel.edu.blackjack.util.BinaryFramer;
 import drexel.edu.blackjack.util.BlackjackLogger;
-import drexel.edu.blackjack.util.LengthLimitedBufferedReader;
+import drexel.edu.blackjack.util.LineFramer;
+import drexel.edu.blackjack.util.ThreadMode;
 
 /**
  * <b>CONCURRENT:</b> The whole purpose of this code and, thus,
@@ -35,10 +35,20 @@ import drexel.edu.blackjack.util.LengthLimitedBufferedReader;
  * for multiple clients to be handled at a time. The thread has
  * references to the socket connection, for purposes of I/O,
  * and to a protocol state, so the state can be maintained.
+ * Depending on the {@link ThreadMode}, it is either a platform
+ * thread or a virtual thread.
+ * <P>
+ * Messages to the client are queued in an {@link OutboundQueue}
+ * and written by a second thread, so that neither game threads
+ * nor other clients' threads ever block on this client's socket.
+ * <P>
+ * If the client sends the BINARY command, everything after the
+ * response is framed by a {@link BinaryFramer} and {@link BinaryCodec}
+ * instead of being split into lines.
  * 
  * @author Jennifer
  */
-public class BlackjackServerThread extends Thread {
+public class BlackjackServerThread implements Runnable, ClientConnection {
 
 	/**********************************************************
 	 * Local variables go here
@@ -48,12 +58,63 @@ public class BlackjackServerThread extends Thread {
 	private Socket socket 		= null;
 	
 	// Input and output
-	private PrintWriter out		= null;
-	private BufferedReader in	= null;
+	private OutputStream out	= null;
+	private InputStream in		= null;
+	
+	// Raw bytes are read into this, then split into lines by the framer
+	private byte[] readBuffer	= new byte[READ_BUFFER_SIZE];
+	private LineFramer framer	= new LineFramer( BlackjackServer.MAX_BYTES_PER_LINE, BlackjackServer.EOL );
+	
+	// Set once we've sent something that requires a disconnect
+	private boolean disconnectRequired = false;
+	
+	// Hands each line the framer assembles to processLine(). Once the
+	// connection switches to binary framing, the rest goes to the binary framer.
+	private LineFramer.LineListener lineListener = new LineFramer.LineListener() {
+		@Override
+		public boolean lineReceived( CharSequence line ) {
+			return processLine( line ) && binaryFramer == null;
+		}
+	};
+	
+	// Set once the client switches to binary framing
+	private BinaryCodec codec = null;
+	private BinaryFramer binaryFramer = null;
+	
+	// Hands each frame the binary framer assembles to processCommand()
+	private BinaryFramer.FrameListener frameListener = new BinaryFramer.FrameListener() {
+		@Override
+		public boolean frameReceived( byte[] data, int offset, int length ) throws IOException {
+			return processCommand( codec.decodeCommand( data, offset, length ) );
+		}
+	};
+	
+	// Messages waiting to be written to the client. Both responses to
+	// commands and game events go through here, so they stay in order.
+	private OutboundQueue outbound = new OutboundQueue();
+	
+	// The thread that writes them, so nobody else blocks on the socket
+	private Thread writerThread = null;
+	private Runnable writer = new Runnable() {
+		@Override
+		public void run() {
+			writeMessages();
+		}
+	};
 	
 	// There's a protocol state that goes with it
 	private BlackjackProtocol protocol = null;
 	
+	// The thread we run on, once started. It's a platform or virtual
+	// thread depending on the server's thread mode.
+	private Thread thread = null;
+	
+	// How many bytes to read from the socket at a time
+	private static final int READ_BUFFER_SIZE = 2048;
+	
+	// How long, in milliseconds, to let the writer finish up at disconnect
+	private static final long WRITER_DRAIN_TIME = 1000;
+	
 	// And a logger for errors
 	private final static Logger LOGGER = BlackjackLogger.createLogger(BlackjackServerThread.class.getName()); 
 
@@ -70,7 +131,6 @@ public class BlackjackServerThread extends Thread {
 	 * client. It must already be open.
 	 */
 	public BlackjackServerThread( Socket socket ) {
-		super( "BlackjackServerThread" );
 		this.socket = socket;
 		this.protocol = new BlackjackProtocol(this);
 		LOGGER.finer( "Inside a blackjack server thread constructor." );
@@ -99,51 +159,74 @@ public class BlackjackServerThread extends Thread {
 		IdleTimeoutDaemon daemon = IdleTimeoutDaemon.getDefaultIdleTimeoutDaemon();
 		if( daemon != null ) {
 			LOGGER.finer( "Inside a blackjack server thread, about to register this thread" );
-			daemon.addBlackjackServerThread(this);
+			daemon.addClientConnection(this);
 		} else {
 			LOGGER.warning( "Cannot register a blackjack server thread with the timeout daemon." );
 		}
 		
 		try {
 			// This is used to write responses to the client
-			out = new PrintWriter(socket.getOutputStream(), true);
+			out = socket.getOutputStream();
 			
 			// And this is how responses are read from the client
-			in = new LengthLimitedBufferedReader(new InputStreamReader(socket.getInputStream()), BlackjackServer.MAX_BYTES_PER_LINE, BlackjackServer.EOL );
+			in = socket.getInputStream();
+			
+			// Everything sent to the client is written by its own thread
+			writerThread = ThreadMode.newThread( "BlackjackServerWriter", writer );
+			writerThread.start();
 	
-			// Keep reading single-line commands as long as we can
+			// Keep reading single-line commands as long as we can. Whatever
+			// is read is split into lines, and each is handed to processLine()
 			LOGGER.finer( "Inside a blackjack server thread, about to block for the first read" );
-			String inputLine = in.readLine();
-			while ( inputLine != null ) {
-				
-				// We pass it to our protcol to figure out what to do
-				LOGGER.finer( "Inside a blackjack server thread, about to process some input" );
-				String outputLine = protocol.processInput(inputLine);
-				
-				// They give us the response to send back
-				LOGGER.finer( "Inside a blackjack server thread, about to write some output" );
-				out.println(outputLine);
-				out.flush();
-				
-				// Was it a code that requires us to disconnect them?
-				ResponseCode code = ResponseCode.getCodeFromString( outputLine );
-				if( code != null && code.requiresDisconnect() ) {
-					break;
+			int count = in.read( readBuffer );
+			while ( count >= 0 && !disconnectRequired ) {
+				// A pipelining client may have sent several commands at
+				// once, and their responses all go out in one write
+				MessageBatch.begin();
+				try {
+					int consumed = 0;
+					if( binaryFramer == null ) {
+						consumed = framer.feed( readBuffer, 0, count, lineListener );
+					}
+					if( binaryFramer != null && !disconnectRequired ) {
+						// SECURITY: The framer throws rather than buffer a frame that's too long
+						binaryFramer.feed( readBuffer, consumed, count - consumed, frameListener );
+					}
+				} finally {
+					MessageBatch.end();
 				}
 				
-				// And we read another line
+				// And we read some more
 				LOGGER.finer( "Inside a blackjack server thread, about to block for another read" );
-				inputLine = in.readLine();
+				if( !disconnectRequired ) {
+					count = in.read( readBuffer );
+				}
 	       }	
 		} catch (IOException e) {
 			// This happens when the socket is closed, for whatever reason
 			LOGGER.finer( "Socket was closed for a connection." );
 		} finally {
 			LOGGER.finer( "Inside a blackjack server thread, in the finally clause" );
+			
+			// Give the writer a moment to send anything still queued, like
+			// the response that caused a disconnect
+			outbound.close();
+			if( writerThread != null ) {
+				try {
+					writerThread.join( WRITER_DRAIN_TIME );
+				} catch (InterruptedException e) {
+					// Then we just don't wait
+				}
+			}
+			
 			// Always nice to clean up after ourselves
 			try {
-				in.close();
-				out.close();
+				if( in != null ) {
+					in.close();
+				}
+				if( out != null ) {
+					out.close();
+				}
 				socket.close();
 			} catch (IOException e) {
 				// At this point we're about to end anyway, so ignore it
@@ -152,21 +235,32 @@ public class BlackjackServerThread extends Thread {
 		
 		LOGGER.info( "Inside a client connection thread, about to shut down the connection" );
 		if( daemon != null ) {
-			daemon.removeBlackjackServerThread(this);
+			daemon.removeClientConnection(this);
 		}
 		
 		// Don't forget to log out the user
-		if( protocol != null && protocol.getUser() != null ) {
-			UserManagerInterface um = FlatfileUserManager.getDefaultUserManager();
-			String username = (protocol.getUser().getUserMetadata() == null 
-					? null 
-					: protocol.getUser().getUserMetadata().getUsername() );
-			if( um != null && username != null ) {
-				um.logoutUser(username);
-			}
+		if( protocol != null ) {
+			protocol.logoutUserOnDisconnect();
 		}
 	}
 
+	/**
+	 * Starts servicing the connection on its own thread, which
+	 * is created by {@link ThreadMode}.
+	 */
+	public void start() {
+		thread = ThreadMode.newThread( "BlackjackServerThread", this );
+		thread.start();
+	}
+	
+	/**
+	 * Is the thread servicing the connection still running?
+	 * @return true if it is, false if it finished or never started
+	 */
+	public boolean isAlive() {
+		return thread != null && thread.isAlive();
+	}
+
 	/**
 	 * Get the (open) socket reference
 	 * @return the socket
@@ -179,6 +273,7 @@ public class BlackjackServerThread extends Thread {
 	 * Get the protocol instance associated with this thread.
 	 * @return the protocol
 	 */
+	@Override
 	public BlackjackProtocol getProtocol() {
 		return protocol;
 	}
@@ -189,6 +284,7 @@ public class BlackjackServerThread extends Thread {
 	 * the socket, stopping the thread, and unregistering the thread with the
 	 * idle monitor.
 	 */	
+	@Override
 	public void forceDisconnectDueToTimeout() {
 		
 		LOGGER.info( "Inside a client connection thread, about to force a timeout disconnect!" );
@@ -199,6 +295,7 @@ public class BlackjackServerThread extends Thread {
 	/**
 	 * This method closes the connection by closing the socket.
 	 */
+	@Override
 	public void closeConnection() {
 		// Well, if we close the input reader, then the thread
 		// should (hopefully stop!)
@@ -211,20 +308,194 @@ public class BlackjackServerThread extends Thread {
 	}
 
 	/**
-	 * Sends a response code through the socket by using the
-	 * writer, and sending the toString() of the response
-	 * code.
+	 * Queues the toString() of the response code to be sent
+	 * to the client. It's written right away, unless the
+	 * calling thread has a {@link MessageBatch} open.
 	 * 
 	 * @param code What to send
 	 */
+	@Override
 	public void sendMessage(ResponseCode code) {
 		
-		if( out == null ) {
-			LOGGER.severe( "Wanted to send a message to some user but the out writer was null." );
+		queueMessage( EncodedMessage.encode( code ) );
+		if( !MessageBatch.defer( this ) ) {
+			flushMessages();
+		}
+	}
+	
+	/**
+	 * Queues an already-encoded message to be sent to the
+	 * client, without writing it. If the client has fallen
+	 * too far behind, the message may be dropped, or the
+	 * client disconnected, as per the {@link OverflowPolicy}.
+	 * 
+	 * @param message What to send
+	 */
+	@Override
+	public void queueMessage(EncodedMessage message) {
+		
+		if( outbound.add( message ) == OverflowPolicy.ACTION.DISCONNECT ) {
+			LOGGER.warning( "A client fell too far behind in reading its messages, disconnecting it." );
+			disconnectInBackground();
+		}
+	}
+	
+	/**
+	 * Has the writer thread write everything queued for the
+	 * client so far, with a single write to the socket, which
+	 * means a single TLS record unless it's very large.
+	 * <P>
+	 * <b>CONCURRENT:</b> This never blocks on the socket, so a
+	 * game thread is never held up by a client that isn't
+	 * reading.
+	 */
+	@Override
+	public void flushMessages() {
+		outbound.requestWrite();
+	}
+	
+	/**
+	 * How many times has a message to this client been dropped,
+	 * or caused a disconnect, because it wasn't keeping up?
+	 * 
+	 * @return The count
+	 */
+	@Override
+	public int getOverflowCount() {
+		return outbound.getOverflowCount();
+	}
+	
+	/**
+	 * The connection is closed once the thread has finished or
+	 * its socket has been closed.
+	 * 
+	 * @return true if closed, false if still open
+	 */
+	@Override
+	public boolean isClosed() {
+		return !isAlive() || socket == null || socket.isClosed();
+	}
+
+	/**
+	 * The writer thread's loop. It writes whatever is queued
+	 * each time a write is requested, until the connection
+	 * closes, then writes anything left. If the client falls
+	 * too far behind, it stops without writing anything more.
+	 */
+	private void writeMessages() {
+		
+		try {
+			while( outbound.awaitWriteRequest() ) {
+				outbound.writeTo( out );
+			}
+			if( !outbound.isOverflowed() ) {
+				outbound.writeTo( out );
+			}
+		} catch (IOException e) {
+			// The reading side will notice the socket is gone and clean up
+			LOGGER.finer( "Unable to write to a client connection: " + e.getMessage() );
+		} catch (InterruptedException e) {
+			LOGGER.finer( "The writer for a client connection was interrupted." );
+		}
+	}
+	
+	/**
+	 * Closes the connection from a separate thread, so whoever
+	 * noticed the client falling behind (probably a game thread)
+	 * isn't held up by it.
+	 */
+	private void disconnectInBackground() {
+		
+		ThreadMode.newThread( "BlackjackServerDisconnect", new Runnable() {
+			@Override
+			public void run() {
+				closeConnection();
+			}
+		}).start();
+	}
+	
+	/**
+	 * Queues the response to a command. If the command asked for
+	 * binary framing, the response is the last thing sent as text,
+	 * and both directions switch right after it.
+	 * 
+	 * @param response The response
+	 */
+	private void queueResponse( ResponseCode response ) {
+		
+		EncodedMessage encoded = response.getEncoded();
+		if( protocol.takeBinaryFramingRequest() ) {
+			codec = new BinaryCodec( BlackjackServer.MAX_BYTES_PER_LINE );
+			binaryFramer = new BinaryFramer( BlackjackServer.MAX_BYTES_PER_LINE );
+			if( outbound.add( encoded, codec ) == OverflowPolicy.ACTION.DISCONNECT ) {
+				disconnectInBackground();
+			}
 		} else {
-			out.println( code.toString() );
-			out.flush();
+			queueMessage( encoded );
+		}
+		MessageBatch.defer( this );
+	}
+	
+	/**
+	 * Processes one line of input from the client, by passing it
+	 * to the protocol and writing the response back.
+	 * 
+	 * @param inputLine The line, which is only valid during this call
+	 * @return true to keep reading, false if the client must be disconnected
+	 */
+	private boolean processLine( CharSequence inputLine ) {
+		
+		// Anything the command sends, to this client or others, is held
+		// until we're done, then goes out as one write per client
+		ResponseCode response = null;
+		MessageBatch.begin();
+		try {
+			// We pass it to our protcol to figure out what to do
+			LOGGER.finer( "Inside a blackjack server thread, about to process some input" );
+			response = protocol.respondTo(inputLine);
+			
+			// They give us the response to send back, which goes
+			// behind anything else already queued for this client
+			LOGGER.finer( "Inside a blackjack server thread, about to write some output" );
+			queueResponse( response );
+		} finally {
+			MessageBatch.end();
+		}
+		return checkForDisconnect( response );
+	}
+	
+	/**
+	 * Processes one command that arrived in a binary frame, as
+	 * {@link #processLine(CharSequence)} does for a line.
+	 * 
+	 * @param metadata The decoded command
+	 * @return true to keep reading, false if the client must be disconnected
+	 */
+	private boolean processCommand( CommandMetadata metadata ) {
+		
+		ResponseCode response = null;
+		MessageBatch.begin();
+		try {
+			response = protocol.respondTo( metadata );
+			queueResponse( response );
+		} finally {
+			MessageBatch.end();
+		}
+		return checkForDisconnect( response );
+	}
+	
+	/**
+	 * Was the response a code that requires us to disconnect them?
+	 * 
+	 * @param response The response, or null if none was made
+	 * @return true to keep reading, false if the client must be disconnected
+	 */
+	private boolean checkForDisconnect( ResponseCode response ) {
+		
+		if( response != null && response.requiresDisconnect() ) {
+			disconnectRequired = true;
 		}
+		return !disconnectRequired;
 	}
 	
 }
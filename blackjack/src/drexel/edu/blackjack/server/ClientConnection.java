@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - ClientConnection.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Abstracts a single connected client away from the transport that
+ * carries its bytes. The protocol, the game code, and the idle timeout daemon
+ * only ever talk to a client through this interface, so it does not matter if
+ * the connection is serviced by its own thread or by a shared selector loop.
+ ******************************************************************************/
+package drexel.edu.blackjack.server;
+
+/**
+ * <b>CONCURRENT:</b> One of these exists for every connected
+ * client. Implementations must allow {@link #sendMessage(ResponseCode)}
+ * and {@link #closeConnection()} to be called from threads other
+ * than the one servicing the connection, as game threads and the
+ * idle timeout daemon both do this.
+ *
+ * @author Jennifer
+ */
+public interface ClientConnection {
+
+	/**
+	 * Get the protocol instance associated with this connection.
+	 * @return the protocol
+	 */
+	public BlackjackProtocol getProtocol();
+
+	/**
+	 * Sends a response code to the client. This may be called
+	 * from any thread. The message is queued behind anything
+	 * already waiting to go to the client, and flushed right
+	 * away unless the calling thread has a {@link MessageBatch}
+	 * open, in which case it's flushed when the batch ends.
+	 *
+	 * @param code What to send
+	 */
+	public void sendMessage( ResponseCode code );
+
+	/**
+	 * Queues an already-encoded message behind anything else
+	 * waiting to go to the client, without flushing it. This
+	 * may be called from any thread, and the same message may
+	 * be queued on any number of connections.
+	 *
+	 * @param message What to send
+	 */
+	public void queueMessage( EncodedMessage message );
+
+	/**
+	 * Writes out everything queued for the client so far, as
+	 * a single write where possible. This may be called from
+	 * any thread.
+	 */
+	public void flushMessages();
+
+	/**
+	 * How many times has a message to this client been dropped,
+	 * or caused a disconnect, because the client wasn't reading
+	 * fast enough? See {@link OverflowPolicy}.
+	 *
+	 * @return The count
+	 */
+	public int getOverflowCount();
+
+	/**
+	 * Called when the idle timeout daemon decides the client
+	 * has been idle for too long in its current state.
+	 */
+	public void forceDisconnectDueToTimeout();
+
+	/**
+	 * Closes the connection to the client.
+	 */
+	public void closeConnection();
+
+	/**
+	 * Has the connection been closed, either by us or by the
+	 * client? Used by the idle timeout daemon to reap dead
+	 * connections.
+	 *
+	 * @return true if closed, false if still open
+	 */
+	public boolean isClosed();
+
+}
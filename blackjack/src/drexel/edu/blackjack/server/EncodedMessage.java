@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - EncodedMessage.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: A message that has already been turned into the bytes sent over
+ * the wire, so that a message going to many clients is only encoded once.
+ ******************************************************************************/
+package drexel.edu.blackjack.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Holds the bytes of one line of the protocol, including the
+ * EOL, exactly as they are sent to a client. It's immutable:
+ * the bytes are never handed out directly, only copied or
+ * viewed read-only. That means one instance can be queued on
+ * any number of connections, from any number of threads.
+ * <P>
+ * A message made from a response also keeps the response's
+ * parts, so that a connection using binary framing can encode
+ * it from them, rather than from the text. They're tokenized
+ * the first time they're needed (see {@link BinaryCodec}), and
+ * the tokens are shared by every connection it's sent to.
+ *
+ * @author Jennifer
+ */
+public final class EncodedMessage {
+
+	// The protocol is ASCII text, and clients read it as UTF-8
+	private static final Charset CHARSET = Charset.forName( "UTF-8" );
+
+	// The message and its EOL, encoded
+	private final byte[] bytes;
+
+	// Can a client that's too far behind do without it?
+	private final boolean droppable;
+
+	// The parts of the response it was made from, if it was
+	private final Integer code;
+	private final String tag;
+	private final String text;
+
+	// CONCURRENT: The message tokenized for binary framing, made the
+	// first time it's needed. A race might make it twice, but it's
+	// immutable, so either copy is fine to share.
+	private volatile BinaryCodec.Tokens tokens = null;
+
+	/**
+	 * Messages are made through the encode() methods.
+	 *
+	 * @param bytes The encoded message, which is not copied
+	 * @param droppable Whether it may be dropped for a slow client
+	 * @param code The response's code, or null if it isn't from a response
+	 * @param tag The response's tag, if any
+	 * @param text The response's text, if any
+	 */
+	private EncodedMessage( byte[] bytes, boolean droppable, Integer code, String tag, String text ) {
+		this.bytes = bytes;
+		this.droppable = droppable;
+		this.code = code;
+		this.tag = tag;
+		this.text = text;
+	}
+
+	/**
+	 * Encodes the toString() of a response code. Table updates
+	 * (see {@link ResponseCode#isSpectatorUpdate()}) are marked
+	 * as droppable.
+	 *
+	 * @param code What to encode
+	 * @return The encoded message, which may be shared
+	 * @see ResponseCode#getEncoded()
+	 */
+	public static EncodedMessage encode( ResponseCode code ) {
+		return code.getEncoded();
+	}
+
+	/**
+	 * Encodes a line, adding the protocol EOL. It is not
+	 * droppable.
+	 *
+	 * @param message The line, without an EOL
+	 * @return The encoded message
+	 */
+	public static EncodedMessage encode( String message ) {
+		return encode( message, false );
+	}
+
+	/**
+	 * Encodes a line, adding the protocol EOL.
+	 *
+	 * @param message The line, without an EOL
+	 * @param droppable Whether it may be dropped for a slow client
+	 * @return The encoded message
+	 */
+	public static EncodedMessage encode( String message, boolean droppable ) {
+		return new EncodedMessage( (message + BlackjackServer.EOL).getBytes( CHARSET ), droppable, null, null, null );
+	}
+
+	/**
+	 * Encodes the toString() of a response, keeping its parts.
+	 * Table updates are droppable. This is what
+	 * {@link ResponseCode#getEncoded()} uses.
+	 *
+	 * @param response What to encode
+	 * @return The encoded response
+	 */
+	static EncodedMessage encodeResponse( ResponseCode response ) {
+		return new EncodedMessage( (response.toString() + BlackjackServer.EOL).getBytes( CHARSET ),
+				response.isSpectatorUpdate(), response.getCode(), response.getTag(), response.getText() );
+	}
+
+	/**
+	 * Wraps a frame for a connection using binary framing,
+	 * which has its own length rather than an EOL.
+	 *
+	 * @param frame The frame, which is not copied, so it must
+	 * not be changed afterwards
+	 * @param droppable Whether it may be dropped for a slow client
+	 * @return The message
+	 * @see BinaryCodec
+	 */
+	public static EncodedMessage fromFrame( byte[] frame, boolean droppable ) {
+		return new EncodedMessage( frame, droppable, null, null, null );
+	}
+
+	/**
+	 * Gets the message tokenized for binary framing. It's made
+	 * from the parts of the response, if they were kept and fit
+	 * the usual form, and from the text otherwise.
+	 *
+	 * @return The tokens, which may be shared
+	 */
+	BinaryCodec.Tokens getResponseTokens() {
+		BinaryCodec.Tokens result = tokens;
+		if( result == null ) {
+			if( code != null ) {
+				result = BinaryCodec.tokenizeResponse( code.intValue(), tag, text );
+			}
+			if( result == null ) {
+				result = BinaryCodec.tokenizeResponse( bytes, 0, bytes.length - BlackjackServer.EOL.length() );
+			}
+			tokens = result;
+		}
+		return result;
+	}
+
+	/**
+	 * How many bytes is the message, including the EOL?
+	 *
+	 * @return The number of bytes
+	 */
+	public int getLength() {
+		return bytes.length;
+	}
+
+	/**
+	 * May this be dropped, rather than queued, for a client
+	 * that has fallen too far behind?
+	 *
+	 * @return true if it may be dropped
+	 */
+	public boolean isDroppable() {
+		return droppable;
+	}
+
+	/**
+	 * Copies the bytes into an array.
+	 *
+	 * @param destination Where to copy them
+	 * @param offset Where in the array to start
+	 */
+	public void copyTo( byte[] destination, int offset ) {
+		System.arraycopy( bytes, 0, destination, offset, bytes.length );
+	}
+
+	/**
+	 * Copies the bytes into a buffer, advancing its position.
+	 *
+	 * @param destination Where to copy them, which must have room
+	 */
+	public void copyTo( ByteBuffer destination ) {
+		destination.put( bytes );
+	}
+
+	/**
+	 * Gets a read-only view of the bytes. Each call gets its
+	 * own view, with its own position.
+	 *
+	 * @return The view
+	 */
+	public ByteBuffer asReadOnlyBuffer() {
+		return ByteBuffer.wrap( bytes ).asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return The message as a string, without the EOL. Only
+	 * meaningful for a text message, not a binary frame.
+	 */
+	@Override
+	public String toString() {
+		return new String( bytes, 0, bytes.length - BlackjackServer.EOL.length(), CHARSET );
+	}
+
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - MessageBatch.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Lets a thread that is about to send a burst of messages (like a
+ * game dealing a round) hold off on flushing them, so each client gets the
+ * whole burst in one write instead of one write per message.
+ ******************************************************************************/
+package drexel.edu.blackjack.server;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * <b>CONCURRENT:</b> A batch belongs to the thread that began it.
+ * While a thread has a batch open, messages it sends to a
+ * {@link ClientConnection} are queued on the connection but
+ * not flushed. When the batch ends, each connection that was
+ * sent anything is flushed once, so everything queued for
+ * it goes out together as one write (and, over TLS, one record).
+ * <P>
+ * Batches can be nested; only the outermost end flushes. A
+ * thread that is about to wait (on a timer, or on a player)
+ * should call {@link #flush()} first, so clients aren't kept
+ * waiting on messages that were queued before the wait.
+ * <P>
+ * Typical use:
+ * <PRE>
+ * MessageBatch.begin();
+ * try {
+ *     ... send messages ...
+ * } finally {
+ *     MessageBatch.end();
+ * }
+ * </PRE>
+ *
+ * @author Jennifer
+ */
+public class MessageBatch {
+
+	/**********************************************************
+	 * Local variables go here
+	 *********************************************************/
+
+	// Each thread has its own batch, if it has begun one
+	private static final ThreadLocal<MessageBatch> CURRENT = new ThreadLocal<MessageBatch>();
+
+	// Connections with queued messages waiting on the batch to end,
+	// in the order they were first sent something
+	private Set<ClientConnection> pending = new LinkedHashSet<ClientConnection>();
+
+	// How many begin() calls haven't been matched by an end() yet
+	private int depth = 0;
+
+	// And a logger for errors
+	private final static Logger LOGGER = BlackjackLogger.createLogger(MessageBatch.class.getName());
+
+	/**********************************************************
+	 * Constructor goes here
+	 *********************************************************/
+
+	/**
+	 * Batches are only made through {@link #begin()}.
+	 */
+	private MessageBatch() {
+	}
+
+	/**********************************************************
+	 * Public methods go here
+	 *********************************************************/
+
+	/**
+	 * Starts a batch on the calling thread, or nests
+	 * inside the one it already has.
+	 */
+	public static void begin() {
+		MessageBatch batch = CURRENT.get();
+		if( batch == null ) {
+			batch = new MessageBatch();
+			CURRENT.set( batch );
+		}
+		batch.depth++;
+	}
+
+	/**
+	 * Ends the calling thread's batch. If this is the
+	 * outermost one, every connection sent a message
+	 * during the batch is flushed.
+	 */
+	public static void end() {
+		MessageBatch batch = CURRENT.get();
+		if( batch == null ) {
+			LOGGER.warning( "Ended a message batch that was never begun." );
+			return;
+		}
+		batch.depth--;
+		if( batch.depth <= 0 ) {
+			CURRENT.remove();
+			batch.flushPending();
+		}
+	}
+
+	/**
+	 * Flushes whatever the calling thread's batch has held
+	 * so far, without ending it. Does nothing if there's
+	 * no batch.
+	 */
+	public static void flush() {
+		MessageBatch batch = CURRENT.get();
+		if( batch != null ) {
+			batch.flushPending();
+		}
+	}
+
+	/**
+	 * Called by a connection that has just queued a message.
+	 * If the calling thread has a batch open, the connection
+	 * is remembered and flushed when the batch ends.
+	 *
+	 * @param connection The connection with a queued message
+	 * @return true if the flush was deferred to the batch, false
+	 * if there's no batch and the caller should flush now
+	 */
+	public static boolean defer( ClientConnection connection ) {
+		MessageBatch batch = CURRENT.get();
+		if( batch == null || connection == null ) {
+			return false;
+		}
+		batch.pending.add( connection );
+		return true;
+	}
+
+	/**
+	 * Does the calling thread have a batch open?
+	 *
+	 * @return true if it does, false otherwise
+	 */
+	public static boolean isBatching() {
+		return CURRENT.get() != null;
+	}
+
+	/**********************************************************
+	 * Private methods go here
+	 *********************************************************/
+
+	/**
+	 * Flushes, once each, the connections that were sent
+	 * messages, and forgets about them.
+	 */
+	private void flushPending() {
+		if( pending.isEmpty() ) {
+			return;
+		}
+		ClientConnection[] connections = pending.toArray( new ClientConnection[pending.size()] );
+		pending.clear();
+		for( ClientConnection connection : connections ) {
+			connection.flushMessages();
+		}
+	}
+
+}
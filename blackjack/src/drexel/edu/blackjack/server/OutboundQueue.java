@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - OutboundQueue.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Holds the messages waiting to be written to a client over a
+ * blocking socket, so that everything queued between two writes goes out
+ * in a single write, and so that whoever queues a message never has to wait
+ * for the client to read it.
+ ******************************************************************************/
+package drexel.edu.blackjack.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <b>CONCURRENT:</b> Any thread can add a message. Adding only
+ * copies bytes into the pending buffer, so it never waits on
+ * the network. Writing swaps the pending buffer for an empty
+ * one and writes what was pending with one call to the
+ * stream, outside the lock that adders take. Only one thread
+ * writes at a time, so messages reach the client in the order
+ * they were added. Normally that's a writer thread that
+ * waits in {@link #awaitWriteRequest()} until someone asks
+ * for what's pending to be written, with
+ * {@link #requestWrite()}.
+ * <P>
+ * The pending buffer is bounded. When a message would take it
+ * past its limit, the {@link OverflowPolicy} decides whether the
+ * message is dropped or the client has to be disconnected. Each
+ * time that happens is counted, see {@link #getOverflowCount()}.
+ * <P>
+ * Once the connection switches to binary framing, messages are
+ * kept as they're added, and encoded by the connection's
+ * {@link BinaryCodec} when they're written. That way, a thread
+ * sending a message to many clients doesn't encode it for each
+ * of them, and since only one thread writes at a time, frames
+ * are encoded in the order they're sent.
+ * <P>
+ * The locks are ReentrantLocks rather than synchronized blocks,
+ * since the writer blocks on the socket and may be running on
+ * a virtual thread.
+ *
+ * @author Jennifer
+ */
+public class OutboundQueue {
+
+	/**********************************************************
+	 * Local variables go here
+	 *********************************************************/
+
+	// How much room to start with. It grows if needed, up to the limit.
+	private static final int INITIAL_SIZE			= 512;
+
+	// Messages added since the last write
+	private byte[] pending = new byte[INITIAL_SIZE];
+	private int pendingLength = 0;
+
+	// What the writer is currently writing; swapped with pending
+	private byte[] writing = new byte[INITIAL_SIZE];
+
+	// Messages added since the last write that are waiting to be
+	// encoded, once the connection has switched to binary framing,
+	// and how long they are as text
+	private List<EncodedMessage> unframed = new ArrayList<EncodedMessage>();
+	private int unframedLength = 0;
+
+	// What the writer is currently encoding; swapped with unframed
+	private List<EncodedMessage> framing = new ArrayList<EncodedMessage>();
+
+	// Guards pending, unframed and their lengths, and the flags below
+	private final ReentrantLock queueLock = new ReentrantLock();
+
+	// Signalled when a write is requested, or the queue closes
+	private final Condition writeWanted = queueLock.newCondition();
+
+	// Set when someone wants what's pending written
+	private boolean writeRequested = false;
+
+	// Makes sure only one thread writes at a time
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	// How many bytes can be pending, and what to do past that
+	private int limit = 0;
+	private OverflowPolicy policy = null;
+
+	// Set once the client has to be disconnected for falling behind;
+	// nothing is queued after that
+	private boolean overflowed = false;
+
+	// Set once the connection is going away
+	private boolean closed = false;
+
+	// How many messages were dropped or caused a disconnect
+	private AtomicInteger overflowCount = new AtomicInteger( 0 );
+
+	// Encodes messages once the connection has switched to binary framing.
+	// Set under the queue lock, and only used by the writer.
+	private BinaryCodec codec = null;
+
+	/**********************************************************
+	 * Constructors go here
+	 *********************************************************/
+
+	/**
+	 * Creates a queue with the limit and policy set by the
+	 * system properties.
+	 */
+	public OutboundQueue() {
+		this( OverflowPolicy.getConfiguredLimit(), OverflowPolicy.getConfiguredPolicy() );
+	}
+
+	/**
+	 * Creates a queue with the given limit and policy.
+	 *
+	 * @param limit How many bytes can be waiting to be written
+	 * @param policy What to do when a message would go past that
+	 */
+	public OutboundQueue( int limit, OverflowPolicy policy ) {
+		this.limit = limit;
+		this.policy = policy;
+	}
+
+	/**********************************************************
+	 * Public methods go here
+	 *********************************************************/
+
+	/**
+	 * Adds a message, followed by the protocol EOL, to the
+	 * end of the queue. Does not write anything.
+	 *
+	 * @param message What to send
+	 * @return What was done with the message
+	 */
+	public OverflowPolicy.ACTION add( String message ) {
+		return add( EncodedMessage.encode( message ) );
+	}
+
+	/**
+	 * Adds an already-encoded message to the end of the
+	 * queue, unless that would take the queue past its limit.
+	 * Does not write anything.
+	 *
+	 * @param message What to send
+	 * @return What was done with the message. DISCONNECT is
+	 * only returned once; after that, everything is dropped.
+	 */
+	public OverflowPolicy.ACTION add( EncodedMessage message ) {
+		return add( message, null );
+	}
+
+	/**
+	 * Adds an already-encoded message, as {@link #add(EncodedMessage)}
+	 * does, then, if it was queued and a codec is given, switches to
+	 * binary framing. Every message added after this one is encoded
+	 * by the codec, when it's written. Nothing else can be added in
+	 * between.
+	 *
+	 * @param message What to send, which is the last text message
+	 * @param switchTo The codec to encode later messages with, or
+	 * null to not switch
+	 * @return What was done with the message
+	 */
+	public OverflowPolicy.ACTION add( EncodedMessage message, BinaryCodec switchTo ) {
+		queueLock.lock();
+		try {
+			if( overflowed || closed ) {
+				return OverflowPolicy.ACTION.DROP;
+			}
+
+			OverflowPolicy.ACTION action = policy.decide( pendingLength + unframedLength, limit, message );
+			if( action == OverflowPolicy.ACTION.QUEUE && codec != null ) {
+				unframed.add( message );
+				unframedLength += message.getLength();
+			} else if( action == OverflowPolicy.ACTION.QUEUE ) {
+				int length = message.getLength();
+				if( pending.length - pendingLength < length ) {
+					byte[] bigger = new byte[Math.max( pending.length * 2, pendingLength + length )];
+					System.arraycopy( pending, 0, bigger, 0, pendingLength );
+					pending = bigger;
+				}
+				message.copyTo( pending, pendingLength );
+				pendingLength += length;
+				if( switchTo != null ) {
+					codec = switchTo;
+				}
+			} else {
+				overflowCount.incrementAndGet();
+				if( action == OverflowPolicy.ACTION.DISCONNECT ) {
+					overflowed = true;
+					writeWanted.signalAll();
+				}
+			}
+			return action;
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	/**
+	 * How many bytes are waiting to be written? Messages waiting
+	 * to be encoded for binary framing count at their length as
+	 * text.
+	 *
+	 * @return The number of bytes
+	 */
+	public int getPendingLength() {
+		queueLock.lock();
+		try {
+			return pendingLength + unframedLength;
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	/**
+	 * How many times has a message been dropped, or caused a
+	 * disconnect, because the client wasn't keeping up?
+	 *
+	 * @return The count
+	 */
+	public int getOverflowCount() {
+		return overflowCount.get();
+	}
+
+	/**
+	 * Has the client fallen so far behind that it has to be
+	 * disconnected?
+	 *
+	 * @return true if so
+	 */
+	public boolean isOverflowed() {
+		queueLock.lock();
+		try {
+			return overflowed;
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	/**
+	 * Asks the writer to write whatever is pending. Never blocks
+	 * on the network.
+	 */
+	public void requestWrite() {
+		queueLock.lock();
+		try {
+			writeRequested = true;
+			writeWanted.signal();
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	/**
+	 * Blocks until someone requests a write, or the queue has
+	 * been closed or overflowed.
+	 *
+	 * @return true if a write was requested, false if the
+	 * writer should stop
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public boolean awaitWriteRequest() throws InterruptedException {
+		queueLock.lock();
+		try {
+			while( !writeRequested && !closed && !overflowed ) {
+				writeWanted.await();
+			}
+			writeRequested = false;
+			return !closed && !overflowed;
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the queue. Nothing more is accepted, and a writer
+	 * waiting in {@link #awaitWriteRequest()} is woken up. Anything
+	 * already pending can still be written.
+	 */
+	public void close() {
+		queueLock.lock();
+		try {
+			closed = true;
+			writeWanted.signalAll();
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes everything queued so far to the stream, in one
+	 * write, and flushes it. Messages waiting for binary framing
+	 * are encoded first. If another thread is already writing,
+	 * this waits for it, then writes whatever it didn't get to.
+	 *
+	 * @param out Where to write
+	 * @return How many bytes were written, which may be 0
+	 * @throws IOException If the stream fails
+	 */
+	public int writeTo( OutputStream out ) throws IOException {
+		writeLock.lock();
+		try {
+			int length = 0;
+			queueLock.lock();
+			try {
+				byte[] swap = writing;
+				writing = pending;
+				length = pendingLength;
+				pending = swap;
+				pendingLength = 0;
+
+				List<EncodedMessage> swapList = framing;
+				framing = unframed;
+				unframed = swapList;
+				unframedLength = 0;
+			} finally {
+				queueLock.unlock();
+			}
+
+			// Frames can only have been queued after the codec was set
+			for( EncodedMessage message : framing ) {
+				EncodedMessage frame = codec.encodeResponse( message );
+				int frameLength = frame.getLength();
+				if( writing.length - length < frameLength ) {
+					byte[] bigger = new byte[Math.max( writing.length * 2, length + frameLength )];
+					System.arraycopy( writing, 0, bigger, 0, length );
+					writing = bigger;
+				}
+				frame.copyTo( writing, length );
+				length += frameLength;
+			}
+			framing.clear();
+
+			if( length > 0 ) {
+				out.write( writing, 0, length );
+				out.flush();
+			}
+			return length;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - OverflowPolicy.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Decides what happens when a client isn't reading its messages fast
+ * enough and the bytes waiting to be sent to it reach their limit.
+ ******************************************************************************/
+package drexel.edu.blackjack.server;
+
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * Every connection has a limit on how many bytes can be
+ * waiting to go out to its client. Messages are queued
+ * without ever waiting on the socket, so a game thread is
+ * never held up by a slow client; the limit is what keeps a
+ * client that has stopped reading from using up memory.
+ * <P>
+ * What happens when the limit is reached depends on the
+ * policy, set with the 'overflow' system property:
+ * <UL>
+ * <LI>'drop' (the default): droppable messages, which are
+ * updates about other players at the table, are thrown away.
+ * Everything else is still queued, up to twice the limit, and
+ * past that the client is disconnected.
+ * <LI>'disconnect': the client is disconnected as soon as the
+ * limit is reached.
+ * </UL>
+ * The limit, in bytes, is set with the 'outboundlimit' system
+ * property.
+ * <P>
+ * <b>SECURITY:</b> Like the line length limit on input, this
+ * keeps a client from making the server buffer an unbounded
+ * amount of data, here by never reading what it's sent.
+ *
+ * @author Jennifer
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * Drop table updates at the limit; disconnect at twice the limit
+	 */
+	DROP_UPDATES,
+
+	/**
+	 * Disconnect at the limit
+	 */
+	DISCONNECT;
+
+	/**
+	 * What to do with a message that's about to be queued
+	 */
+	public enum ACTION {
+		/** Queue it */
+		QUEUE,
+		/** Throw it away */
+		DROP,
+		/** Throw it away, and disconnect the client */
+		DISCONNECT
+	}
+
+	// The system properties that configure this
+	public static final String POLICY_PROPERTY			= "overflow";
+	public static final String LIMIT_PROPERTY			= "outboundlimit";
+
+	// The values the policy property can have
+	public static final String DROP_VALUE				= "drop";
+	public static final String DISCONNECT_VALUE			= "disconnect";
+
+	// How many bytes can be waiting for a client, if not configured
+	public static final int DEFAULT_LIMIT				= 64 * 1024;
+
+	// Under DROP_UPDATES, how many times the limit other messages can reach
+	private static final int HARD_LIMIT_FACTOR			= 2;
+
+	// What's configured
+	private static OverflowPolicy configuredPolicy		= DROP_UPDATES;
+	private static int configuredLimit					= DEFAULT_LIMIT;
+
+	private final static Logger LOGGER = BlackjackLogger.createLogger(OverflowPolicy.class.getName());
+
+	static {
+		String policy = System.getProperty( POLICY_PROPERTY, DROP_VALUE );
+		if( policy.equalsIgnoreCase( DISCONNECT_VALUE ) ) {
+			configuredPolicy = DISCONNECT;
+		} else if( !policy.equalsIgnoreCase( DROP_VALUE ) ) {
+			LOGGER.warning( "Unknown overflow policy of '" + policy + "' ignored; dropping updates." );
+		}
+
+		String limit = System.getProperty( LIMIT_PROPERTY );
+		if( limit != null ) {
+			try {
+				configuredLimit = Integer.parseInt( limit.trim() );
+			} catch( NumberFormatException e ) {
+				LOGGER.warning( "Outbound limit of '" + limit + "' is not a number; using " + DEFAULT_LIMIT + "." );
+			}
+			if( configuredLimit < BlackjackServer.MAX_BYTES_PER_LINE ) {
+				LOGGER.warning( "Outbound limit of " + configuredLimit + " is too small; using " + BlackjackServer.MAX_BYTES_PER_LINE + "." );
+				configuredLimit = BlackjackServer.MAX_BYTES_PER_LINE;
+			}
+		}
+	}
+
+	/**
+	 * Gets the policy set by the system property.
+	 *
+	 * @return The policy
+	 */
+	public static OverflowPolicy getConfiguredPolicy() {
+		return configuredPolicy;
+	}
+
+	/**
+	 * Gets the limit set by the system property.
+	 *
+	 * @return How many bytes can be waiting for a client
+	 */
+	public static int getConfiguredLimit() {
+		return configuredLimit;
+	}
+
+	/**
+	 * Decides what to do with a message about to be queued.
+	 *
+	 * @param pending How many bytes are already waiting
+	 * @param limit How many bytes are allowed to be waiting
+	 * @param message What's about to be queued
+	 * @return What to do with it
+	 */
+	public ACTION decide( int pending, int limit, EncodedMessage message ) {
+
+		int total = pending + message.getLength();
+		if( total <= limit ) {
+			return ACTION.QUEUE;
+		}
+		if( this == DROP_UPDATES ) {
+			if( message.isDroppable() ) {
+				return ACTION.DROP;
+			}
+			if( total <= limit * HARD_LIMIT_FACTOR ) {
+				return ACTION.QUEUE;
+			}
+		}
+		return ACTION.DISCONNECT;
+	}
+
+}
@@ -33,6 +33,12 @@ import drexel.edu.blackjack.server.commands.PasswordCommand;
  * in the DFA for the protocol, though the actual code that
  * does the transition reside elsewhere, in the various classes
  * in the {@link drexel.edu.blackjack.server.commands} package.
+ * <P>
+ * Commands return these, rather than strings, so the server
+ * can get the bytes to send from {@link #getEncoded()} and
+ * check {@link #requiresDisconnect()} without parsing its own
+ * output. A response with just a code's default message uses
+ * bytes that the code builds once and shares.
  * 
  * @author Jennifer
  */
@@ -122,6 +128,12 @@ public class ResponseCode {
 		 * state.
 		 */
 		SUCCESSFULLY_QUIT( 201, "Come back soon!" ),
+		/**
+		 * Successful response to a BINARY command. It involves no
+		 * state transition in the DFA, but everything after this
+		 * response, in both directions, uses binary framing.
+		 */
+		SWITCHING_TO_BINARY( 202, "Switching to binary framing." ),
 		/**
 		 * Successful response to a JOINSESSION command. In the DFA,
 		 * it transitions from the 
@@ -408,6 +420,12 @@ public class ResponseCode {
 		private final int code;
 		// A somewhat human-understandable explanation
 		private final String message;
+		// CONCURRENT: Built the first time it's needed. A race might build
+		// it twice, but it's immutable, so either copy is fine to share.
+		private EncodedMessage encoded = null;
+		// The same for the response itself, which is volatile as it's
+		// only unchangeable once it's shared
+		private volatile ResponseCode response = null;
 		// Simple constructor
 		CODE( int code, String message ) {
 			this.code = code;
@@ -425,6 +443,35 @@ public class ResponseCode {
 		public String getMessage() {
 			return message;
 		}
+		
+		/**
+		 * Gets the bytes of the untagged response with just
+		 * this code and its default message.
+		 * 
+		 * @return The encoded response, or null if the code
+		 * has no default message
+		 */
+		public EncodedMessage getEncoded() {
+			if( encoded == null && message != null ) {
+				encoded = EncodedMessage.encodeResponse( new ResponseCode( this ) );
+			}
+			return encoded;
+		}
+		
+		/**
+		 * Gets the untagged response with just this code and
+		 * its default message. It's shared, so it can't be
+		 * changed (see {@link ResponseCode#share()}).
+		 * 
+		 * @return The response, or null if the code has no
+		 * default message
+		 */
+		public ResponseCode getResponse() {
+			if( response == null && message != null ) {
+				response = new ResponseCode( this ).share();
+			}
+			return response;
+		}
 
 	}
 
@@ -439,6 +486,35 @@ public class ResponseCode {
 	// sometimes it's just extra text, it depends on the error code
 	private String text = null;
 	
+	// If this answers a command that the client tagged, the tag
+	// it used, which is echoed in front of the code
+	private String tag = null;
+	
+	// If this was made with just a code and its default message,
+	// the code, whose encoding can be shared
+	private CODE defaultCode = null;
+	
+	// The encoded form, once it's been asked for. Changing the
+	// response clears it.
+	private EncodedMessage encoded = null;
+	
+	// Once shared, a response can be handed out any number of
+	// times, so it can't be changed
+	private boolean shared = false;
+	
+	/**
+	 * A pipelining client can start a command with this character
+	 * and a tag, e.g. "@7 LISTGAMES". The response then starts
+	 * with the same tag, e.g. "@7 102 ...", so the client can
+	 * match responses to commands without waiting for each.
+	 */
+	public static final char TAG_PREFIX			= '@';
+	
+	/**
+	 * The longest a tag can be, not counting the prefix
+	 */
+	public static final int MAX_TAG_LENGTH		= 32;
+	
 	/***************************************************************
 	 * Constructors!
 	 **************************************************************/
@@ -473,6 +549,7 @@ public class ResponseCode {
 		
 		this.code = code.getCode();
 		this.text = code.getMessage();
+		this.defaultCode = code;
 	}
 	
 	/**
@@ -495,6 +572,38 @@ public class ResponseCode {
 		this.text = message;
 	}
 	
+	/**
+	 * Constructs a copy of a response code that can be
+	 * changed, e.g. to tag a copy of a shared response.
+	 * 
+	 * @param original What to copy
+	 */
+	public ResponseCode( ResponseCode original ) {
+		
+		this.code = original.code;
+		this.text = original.text;
+		this.tag = original.tag;
+		this.defaultCode = original.defaultCode;
+		this.encoded = original.encoded;
+	}
+	
+	/**
+	 * Constructs a response code from its parts, without any
+	 * checking. For a {@link BinaryCodec} decoding a frame.
+	 * 
+	 * @param code The numeric code
+	 * @param text The text after it, or null
+	 * @param tag The request tag, or null
+	 * @return The response code
+	 */
+	static ResponseCode fromParts( Integer code, String text, String tag ) {
+		ResponseCode responseCode = new ResponseCode();
+		responseCode.code = code;
+		responseCode.text = text;
+		responseCode.tag = tag;
+		return responseCode;
+	}
+	
 	/***************************************************************
 	 * Public methods for moving between strings and ResponseCode
 	 * objects go here
@@ -514,6 +623,13 @@ public class ResponseCode {
 		// Best practice to use a string builder for appending
 		StringBuilder str = new StringBuilder();
 		
+		// A tagged response starts with the tag
+		if( tag != null ) {
+			str.append( TAG_PREFIX );
+			str.append( tag );
+			str.append( " " );
+		}
+		
 		// If the code isn't set, that's an internal error right there
 		if( code == null ) {
 			str.append( CODE.INTERNAL_ERROR.toString() );
@@ -531,6 +647,31 @@ public class ResponseCode {
 		return str.toString();
 	}
 	
+	/**
+	 * Gets the bytes to send for this response, as
+	 * {@link EncodedMessage#encode(String, boolean)} would make
+	 * from {@link #toString()}. Table updates are droppable. An
+	 * untagged response with just a code's default message
+	 * shares the code's bytes.
+	 * <P>
+	 * <b>CONCURRENT:</b> Threads racing on a shared response
+	 * might each encode it, which is harmless, as the encoded
+	 * form is immutable and any of them can be kept.
+	 * 
+	 * @return The encoded response
+	 */
+	public EncodedMessage getEncoded() {
+		
+		if( encoded == null ) {
+			if( defaultCode != null && tag == null ) {
+				encoded = defaultCode.getEncoded();
+			} else {
+				encoded = EncodedMessage.encodeResponse( this );
+			}
+		}
+		return encoded;
+	}
+	
 	/**
 	 * Given a string -- for example, one that a client received --
 	 * instantiate a ResponseCode for the string. If there is a
@@ -538,14 +679,26 @@ public class ResponseCode {
 	 * not start with a 3-digit code, then a null is returned.
 	 * 
 	 * @param str The string, which should be something like
-	 * "500 something went wrong!" 
+	 * "500 something went wrong!", or for a tagged response,
+	 * "@tag 500 something went wrong!"
 	 * 
-	 * @return If the string started with a 3-digit integer then
-	 * return a ResponseCode object, parsing that and any text
-	 * out from the string. Otherwise, return null.
+	 * @return If the string started with a 3-digit integer (after
+	 * any tag) then return a ResponseCode object, parsing that and
+	 * any text out from the string. Otherwise, return null.
 	 */
 	public static ResponseCode getCodeFromString( String str ) {
 		
+		// Take any tag off the front
+		String tag = null;
+		if( str != null && str.length() > 0 && str.charAt(0) == TAG_PREFIX ) {
+			int space = str.indexOf( ' ' );
+			if( space < 0 || !isValidTag( str.substring( 1, space ) ) ) {
+				return null;
+			}
+			tag = str.substring( 1, space );
+			str = str.substring( space + 1 );
+		}
+		
 		// Nulls are bad, obviously, and we need at least 3 characters for the response code
 		if( str == null || str.length() < 3) {
 			return null;
@@ -571,6 +724,7 @@ public class ResponseCode {
 		// there, in which case just set it to a null
 		code.setText( str.length() > 3 ? str.substring(3).trim() : null );
 		code.setCode( number );
+		code.setTag( tag );
 
 		return code;
 	}
@@ -648,7 +802,10 @@ public class ResponseCode {
 	 * @param code the code to set
 	 */
 	public void setCode(Integer code) {
+		checkNotShared();
 		this.code = code;
+		this.defaultCode = null;
+		this.encoded = null;
 	}
 
 	/**
@@ -664,7 +821,74 @@ public class ResponseCode {
 	 * @param text the text to set
 	 */
 	public void setText(String text) {
+		checkNotShared();
 		this.text = text;
+		this.defaultCode = null;
+		this.encoded = null;
+	}
+
+	/**
+	 * Get the tag of the command this responds to
+	 * @return the tag, or null if the command wasn't tagged
+	 */
+	public String getTag() {
+		return tag;
+	}
+
+	/**
+	 * Set the tag of the command this responds to
+	 * @param tag the tag to set, or null for none
+	 */
+	public void setTag(String tag) {
+		checkNotShared();
+		this.tag = tag;
+		this.encoded = null;
+	}
+	
+	/**
+	 * Marks this response as shared, so the same one can be
+	 * returned for many commands, from many threads, without
+	 * making a new one each time. It can't be changed after
+	 * this; change a copy instead.
+	 * 
+	 * @return This response
+	 */
+	public ResponseCode share() {
+		shared = true;
+		return this;
+	}
+	
+	/**
+	 * Is this response shared, and so can't be changed?
+	 * 
+	 * @return true if it's shared
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+	
+	/**
+	 * Is this an acceptable request tag? It has to be 1 to
+	 * {@link #MAX_TAG_LENGTH} letters, digits, dashes, dots,
+	 * or underscores.
+	 * 
+	 * @param tag The tag, without its prefix
+	 * @return True if it's acceptable, false otherwise
+	 */
+	public static boolean isValidTag( CharSequence tag ) {
+		
+		if( tag == null || tag.length() == 0 || tag.length() > MAX_TAG_LENGTH ) {
+			return false;
+		}
+		for( int i = 0; i < tag.length(); i++ ) {
+			char c = tag.charAt(i);
+			boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+					c == '-' || c == '.' || c == '_';
+			if( !ok ) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	/*************************************************************************************
@@ -1001,11 +1225,44 @@ public class ResponseCode {
 	public boolean requiresDisconnect() {
 		
 		if( code != null ) {
-			// Or together all the 'you are going to be disconnected' codes here
-			return hasSameCode(CODE.LOGIN_ATTEMPTS_EXCEEDED) || hasSameCode(CODE.ALREADY_LOGGED_IN);
+			// Or together all the 'you are going to be disconnected' codes here. Quitting
+			// is one, so any commands pipelined after a QUIT aren't processed
+			return hasSameCode(CODE.LOGIN_ATTEMPTS_EXCEEDED) || hasSameCode(CODE.ALREADY_LOGGED_IN) ||
+					hasSameCode(CODE.SUCCESSFULLY_QUIT);
 		}
 		
 		// Get this far, must be fine
 		return false;
 	}
+
+	/**
+	 * Is this code an update about what's happening at a table
+	 * (someone joined or left, bet, acted, was dealt cards)? A
+	 * client that has fallen far behind can do without these,
+	 * and catch up with a GAMESTATUS command.
+	 * 
+	 * @return True if this code is a table update that may be
+	 * dropped for a slow client, false otherwise
+	 */
+	public boolean isSpectatorUpdate() {
+		
+		if( code != null ) {
+			return hasSameCode(CODE.PLAYER_JOINED) || hasSameCode(CODE.PLAYER_LEFT) ||
+					hasSameCode(CODE.PLAYER_BET) || hasSameCode(CODE.PLAYER_ACTION) ||
+					hasSameCode(CODE.CARDS_DEALT) || hasSameCode(CODE.UPDATED_HAND);
+		}
+		
+		return false;
+	}
+
+	/**
+	 * Makes sure a shared response isn't changed.
+	 * 
+	 * @throws IllegalStateException If it's shared
+	 */
+	private void checkNotShared() {
+		if( shared ) {
+			throw new IllegalStateException( "A shared response can't be changed; change a copy of it." );
+		}
+	}
 }
@@ -12,7 +12,7 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server.commands;
 
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 
@@ -42,17 +42,17 @@ public class AccountCommand extends BlackjackCommand {
 	private Set<STATE> validStates = null;
 
 	@Override
-	public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+	public ResponseCode execute(BlackjackProtocol protocol, CommandMetadata cm) {
 		
 		// Step 0: If either object is null, it's an internal error
 		if( protocol == null || cm == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR, 
-					"AccountCommand.processCommand() received null arguments" ).toString();
+					"AccountCommand.processCommand() received null arguments" );
 		}
 		
 		// STATEFUL: Steps 1-2: Return an error in not in a valid state
 		if( !getValidStates().contains( protocol.getState()) ) {
-			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED ).toString();
+			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED );
 		}
 		
 		// Step 3-4: Check syntax; irrelevant as no parameters
@@ -62,7 +62,7 @@ public class AccountCommand extends BlackjackCommand {
 		// Look up the user balance
 		if( protocol.getUser() == null || protocol.getUser().getUserMetadata() == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-					"AccountCommand.processCommand() had a problem with the protocol object").toString();
+					"AccountCommand.processCommand() had a problem with the protocol object");
 		}
 		// SECURITY: Can only get balance of the user authenticated to the protocol
 		int balance = protocol.getUser().getUserMetadata().getBalance();
@@ -71,7 +71,7 @@ public class AccountCommand extends BlackjackCommand {
 		
 		// Step 8: Format the user response code
 		ResponseCode code = ResponseCode.createAccountBalanceResponseCode( balance );
-		return code.toString();
+		return code;
 	}
 
 	@Override
@@ -84,7 +84,7 @@ public class AccountCommand extends BlackjackCommand {
 		
 		// Keep this around so we only create it once
 		if( validStates == null ) {
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 			
 			// You need to be authorized for this command,so it's definitely
 			// true when you're in a sessaion
@@ -14,13 +14,15 @@
 package drexel.edu.blackjack.server.commands;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import drexel.edu.blackjack.server.BlackjackProtocol;
 import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
 import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.server.game.GameState;
 
 /**
  * <b>STATEFUL:</b>: Response messages related to the BET command.
@@ -41,24 +43,38 @@ public class BetCommand extends BlackjackCommand {
 	private Set<STATE> validStates = null;
 
 	@Override
-	public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+	public ResponseCode execute(final BlackjackProtocol protocol, final CommandMetadata cm) {
+		
+		// CONCURRENT: The bet is placed at the table, so it's the table that does it
+		return atTable( protocol, new Callable<ResponseCode>() {
+			@Override
+			public ResponseCode call() {
+				return executeAtTable( protocol, cm );
+			}
+		} );
+	}
+	
+	/**
+	 * Does the work of the command, as the table's owner.
+	 */
+	private ResponseCode executeAtTable(BlackjackProtocol protocol, CommandMetadata cm) {
 		
 		// Step 0: If either object is null, it's an internal error
 		if( protocol == null || cm == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR, 
-					"BetCommand.processCommand() received null arguments" ).toString();
+					"BetCommand.processCommand() received null arguments" );
 		}
 		
 		// STATEFUL: Steps 1-2: Return an error in not in a valid state for BET command
 		if( !getValidStates().contains( protocol.getState()) ) {
 			return new ResponseCode( ResponseCode.CODE.INVALID_BET_NOT_EXPECTED,
-					"BetCommand.processCommand(): Received out-of-context Bet command").toString();
+					"BetCommand.processCommand(): Received out-of-context Bet command");
 		}
 					
 		// Step 3-4: Check syntax
 		if ((cm.getParameters() == null || (cm.getParameters().size() != 1 )) )  {		
 			return new ResponseCode( ResponseCode.CODE.SYNTAX_ERROR ,
-					"Must include a single parameter indicating 'amount'").toString();
+					"Must include a single parameter indicating 'amount'");
 		}
 					
 		// Step 5: Do work that needs doing
@@ -76,26 +92,26 @@ public class BetCommand extends BlackjackCommand {
 		// If we couldnt' parse out a number, that's a syntax error
 		if( desiredBet == null ) {
 			return new ResponseCode( ResponseCode.CODE.SYNTAX_ERROR ,
-					"Must include a single numeric parameter indicating 'amount'").toString();
+					"Must include a single numeric parameter indicating 'amount'");
 		}
 		
 		//5.1 Error: Funds are insufficient
 		int balance = protocol.getUser().getUserMetadata().getBalance();
 		if(desiredBet > balance) {
 			return new ResponseCode( ResponseCode.CODE.INVALID_BET_TOO_POOR,
-					" Funds in balance insufficient").toString();
+					" Funds in balance insufficient");
 		}
 		
 		//5.2 Error Bet lower than MINBET 
 		if(desiredBet < protocol.getUser().getGame().getMetadata().getMinBet()) {
 			return new ResponseCode( ResponseCode.CODE.INVALID_BET_OUTSIDE_RANGE ,
-					" Bet less than minimum bet allowed").toString();	
+					" Bet less than minimum bet allowed");	
 		}
 					
 		//5.3 Error Bet higher than MAXBET
 		if(desiredBet > protocol.getUser().getGame().getMetadata().getMaxBet()) {
 			return new ResponseCode( ResponseCode.CODE.INVALID_BET_OUTSIDE_RANGE ,
-					" Bet is over maximum bet allowed").toString();	
+					" Bet is over maximum bet allowed");	
 		}
 					
 		// STATEFUL: 5.4 Success! Need to store the amount on the protocol and update the tsate
@@ -105,9 +121,15 @@ public class BetCommand extends BlackjackCommand {
 		// Success! Now handle all the odds and ends that have to be done when a bet is placed
 		protocol.getUser().handlePlacedBet( desiredBet );
 		
+		// CONCURRENT: The game may be waiting on this bet to start the round
+		GameState gameState = protocol.getUser().getGame().getGameState();
+		if( gameState != null ) {
+			gameState.signalPlayerAction();
+		}
+		
 		// And return a successfully response
 		return new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_BET ,
-				" Bet Command completed").toString();			
+				" Bet Command completed");			
 	}
 				
 	@Override
@@ -119,7 +141,7 @@ public class BetCommand extends BlackjackCommand {
 	public Set<STATE> getValidStates() {
 		
 		if( validStates == null ) {
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 
 			//States where Bet command is allowed
 			validStates.add(STATE.IN_SESSION_AWAITING_BETS);
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - BinaryCommand.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: This implements the BINARY command, with which a client asks to
+ * switch the connection to the compact binary framing. It only responds; the
+ * connection does the switching once the response has been queued.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.commands;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import drexel.edu.blackjack.server.BinaryCodec;
+import drexel.edu.blackjack.server.BlackjackProtocol;
+import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
+import drexel.edu.blackjack.server.ResponseCode;
+
+/**
+ * <b>STATEFUL:</b> Implements the logic needed to respond to
+ * the BINARY command from a client. It can only be used before
+ * joining a game session, so it shows up in CAPABILITIES right
+ * after connecting, which is how a client knows it can ask.
+ * Everything after the response, in both directions, is framed
+ * as described in {@link BinaryCodec}. Asking again once the
+ * connection has switched gets the same response, and changes
+ * nothing.
+ *
+ * @author Jennifer
+ */
+public class BinaryCommand extends BlackjackCommand {
+
+	public static final String COMMAND_WORD = "BINARY";
+
+	// STATEFUL: Will hold valid states that this command operates in
+	private Set<STATE> validStates = null;
+
+	/**
+	 * Process the BINARY command.
+	 *
+	 * @param protocol The protocol connection that made that
+	 * command
+	 * @param cm Information derived from the client associated
+	 * with the user, what it sent in to the server
+	 * @return The response that should be sent back to the client
+	 * as the response.
+	 */
+	@Override
+	public ResponseCode execute( BlackjackProtocol protocol, CommandMetadata cm ) {
+
+		//Step 0: if either object is null, there is an internal error
+		if( protocol == null || cm == null) {
+			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
+					"BinaryCommand.processCommand() received null arguments");
+		}
+
+		//STATEFUL: Steps 1-2: Return error if not in a valid state
+		if( !getValidStates().contains( protocol.getState() )) {
+			return new ResponseCode( ResponseCode.CODE.UNSUPPORTED_COMMAND,
+					"BinaryCommand.processCommand() Binary framing can't be started in a game session");
+		}
+
+		//Step 3-4: check syntax, there are no parameters
+		if( cm.getParameters() != null && cm.getParameters().size() > 0 ) {
+			return new ResponseCode( ResponseCode.CODE.SYNTAX_ERROR,
+					"BinaryCommand.processCommand() BINARY takes no parameters");
+		}
+
+		//Step 5-7: the connection switches after queuing the response
+		protocol.requestBinaryFraming();
+
+		//Step 8: Format user response code
+		return new ResponseCode( ResponseCode.CODE.SWITCHING_TO_BINARY );
+	}
+
+	@Override
+	public String getCommandWord() {
+		return COMMAND_WORD;
+	}
+
+	@Override
+	public Set<STATE> getValidStates() {
+		//Keep this around so we only create once
+		if( validStates == null ) {
+			validStates = EnumSet.noneOf( STATE.class );
+
+			// Any connected state before joining a session
+			validStates.add( STATE.WAITING_FOR_USERNAME );
+			validStates.add( STATE.WAITING_FOR_PASSWORD );
+			validStates.add( STATE.NOT_IN_SESSION );
+		}
+		return validStates;
+	}
+
+	@Override
+	public List<String> getRequiredParameterNames() {
+		//BINARY has no required parameters
+		return null;
+	}
+}
@@ -17,8 +17,11 @@ package drexel.edu.blackjack.server.commands;
 
 import java.util.Set;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import drexel.edu.blackjack.server.BlackjackProtocol;
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.server.game.Game;
 
 /**
  * <b>STATEFUL:</b> Commands that the server interprets will implement this class.
@@ -61,26 +64,75 @@ public abstract class BlackjackCommand {
 	 * method on BlackjackProtocol (e.g., if you were in the
 	 * WAITING_FOR_USERNAME state update the state to
 	 * WAITING_FOR_PASSWORD)
-	 * <LI>8. Generate the proper response code sting and return
+	 * <LI>8. Generate the proper response code and return
 	 * it
 	 * </UL>
+	 * <P>
+	 * The response is returned as a {@link ResponseCode}, not a
+	 * string, so the connection can send its encoded form and
+	 * check {@link ResponseCode#requiresDisconnect()} without
+	 * parsing it back out of text. Usually a new one is returned
+	 * each time. A response that never changes can instead be
+	 * made once and {@link ResponseCode#share() shared}; the
+	 * protocol copies a shared one before tagging it.
 	 * 
 	 * @param protocol The protocol connection that made that
 	 * command. From there the user, state, and all sorts of
 	 * good information can be found.
 	 * @param cm Information derived from the client associated
 	 * with the user, what it sent in to the server
-	 * @return The string that should be sent back to the client
-	 * as the response. Potentially multi-line.
+	 * @return The response that should be sent back to the client.
+	 * Potentially multi-line.
 	 */
-	public String processCommand( BlackjackProtocol protocol, CommandMetadata cm ) {
+	public ResponseCode execute( BlackjackProtocol protocol, CommandMetadata cm ) {
 		
 		// The default implementation should be overridden!
-		StringBuilder str = new StringBuilder( "500 Someone needs to implement the " );
+		StringBuilder str = new StringBuilder( "Someone needs to implement the " );
 		str.append( this.getClass().toString() );
 		str.append( " class." );
-		return str.toString();
+		return new ResponseCode( ResponseCode.CODE.UNKNOWN_COMMAND, str.toString() );
+		
+	}
+	
+	/**
+	 * Processes the command, as {@link #execute(BlackjackProtocol, CommandMetadata)}
+	 * does, for callers that want the response as a string.
+	 * 
+	 * @param protocol The protocol connection that made that
+	 * command
+	 * @param cm Information derived from the client associated
+	 * with the user, what it sent in to the server
+	 * @return The string that should be sent back to the client
+	 * as the response. Potentially multi-line.
+	 */
+	public final String processCommand( BlackjackProtocol protocol, CommandMetadata cm ) {
+		return execute( protocol, cm ).toString();
+	}
+
+	/**
+	 * <b>CONCURRENT:</b> Commands that look at or change anything
+	 * at the user's table -- bets, hands, the shoe -- do that work
+	 * through here. It's handed to the game's owner, which does it
+	 * in between the game's own steps, and the response comes back
+	 * when it's done. If the user isn't at a table, it's just done.
+	 * 
+	 * @param protocol The protocol connection that made the command
+	 * @param work The work, which returns the response
+	 * @return The response to send back
+	 */
+	protected ResponseCode atTable( BlackjackProtocol protocol, Callable<ResponseCode> work ) {
+		
+		Game game = (protocol == null || protocol.getUser() == null ? null : protocol.getUser().getGame());
+		if( game != null ) {
+			return game.handle( work );
+		}
 		
+		try {
+			return work.call();
+		} catch( Exception e ) {
+			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
+					this.getClass().getSimpleName() + " failed: " + e );
+		}
 	}
 
 	/**
@@ -14,7 +14,9 @@
 package drexel.edu.blackjack.server.commands;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
 import java.util.Set;
 
 import drexel.edu.blackjack.server.BlackjackProtocol;
@@ -24,11 +26,11 @@ import drexel.edu.blackjack.server.ResponseCode;
 /**
  * <b>STATEFUL:</b> Implements the logic needed to respond to 
  * the CAPABILITIES command from a client. This is done by
- * getting a list of commands that are valid regardless of
- * protocol state, then filtering out the ones that can't
- * be used in this state. The remaining set are returned in
- * the appropriate multiline message format as specified in
- * the protocol.
+ * getting the commands that can be used in this state from
+ * the protocol's command table, and returning them in the
+ * appropriate multiline message format as specified in
+ * the protocol. As the list only depends on the state, the
+ * response for each state is made once and shared.
  * 
  * @author Constantine
  */
@@ -36,8 +38,18 @@ public class CapabilitiesCommand extends BlackjackCommand {
 
 	public static final String COMMAND_WORD = "CAPABILITIES";
 	
+	/**
+	 * Listed after the commands to advertise that tagged,
+	 * pipelined commands are supported. A client that doesn't
+	 * know about it can just ignore the line.
+	 */
+	public static final String PIPELINING = "PIPELINING";
+	
 	// STATEFUL: Will hold valid states that this command operates in
 	Set<STATE> validStates = null;
+	
+	// STATEFUL: The response for each state, made the first time it's needed
+	private volatile Map<STATE,ResponseCode> responses = null;
 		
     /**
      * Process the CAPABILITIES command.
@@ -47,50 +59,31 @@ public class CapabilitiesCommand extends BlackjackCommand {
 	 * good information can be found.
 	 * @param cm Information derived from the client associated
 	 * with the user, what it sent in to the server
-	 * @return The string that should be sent back to the client
+	 * @return The response that should be sent back to the client
 	 * as the response. 
 	 */
-	public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+	public ResponseCode execute(BlackjackProtocol protocol, CommandMetadata cm) {
 		
 		//Step 0: If either object is null, it's an internal error
 		if (protocol == null || cm == null) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-				"CapabilitiesCommand.processCommand() received null arguments").toString();
+				"CapabilitiesCommand.processCommand() received null arguments");
 		}
 
-		// STATEFUL: 1. Get set of all valid commands, in any state
-		Set<BlackjackCommand> commands = protocol.getAllValidCommands();
-
-		// STATEFUL: 2. Get the current state
-		STATE currentState = protocol.getState();
+		// STATEFUL: The list only depends on the state, so it's worked out
+		// once per state, from the protocol's command table, and shared
+		Map<STATE,ResponseCode> responses = this.responses;
+		if( responses == null ) {
+			responses = buildResponses( protocol.getCommandTable() );
+			this.responses = responses;
+		}
 		
-		// Build up capabilities list here
-		StringBuilder capabilities = new StringBuilder();
-
-		for( BlackjackCommand command : commands ) {
-			
-			//STATEFUL: Get the states in which command is valid
-			Set<STATE> stateSet = command.getValidStates();
-			
-			// STATEFUL: Only report on those valid in the current state 
-			if(stateSet.contains(currentState)){
-
-				//append to string builder:the command word, a space, and any parameters. 
-				StringBuilder str = new StringBuilder(command.getCommandWord());
-				if( command.getRequiredParameterNames() != null ) {
-					for( String parameter : command.getRequiredParameterNames() ) {
-						str.append( " " );
-						str.append( parameter );
-					}
-				}
-				str.append( "\n" );
-				capabilities.append( str.toString() );
-			}			
+		ResponseCode response = responses.get( protocol.getState() );
+		if( response == null ) {
+			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
+				"CapabilitiesCommand.processCommand() has no capabilities for the state");
 		}
-			
-		return 	new ResponseCode( ResponseCode.CODE.CAPABILITIES_FOLLOW,
-				"CapabilitiesCommand.processCommand() List of capabilities allowed in state: " +
-				"\n" + capabilities.toString()).toString();	
+		return response;
 	}
 
 	@Override
@@ -100,17 +93,20 @@ public class CapabilitiesCommand extends BlackjackCommand {
 
 	@Override
 	public Set<STATE> getValidStates() {
-		validStates = new HashSet<STATE>();
+		//Keep this around so we only create once
+		if( validStates == null ) {
+			validStates = EnumSet.noneOf( STATE.class );
 
-		//States where capabilities command is allowed
-		validStates.add(STATE.WAITING_FOR_USERNAME);
-		validStates.add(STATE.WAITING_FOR_PASSWORD);
-		validStates.add(STATE.NOT_IN_SESSION);
-		validStates.add(STATE.IN_SESSION_BEFORE_YOUR_TURN);
-		validStates.add(STATE.IN_SESSION_AND_YOUR_TURN);
-		validStates.add(STATE.IN_SESSION_AWAITING_BETS);
-		validStates.add(STATE.IN_SESSION_AFTER_YOUR_TURN);
-		validStates.add(STATE.IN_SESSION_AS_OBSERVER);
+			//States where capabilities command is allowed
+			validStates.add(STATE.WAITING_FOR_USERNAME);
+			validStates.add(STATE.WAITING_FOR_PASSWORD);
+			validStates.add(STATE.NOT_IN_SESSION);
+			validStates.add(STATE.IN_SESSION_BEFORE_YOUR_TURN);
+			validStates.add(STATE.IN_SESSION_AND_YOUR_TURN);
+			validStates.add(STATE.IN_SESSION_AWAITING_BETS);
+			validStates.add(STATE.IN_SESSION_AFTER_YOUR_TURN);
+			validStates.add(STATE.IN_SESSION_AS_OBSERVER);
+		}
 
 		return validStates;
 	}
@@ -130,6 +126,32 @@ public class CapabilitiesCommand extends BlackjackCommand {
 		
 		return null;
 	}
+	
+	/**
+	 * Builds the response for each state. These are shared, so
+	 * the protocol has to copy one before it can tag it.
+	 * 
+	 * @param table The commands the protocol knows about
+	 * @return The response to send, for each state
+	 */
+	private Map<STATE,ResponseCode> buildResponses( CommandTable table ) {
+		
+		Map<STATE,ResponseCode> map = new EnumMap<STATE,ResponseCode>( STATE.class );
+		for( STATE state : STATE.values() ) {
+			
+			// STATEFUL: The commands valid in the state, then the protocol 
+			// extensions, which are the same in any state
+			StringBuilder capabilities = new StringBuilder();
+			capabilities.append( table.getCapabilities( state ) );
+			capabilities.append( PIPELINING );
+			capabilities.append( "\n" );
+			
+			map.put( state, new ResponseCode( ResponseCode.CODE.CAPABILITIES_FOLLOW,
+					"CapabilitiesCommand.processCommand() List of capabilities allowed in state: " +
+					"\n" + capabilities.toString()).share() );
+		}
+		return map;
+	}
 }
 
 
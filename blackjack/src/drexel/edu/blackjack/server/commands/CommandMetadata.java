@@ -16,7 +16,6 @@ package drexel.edu.blackjack.server.commands;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.StringTokenizer;
 
 /**
  * Command metadata expresses the client input, which
@@ -42,32 +41,56 @@ public class CommandMetadata {
 	// 'token' being a string in the list. For example, if the command string
 	// was 'BET 50' then the parameters would be a single string of "50"
 	private List<String> parameters = null;
+	
+	// If the client tagged the command, so it can match it to the response,
+	// the tag, without its prefix
+	private String tag = null;
 
 	/******************************************************************
 	 * Constructor
 	 *****************************************************************/
 
+	/**
+	 * Instantiates empty metadata, to be filled in with
+	 * the setters. Used when the command didn't arrive
+	 * as a line of text.
+	 */
+	public CommandMetadata() {
+		parameters = new ArrayList<String>();
+	}
+
 	/**
 	 * Instantiates the metadata based off the command
-	 * string received from the client
+	 * string received from the client. The line is scanned
+	 * directly, so only the tokens themselves become strings.
 	 * 
-	 * @param commandString What the client sent, terminated
-	 * with the CRLF
+	 * @param commandString What the client sent, without
+	 * the line delimiter. It can be a reusable view of the
+	 * line, as nothing refers to it after this returns.
 	 */
-	public CommandMetadata( String commandString ) {
+	public CommandMetadata( CharSequence commandString ) {
 		
 		// So it's not null
 		parameters = new ArrayList<String>();
+		parse( commandString, 0 );
+	}
+
+	/**
+	 * Instantiates the metadata for a command whose word has
+	 * already been found in the line, so only the parameters
+	 * after it need to be parsed.
+	 * 
+	 * @param commandWord The command word
+	 * @param commandString What the client sent, without the
+	 * line delimiter. It can be a reusable view of the line.
+	 * @param parametersStart Where in the line the parameters
+	 * start, which is just past the command word
+	 */
+	public CommandMetadata( String commandWord, CharSequence commandString, int parametersStart ) {
 		
-		// Use this to extract whitespace-delineated tokens
-		StringTokenizer strtok = new StringTokenizer(commandString);
-		if( strtok.hasMoreTokens() ) {
-			commandWord = strtok.nextToken();	// command word is always first
-		}
-		// See if any parameters are left
-		while( strtok.hasMoreTokens() ) {
-			parameters.add( strtok.nextToken() );
-		}
+		this.commandWord = commandWord;
+		parameters = new ArrayList<String>();
+		parse( commandString, parametersStart );
 	}
 
 	/******************************************************************
@@ -102,6 +125,20 @@ public class CommandMetadata {
 		this.parameters = parameters;
 	}
 
+	/**
+	 * @return the tag, or null if the command wasn't tagged
+	 */
+	public String getTag() {
+		return tag;
+	}
+
+	/**
+	 * @param tag the tag to set, or null for none
+	 */
+	public void setTag(String tag) {
+		this.tag = tag;
+	}
+
 	/**
 	 * @param parameter the parameter to add
 	 */
@@ -112,4 +149,51 @@ public class CommandMetadata {
 		
 		parameters.add( parameter );
 	}
+
+	/******************************************************************
+	 * Private methods
+	 *****************************************************************/
+
+	/**
+	 * Extracts whitespace-delineated tokens, treating the same
+	 * characters as whitespace as a StringTokenizer would. The
+	 * first becomes the command word, if there isn't one yet,
+	 * and the rest are parameters.
+	 * 
+	 * @param commandString The line
+	 * @param from Where in it to start
+	 */
+	private void parse( CharSequence commandString, int from ) {
+		
+		int length = commandString.length();
+		int index = from;
+		while( index < length ) {
+			while( index < length && isWhitespace( commandString.charAt(index) ) ) {
+				index++;
+			}
+			int start = index;
+			while( index < length && !isWhitespace( commandString.charAt(index) ) ) {
+				index++;
+			}
+			if( index > start ) {
+				String token = commandString.subSequence( start, index ).toString();
+				if( commandWord == null ) {
+					commandWord = token;	// command word is always first
+				} else {
+					parameters.add( token );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Does this character separate tokens? Matches the default
+	 * delimiters of a StringTokenizer.
+	 * 
+	 * @param ch The character
+	 * @return true if it's whitespace
+	 */
+	public static boolean isWhitespace( char ch ) {
+		return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r' || ch == '\f';
+	}
 }
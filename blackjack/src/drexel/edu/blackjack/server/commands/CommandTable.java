@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - CommandTable.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Holds the commands that the server knows about, as read in from
+ * the commands.txt file, so a command word can be matched to its command
+ * without making any new objects, and so what's valid in each protocol state
+ * is only worked out once.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.commands;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
+
+/**
+ * <b>STATEFUL:</b> A table of commands, built once from the
+ * commands that were registered, and never changed after.
+ * <P>
+ * Command words are matched case-insensitively straight out
+ * of the line they arrived in. The words are hashed into a
+ * table that's sized, and seeded, so that no two of them
+ * share a slot. A lookup hashes the word, checks the one
+ * slot it lands in, and compares characters. Nothing is
+ * allocated, so junk from a client is rejected as cheaply
+ * as possible.
+ * <P>
+ * For each {@link STATE}, the table also holds the commands
+ * valid in that state, and the lines that the CAPABILITIES
+ * command lists for it.
+ * <P>
+ * <b>CONCURRENT:</b> Nothing changes after construction, so
+ * any number of connections can use one table at once.
+ *
+ * @author Jennifer
+ */
+public class CommandTable {
+
+	/**********************************************************************************
+	 * Local variables here
+	 *********************************************************************************/
+
+	// How many seeds to try at one size, before trying a bigger table
+	private static final int SEEDS_PER_SIZE		= 256;
+
+	// The commands, in the order they were registered
+	private final List<BlackjackCommand> commands;
+
+	// The hashed table, where each command is in the slot its word hashes to
+	private final BlackjackCommand[] slots;
+	private final String[] words;
+	private final int mask;
+	private final int seed;
+
+	// No word longer than this can be a command
+	private final int longestWord;
+
+	// STATEFUL: What's valid in each state
+	private final Map<STATE,List<BlackjackCommand>> commandsByState;
+	private final Map<STATE,String> capabilitiesByState;
+
+	/**********************************************************************************
+	 * Constructor here
+	 *********************************************************************************/
+
+	/**
+	 * Builds the table. Commands without a command word (the
+	 * one for unknown commands) are left out, as are any whose
+	 * word is already taken.
+	 *
+	 * @param registered The commands, in the order they were
+	 * registered
+	 */
+	public CommandTable( Collection<BlackjackCommand> registered ) {
+
+		// Keep the ones with a word, first one wins
+		List<BlackjackCommand> list = new ArrayList<BlackjackCommand>();
+		List<String> wordList = new ArrayList<String>();
+		int longest = 0;
+		for( BlackjackCommand command : registered ) {
+			String word = command.getCommandWord();
+			if( word != null && !containsIgnoreCase( wordList, word ) ) {
+				list.add( command );
+				wordList.add( word );
+				longest = Math.max( longest, word.length() );
+			}
+		}
+		commands = Collections.unmodifiableList( list );
+		longestWord = longest;
+
+		// Find a size, and a seed, where every word gets its own slot
+		int size = Integer.highestOneBit( Math.max( 1, list.size() * 2 - 1 ) ) << 1;
+		BlackjackCommand[] table = null;
+		int foundSeed = 0;
+		while( table == null ) {
+			for( int candidate = 1; candidate <= SEEDS_PER_SIZE && table == null; candidate++ ) {
+				table = place( list, size, candidate );
+				foundSeed = candidate;
+			}
+			if( table == null ) {
+				size <<= 1;
+			}
+		}
+		slots = table;
+		mask = size - 1;
+		seed = foundSeed;
+		words = new String[size];
+		for( int i = 0; i < size; i++ ) {
+			if( slots[i] != null ) {
+				words[i] = slots[i].getCommandWord();
+			}
+		}
+
+		// STATEFUL: Work out what's valid in each state, just the once
+		commandsByState = new EnumMap<STATE,List<BlackjackCommand>>( STATE.class );
+		capabilitiesByState = new EnumMap<STATE,String>( STATE.class );
+		for( STATE state : STATE.values() ) {
+			List<BlackjackCommand> valid = new ArrayList<BlackjackCommand>();
+			StringBuilder capabilities = new StringBuilder();
+			for( BlackjackCommand command : list ) {
+				if( command.getValidStates() != null && command.getValidStates().contains( state ) ) {
+					valid.add( command );
+					capabilities.append( command.getCommandWord() );
+					if( command.getRequiredParameterNames() != null ) {
+						for( String parameter : command.getRequiredParameterNames() ) {
+							capabilities.append( " " );
+							capabilities.append( parameter );
+						}
+					}
+					capabilities.append( "\n" );
+				}
+			}
+			commandsByState.put( state, Collections.unmodifiableList( valid ) );
+			capabilitiesByState.put( state, capabilities.toString() );
+		}
+	}
+
+	/**********************************************************************************
+	 * Public methods here
+	 *********************************************************************************/
+
+	/**
+	 * Finds the command for a word, ignoring case. Nothing is
+	 * allocated, whether or not the word is found.
+	 *
+	 * @param text Where the word is
+	 * @param start Where in the text it starts
+	 * @param end Where in the text it ends
+	 * @return The command, or null if the word isn't one
+	 */
+	public BlackjackCommand lookup( CharSequence text, int start, int end ) {
+
+		int length = end - start;
+		if( length <= 0 || length > longestWord ) {
+			return null;
+		}
+
+		int slot = hash( text, start, end, seed ) & mask;
+		String word = words[slot];
+		if( word == null || word.length() != length ) {
+			return null;
+		}
+		for( int i = 0; i < length; i++ ) {
+			if( fold( text.charAt( start + i ) ) != fold( word.charAt( i ) ) ) {
+				return null;
+			}
+		}
+		return slots[slot];
+	}
+
+	/**
+	 * Finds the command for a word, ignoring case.
+	 *
+	 * @param word The word, which can be null
+	 * @return The command, or null if the word isn't one
+	 */
+	public BlackjackCommand lookup( String word ) {
+		return word == null ? null : lookup( word, 0, word.length() );
+	}
+
+	/**
+	 * @return All the commands, in the order they were registered
+	 */
+	public List<BlackjackCommand> getCommands() {
+		return commands;
+	}
+
+	/**
+	 * STATEFUL: Which commands can be used in a state?
+	 *
+	 * @param state The state
+	 * @return The commands, in the order they were registered
+	 */
+	public List<BlackjackCommand> getCommands( STATE state ) {
+		return commandsByState.get( state );
+	}
+
+	/**
+	 * STATEFUL: Gets what the CAPABILITIES command lists for
+	 * a state: a line for each command valid in it, with its
+	 * word and the names of its parameters.
+	 *
+	 * @param state The state
+	 * @return The lines, each ending in a newline
+	 */
+	public String getCapabilities( STATE state ) {
+		return capabilitiesByState.get( state );
+	}
+
+	/**********************************************************************************
+	 * Private methods here
+	 *********************************************************************************/
+
+	/**
+	 * Tries to put every command in its own slot.
+	 *
+	 * @return The slots, or null if two words collided
+	 */
+	private static BlackjackCommand[] place( List<BlackjackCommand> list, int size, int seed ) {
+		BlackjackCommand[] table = new BlackjackCommand[size];
+		for( BlackjackCommand command : list ) {
+			String word = command.getCommandWord();
+			int slot = hash( word, 0, word.length(), seed ) & (size - 1);
+			if( table[slot] != null ) {
+				return null;
+			}
+			table[slot] = command;
+		}
+		return table;
+	}
+
+	/**
+	 * Hashes a word, ignoring case.
+	 */
+	private static int hash( CharSequence text, int start, int end, int seed ) {
+		int h = seed;
+		for( int i = start; i < end; i++ ) {
+			h = h * 31 + fold( text.charAt( i ) );
+		}
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Folds ASCII letters to upper case; command words are ASCII.
+	 */
+	private static char fold( char ch ) {
+		return ch >= 'a' && ch <= 'z' ? (char)(ch - ('a' - 'A')) : ch;
+	}
+
+	/**
+	 * Is the word already in the list, ignoring case?
+	 */
+	private static boolean containsIgnoreCase( List<String> list, String word ) {
+		for( String other : list ) {
+			if( other.equalsIgnoreCase( word ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -14,9 +14,10 @@
 package drexel.edu.blackjack.server.commands;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import drexel.edu.blackjack.server.BlackjackProtocol;
 import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
@@ -42,23 +43,37 @@ public class GameStatusCommand extends BlackjackCommand {
 	private Set<STATE> validStates = null;
 
 	@Override
-	public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+	public ResponseCode execute(final BlackjackProtocol protocol, final CommandMetadata cm) {
+		
+		// CONCURRENT: The status is read at the table, so it's never caught halfway through a change
+		return atTable( protocol, new Callable<ResponseCode>() {
+			@Override
+			public ResponseCode call() {
+				return executeAtTable( protocol, cm );
+			}
+		} );
+	}
+	
+	/**
+	 * Does the work of the command, as the table's owner.
+	 */
+	private ResponseCode executeAtTable(BlackjackProtocol protocol, CommandMetadata cm) {
 		
 		//Step 0: If either object is null, it's an internal error
 		if (protocol == null || cm == null) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-				"ListgamesCommand.processCommand() received null arguments").toString();
+				"ListgamesCommand.processCommand() received null arguments");
 		}
 		
 		// STATEFUL: Steps 1-2: Return an error in not in a valid state
 		if( !getValidStates().contains( protocol.getState()) ) {
-			return new ResponseCode( ResponseCode.CODE.NOT_EXPECTING_GAMESTATUS ).toString();
+			return new ResponseCode( ResponseCode.CODE.NOT_EXPECTING_GAMESTATUS );
 		}
 		
 		// Step 3-4: Check syntax; needs single parameter for session id
 		if ((cm.getParameters() == null || (cm.getParameters().size() != 1 )) )  {		
 			return new ResponseCode( ResponseCode.CODE.SYNTAX_ERROR ,
-					"Must include a single parameter indicating 'sessionid'").toString();
+					"Must include a single parameter indicating 'sessionid'");
 		}
 		String requestedSessionId = cm.getParameters().get(0);
 		
@@ -68,12 +83,12 @@ public class GameStatusCommand extends BlackjackCommand {
 		User user = protocol.getUser();
 		if( user == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-					"Inside GameStatusCommand.processCommand() the user was null." ).toString();
+					"Inside GameStatusCommand.processCommand() the user was null." );
 		}
 		if( user.getGame() == null || user.getGame().getId() == null ||
 				!user.getGame().getId().equals(requestedSessionId) ) {
 			return new ResponseCode( ResponseCode.CODE.GAMESTATUS_DOES_NOT_EXIST,
-					"Either that sessionid does not exist, or the user is not in the session." ).toString();
+					"Either that sessionid does not exist, or the user is not in the session." );
 		}
 
 		// Step 6: Save out state variables? There are none
@@ -83,7 +98,7 @@ public class GameStatusCommand extends BlackjackCommand {
 		// because this is a multiline response that must end with an extra
 		// newline.
 		ResponseCode code = new ResponseCode( ResponseCode.CODE.GAME_STATUS, user.getGame().getGameStatus( user ) );
-		return code.toString();
+		return code;
 	}
 
 	@Override
@@ -95,7 +110,7 @@ public class GameStatusCommand extends BlackjackCommand {
 	public Set<STATE> getValidStates() {
 		if( validStates == null ) {
 			// Valid if authorized and connected and in a game session
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 			validStates.add( STATE.IN_SESSION_AFTER_YOUR_TURN );
 			validStates.add( STATE.IN_SESSION_AND_YOUR_TURN );
 			validStates.add( STATE.IN_SESSION_AS_OBSERVER );
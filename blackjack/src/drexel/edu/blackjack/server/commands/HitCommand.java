@@ -12,12 +12,13 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server.commands;
 
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import drexel.edu.blackjack.cards.DealerShoeInterface;
-import drexel.edu.blackjack.cards.DealtCard;
+import drexel.edu.blackjack.cards.Card;
 import drexel.edu.blackjack.server.BlackjackProtocol;
 import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
 import drexel.edu.blackjack.server.game.GameState;
@@ -40,32 +41,43 @@ public class HitCommand extends BlackjackCommand {
 	// STATEFUL: Set of states in which th command is valid
 	private Set<STATE> validStates = null;
 
-	public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+	public ResponseCode execute(final BlackjackProtocol protocol, final CommandMetadata cm) {
+		
+		// CONCURRENT: The card comes from the table's shoe, so it's the table that deals it
+		return atTable( protocol, new Callable<ResponseCode>() {
+			@Override
+			public ResponseCode call() {
+				return executeAtTable( protocol, cm );
+			}
+		} );
+	}
+	
+	/**
+	 * Does the work of the command, as the table's owner.
+	 */
+	private ResponseCode executeAtTable(BlackjackProtocol protocol, CommandMetadata cm) {
 		
 		if (protocol == null || cm == null) { 
-			return new ResponseCode(ResponseCode.CODE.INTERNAL_ERROR).toString();
+			return new ResponseCode(ResponseCode.CODE.INTERNAL_ERROR);
 		}
 
 		// STATEFUL: Make sure it's their turn
 		if (protocol.getState() != STATE.IN_SESSION_AND_YOUR_TURN) {
-			return new ResponseCode(ResponseCode.CODE.NOT_EXPECTING_HIT).toString();
+			return new ResponseCode(ResponseCode.CODE.NOT_EXPECTING_HIT);
 		}
 		
 		// We better have a user object
 		User user = protocol.getUser();
 		if( user == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-					"HitCommand.processCommand() had a problem getting the user object").toString();
+					"HitCommand.processCommand() had a problem getting the user object");
 		}
 		
-		// Note on the user object that they made their gameplay
-		user.setNeedsToMakeAPlay( false );
-		
 		// Better have a game state
 		GameState state = (user.getGame() == null ? null : user.getGame().getGameState());
 		if( state == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-					"HitCommand.processCommand() had a problem getting the game state object").toString();
+					"HitCommand.processCommand() had a problem getting the game state object");
 		}
 		
 		// Because we need to notify others that the player chose to hit
@@ -75,19 +87,18 @@ public class HitCommand extends BlackjackCommand {
 		DealerShoeInterface shoe =state.getDealerShoe();
 		if( shoe == null ){
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-					"HitCommand.processCommand() had a problem getting the dealer shoe").toString();
+					"HitCommand.processCommand() had a problem getting the dealer shoe");
 		}
 		
 		// And a player's hand
 		if( user.getHand() == null ){
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-					"HitCommand.processCommand() had a problem getting the user's hand").toString();
+					"HitCommand.processCommand() had a problem getting the user's hand");
 		}
 		
 		// At last! We can deal a card, set it face up, and add it to the user's hand
-		DealtCard card = shoe.dealTopCard();
-		card.changeToFaceUp();
-		user.getHand().receiveCard(card);
+		Card card = shoe.dealTopCard();
+		user.getHand().receiveCard(card, true);
 		
 		// Notify everyone about this new hand
 		state.notifyAllOfNewCards( user );
@@ -108,8 +119,14 @@ public class HitCommand extends BlackjackCommand {
 			protocol.setState( STATE.IN_SESSION_AFTER_YOUR_TURN );
 		}
 		
+		// Note on the user object that they made their gameplay. This is done
+		// last, once the hand is settled, as the game moves on the moment it's
+		// woken up and sees it.
+		user.setNeedsToMakeAPlay( false );
+		state.signalPlayerAction();
+		
 		// Finally we can return
-		return code.toString();
+		return code;
 	}
 
 	@Override
@@ -121,7 +138,7 @@ public class HitCommand extends BlackjackCommand {
 	public Set<STATE> getValidStates() {
 		// Keep this around so we only create it once
 		if( validStates == null ) {
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 			
 			// Needs to be awaiting your turn to use this command
 			validStates.add( STATE.IN_SESSION_AND_YOUR_TURN );			
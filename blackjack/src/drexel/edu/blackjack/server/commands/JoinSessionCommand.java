@@ -14,7 +14,7 @@
 package drexel.edu.blackjack.server.commands;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 
@@ -26,6 +26,7 @@ import drexel.edu.blackjack.server.ResponseCode;
 import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
 import drexel.edu.blackjack.server.game.ActiveGameCoordinator;
 import drexel.edu.blackjack.server.game.Game;
+import drexel.edu.blackjack.server.game.Seats;
 import drexel.edu.blackjack.server.game.User;
 
 /**
@@ -44,13 +45,12 @@ public class JoinSessionCommand extends BlackjackCommand {
 	private Set<STATE> validStates = null;
 
 	@Override
-	public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+	public ResponseCode execute(BlackjackProtocol protocol, CommandMetadata cm) {
 
 		// Step 0: If either object is null, it's an internal error
 		if (protocol == null || cm == null) {
 			return new ResponseCode(ResponseCode.CODE.INTERNAL_ERROR,
-					"JoinSessionCommand.processCommand() received null arguments")
-					.toString();
+					"JoinSessionCommand.processCommand() received null arguments");
 		}
 
 		// STATEFUL: Steps 1-2: Return an error in not in a valid state
@@ -61,7 +61,7 @@ public class JoinSessionCommand extends BlackjackCommand {
 		// Step 3-4: Check syntax; must have one parameter that indicates the session
 		if( cm.getParameters() == null || cm.getParameters().size() != 1 ) {
 			return new ResponseCode( ResponseCode.CODE.SYNTAX_ERROR, 
-					"Must include a single parameter indicating the session to join" ).toString();
+					"Must include a single parameter indicating the session to join" );
 		}
 
 		// Step 5: Do work that needs doing
@@ -71,16 +71,20 @@ public class JoinSessionCommand extends BlackjackCommand {
 		GameManagerInterface gameManager = FlatfileGameManager.getDefaultGameManager();
 		GameMetadata gameMetadata = gameManager.getGame( sessionName );
 		if( gameMetadata == null ) {
-			return new ResponseCode ( ResponseCode.CODE.JOIN_SESSION_DOES_NOT_EXIST ).toString();
+			return new ResponseCode ( ResponseCode.CODE.JOIN_SESSION_DOES_NOT_EXIST );
 		}
 		
-		// Next, does it have too many players?
+		// Next, does it have too many players? CONCURRENT: This holds a seat for
+		// them, so no one else can take it in the meantime
 		ActiveGameCoordinator coordinator = ActiveGameCoordinator.getDefaultActiveGameCoordinator();
 		Game game = coordinator.getGame( sessionName );
-		// If the game is actively played assume we're good to join; it's only when the game
-		// is being played that we have to check the number of players
-		if( game != null && !game.stillHasRoom() ) {
-			return new ResponseCode( ResponseCode.CODE.JOIN_SESSION_AT_MAX_PLAYERS ).toString();
+		if( game == null ) {
+			return new ResponseCode(ResponseCode.CODE.INTERNAL_ERROR,
+					"In JOIN SESSION, the game " + sessionName + " was not loaded.");
+		}
+		Seats.Reservation seat = game.reserveSeat();
+		if( seat == null ) {
+			return new ResponseCode( ResponseCode.CODE.JOIN_SESSION_AT_MAX_PLAYERS );
 		}
 		
 		// Finally, make sure that the player can cover the minimum bet
@@ -88,30 +92,36 @@ public class JoinSessionCommand extends BlackjackCommand {
 		
 		// If we don't have a user, something weird has happened
 		if( user == null || user.getUserMetadata() == null ) {
+			seat.release();
 			return new ResponseCode(ResponseCode.CODE.INTERNAL_ERROR,
-					"In JOIN SESSION, should have had a user associated with the protocol, but we didn't.")
-					.toString();
+					"In JOIN SESSION, should have had a user associated with the protocol, but we didn't.");
 		}
 		if( user.getUserMetadata().getBalance() < gameMetadata.getMinBet() ) {
-			return new ResponseCode( ResponseCode.CODE.JOIN_SESSION_TOO_POOR).toString();
+			seat.release();
+			return new ResponseCode( ResponseCode.CODE.JOIN_SESSION_TOO_POOR);
 		}
 		
-		// Finally if we get this far they can join the game! Make sure it succeeded.
-		// If it succeeded this should set the game associated with the user object, too.
-		game = coordinator.addPlayer( sessionName, user );
-		if( game == null ) {
-			return new ResponseCode(ResponseCode.CODE.INTERNAL_ERROR,
-					"In JOIN SESSION, failed to join a game we thought we could because Coordinator.addPlayer() returned null.")
-					.toString();
-		}
-
 		// Step 6: Save out state variables? There are none
 
-		// STATEFUL: Step 7: Update the change in state
+		// STATEFUL: Step 7: Update the change in state. This has to happen before
+		// they're added: if they're the first player, adding them starts the game
+		// at its table, which moves them on to IN_SESSION_AWAITING_BETS, and
+		// that mustn't be overwritten afterwards.
+		STATE previousState = protocol.getState();
 		protocol.setState( STATE.IN_SESSION_AS_OBSERVER );
 
+		// Finally if we get this far they can join the game, in the seat held for them!
+		// Make sure it succeeded. If it succeeded this should set the game associated
+		// with the user object, too.
+		game = coordinator.addPlayer( seat, game, user );
+		if( game == null ) {
+			protocol.setState( previousState );
+			return new ResponseCode(ResponseCode.CODE.INTERNAL_ERROR,
+					"In JOIN SESSION, failed to join a game we thought we could because Coordinator.addPlayer() returned null.");
+		}
+
 		// Step 8: Format the user response code
-		return new ResponseCode(ResponseCode.CODE.SUCCESSFULLY_JOINED_SESSION).toString();
+		return new ResponseCode(ResponseCode.CODE.SUCCESSFULLY_JOINED_SESSION);
 	}
 
 	/**
@@ -121,15 +131,15 @@ public class JoinSessionCommand extends BlackjackCommand {
 	 * @param protocol Associated protocol object
 	 * @return The appropriate response code to return for the invalid state passed in
 	 */
-	private String getResponseStingForInvalidState(BlackjackProtocol.STATE state) {
+	private ResponseCode getResponseStingForInvalidState(BlackjackProtocol.STATE state) {
 		
 		// One case is that they're not authenticated...
 		if( state.equals(STATE.WAITING_FOR_PASSWORD) || state.equals(STATE.WAITING_FOR_USERNAME) ) {
-			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED ).toString();
+			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED );
 		}
 		
 		// The other case is that they're already in a session, which is ever other wrong state
-		return new ResponseCode( ResponseCode.CODE.ALREADY_IN_SESSION ).toString();
+		return new ResponseCode( ResponseCode.CODE.ALREADY_IN_SESSION );
 	}
 
 	@Override
@@ -141,7 +151,7 @@ public class JoinSessionCommand extends BlackjackCommand {
 	public Set<STATE> getValidStates() {
 		if( validStates == null ) {
 			// Only valid if NOT_IN_SESSION
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 			validStates.add( STATE.NOT_IN_SESSION );
 		}
 		return validStates;
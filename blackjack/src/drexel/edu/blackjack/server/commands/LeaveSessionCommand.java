@@ -12,7 +12,7 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server.commands;
 
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 
@@ -37,12 +37,11 @@ public class LeaveSessionCommand extends BlackjackCommand {
 	// STATEFUL: Will hold valid states that this command operates in
 	private Set<STATE> validStates = null;
 
-	public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+	public ResponseCode execute(BlackjackProtocol protocol, CommandMetadata cm) {
 		// Step 0: If either object is null, it's an internal error
 		if (protocol == null || cm == null) {
 			return new ResponseCode(ResponseCode.CODE.INTERNAL_ERROR,
-					"JoinSessionCommand.processCommand() received null arguments")
-					.toString();
+					"JoinSessionCommand.processCommand() received null arguments");
 		}
 
 		// STATEFUL: Steps 1-2: Return an error in not in a valid state
@@ -53,7 +52,7 @@ public class LeaveSessionCommand extends BlackjackCommand {
 		// Step 3-4: Check syntax; must have 0 parameters
 		if( cm.getParameters() != null && cm.getParameters().size() > 0 ) {
 			return new ResponseCode( ResponseCode.CODE.SYNTAX_ERROR, 
-					"The LEAVESESSION command requires no parameters." ).toString();
+					"The LEAVESESSION command requires no parameters." );
 		}
 
 		// Step 5: Do work that needs doing
@@ -63,12 +62,12 @@ public class LeaveSessionCommand extends BlackjackCommand {
 		User user = protocol.getUser();
 		if( user == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR, 
-					"In the LEAVESESSION command, the user was null." ).toString();
+					"In the LEAVESESSION command, the user was null." );
 		}
 		Game game = user.getGame();
 		if( game == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR, 
-					"In the LEAVESESSION command, the game was null." ).toString();
+					"In the LEAVESESSION command, the game was null." );
 		}
 		
 		// There are a few separate response codes that can get returned, based
@@ -86,7 +85,7 @@ public class LeaveSessionCommand extends BlackjackCommand {
 			code = new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
 					"game.removePlayer() returned a null in LeaveSessionCommand.processCommand()" );
 		}
-		return code.toString();
+		return code;
 	}
 
 	/**
@@ -96,15 +95,15 @@ public class LeaveSessionCommand extends BlackjackCommand {
 	 * @param protocol The associated protocol object
 	 * @return The response code to return for the invalid state passed in
 	 */
-	private String getResponseStingForInvalidState(BlackjackProtocol.STATE state) {
+	private ResponseCode getResponseStingForInvalidState(BlackjackProtocol.STATE state) {
 		
 		// One case is that they're not authenticated...
 		if( state.equals(STATE.WAITING_FOR_PASSWORD) || state.equals(STATE.WAITING_FOR_USERNAME) ) {
-			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED ).toString();
+			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED );
 		}
 		
 		// The other case is that they're not in a session
-		return new ResponseCode( ResponseCode.CODE.USER_NOT_IN_GAME_ERROR).toString();
+		return new ResponseCode( ResponseCode.CODE.USER_NOT_IN_GAME_ERROR);
 	}
 
 	@Override
@@ -116,7 +115,7 @@ public class LeaveSessionCommand extends BlackjackCommand {
 	public Set<STATE> getValidStates() {
 		
 		if( validStates == null ) {
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 			// Available in any of the IN_SESSION states
 			validStates.add( STATE.IN_SESSION_AFTER_YOUR_TURN );
 			validStates.add( STATE.IN_SESSION_AND_YOUR_TURN );
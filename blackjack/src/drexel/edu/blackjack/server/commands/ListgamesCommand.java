@@ -14,7 +14,7 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server.commands;
 
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 
@@ -40,16 +40,16 @@ public class ListgamesCommand extends BlackjackCommand {
 	// STATEFUL: Will hold valid states that this command operates in
 	private Set<STATE> validStates = null;
 
-	public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+	public ResponseCode execute(BlackjackProtocol protocol, CommandMetadata cm) {
 		//Step 0: If either object is null, it's an internal error
 		if (protocol == null || cm == null) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-				"ListgamesCommand.processCommand() received null arguments").toString();
+				"ListgamesCommand.processCommand() received null arguments");
 		}
 		
 		// STATEFUL: Steps 1-2: Return an error in not in a valid state
 		if( !getValidStates().contains( protocol.getState()) ) {
-			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED ).toString();
+			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED );
 		}
 		
 		// Step 3-4: Check syntax; irrelevant as no parameters
@@ -72,7 +72,7 @@ public class ListgamesCommand extends BlackjackCommand {
 		
 		// Step 8: Format the user response code
 		ResponseCode code = new ResponseCode( ResponseCode.CODE.GAMES_FOLLOW, str.toString() );
-		return code.toString();
+		return code;
 	}
 
 	@Override
@@ -84,7 +84,7 @@ public class ListgamesCommand extends BlackjackCommand {
 	public Set<STATE> getValidStates() {
 		if( validStates == null ) {
 			// Valid if authorized and connected
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 			validStates.add( STATE.IN_SESSION_AFTER_YOUR_TURN );
 			validStates.add( STATE.IN_SESSION_AND_YOUR_TURN );
 			validStates.add( STATE.IN_SESSION_AS_OBSERVER );
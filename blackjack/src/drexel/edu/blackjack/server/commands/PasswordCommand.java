@@ -16,7 +16,7 @@
 package drexel.edu.blackjack.server.commands;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 
@@ -59,22 +59,22 @@ public class PasswordCommand extends BlackjackCommand {
 	 * good information can be found.
 	 * @param cm Information derived from the client associated
 	 * with the user, what it sent in to the server
-	 * @return The string that should be sent back to the client
+	 * @return The response that should be sent back to the client
 	 * as the response.
 	 */
-	public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+	public ResponseCode execute(BlackjackProtocol protocol, CommandMetadata cm) {
 
 		/** Step 0: Error 1: If either object is null, it's an internal error */
 		if (protocol == null || cm == null) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-					"PasswordCommand.processCommand() received null arguments").toString();	
+					"PasswordCommand.processCommand() received null arguments");	
 		}
 
 		/** STATEFUL: Step 1-2: Error 2: Return an error if not in valid state for PASSWORD command */
 		if(!getValidStates().contains( protocol.getState()) ) {
 			
 			return new ResponseCode( ResponseCode.CODE.NOT_EXPECTING_PASSWORD,
-					"PasswordCommand.processCommand() received out-of-context command").toString();
+					"PasswordCommand.processCommand() received out-of-context command");
 		}
 		
 
@@ -83,7 +83,7 @@ public class PasswordCommand extends BlackjackCommand {
 		if ((cm.getParameters() == null) || cm.getParameters().size() != 1)  {
 			
 			return new ResponseCode( ResponseCode.CODE.SYNTAX_ERROR,
-					"Must include a single parameter indicating password").toString();
+					"Must include a single parameter indicating password");
 		}
 		
 		//Get username from parameter protocol passed
@@ -143,15 +143,18 @@ public class PasswordCommand extends BlackjackCommand {
 		} 
 
 		// Return whatever happened
-		return code.toString();
+		return code;
 	}
 	
 	@Override
 	public Set<STATE> getValidStates() {
-		validPasswordStates = new HashSet<STATE>();
+		//Keep this around so we only create once
+		if( validPasswordStates == null ) {
+			validPasswordStates = EnumSet.noneOf( STATE.class );
 
-		//Add the only allowed state which is WAITING_FOR_PASSWORD
-		validPasswordStates.add(STATE.WAITING_FOR_PASSWORD);
+			//Add the only allowed state which is WAITING_FOR_PASSWORD
+			validPasswordStates.add(STATE.WAITING_FOR_PASSWORD);
+		}
 
 		return validPasswordStates;
 	}
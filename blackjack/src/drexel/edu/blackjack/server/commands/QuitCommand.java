@@ -14,7 +14,7 @@
 package drexel.edu.blackjack.server.commands;
 
 import java.util.Set;
-import java.util.HashSet;
+import java.util.EnumSet;
 import drexel.edu.blackjack.server.BlackjackProtocol;
 import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
 import drexel.edu.blackjack.server.ResponseCode;
@@ -38,25 +38,25 @@ public class QuitCommand extends BlackjackCommand {
 	private Set<STATE> validStates = null;
 	
 	@Override
-	public String processCommand( BlackjackProtocol protocol, CommandMetadata cm ) {
+	public ResponseCode execute( BlackjackProtocol protocol, CommandMetadata cm ) {
 		
 		//Step 0: if either object is null, there is an internal error
 		if( protocol == null || cm == null) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR, 
-					"QUITCommand.processCommand() received null arguments").toString();
+					"QUITCommand.processCommand() received null arguments");
 		}
 		
 		//STATEFUL: Steps 1-2: Return error if not in a valid state 
 		//quit command available in any connected state 
 		if( !getValidStates().contains( protocol.getState() )) {
-			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED).toString();
+			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED);
 		}
 		//Step 3 -4: check syntax, no parameters in quit
 		//Step 5: work that needs to be done - ONLY NEED TO GENERATE RESPONSE (STEP 8)
 		//Step 6: Save out state variables? not applicable in qui
 		//Step 7: Update any change in state- disconnect
 		//Step 8: Format user response code
-		return 	new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_QUIT).toString();
+		return 	new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_QUIT);
 	}
 	
 	@Override
@@ -68,7 +68,7 @@ public class QuitCommand extends BlackjackCommand {
 	public Set<STATE> getValidStates() {
 		//Keep this around so we only create once
 		if( validStates == null ) {
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 			
 			//quit command works in any connected states
 			validStates.add( STATE.NOT_IN_SESSION );
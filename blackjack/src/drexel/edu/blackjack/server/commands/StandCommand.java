@@ -12,9 +12,10 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server.commands;
 
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import drexel.edu.blackjack.server.BlackjackProtocol;
 import drexel.edu.blackjack.server.ResponseCode;
@@ -28,16 +29,30 @@ public class StandCommand extends BlackjackCommand {
 
 	private Set<STATE> validStates = null;
 
-	public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+	public ResponseCode execute(final BlackjackProtocol protocol, final CommandMetadata cm) {
+		
+		// CONCURRENT: Standing ends the player's turn at the table, so it's the table that does it
+		return atTable( protocol, new Callable<ResponseCode>() {
+			@Override
+			public ResponseCode call() {
+				return executeAtTable( protocol, cm );
+			}
+		} );
+	}
+	
+	/**
+	 * Does the work of the command, as the table's owner.
+	 */
+	private ResponseCode executeAtTable(BlackjackProtocol protocol, CommandMetadata cm) {
 		// Step 0: If either object is null, it's an internal error
 		if( protocol == null || cm == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR, 
-					"AccountCommand.processCommand() received null arguments" ).toString();
+					"AccountCommand.processCommand() received null arguments" );
 		}
 		
 		// STATEFUL: Steps 1-2: Return an error in not in a valid state
 		if( !getValidStates().contains( protocol.getState()) ) {
-			return new ResponseCode( ResponseCode.CODE.NOT_EXPECTING_STAND ).toString();
+			return new ResponseCode( ResponseCode.CODE.NOT_EXPECTING_STAND );
 		}
 		
 		// Step 3-4: Check syntax; irrelevant as no parameters
@@ -47,7 +62,7 @@ public class StandCommand extends BlackjackCommand {
 		User user = protocol.getUser();
 		if( user == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-					"StandCommand.processCommand() had a problem getting the user object").toString();
+					"StandCommand.processCommand() had a problem getting the user object");
 		}
 		
 		// Note on the user object that they made their gameplay, and that they are done for the round
@@ -58,7 +73,7 @@ public class StandCommand extends BlackjackCommand {
 		GameState state = (user.getGame() == null ? null : user.getGame().getGameState());
 		if( state == null ) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-					"StandCommand.processCommand() had a problem getting the game state object").toString();
+					"StandCommand.processCommand() had a problem getting the game state object");
 		}
 		
 		// Because we need to notify others that the player chose to stand
@@ -69,9 +84,12 @@ public class StandCommand extends BlackjackCommand {
 		// STATEFUL: It's now after their turn
 		protocol.setState( STATE.IN_SESSION_AFTER_YOUR_TURN );
 		
+		// CONCURRENT: And the game, which is waiting on them, can move on
+		state.signalPlayerAction();
+		
 		// Step 8: Format the user response code
 		ResponseCode code = new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_STAND );
-		return code.toString();
+		return code;
 	}
 
 	@Override
@@ -83,7 +101,7 @@ public class StandCommand extends BlackjackCommand {
 	public Set<STATE> getValidStates() {
 		// Keep this around so we only create it once
 		if( validStates == null ) {
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 			
 			// Needs to be awaiting your turn to use this command
 			validStates.add( STATE.IN_SESSION_AND_YOUR_TURN );			
@@ -14,7 +14,7 @@
 package drexel.edu.blackjack.server.commands;
 
 import java.util.Set;
-import java.util.HashSet;
+import java.util.EnumSet;
 import drexel.edu.blackjack.server.BlackjackProtocol;
 import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
 import drexel.edu.blackjack.server.ResponseCode;
@@ -36,18 +36,18 @@ public class UnknownCommand extends BlackjackCommand {
 	private Set<STATE> validStates = null;
 	
 	@Override
-	public String processCommand( BlackjackProtocol protocol, CommandMetadata cm ) {
+	public ResponseCode execute( BlackjackProtocol protocol, CommandMetadata cm ) {
 		
 		//Step 0: if either object is null, there is an internal error
 		if( protocol == null || cm == null) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR, 
-					"UnknownCommand.processCommand() received null arguments").toString();
+					"UnknownCommand.processCommand() received null arguments");
 		}
 		
 		//Steps 1-2: Return error if not in a valid state 
 		//unknown command available in any connected state 
 		if( !getValidStates().contains( protocol.getState() )) {
-			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED).toString();
+			return ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED.getResponse();
 		}
 	
 		//Step 3 -4: check syntax, no parameters in unknown
@@ -62,8 +62,9 @@ public class UnknownCommand extends BlackjackCommand {
 		//Step 7: Update any change in state - not state changes in unknown
 				
 		{	
-		//step 8 return response code- will only be using generic response
-			return 	new ResponseCode( ResponseCode.CODE.UNKNOWN_COMMAND ).toString();
+		//step 8 return response code- will only be using generic response,
+		//which everyone can share as it never changes
+			return 	ResponseCode.CODE.UNKNOWN_COMMAND.getResponse();
 		}
 	}
 		
@@ -76,7 +77,7 @@ public class UnknownCommand extends BlackjackCommand {
 	public Set<STATE> getValidStates() {
 		//Keep this around so we only create once
 		if( validStates == null ) {
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 			
 			//version command works in any connected states
 			validStates.add( STATE.WAITING_FOR_USERNAME );
@@ -26,7 +26,7 @@ package drexel.edu.blackjack.server.commands;
  * @author Constantine
  */
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 
@@ -49,23 +49,23 @@ public class UsernameCommand extends BlackjackCommand {
 	 * good information can be found.
 	 * @param cm Information derived from the client associated
 	 * with the user, what it sent in to the server
-	 * @return The string that should be sent back to the client
+	 * @return The response that should be sent back to the client
 	 * as the response. 
 	 */
-		public String processCommand(BlackjackProtocol protocol, CommandMetadata cm) {
+		public ResponseCode execute(BlackjackProtocol protocol, CommandMetadata cm) {
 			
 			//Step 0: If either object is null, it's an internal error
 			
 			if (protocol == null || cm == null) {
 				return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
-					"UsernameCommand.processCommand() received null arguments").toString();
+					"UsernameCommand.processCommand() received null arguments");
 			}
 
 			// STATEFUL: Step 1-2: Return an error if not in valid state for USERNAME command
 			
 			if(!getValidStates().contains( protocol.getState()) ) {
 				return new ResponseCode( ResponseCode.CODE.NOT_EXPECTING_USERNAME,
-					"UsernameCommand.processCommand() received out-of-context command").toString();
+					"UsernameCommand.processCommand() received out-of-context command");
 			}
 			
 			/** Steps 3-4: If the USERNAME username parameter is not exactly one string,
@@ -73,7 +73,7 @@ public class UsernameCommand extends BlackjackCommand {
 			if ((cm.getParameters() == null || cm.getParameters().size() != 1 ))  {
 				
 				return new ResponseCode( ResponseCode.CODE.SYNTAX_ERROR ,
-						"Must include a single parameter indicating username").toString();
+						"Must include a single parameter indicating username");
 			}
 			
 			/**Steps 6-8: Finally, if USERNAME command has only one parameter:*/
@@ -95,7 +95,7 @@ public class UsernameCommand extends BlackjackCommand {
 			/**Step 8: Generate the proper response */
 			return 	new ResponseCode( ResponseCode.CODE.WAITING_FOR_PASSWORD,
 					"UsernameCommand.processCommand() received valid username parameter;" +
-					"waiting for password").toString();	
+					"waiting for password");	
 			}
 
 		/**
@@ -108,10 +108,13 @@ public class UsernameCommand extends BlackjackCommand {
 
 		public Set<STATE> getValidStates() {
 
-				validUsernameStates = new HashSet<STATE>();
+				//Keep this around so we only create once
+				if( validUsernameStates == null ) {
+					validUsernameStates = EnumSet.noneOf( STATE.class );
 
-				//Add the only allowed state which is WAITING_FOR_USERNAME
-				validUsernameStates.add(STATE.WAITING_FOR_USERNAME);
+					//Add the only allowed state which is WAITING_FOR_USERNAME
+					validUsernameStates.add(STATE.WAITING_FOR_USERNAME);
+				}
 
 				return validUsernameStates;
 		}
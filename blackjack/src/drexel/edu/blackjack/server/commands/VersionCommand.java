@@ -13,7 +13,7 @@
 package drexel.edu.blackjack.server.commands;
 
 import java.util.Set;
-import java.util.HashSet;
+import java.util.EnumSet;
 import drexel.edu.blackjack.server.BlackjackProtocol;
 import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
 import drexel.edu.blackjack.server.ResponseCode;
@@ -40,18 +40,18 @@ public class VersionCommand extends BlackjackCommand {
 	private Set<STATE> validStates = null;
 	
 	@Override
-	public String processCommand( BlackjackProtocol protocol, CommandMetadata cm ) {
+	public ResponseCode execute( BlackjackProtocol protocol, CommandMetadata cm ) {
 		
 		//Step 0: if either object is null, there is an internal error
 		if( protocol == null || cm == null) {
 			return new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR, 
-					"VersionCommand.processCommand() received null arguments").toString();
+					"VersionCommand.processCommand() received null arguments");
 		}
 		
 		//STATEFUL: Steps 1-2: Return error if not in a valid state 
 		//version command available in any connected state 
 		if( !getValidStates().contains( protocol.getState() )) {
-			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED).toString();
+			return new ResponseCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED);
 		}
 	
 		//Step 3 -4: check syntax, no parameters - no parameters in version
@@ -65,7 +65,7 @@ public class VersionCommand extends BlackjackCommand {
 		
 		//Step 8: Format user response code
 		        
-		return 	new ResponseCode( ResponseCode.CODE.VERSION, "version 1.0 (CS544 implementation)").toString();
+		return 	new ResponseCode( ResponseCode.CODE.VERSION, "version 1.0 (CS544 implementation)");
 				
 	}
 	
@@ -78,7 +78,7 @@ public class VersionCommand extends BlackjackCommand {
 	public Set<STATE> getValidStates() {
 		//Keep this around so we only create once
 		if( validStates == null ) {
-			validStates = new HashSet<STATE>();
+			validStates = EnumSet.noneOf( STATE.class );
 			
 			//version command works in any connected states
 			validStates.add( STATE.WAITING_FOR_USERNAME );
@@ -9,10 +9,10 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server.game;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import drexel.edu.blackjack.db.game.FlatfileGameManager;
@@ -26,6 +26,14 @@ import drexel.edu.blackjack.util.BlackjackLogger;
  * are involved in playing games that are active on the
  * server. Only one instance of it exists at a time,
  * via the Singleton pattern.
+ * <P>
+ * <b>CONCURRENT:</b> The games are all loaded when it's
+ * made, into concurrent maps, and the singleton is made
+ * by the class loader the first time it's asked for, so
+ * any number of connections can use it at once without
+ * locking. Joins reserve a seat at the table first, so
+ * no matter how many come in at once a table can't be
+ * overfilled.
  * 
  * @author Jennifer
  *
@@ -36,14 +44,17 @@ public class ActiveGameCoordinator {
 	 * Class variables go here
 	 *****************************************************************************/
 
-	// For the singleton pattern
-	private static ActiveGameCoordinator coordinator = null;
+	// For the singleton pattern: the class loader makes it, once, the
+	// first time it's asked for
+	private static class Holder {
+		static final ActiveGameCoordinator COORDINATOR = new ActiveGameCoordinator();
+	}
 	
 	// Need something to map games to the game-playing threads.
-	private Map<Game,GamePlayingThread> gameToThreadMap = null;
+	private final Map<Game,GamePlayingThread> gameToThreadMap = new ConcurrentHashMap<Game,GamePlayingThread>();
 	
 	// Need something else to map game IDs to the games.
-	private Map<String,Game> idToGameMap = null;
+	private final Map<String,Game> idToGameMap = new ConcurrentHashMap<String,Game>();
 	
 	// And a logger for errors
 	private final static Logger LOGGER = BlackjackLogger.createLogger(ActiveGameCoordinator.class.getName());
@@ -65,10 +76,7 @@ public class ActiveGameCoordinator {
 	 * @return A singleton instance of the controller
 	 */
 	public static ActiveGameCoordinator getDefaultActiveGameCoordinator() {
-		if( coordinator == null ) {
-			coordinator = new ActiveGameCoordinator();
-		}
-		return coordinator;
+		return Holder.COORDINATOR;
 	}
 	
 	/**
@@ -77,10 +85,6 @@ public class ActiveGameCoordinator {
 	 * @return All the games currently loaded
 	 */
 	public Set<Game> getAllGames() {
-		if( this.gameToThreadMap == null ) {
-			loadGames();
-		}
-		
 		return gameToThreadMap.keySet();
 	}
 	
@@ -94,17 +98,8 @@ public class ActiveGameCoordinator {
 	 */
 	public Game getGame( String id ) {
 		
-		// This shouldn't happen
-		if( gameToThreadMap == null || idToGameMap == null ) {
-			loadGames();
-		}
-				
-		if( idToGameMap != null ) {
-			return idToGameMap.get( id );
-		}
-		
-		// If we get here, we weren't playing the game anywhere, just return null
-		return null;
+		// If it's not in there, we weren't playing the game anywhere, just return null
+		return id == null ? null : idToGameMap.get( id );
 	}
 
 	/**
@@ -113,12 +108,11 @@ public class ActiveGameCoordinator {
 	 * If the sessionName doesn't correspond to any gamemetadata,
 	 * this is a problem.
      * <P>
- 	 * Otherwise, look to see if a game is already active. If so,
-	 * make sure that it has room. If not, it's a problem. If it
-	 * does, add the player
+ 	 * Otherwise, reserve a seat at the game. If there isn't one,
+	 * the game is full. If there is, add the player in it.
      * <P>
-	 * If there is no active game, create one, add the user, and
-	 * start it.
+	 * If the game wasn't being played, adding the first player
+	 * starts it.
 	 * 
 	 * @param sessionName Should correspond to some identifier in gamemetadata
 	 * @param user The user to add
@@ -127,32 +121,54 @@ public class ActiveGameCoordinator {
 	 */
 	public Game addPlayer(String sessionName, User user) {
 		
-		if( idToGameMap == null ) {
-			LOGGER.severe( "The idToGameMap in the ActiveGameController is null. It shouldn't be." );
-			return null;
-		}
-		
 		// Look up the game
-		Game game = idToGameMap.get(sessionName);
+		Game game = getGame(sessionName);
 		if( game == null ) {
 			LOGGER.severe( "No game corresponded to the request id of '" + sessionName + "'." );
 			return null;
 		}
 		
-		// Make sure there is room to add the player
-		if( game.stillHasRoom() ) {
-			game.addPlayer( user );
-			user.setGame( game );
-			return game;
-		} else {
-			LOGGER.severe( "Game has no more room. Race condition?" );
+		// CONCURRENT: Make sure there is room to add the player, by holding a seat for them
+		Seats.Reservation seat = game.reserveSeat();
+		if( seat == null ) {
+			LOGGER.info( "Game " + sessionName + " has no more room." );
 			return null;
 		}
+		
+		return addPlayer( seat, game, user );
+	}
+	
+	/**
+	 * Add a player to a game, in a seat that was reserved for
+	 * them with {@link Game#reserveSeat()}. Whether or not it
+	 * works, the reservation is used up.
+	 * 
+	 * @param seat The seat
+	 * @param game The game it's at
+	 * @param user The user to add
+	 * @return IF the game was successfully joined, return that game object.
+	 * IF it wasn't, including if the reservation had expired, return a null
+	 */
+	public Game addPlayer(Seats.Reservation seat, Game game, User user) {
+		
+		try {
+			if( game.addPlayer( user, seat ) ) {
+				user.setGame( game );
+				return game;
+			}
+			LOGGER.warning( "Could not add a player to game " + game.getId() + "; their seat may have expired." );
+			return null;
+		} finally {
+			// Gives the seat back if it wasn't claimed
+			seat.release();
+		}
 	}
 
 	/**
 	 * Requests that a game be started. This only makes sense to do IF
-	 * the game is not already started!
+	 * the game is not already started! If it is, it just keeps going.
+	 * The game is played on the shared
+	 * {@link drexel.edu.blackjack.server.game.driver.TableScheduler}.
 	 */
 	public boolean startGame(String gameId) {
 		
@@ -166,25 +182,12 @@ public class ActiveGameCoordinator {
 			GamePlayingThread thread = this.gameToThreadMap.get(game);
 			if( thread == null ) {
 				LOGGER.severe( "Requested to start game with ID '" + gameId + "' but could not find its thread in the controller." );
-			} else if ( thread.isAlive() ) {
-				LOGGER.severe( "Requested to start game with ID '" + gameId + "' but it was already started." );	
+			} else if ( !thread.start() ) {
+				// It hadn't noticed everyone left yet, so it just keeps going
+				LOGGER.info( "Requested to start game with ID '" + gameId + "' but it was still being played." );	
 			} else {
-				// Now, either we're starting it for the first time (good!) or it's been started
-				// once before and exited (bad!). We know it's the latter case if we get an exception
-				try {
-					LOGGER.info( "Started the thread for the first time for '" + gameId + "'." );
-					thread.start();
-					status = true;
-				} catch( IllegalThreadStateException e) {
-					// We're going to assume we're here because the thread 
-					// was started, and exited, once before. So we have
-					// to create a new thread to associate with this game
-					thread = new GamePlayingThread( game );
-					this.gameToThreadMap.put( game, thread );
-					LOGGER.info( "Started the thread for a subsequent time for '" + gameId + "." );
-					thread.start();
-					status = true;
-				}
+				LOGGER.info( "Started playing '" + gameId + "'." );
+				status = true;
 			}
 		}
 		
@@ -206,10 +209,6 @@ public class ActiveGameCoordinator {
 			LOGGER.severe( "Could not load the games in our game manager, the game manager was null." );
 		} else {
 			
-			// Initialize our maps
-			gameToThreadMap = new HashMap<Game,GamePlayingThread>();
-			idToGameMap = new HashMap<String,Game>();
-
 			// Can only add things from non-null game metadata list
 			List<GameMetadata> gameMetadatas = gameManager.getGames();
 			if( gameMetadatas != null ) {
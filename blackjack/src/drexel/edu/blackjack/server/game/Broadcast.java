@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - Broadcast.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Sends one game event to everyone at a table. The event is encoded
+ * once and the same bytes are queued for every recipient; for very large
+ * audiences, the queuing is split across several threads.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.server.EncodedMessage;
+import drexel.edu.blackjack.server.MessageBatch;
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * <b>CONCURRENT:</b> Broadcasts are made from game threads and
+ * from client threads (e.g., when someone joins a table). The
+ * message is encoded once, and the resulting
+ * {@link EncodedMessage} is shared by every recipient.
+ * <P>
+ * For up to {@link #SPLIT_THRESHOLD} recipients, the message is
+ * queued on each one by the calling thread. Past that, the
+ * recipients are split into chunks that are queued in parallel
+ * by a small pool of fan-out threads. Either way, the call
+ * doesn't return until the message is queued for everyone, so
+ * events still reach each client in the order they were
+ * broadcast. Flushing is then done as for any other message:
+ * right away, or at the end of the caller's {@link MessageBatch}.
+ *
+ * @author Jennifer
+ */
+public class Broadcast {
+
+	/**********************************************************
+	 * Local variables go here
+	 *********************************************************/
+
+	/**
+	 * Audiences larger than this are split into chunks of
+	 * this size, which are queued on separate threads.
+	 */
+	public static final int SPLIT_THRESHOLD		= 256;
+
+	// The fan-out threads, created the first time they're needed
+	private static ExecutorService fanoutPool	= null;
+
+	// And a logger for errors
+	private final static Logger LOGGER = BlackjackLogger.createLogger(Broadcast.class.getName());
+
+	/**********************************************************
+	 * Constructor goes here
+	 *********************************************************/
+
+	/**
+	 * Only static methods here.
+	 */
+	private Broadcast() {
+	}
+
+	/**********************************************************
+	 * Public methods go here
+	 *********************************************************/
+
+	/**
+	 * Sends a response code to all the players, except one.
+	 *
+	 * @param code What to send, which is encoded once
+	 * @param players Who to send it to
+	 * @param except Who not to send it to, or null if it should go
+	 * to everyone
+	 * @return True if it was queued for everyone, false otherwise
+	 */
+	public static boolean send( ResponseCode code, User[] players, User except ) {
+		return send( EncodedMessage.encode( code ), players, except );
+	}
+
+	/**
+	 * Sends a response code to everyone on a roster, except one.
+	 * Unless the audience is big enough to be split up, this
+	 * goes straight through the roster, without making a list
+	 * of the recipients.
+	 *
+	 * @param code What to send, which is encoded once
+	 * @param roster Who to send it to
+	 * @param except Who not to send it to, or null if it should go
+	 * to everyone
+	 * @return True if it was queued for everyone, false otherwise
+	 */
+	public static boolean send( ResponseCode code, Roster roster, User except ) {
+
+		if( roster == null ) {
+			return false;
+		}
+		EncodedMessage message = EncodedMessage.encode( code );
+		if( roster.size() > SPLIT_THRESHOLD ) {
+			return send( message, roster.toArray(), except );
+		}
+
+		boolean success = true;
+		for( int i = 0; i < roster.size(); i++ ) {
+			User user = roster.get(i);
+			if( !user.hasSameUsername( except ) ) {
+				success = user.queueMessage( message ) && success;
+			}
+		}
+
+		// Everyone has it queued; now flush, or leave it to the batch
+		for( int i = 0; i < roster.size(); i++ ) {
+			User user = roster.get(i);
+			if( !user.hasSameUsername( except ) ) {
+				user.flushMessages();
+			}
+		}
+
+		return success;
+	}
+
+	/**
+	 * Sends an already-encoded message to all the players, except one.
+	 *
+	 * @param message What to send
+	 * @param players Who to send it to
+	 * @param except Who not to send it to, or null if it should go
+	 * to everyone
+	 * @return True if it was queued for everyone, false otherwise
+	 */
+	public static boolean send( EncodedMessage message, User[] players, User except ) {
+
+		if( players == null ) {
+			return false;
+		}
+
+		// Figure out who actually gets it
+		List<User> recipients = new ArrayList<User>( players.length );
+		for( User user : players ) {
+			if( user != null && !user.hasSameUsername( except ) ) {
+				recipients.add( user );
+			}
+		}
+
+		boolean success = true;
+		if( recipients.size() <= SPLIT_THRESHOLD ) {
+			for( User user : recipients ) {
+				success = user.queueMessage( message ) && success;
+			}
+		} else {
+			success = queueInParallel( message, recipients );
+		}
+
+		// Everyone has it queued; now flush, or leave it to the batch
+		for( User user : recipients ) {
+			user.flushMessages();
+		}
+
+		return success;
+	}
+
+	/**********************************************************
+	 * Private methods go here
+	 *********************************************************/
+
+	/**
+	 * Splits the recipients into chunks, and has the fan-out
+	 * threads queue the message for each chunk. Waits until
+	 * they're all done.
+	 *
+	 * @param message What to queue
+	 * @param recipients Who to queue it for
+	 * @return True if it was queued for everyone, false otherwise
+	 */
+	private static boolean queueInParallel( final EncodedMessage message, final List<User> recipients ) {
+
+		int chunks = (recipients.size() + SPLIT_THRESHOLD - 1) / SPLIT_THRESHOLD;
+		final CountDownLatch done = new CountDownLatch( chunks );
+		final boolean[] results = new boolean[chunks];
+
+		ExecutorService pool = getFanoutPool();
+		for( int i = 0; i < chunks; i++ ) {
+			final int chunk = i;
+			pool.execute( new Runnable() {
+				@Override
+				public void run() {
+					boolean success = true;
+					try {
+						int end = Math.min( recipients.size(), (chunk + 1) * SPLIT_THRESHOLD );
+						for( int j = chunk * SPLIT_THRESHOLD; j < end; j++ ) {
+							success = recipients.get(j).queueMessage( message ) && success;
+						}
+					} finally {
+						results[chunk] = success;
+						done.countDown();
+					}
+				}
+			});
+		}
+
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			LOGGER.warning( "Interrupted while waiting for a broadcast to be queued." );
+			Thread.currentThread().interrupt();
+			return false;
+		}
+
+		boolean success = true;
+		for( boolean result : results ) {
+			success = success && result;
+		}
+		return success;
+	}
+
+	/**
+	 * Gets the fan-out threads, creating them if needed. There's
+	 * one per processor, and they don't keep the server running.
+	 *
+	 * @return The pool of fan-out threads
+	 */
+	private static synchronized ExecutorService getFanoutPool() {
+		if( fanoutPool == null ) {
+			fanoutPool = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors(),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread( Runnable runnable ) {
+							Thread thread = new Thread( runnable, "BroadcastFanout" );
+							thread.setDaemon( true );
+							return thread;
+						}
+					});
+		}
+		return fanoutPool;
+	}
+
+}
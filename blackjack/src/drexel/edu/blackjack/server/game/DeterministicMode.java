@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - DeterministicMode.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Makes every table's shuffles and pauses follow from one master
+ * seed, so two runs with the same seed deal the same cards, and differences
+ * between them come from the code rather than from chance.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.game;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.cards.SeededShuffleEntropy;
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * A master seed, and the streams of random numbers that
+ * each table gets from it: one for its shuffles, and one
+ * for how long its pauses are. A table's streams depend
+ * only on the master seed and the table's ID, so they're
+ * the same no matter how many other tables there are, or
+ * what order they start in.
+ * <P>
+ * A table's shoes are shuffled on its own thread, so the
+ * shuffles happen in the same order every time. What the
+ * players do is still up to them; replaying the same
+ * commands, with a {@link drexel.edu.blackjack.server.replay.TranscriptReplayer},
+ * is what makes the rest of a run the same.
+ * <P>
+ * <b>SECURITY:</b> Anyone with the master seed knows every
+ * shuffle, so this is only for load tests.
+ * <P>
+ * The server runs this way when the {@value #SEED_PROPERTY}
+ * system property is set.
+ *
+ * @author Jennifer
+ */
+public class DeterministicMode {
+
+	/**
+	 * The system property with the master seed
+	 */
+	public static final String SEED_PROPERTY	= "seed";
+
+	// What each stream is for, which goes into its seed
+	private static final String SHUFFLES		= "shuffles";
+	private static final String PACING			= "pacing";
+
+	// The one the server uses, if any, and whether it's been looked for
+	private static DeterministicMode defaultMode	= null;
+	private static boolean lookedForDefault			= false;
+
+	private final long masterSeed;
+
+	// And our logger
+	private final static Logger LOGGER = BlackjackLogger.createLogger(DeterministicMode.class.getName());
+
+	/**
+	 * @param masterSeed What every table's streams follow from
+	 */
+	public DeterministicMode( long masterSeed ) {
+		this.masterSeed = masterSeed;
+	}
+
+	/**
+	 * Gets the server's deterministic mode, from the
+	 * {@value #SEED_PROPERTY} system property.
+	 *
+	 * @return The mode, or null if the server isn't
+	 * running deterministically
+	 */
+	public static synchronized DeterministicMode getDefault() {
+		if( !lookedForDefault ) {
+			lookedForDefault = true;
+			String seed = System.getProperty( SEED_PROPERTY );
+			if( seed != null ) {
+				try {
+					defaultMode = new DeterministicMode( Long.parseLong( seed.trim() ) );
+					LOGGER.warning( "Running deterministically with master seed " + defaultMode.getMasterSeed() +
+							". Shuffles can be predicted, so this is only for testing." );
+				} catch( NumberFormatException e ) {
+					LOGGER.severe( "The master seed '" + seed + "' isn't a number, so running normally." );
+				}
+			}
+		}
+		return defaultMode;
+	}
+
+	/**
+	 * @return What every table's streams follow from
+	 */
+	public long getMasterSeed() {
+		return masterSeed;
+	}
+
+	/**
+	 * Has a table's shoes shuffled from its own stream,
+	 * on its own thread. It has to be done before any cards
+	 * are dealt.
+	 *
+	 * @param state The table's state
+	 * @param tableId The table's game ID
+	 */
+	public void configure( GameState state, String tableId ) {
+		state.setShuffleExecutor( StandbyShoe.SAME_THREAD );
+		state.setShuffleEntropy( new SeededShuffleEntropy( deriveSeed( tableId, SHUFFLES ) ) );
+	}
+
+	/**
+	 * @param tableId The table's game ID
+	 * @return Where the table's pause times come from
+	 */
+	public Random createPacing( String tableId ) {
+		return new Random( deriveSeed( tableId, PACING ) );
+	}
+
+	/**
+	 * Works out the seed of one of a table's streams. The
+	 * master seed, the table, and the stream are mixed
+	 * with the SplitMix64 finalizer, so nearby inputs give
+	 * unrelated seeds. String hash codes are the same on
+	 * every JVM, so so are the seeds.
+	 *
+	 * @param tableId The table's game ID
+	 * @param stream What the stream is for
+	 * @return The stream's seed
+	 */
+	public long deriveSeed( String tableId, String stream ) {
+		long seed = mix( masterSeed );
+		seed = mix( seed ^ (tableId == null ? 0 : tableId.hashCode()) );
+		return mix( seed ^ stream.hashCode() );
+	}
+
+	private static long mix( long z ) {
+		z += 0x9e3779b97f4a7c15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+}
@@ -16,6 +16,7 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server.game;
 
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 
 import drexel.edu.blackjack.db.game.GameMetadata;
@@ -37,6 +38,11 @@ import drexel.edu.blackjack.util.BlackjackLogger;
  * the Hand class that requires the requesting user be passed in.
  * In this way, it only reveals facedown cards for the user who
  * holds them.
+ * <P>
+ * <b>CONCURRENT:</b> Players joining and leaving, and the
+ * commands they use at the table, are handed to the game's
+ * {@link TableOwner} to do, so the game's state is only
+ * ever changed by the one owner.
  * 
  * @author Jennifer
  *
@@ -123,6 +129,11 @@ public class Game {
 	 * In a GAMESTATUS response, signifies an unknown username
 	 */
 	public static final String UNKNOWN_USERNAME = "(unknown)";
+	/**
+	 * How long a seat is held for someone joining, in milliseconds,
+	 * before it's given back
+	 */
+	public static final long SEAT_RESERVATION_TIMEOUT_MILLIS = 5000;
 	
 	/*******************************************************************************
 	 * private variables
@@ -134,6 +145,9 @@ public class Game {
 	// This holds all of our static game information
 	private GameMetadata metadata;
 	
+	// CONCURRENT: What everything that changes the game is handed to
+	private volatile TableOwner owner = null;
+	
 	// And of course our logger
 	private final static Logger LOGGER = BlackjackLogger.createLogger(Game.class.getName());
 	
@@ -149,7 +163,7 @@ public class Game {
 	public Game(GameMetadata metadata) {
 		this.metadata = metadata;
 		if( metadata != null && metadata.getId() != null ) {
-			state = new GameState( metadata.getId(), metadata.getNumDecks() );
+			state = new GameState( metadata.getId(), metadata.getTableRules() );
 		}
 	}
 	
@@ -161,9 +175,10 @@ public class Game {
 	
 	/**
 	 * Each active game has a maximum number of players based on
-	 * its metadata. By comparing the size of the players list to
-	 * this limit, it can be determined if the game still has room
-	 * for more player.
+	 * its metadata. By comparing the seats that are taken, or
+	 * reserved by players who are joining, to this limit, it can
+	 * be determined if the game still has room for more player.
+	 * It's only a hint: to actually get a seat, reserve one.
 	 * 
 	 * @return True if there's room, else false.
 	 */
@@ -176,26 +191,66 @@ public class Game {
 		}
 		
 		// Make a comparison here
-		return state.getNumberOfPlayers() < metadata.getMaxPlayers();
+		return state.getSeats().hasRoom( metadata.getMaxPlayers() );
+	}
+	
+	/**
+	 * CONCURRENT: Reserves a seat for a player who is joining.
+	 * No two players can get the last seat. The reservation
+	 * is claimed by {@link #addPlayer(User, Seats.Reservation)},
+	 * and should be released if the join doesn't go ahead;
+	 * if it isn't, it expires after
+	 * {@link #SEAT_RESERVATION_TIMEOUT_MILLIS}.
+	 * 
+	 * @return The reservation, or null if the game is full
+	 */
+	public Seats.Reservation reserveSeat() {
+		
+		// Same as having no room
+		if( metadata == null ) {
+			return null;
+		}
+		
+		return state.getSeats().reserve( metadata.getMaxPlayers(), SEAT_RESERVATION_TIMEOUT_MILLIS );
 	}
 	
 	/**
-	 * Add a player to the game. 
+	 * Add a player to the game, whether or not there's room. 
 	 * @return True if it worked, false otherwise
 	 */
-	public synchronized boolean addPlayer(User player) {
+	public boolean addPlayer(User player) {
+		return addPlayer( player, null );
+	}
+	
+	/**
+	 * Add a player to the game, in the seat they reserved. 
+	 * @param player Who to add
+	 * @param reservation Their seat, from {@link #reserveSeat()}, or
+	 * null to add them whether or not there's room
+	 * @return True if it worked, false otherwise, including if
+	 * the reservation had expired
+	 */
+	public boolean addPlayer(final User player, final Seats.Reservation reservation) {
 		
 		// This would be bad
 		if( player == null ) {
 			return false;
 		}
 		
-		boolean successfullyAdded = state.addPlayer(player);
-		if( successfullyAdded && state != null ) {
-			state.notifyOthersOfJoinedPlayer( player );
-		}
+		// CONCURRENT: The owner adds them, so only one player is added
+		// at a time, and never in the middle of something at the table
+		Boolean successfullyAdded = callOwner( new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				boolean added = state.addPlayer(player, reservation);
+				if( added ) {
+					state.notifyOthersOfJoinedPlayer( player );
+				}
+				return added;
+			}
+		} );
 		
-		return successfullyAdded;
+		return successfullyAdded != null && successfullyAdded;
 	}
 	
 	/**
@@ -212,13 +267,28 @@ public class Game {
 	 *  response to the instigating client, or null if there
 	 *  was some sort of error that prevented it from working
 	 */
-	public ResponseCode removePlayer(User player) {
+	public ResponseCode removePlayer(final User player) {
 		
 		if( player == null ) {
 			LOGGER.severe( "Trying to remove a null player is not allowed." );
 			return null;
 		}
 		
+		// CONCURRENT: Like anything else that changes the game, it's the owner that does it
+		return callOwner( new Callable<ResponseCode>() {
+			@Override
+			public ResponseCode call() {
+				return removePlayerAtTable( player );
+			}
+		} );
+	}
+	
+	/**
+	 * CONCURRENT: Run by the game's owner. Does the work of
+	 * {@link #removePlayer(User)}.
+	 */
+	private ResponseCode removePlayerAtTable(User player) {
+		
 		// Hopefully we can remove them
 		if( !state.removePlayer(player) ) {
 			LOGGER.severe( "Something went wonky in trying to remove the player from the game." );
@@ -237,6 +307,70 @@ public class Game {
 	}
 	
 
+	/*******************************************************************************
+	 * Methods that hand work over to the game's owner
+	 *****************************************************************************/
+	
+	
+	/**
+	 * CONCURRENT: Sets what owns the game's state. Until there is
+	 * one, work is just done on the calling thread.
+	 * 
+	 * @param owner The owner, which is the table the game is played at
+	 */
+	public void setOwner( TableOwner owner ) {
+		this.owner = owner;
+	}
+	
+	/**
+	 * @return What owns the game's state, or null if nothing does
+	 */
+	public TableOwner getOwner() {
+		return owner;
+	}
+	
+	/**
+	 * CONCURRENT: Hands a command's work over to the game's owner,
+	 * and waits for the response. Commands that look at or change
+	 * anything at the table, like bets, hands, or the shoe, do
+	 * their work through here.
+	 * 
+	 * @param command The work, which returns the response for the client
+	 * @return The response, or an internal error if the owner couldn't
+	 * run it
+	 */
+	public ResponseCode handle( Callable<ResponseCode> command ) {
+		
+		ResponseCode code = callOwner( command );
+		if( code == null ) {
+			code = new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR,
+					"The table for game " + getId() + " could not handle the command." );
+		}
+		return code;
+	}
+	
+	/**
+	 * Runs a message as the owner, and logs anything that goes
+	 * wrong.
+	 * 
+	 * @param message What to run
+	 * @return What it returned, or null if it failed
+	 */
+	private <T> T callOwner( Callable<T> message ) {
+		
+		try {
+			TableOwner current = owner;
+			if( current == null ) {
+				return message.call();
+			}
+			return current.call( message );
+		} catch( Exception e ) {
+			LOGGER.severe( "The table for game " + getId() + " could not run a message: " + e );
+			return null;
+		}
+	}
+	
+
 	/*******************************************************************************
 	 * Handles notifying various players about various game actions
 	 *****************************************************************************/
@@ -356,34 +490,29 @@ public class Game {
 		str.append( BlackjackServer.EOL );
 		
 		// Then we list of all players
-		User[] players = null;
+		Roster players = null;
 		if( state != null ) {
-			players = state.getCopyOfPlayers();
+			players = state.getRoster();
 		}
 		
 		if( players == null ) {
 			LOGGER.severe( "Could not get a list of players for the game status response." );
 		} else {
 			// Print the list of active players
-			for( User player : players ) {
-				// They need to have active status 
-				if( player.getStatus() != null && player.getStatus().equals(GameState.STATUS.ACTIVE ) ) {
-					str.append( concatKeywordAndUsername(ACTIVE_PLAYER, player) );
-					str.append( BlackjackServer.EOL );
-				}
+			for( int i = 0; i < players.getActiveCount(); i++ ) {
+				str.append( concatKeywordAndUsername(ACTIVE_PLAYER, players.getActive(i)) );
+				str.append( BlackjackServer.EOL );
 			}
 
 			// Print the list of observer players
-			for( User player : players ) {
-				// They need to have active status 
-				if( player.getStatus() != null && player.getStatus().equals(GameState.STATUS.OBSERVER ) ) {
-					str.append( concatKeywordAndUsername(OBSERVER_KEYWORD, player) );
-					str.append( BlackjackServer.EOL );
-				}
+			for( int i = 0; i < players.getObserverCount(); i++ ) {
+				str.append( concatKeywordAndUsername(OBSERVER_KEYWORD, players.getObserver(i)) );
+				str.append( BlackjackServer.EOL );
 			}
 
 			// Print out the bets
-			for( User player : players ) {
+			for( int i = 0; i < players.size(); i++ ) {
+				User player = players.get(i);
 				// They need to have active status 
 				if( player.hasSpecifiedBet() ) {
 					str.append( concatKeywordAndUsername(BET_KEYWORD, player) );
@@ -395,7 +524,8 @@ public class Game {
 			}
 			
 			// Print out the player hands
-			for( User player : players ) {
+			for( int i = 0; i < players.size(); i++ ) {
+				User player = players.get(i);
 				// They need to have active status 
 				if( player.getHand() != null ) {
 					str.append( concatKeywordAndUsername(HAND_KEYWORD, player) );
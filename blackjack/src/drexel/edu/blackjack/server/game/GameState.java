@@ -14,14 +14,18 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server.game;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import drexel.edu.blackjack.cards.DealerShoeInterface;
 import drexel.edu.blackjack.cards.Hand;
 import drexel.edu.blackjack.cards.Hand.COMPARISON_RESULT;
+import drexel.edu.blackjack.cards.SecureShuffleEntropy;
+import drexel.edu.blackjack.cards.ShuffleEntropy;
 import drexel.edu.blackjack.cards.SimpleDealerShoe;
+import drexel.edu.blackjack.db.game.TableRules;
 import drexel.edu.blackjack.db.user.UserMetadata;
 import drexel.edu.blackjack.server.BlackjackProtocol;
 import drexel.edu.blackjack.server.ResponseCode;
@@ -37,6 +41,16 @@ import drexel.edu.blackjack.server.ResponseCode;
  * <P>
  * See Section 2.15 of the protocol design
  * for details.
+ * <P>
+ * <b>CONCURRENT:</b> A game state has a single writer:
+ * the {@link TableOwner} of its game. The game's own
+ * steps run as the owner, and players' commands are
+ * handed to it, so nothing here takes a lock. The
+ * only things that other threads read directly are
+ * the {@link Roster} of players, which is never changed,
+ * just swapped for a new one, and the waits for bets
+ * and plays, which are only used when a table is driven
+ * directly by one thread instead of by the scheduler.
  * 
  * @author Jennifer
  */
@@ -149,9 +163,24 @@ public class GameState {
 	public static final String TIED_KEYWORD			= "TIED";
 	
 	
-	// An ordered list of players involved in the game. Gameplay will
-	// occur in this order, amongst the ACTIVE users. 
-	private List<User> players 			= null;
+	// CONCURRENT: An ordered roster of players involved in the game. Gameplay
+	// will occur in this order, amongst the ACTIVE users. It's swapped for a
+	// new one whenever it changes, so anyone can read it.
+	private volatile Roster roster		= Roster.EMPTY;
+	
+	// CONCURRENT: The seats that are taken, or held for someone joining
+	private final Seats seats			= new Seats();
+	
+	// CONCURRENT: How many times a player has bet, hit, stood, or left
+	private final AtomicLong playerActions	= new AtomicLong();
+	
+	// CONCURRENT: Told when a player acts, so a table that's waiting
+	// on them gets stepped right away
+	private volatile Runnable playerActionListener = null;
+	
+	// CONCURRENT: Starts the game when the first player joins, or null
+	// to have the ActiveGameCoordinator start it
+	private volatile Runnable gameStarter = null;
 	
 	// The dealer's hand
 	private Hand dealerHand				= null;
@@ -159,9 +188,22 @@ public class GameState {
 	// Every game has an identifier
 	private String gameId				= null;
 	
-	// Needs to be a dealer shoe, with cards, and track the number of decks used
-	private int numberOfDecks			= 1;
+	// The 'gameId username' strings that start most notifications, by username
+	private final Map<String,String> gameAndUserPrefixes = new ConcurrentHashMap<String,String>();
+	
+	// Needs to be a dealer shoe, with cards, and follow the table's rules,
+	// which say how many decks are used and when to shuffle them
+	private final TableRules rules;
 	private DealerShoeInterface	shoe	= null;
+	
+	// CONCURRENT: The other shoe, which is shuffled on a shuffler thread
+	// while this one is dealt from, and where it's shuffled
+	private StandbyShoe standby			= null;
+	private volatile Executor shuffleExecutor = null;
+	
+	// SECURITY: Where the shoes' shuffle seeds come from, or null for the
+	// audited default
+	private volatile ShuffleEntropy shuffleEntropy = null;
 
 	
 	/*********************************************************************
@@ -178,9 +220,22 @@ public class GameState {
 	 * dealer shoe with
 	 */
 	public GameState( String gameId, int numberOfDecks ) {
+		this( gameId, new TableRules( numberOfDecks,
+				TableRules.DEFAULT_DEALER_STAND_POINT, TableRules.DEFAULT_RESHUFFLE_PENETRATION ) );
+	}
+
+	/**
+	 * Construct a game state object for the given game
+	 * ID, dealt by the given rules.
+	 * 
+	 * @param gameId A game's unique identifier to be used in
+	 * constructed messages
+	 * @param rules The table's rules, as parsed from the game's
+	 * metadata; if null, the defaults for a single deck
+	 */
+	public GameState( String gameId, TableRules rules ) {
 		this.gameId = gameId;
-		this.numberOfDecks = numberOfDecks;
-		players = Collections.synchronizedList(new ArrayList<User>());
+		this.rules = (rules == null ? TableRules.DEFAULT : rules);
 	}
 
 	
@@ -556,23 +611,14 @@ public class GameState {
 		boolean success = true;
 		
 		// They can't be null, that's bad
-		if( players == null ) {
+		if( code == null ) {
 			success = false;
 		} else {
 			
-			// And then send it to all the remaining players. We make a
-			// copy of them in a synchronized block to avoid deadlocking
-			User[] copy = getCopyOfPlayers();
-			
-			// If copy is non-null, we can send our messages
-			if( copy != null ) {
-				for( int i = 0; i < copy.length; i++ ) {
-					User user = ((User)copy[i]);
-					if( user != null && !user.hasSameUsername(player)) {
-						success = success && user.sendMessage( code );
-					}
-				}
-			}
+			// And then send it to all the remaining players. The roster
+			// doesn't change under us, so it can just be gone through. The
+			// code is encoded once, and the same bytes go to everyone.
+			success = Broadcast.send( code, roster, player );
 		}
 		
 		return success;
@@ -591,17 +637,23 @@ public class GameState {
 	 */
 	private String getStringForGameAndUser( User player) {
 		// Start by creating a response code: gameId username
-		StringBuilder str = new StringBuilder( gameId );
-		str.append( " " );
 		UserMetadata metadata = (player == null ? null : player.getUserMetadata());
+		String username = null;
 		if( player == null ) {
-			str.append( DEALER_USERNAME );
+			username = DEALER_USERNAME;
 		} else if( metadata == null || metadata.getUsername() == null ) {
-			str.append( UNKNOWN_USERNAME );
+			username = UNKNOWN_USERNAME;
 		} else {
-			str.append( metadata.getUsername() );
+			username = metadata.getUsername();
+		}
+		
+		// These are made for every event, so each one is only built once
+		String prefix = gameAndUserPrefixes.get( username );
+		if( prefix == null ) {
+			prefix = gameId + " " + username;
+			gameAndUserPrefixes.put( username, prefix );
 		}
-		return str.toString();
+		return prefix;
 	}
 	
 	
@@ -617,23 +669,40 @@ public class GameState {
 	 * 
 	 * @param player Who to add
 	 */
-	synchronized public boolean addPlayer( User player ) {
+	public boolean addPlayer( User player ) {
+		return addPlayer( player, null );
+	}
+
+	/**
+	 * Adds a player who reserved a seat. The reservation is
+	 * claimed, and if it can't be, because it expired or was
+	 * released, they aren't added.
+	 * 
+	 * @param player Who to add
+	 * @param reservation Their seat, or null if they didn't reserve one
+	 * @return True if they were added
+	 */
+	public boolean addPlayer( User player, Seats.Reservation reservation ) {
 
 		// Assume that we'll fail
 		boolean status = false;
 		
-		if( player != null ) {		
-			// Add them to the list of players
-			status = players.add( player );
+		if( player != null && seats.sit( reservation ) ) {		
+			// Set the user's status to OBSERVER, before they're on the roster,
+			// so it has them with the observers
+			player.setStatus( STATUS.OBSERVER );
+			player.resetForNextRound();
 			
-			// If that worked, note that they are an observer
-			if( status ) {
-				// Set the user's status to OBSERVER
-				player.setStatus( STATUS.OBSERVER );
-				player.resetForNextRound();
-				
-				// If they're the first person in the game, though, it needs to be started
-				if( players.size() == 1 ) {
+			// Add them to the roster of players
+			roster = roster.with( player );
+			status = true;
+			
+			// If they're the first person in the game, though, it needs to be started.
+			if( roster.size() == 1 ) {
+				Runnable starter = gameStarter;
+				if( starter != null ) {
+					starter.run();
+				} else {
 					ActiveGameCoordinator.getDefaultActiveGameCoordinator().startGame( this.gameId );
 				}
 			}
@@ -651,16 +720,25 @@ public class GameState {
 	 * 
 	 * @param player Who to remove
 	 */
-	synchronized public boolean removePlayer( User player ) {
+	public boolean removePlayer( User player ) {
 		
 		// Assume that we'll fail
 		boolean status = false;
 		
 		if( player != null ) {		
-			// Remove them from the list of players
-			status = players.remove( player );
+			// Remove them from the roster of players
+			Roster previous = roster;
+			roster = previous.without( player );
+			status = (roster != previous);
 			if( status ) {
+				seats.leave();
 				player.resetForNextRound();
+				if( player.getUserMetadata() != null && player.getUserMetadata().getUsername() != null ) {
+					gameAndUserPrefixes.remove( player.getUserMetadata().getUsername() );
+				}
+				
+				// The game might have been waiting on them
+				signalPlayerAction();
 			}
 		}
 		
@@ -670,12 +748,34 @@ public class GameState {
 	
 	/** 
 	 * Returns the number of players, without regard to their
-	 * status as observer or active.
+	 * status as observer or active. Like the roster, it can
+	 * be called from any thread.
 	 * 
 	 * @return Total number of players in game
 	 */
-	synchronized public int getNumberOfPlayers() {
-		return (players == null ? 0 : players.size() );
+	public int getNumberOfPlayers() {
+		return roster.size();
+	}
+	
+	/**
+	 * CONCURRENT: Gets the seats, which is how joins are admitted
+	 * without overfilling the table.
+	 * 
+	 * @return The seats
+	 */
+	public Seats getSeats() {
+		return seats;
+	}
+	
+	/**
+	 * CONCURRENT: Gets the players, as they are right now. The
+	 * roster never changes, so it can be read from any thread,
+	 * and gone through without copying it.
+	 * 
+	 * @return The roster, never null
+	 */
+	public Roster getRoster() {
+		return roster;
 	}
 	
 	/**
@@ -684,25 +784,19 @@ public class GameState {
 	 */
 	public void removeActivePlayersWithNoBet() {
 		
-		// Grab the users
-		User[] users = getCopyOfPlayers();
+		// Grab the users; removing them swaps in a new roster, but not this one
+		Roster users = roster;
 		
-		// If array is non-null, we can look and see if any users haven't bet
-		if( users != null ) {
-			for( int i = 0; i < users.length; i++ ) {
-				User user = ((User)users[i]);
-				
-				// If the user is active...
-				if( user != null && user.getStatus() != null && user.getStatus().equals(STATUS.ACTIVE) ) {
-					
-					// And they placed no bet
-					if( !user.hasSpecifiedBet() ) {
-						// Force them to idle timeout
-						user.forceTimeoutWhileBetting();
-						// Remove them from the list of game players
-						removePlayer(user);
-					}
-				}
+		// We can look and see if any active users haven't bet
+		for( int i = 0; i < users.getActiveCount(); i++ ) {
+			User user = users.getActive(i);
+			
+			// And they placed no bet
+			if( !user.hasSpecifiedBet() ) {
+				// Force them to idle timeout
+				user.forceTimeoutWhileBetting();
+				// Remove them from the list of game players
+				removePlayer(user);
 			}
 		}
 	}
@@ -718,21 +812,26 @@ public class GameState {
 	 */
 	public boolean arePlayersWithOutstandingBets() {
 	
-		User[] users = getCopyOfPlayers();
-		for( User user : users ) {
-			// If the user is active
-			if( user.getStatus() != null && user.getStatus().equals(STATUS.ACTIVE) ) {
-				// Return true if they don't have a bet set
-				if( !user.hasSpecifiedBet() ) {
-					return true;
-				}
+		Roster current = roster;
+		for( int i = 0; i < current.getActiveCount(); i++ ) {
+			// If the user is active, and they don't have a bet set
+			if( !current.getActive(i).hasSpecifiedBet() ) {
+				return true;
 			}
 		}
-		
-		// If we got this far, we're okay
 		return false;
 	}
 	
+	/**
+	 * Is the player still in the game?
+	 * 
+	 * @param player The player
+	 * @return True if they haven't left it
+	 */
+	public boolean hasPlayer( User player ) {
+		return roster.contains( player );
+	}
+	
 
 	/**
 	 * Looks through the list of active players in the session
@@ -748,13 +847,12 @@ public class GameState {
 		User nextPlayer = null;
 		
 		// Look for any who are active and need to pla
-		User[] players = this.getCopyOfPlayers();
-		for( User player : players ) {
-			if( player.getStatus() != null && player.getStatus().equals(STATUS.ACTIVE) ) {
-				// Okay, they're active. But do they need to make their game play?
-				if( !player.getFinishedGamePlayThisRound() ) {
-					nextPlayer = player;
-				}
+		Roster current = roster;
+		for( int i = 0; i < current.getActiveCount(); i++ ) {
+			// Okay, they're active. But do they need to make their game play?
+			User player = current.getActive(i);
+			if( !player.getFinishedGamePlayThisRound() ) {
+				nextPlayer = player;
 			}
 		}
 		
@@ -762,6 +860,78 @@ public class GameState {
 	}
 
 	
+	/*********************************************************************
+	 * These let the players' commands tell the game when they act
+	 ********************************************************************/
+	
+	/**
+	 * CONCURRENT: Called when a player has done something that the
+	 * game might be waiting on -- placed a bet, hit, stood, or left --
+	 * so the game can check again right away.
+	 */
+	public void signalPlayerAction() {
+		
+		playerActions.incrementAndGet();
+		notifyPlayerActionListener();
+	}
+	
+	/**
+	 * CONCURRENT: Counts how many times a player has acted.
+	 * 
+	 * @return The count
+	 */
+	public long getPlayerActionCount() {
+		return playerActions.get();
+	}
+	
+	/**
+	 * CONCURRENT: Sets what starts the game when its first player
+	 * joins. By default the {@link ActiveGameCoordinator} starts
+	 * the game's table, but a game that's played some other way,
+	 * like in a simulation, sets its own.
+	 * 
+	 * @param starter What to run, or null for the default
+	 */
+	public void setGameStarter( Runnable starter ) {
+		this.gameStarter = starter;
+	}
+	
+	/**
+	 * CONCURRENT: Sets where the standby shoe is shuffled. By
+	 * default it's on the shared shuffler threads, but a game
+	 * that's played on one thread, like in a simulation, can
+	 * use {@link StandbyShoe#SAME_THREAD}. It has to be set
+	 * before any cards are dealt.
+	 * 
+	 * @param executor Where to shuffle, or null for the default
+	 */
+	public void setShuffleExecutor( Executor executor ) {
+		this.shuffleExecutor = executor;
+	}
+	
+	/**
+	 * SECURITY: Sets where the shoes' shuffle seeds come from.
+	 * By default it's {@link SecureShuffleEntropy#getDefault()},
+	 * which audits every shuffle. It has to be set before any
+	 * cards are dealt.
+	 * 
+	 * @param entropy Where seeds come from, or null for the default
+	 */
+	public void setShuffleEntropy( ShuffleEntropy entropy ) {
+		this.shuffleEntropy = entropy;
+	}
+	
+	/**
+	 * CONCURRENT: Sets what to tell when a player acts. On the
+	 * server, it's the table, which is stepped so it can see
+	 * what the player did.
+	 * 
+	 * @param listener What to run, or null for nothing
+	 */
+	public void setPlayerActionListener( Runnable listener ) {
+		this.playerActionListener = listener;
+	}
+	
 	/*********************************************************************
 	 * These have to do with the game shoe, and dealing cards, and all
 	 * of that.
@@ -770,8 +940,9 @@ public class GameState {
 	/**
 	 * Checks to see if the cards need to be shuffled. Rules for
 	 * this include: if you just started, of course you need to
-	 * shuffle. Otherwise you shuffle if less than 50% of the cards
-	 * are remaining.
+	 * shuffle. Otherwise you shuffle if more of the shoe has been
+	 * dealt than the table's rules allow, which is 50% unless they
+	 * say otherwise.
 	 * 
 	 * @return True if a shuffle is needed as per these rules, false
 	 * otherwise
@@ -782,20 +953,32 @@ public class GameState {
 		
 		if( shoe == null ) {
 			needToReshuffle = true;
-		} else if( shoe.getPercentageOfDealtCards() > 0.5 ) {
+		} else if( shoe.getPercentageOfDealtCards() > rules.getReshufflePenetration() ) {
 			needToReshuffle = true;
 		}
 		
 		return needToReshuffle;
 	}
 	
+	/**
+	 * @return The rules the table is dealt by, never null
+	 */
+	public TableRules getRules() {
+		return rules;
+	}
+	
 	/**
 	 * Get the dealer shoe
 	 * return the dealer shoe, guaranteed non-null
 	 */
 	public DealerShoeInterface getDealerShoe() {
 		if (shoe == null) {
-			shoe = new SimpleDealerShoe( numberOfDecks );
+			shoe = new SimpleDealerShoe( rules.getNumDecks(), shuffleEntropy );
+			
+			// And the other one starts being shuffled right away, so
+			// it's ready by the time it's needed
+			standby = new StandbyShoe( shuffleExecutor );
+			standby.prepare( new SimpleDealerShoe( rules.getNumDecks(), shuffleEntropy ) );
 		}
 		return shoe;
 	}
@@ -803,10 +986,22 @@ public class GameState {
 	/**
 	 * Perform the action of reshuffling. Notify players about
 	 * the cards being shuffled.
+	 * <P>
+	 * <b>CONCURRENT:</b> If the standby shoe has been shuffled,
+	 * the table just switches to it, and the shoe it was dealing
+	 * from is shuffled in the background, to be the next standby.
+	 * Only if the standby isn't ready yet is the shoe shuffled
+	 * here, on the table's thread.
 	 */
 	public void shuffle() {
-		shoe = getDealerShoe();
-		shoe.shuffle();
+		DealerShoeInterface spent = getDealerShoe();
+		DealerShoeInterface shuffled = standby.take();
+		if( shuffled == null ) {
+			spent.shuffle();
+		} else {
+			shoe = shuffled;
+			standby.prepare( spent );
+		}
 		notifyAllOfShuffle();
 	}
 	
@@ -826,25 +1021,27 @@ public class GameState {
 	 * <li>Requests for bids are made of all players
 	 * </ol>
 	 */
-	synchronized public void startNewRound() {
+	public void startNewRound() {
 		
-		// Need to have valid lists
-		if( players != null ) {
-			// Sets up all players active
-			makeAllPlayersActive();
-			
-			// Sets up all players active
-			resetAllPlayersForNewRound();
-			
-			// Reset the dealer's hand
-			setDealerHand( null );
-			
-			// Request bids from all players
-			for( User player : players ) {
-				ResponseCode code = new ResponseCode( ResponseCode.CODE.REQUEST_FOR_BET );
-				player.setProtocolState( BlackjackProtocol.STATE.IN_SESSION_AWAITING_BETS );
-				player.sendMessage(code);
-			}
+		// Sets up all players active
+		makeAllPlayersActive();
+		
+		// Sets up all players active
+		resetAllPlayersForNewRound();
+		
+		// Reset the dealer's hand
+		setDealerHand( null );
+		
+		// Everyone is now waiting to bet
+		Roster current = roster;
+		for( int i = 0; i < current.size(); i++ ) {
+			current.get(i).setProtocolState( BlackjackProtocol.STATE.IN_SESSION_AWAITING_BETS );
+		}
+		
+		// Request bids from all players
+		for( int i = 0; i < current.size(); i++ ) {
+			ResponseCode code = new ResponseCode( ResponseCode.CODE.REQUEST_FOR_BET );
+			current.get(i).sendMessage(code);
 		}
 	}
 
@@ -856,16 +1053,16 @@ public class GameState {
 	
 	/**
 	 * Walk through the players, and mark them all as ACTIVE.
-     * <P>
-	 * TODO: I'm worried about this method and synchronization
+	 * Then the roster is swapped for one that has them all
+	 * with the active players.
 	 */
 	private void makeAllPlayersActive() {
 
-		if( players != null ) {
-			for( User player : players ) {
-				player.setStatus( STATUS.ACTIVE );
-			}
+		Roster current = roster;
+		for( int i = 0; i < current.size(); i++ ) {
+			current.get(i).setStatus( STATUS.ACTIVE );
 		}
+		roster = current.repartitioned();
 	}
 
 	/**
@@ -878,31 +1075,30 @@ public class GameState {
 	 */
 	private void resetAllPlayersForNewRound() {
 
-		if( players != null ) {
-			for( User player : players ) {
-				player.resetForNextRound();
-			}
+		Roster current = roster;
+		for( int i = 0; i < current.size(); i++ ) {
+			current.get(i).resetForNextRound();
+		}
+	}
+
+	/**
+	 * Tells the listener, if there is one, that a player acted
+	 */
+	private void notifyPlayerActionListener() {
+		Runnable listener = playerActionListener;
+		if( listener != null ) {
+			listener.run();
 		}
 	}
 
 	/**
-	 * Get a copy of all the players, in an array list, while
-	 * synchronized. That way we can add and remove players to
-	 * our less and not run into concurrency issues
+	 * Get a copy of all the players. Going through the
+	 * {@link #getRoster() roster} instead doesn't need a copy.
 	 * 
 	 * @return A list of the players
 	 */
-	synchronized public User[] getCopyOfPlayers() {
-
-		User[] users = null;
-		if( players != null ) {
-			Object[] copy = players.toArray();
-			users = new User[copy.length];
-			for( int i = 0; i < copy.length; i++ ) {
-				users[i] = (User)copy[i];
-			}
-		}
-		return users;
+	public User[] getCopyOfPlayers() {
+		return roster.toArray();
 	}
 
 	/**
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - Roster.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: An unchanging list of who is at a table, split into the active
+ * players and the observers, that the game state swaps for a new one whenever
+ * someone joins or leaves, or a new round makes everyone active.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.game;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import drexel.edu.blackjack.server.game.GameState.STATUS;
+
+/**
+ * <b>CONCURRENT:</b> A snapshot of the players at a table.
+ * It never changes once it's made; the {@link GameState}
+ * makes a new one, with the next version number, and swaps
+ * it in. So anyone can read the one they got, without a
+ * lock, and without worrying that it changes under them.
+ * <P>
+ * The players are kept in the order they joined, which is
+ * the order gameplay goes in. They're also split into the
+ * active players and the observers, as they were when the
+ * roster was made, and indexed by username. They're read by
+ * index, so going through them makes no objects:
+ * <pre>
+ * for( int i = 0; i &lt; roster.getActiveCount(); i++ ) {
+ *     User player = roster.getActive( i );
+ * }
+ * </pre>
+ *
+ * @author Jennifer
+ */
+public final class Roster {
+
+	/**
+	 * The roster of an empty table
+	 */
+	public static final Roster EMPTY = new Roster( 0, new User[0] );
+
+	// Which roster this is, counting up from 0 for each table
+	private final long version;
+
+	// Everyone, in the order they joined
+	private final User[] players;
+
+	// The same, split by status
+	private final User[] active;
+	private final User[] observers;
+
+	// Everyone with a username, by username
+	private final Map<String,User> byUsername;
+
+	/*********************************************************************
+	 * Constructor goes here
+	 ********************************************************************/
+
+	/**
+	 * Makes a roster, splitting the players by the status they
+	 * have right now.
+	 *
+	 * @param version Its version
+	 * @param players The players, which the roster keeps, so
+	 * nothing else can have a reference to the array
+	 */
+	private Roster( long version, User[] players ) {
+
+		this.version = version;
+		this.players = players;
+
+		int activeCount = 0;
+		for( User player : players ) {
+			if( player.getStatus() == STATUS.ACTIVE ) {
+				activeCount++;
+			}
+		}
+		active = new User[activeCount];
+		observers = new User[players.length - activeCount];
+
+		Map<String,User> index = new HashMap<String,User>();
+		int a = 0;
+		int o = 0;
+		for( User player : players ) {
+			if( player.getStatus() == STATUS.ACTIVE ) {
+				active[a++] = player;
+			} else {
+				observers[o++] = player;
+			}
+			String username = getUsername( player );
+			if( username != null ) {
+				index.put( username, player );
+			}
+		}
+		byUsername = Collections.unmodifiableMap( index );
+	}
+
+	/*********************************************************************
+	 * Public methods go here
+	 ********************************************************************/
+
+	/**
+	 * @return Which roster this is. Each new roster for a table
+	 * has a higher version than the one it replaced.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return How many players there are, active or not
+	 */
+	public int size() {
+		return players.length;
+	}
+
+	/**
+	 * @param i Which player, in the order they joined
+	 * @return The player
+	 */
+	public User get( int i ) {
+		return players[i];
+	}
+
+	/**
+	 * @return How many of the players were active
+	 */
+	public int getActiveCount() {
+		return active.length;
+	}
+
+	/**
+	 * @param i Which active player, in the order they joined
+	 * @return The player
+	 */
+	public User getActive( int i ) {
+		return active[i];
+	}
+
+	/**
+	 * @return How many of the players were observers
+	 */
+	public int getObserverCount() {
+		return observers.length;
+	}
+
+	/**
+	 * @param i Which observer, in the order they joined
+	 * @return The player
+	 */
+	public User getObserver( int i ) {
+		return observers[i];
+	}
+
+	/**
+	 * @param username The username
+	 * @return The player with it, or null if there isn't one
+	 */
+	public User getPlayer( String username ) {
+		return username == null ? null : byUsername.get( username );
+	}
+
+	/**
+	 * @param player Who to look for
+	 * @return True if they're on the roster
+	 */
+	public boolean contains( User player ) {
+
+		if( player == null ) {
+			return false;
+		}
+		String username = getUsername( player );
+		if( username != null ) {
+			return byUsername.get( username ) == player;
+		}
+		for( User other : players ) {
+			if( other == player ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return A copy of the players, in the order they joined
+	 */
+	public User[] toArray() {
+		return players.clone();
+	}
+
+	/*********************************************************************
+	 * Package methods go here, for the game state to make new rosters
+	 ********************************************************************/
+
+	/**
+	 * @param player Who joined
+	 * @return The next roster, with them on the end
+	 */
+	Roster with( User player ) {
+		User[] next = new User[players.length + 1];
+		System.arraycopy( players, 0, next, 0, players.length );
+		next[players.length] = player;
+		return new Roster( version + 1, next );
+	}
+
+	/**
+	 * @param player Who left
+	 * @return The next roster, without them, or this one if they
+	 * weren't on it
+	 */
+	Roster without( User player ) {
+		for( int i = 0; i < players.length; i++ ) {
+			if( players[i] == player ) {
+				User[] next = new User[players.length - 1];
+				System.arraycopy( players, 0, next, 0, i );
+				System.arraycopy( players, i + 1, next, i, players.length - i - 1 );
+				return new Roster( version + 1, next );
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @return The next roster, with the same players, split by
+	 * the status they have now
+	 */
+	Roster repartitioned() {
+		return new Roster( version + 1, players );
+	}
+
+	/*********************************************************************
+	 * Private methods go here
+	 ********************************************************************/
+
+	/**
+	 * @return The player's username, or null if they don't have one
+	 */
+	private static String getUsername( User player ) {
+		return player.getUserMetadata() == null ? null : player.getUserMetadata().getUsername();
+	}
+}
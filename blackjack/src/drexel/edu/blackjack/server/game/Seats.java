@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - Seats.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Counts the seats at a table that are taken, or held for someone
+ * who is joining, so that a table can never be overfilled no matter how many
+ * players try to join it at once.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.game;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <b>CONCURRENT:</b> The seats at a table. Joining is done
+ * in two steps: first a seat is reserved, then the
+ * reservation is claimed when the player is actually added.
+ * A reservation is made with a compare-and-set, and only
+ * if the seats taken plus the seats reserved is under the
+ * limit, so no lock is needed and the table can't be
+ * overfilled, however many joins come in at once.
+ * <P>
+ * If the join fails the reservation should be released. If
+ * it's never released, say because the thread doing the
+ * join died, it expires, and the seat goes back the next
+ * time anyone asks about the seats.
+ * <P>
+ * The seats taken and the seats reserved are kept together
+ * in one long, so that a claim, which moves a seat from one
+ * to the other, is a single compare-and-set too.
+ *
+ * @author Jennifer
+ */
+public final class Seats {
+
+	/**
+	 * A seat held for someone who is joining a table. It's
+	 * either claimed, when they're added, or released, or it
+	 * expires; whichever happens first is the only one that
+	 * counts.
+	 */
+	public static final class Reservation {
+
+		// What can happen to it; only the first one sticks
+		private static final int PENDING	= 0;
+		private static final int CLAIMED	= 1;
+		private static final int RELEASED	= 2;
+
+		private final Seats seats;
+		private final long deadline;
+		private final AtomicInteger state = new AtomicInteger( PENDING );
+
+		private Reservation( Seats seats, long deadline ) {
+			this.seats = seats;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Gives the seat back, if it wasn't claimed. It's fine
+		 * to call this after a join worked, so it can go in a
+		 * finally block.
+		 *
+		 * @return True if this gave the seat back
+		 */
+		public boolean release() {
+			if( state.compareAndSet( PENDING, RELEASED ) ) {
+				seats.update( 0, -1 );
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * @return True if it's still holding a seat
+		 */
+		public boolean isPending() {
+			return state.get() == PENDING;
+		}
+
+		/**
+		 * @param now The time, from System.nanoTime()
+		 * @return True if it's too late to claim it
+		 */
+		public boolean isExpired( long now ) {
+			return now - deadline >= 0;
+		}
+
+		/**
+		 * Turns the reserved seat into a taken one, if it's
+		 * still pending and hasn't expired.
+		 */
+		private boolean claim() {
+			if( isExpired( System.nanoTime() ) ) {
+				release();
+				return false;
+			}
+			if( state.compareAndSet( PENDING, CLAIMED ) ) {
+				seats.update( 1, -1 );
+				return true;
+			}
+			return false;
+		}
+	}
+
+	// Seats taken in the high half, seats reserved in the low half
+	private final AtomicLong counts = new AtomicLong();
+
+	// Reservations that might still be pending, so they can be expired
+	private final Queue<Reservation> pending = new ConcurrentLinkedQueue<Reservation>();
+
+	/*********************************************************************
+	 * Public methods go here
+	 ********************************************************************/
+
+	/**
+	 * Reserves a seat, if there's one to be had.
+	 *
+	 * @param maxPlayers How many seats the table has
+	 * @param timeoutMillis How long the reservation lasts
+	 * before it expires
+	 * @return The reservation, or null if the table is full
+	 */
+	public Reservation reserve( int maxPlayers, long timeoutMillis ) {
+
+		expire();
+		while( true ) {
+			long current = counts.get();
+			if( taken( current ) + reserved( current ) >= maxPlayers ) {
+				return null;
+			}
+			if( counts.compareAndSet( current, current + 1 ) ) {
+				Reservation reservation = new Reservation( this,
+						System.nanoTime() + timeoutMillis * 1000000L );
+				pending.add( reservation );
+				return reservation;
+			}
+		}
+	}
+
+	/**
+	 * @param maxPlayers How many seats the table has
+	 * @return True if a seat could be reserved right now
+	 */
+	public boolean hasRoom( int maxPlayers ) {
+		expire();
+		long current = counts.get();
+		return taken( current ) + reserved( current ) < maxPlayers;
+	}
+
+	/**
+	 * @return How many seats have players in them
+	 */
+	public int getTaken() {
+		return taken( counts.get() );
+	}
+
+	/**
+	 * @return How many seats are held for players who are joining
+	 */
+	public int getReserved() {
+		return reserved( counts.get() );
+	}
+
+	/*********************************************************************
+	 * Package methods go here, for the game state as players come and go
+	 ********************************************************************/
+
+	/**
+	 * A player is being added. If they have a reservation, it's
+	 * claimed; otherwise they just take a seat, whether or not
+	 * there's room, as the table itself never turns anyone away.
+	 *
+	 * @param reservation Their reservation, or null if they don't have one
+	 * @return False if the reservation couldn't be claimed
+	 */
+	boolean sit( Reservation reservation ) {
+		if( reservation == null ) {
+			update( 1, 0 );
+			return true;
+		}
+		return reservation.seats == this && reservation.claim();
+	}
+
+	/**
+	 * A player left, so their seat is free.
+	 */
+	void leave() {
+		update( -1, 0 );
+	}
+
+	/*********************************************************************
+	 * Private methods go here
+	 ********************************************************************/
+
+	/**
+	 * Releases any reservations that have expired, and forgets
+	 * about any that have been claimed or released.
+	 */
+	private void expire() {
+		if( pending.isEmpty() ) {
+			return;
+		}
+		long now = System.nanoTime();
+		Iterator<Reservation> iterator = pending.iterator();
+		while( iterator.hasNext() ) {
+			Reservation reservation = iterator.next();
+			if( !reservation.isPending() ) {
+				iterator.remove();
+			} else if( reservation.isExpired( now ) ) {
+				reservation.release();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Changes both counts in one go.
+	 */
+	private void update( int takenChange, int reservedChange ) {
+		counts.addAndGet( ((long)takenChange << 32) + reservedChange );
+	}
+
+	private static int taken( long counts ) {
+		return (int)(counts >> 32);
+	}
+
+	private static int reserved( long counts ) {
+		return (int)counts;
+	}
+}
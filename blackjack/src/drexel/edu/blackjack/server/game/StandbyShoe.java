@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - StandbyShoe.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: A table's second shoe, which is shuffled in the background while
+ * the first one is dealt from, so that when it's time to reshuffle the table
+ * can just switch shoes instead of shuffling in the middle of a round.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.game;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.cards.DealerShoeInterface;
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * <b>CONCURRENT:</b> Holds a shoe for a table that's being,
+ * or has been, shuffled by a shuffler thread. The table
+ * gives it a shoe with {@link #prepare(DealerShoeInterface)},
+ * which is shuffled on another thread, and takes it back
+ * with {@link #take()} when it's needed. Once a shoe's
+ * been given here, the table doesn't touch it until it's
+ * taken back, and the worker doesn't touch it after it's
+ * been handed over, so the shoe itself needs no lock: the
+ * atomic hand-off is all that's shared.
+ * <P>
+ * All tables share the same shuffler threads. There are
+ * only a few of them, at the lowest priority, so that even
+ * if many tables reshuffle at once, shuffling only ever
+ * takes a few processors, and only when the tables don't
+ * need them. The number is a quarter of the processors,
+ * but at least one, unless the {@value #THREADS_PROPERTY}
+ * system property says otherwise.
+ *
+ * @author Jennifer
+ */
+public class StandbyShoe {
+
+	/**
+	 * The system property for how many shuffler threads to use
+	 */
+	public static final String THREADS_PROPERTY	= "shuffleThreads";
+
+	/**
+	 * Runs the shuffles on the thread that asks for them,
+	 * for when there's only meant to be one thread
+	 */
+	public static final Executor SAME_THREAD		= new Executor() {
+		@Override
+		public void execute( Runnable command ) {
+			command.run();
+		}
+	};
+
+	// The threads the shoes are shuffled on, shared by every table
+	private static ThreadPoolExecutor shufflerPool	= null;
+
+	// Where this table's shoes are shuffled
+	private final Executor executor;
+
+	// CONCURRENT: The shoe, once it's been shuffled, or null if
+	// there isn't one ready
+	private final AtomicReference<DealerShoeInterface> ready =
+			new AtomicReference<DealerShoeInterface>();
+
+	// And our logger
+	private final static Logger LOGGER = BlackjackLogger.createLogger(StandbyShoe.class.getName());
+
+	/************************************************************
+	 * Constructors
+	 ***********************************************************/
+
+	/**
+	 * A standby shoe that's shuffled by the shared shuffler
+	 * threads
+	 */
+	public StandbyShoe() {
+		this( null );
+	}
+
+	/**
+	 * A standby shoe that's shuffled by the given executor
+	 *
+	 * @param executor Where the shuffles are run, or null for
+	 * the shared shuffler threads
+	 */
+	public StandbyShoe( Executor executor ) {
+		this.executor = (executor == null ? getShufflerPool() : executor);
+	}
+
+	/************************************************************
+	 * Public methods
+	 ***********************************************************/
+
+	/**
+	 * Has a shoe shuffled, to be taken when it's next needed.
+	 * The caller mustn't use the shoe again until it gets it
+	 * back from {@link #take()}.
+	 *
+	 * @param shoe The shoe, in whatever state it was left in
+	 */
+	public void prepare( final DealerShoeInterface shoe ) {
+
+		if( shoe == null ) {
+			return;
+		}
+		try {
+			executor.execute( new Runnable() {
+				@Override
+				public void run() {
+					shoe.shuffle();
+					ready.set( shoe );
+				}
+			} );
+		} catch( RejectedExecutionException e ) {
+			LOGGER.warning( "Couldn't shuffle a standby shoe in the background, so shuffling it here." );
+			shoe.shuffle();
+			ready.set( shoe );
+		}
+	}
+
+	/**
+	 * Takes the shuffled shoe, if it's ready.
+	 *
+	 * @return The shoe, freshly shuffled and with nothing
+	 * dealt from it, or null if it isn't ready yet
+	 */
+	public DealerShoeInterface take() {
+		return ready.getAndSet( null );
+	}
+
+	/************************************************************
+	 * Private methods
+	 ***********************************************************/
+
+	/**
+	 * Gets the shuffler threads, creating them if needed. They
+	 * run at the lowest priority, and don't keep the server
+	 * running.
+	 *
+	 * @return The pool of shuffler threads
+	 */
+	private static synchronized Executor getShufflerPool() {
+		if( shufflerPool == null ) {
+			int threads = Integer.getInteger( THREADS_PROPERTY,
+					Math.max( 1, Runtime.getRuntime().availableProcessors() / 4 ) );
+			shufflerPool = new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						@Override
+						public Thread newThread( Runnable runnable ) {
+							Thread thread = new Thread( runnable, "ShoeShuffler" );
+							thread.setDaemon( true );
+							thread.setPriority( Thread.MIN_PRIORITY );
+							return thread;
+						}
+					});
+		}
+		return shufflerPool;
+	}
+
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - TableOwner.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Whatever owns a game's state, so that everything that changes it
+ * can be handed over and done in one place, one thing at a time.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.game;
+
+import java.util.concurrent.Callable;
+
+/**
+ * <b>CONCURRENT:</b> A game's state, its hands, and its
+ * shoe are only ever changed by the game's owner. Anyone
+ * else, like a connection handling a player's BET or HIT,
+ * hands the work over as a message. The owner runs the
+ * messages one at a time, in the order they came in, in
+ * between the steps of the game itself, so nothing in
+ * {@link GameState} needs a lock.
+ *
+ * @author Jennifer
+ */
+public interface TableOwner {
+
+	/**
+	 * Runs a message as the owner of the game, and waits for
+	 * what it returns. If the calling thread is the one the
+	 * owner is running on, the message is just run.
+	 *
+	 * @param message What to run
+	 * @return What the message returned
+	 * @throws Exception If the message threw one, or it couldn't
+	 * be run. If it's a TimeoutException, the owner didn't get to
+	 * the message in time, and it was never run.
+	 */
+	public <T> T call( Callable<T> message ) throws Exception;
+
+}
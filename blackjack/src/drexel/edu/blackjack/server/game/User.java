@@ -21,7 +21,9 @@ import drexel.edu.blackjack.db.user.FlatfileUserManager;
 import drexel.edu.blackjack.db.user.UserManagerInterface;
 import drexel.edu.blackjack.db.user.UserMetadata;
 import drexel.edu.blackjack.server.BlackjackProtocol;
-import drexel.edu.blackjack.server.BlackjackServerThread;
+import drexel.edu.blackjack.server.ClientConnection;
+import drexel.edu.blackjack.server.EncodedMessage;
+import drexel.edu.blackjack.server.MessageBatch;
 import drexel.edu.blackjack.server.ResponseCode;
 import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
 import drexel.edu.blackjack.server.game.GameState.STATUS;
@@ -43,8 +45,11 @@ public class User {
 	// Their metadata
 	private UserMetadata userMetadata;
 	
+	// CONCURRENT: The fields about their place in a game are volatile. They are
+	// set by the thread handling their commands, and read by the game's thread.
+	
 	// Hand they have in the current game
-	private Hand hand;
+	private volatile Hand hand;
 
 	// This variable is very similar to the next one, so here is the distinction:
 	// this flag is whether or not they have ended their gameplay this round. It's
@@ -52,7 +57,7 @@ public class User {
 	// only after, in this round, one of the following things happened: a) they timed
 	// out and no longer are in the game; b) they chose to STAND; c) they chose to hit
 	// and busted.
-	private boolean hasFinishedGameplayThisRound = true;
+	private volatile boolean hasFinishedGameplayThisRound = true;
 	
 	// This variable is very similar to the previous one, so here is the distinction:
 	// this flag is whether or not they have chosen to HIT or STAND, since the last
@@ -60,16 +65,19 @@ public class User {
 	// make this round, so it's not necessary that the hasFinishedGameplayThisRound
 	// be true if this variable is true. Whenever someone does a HIT or STAND command,
 	// this variable should be set to false
-	private boolean needsToMakeAPlay = false;
+	private volatile boolean needsToMakeAPlay = false;
 	
 	// Game they are playing
-	private Game game;
+	private volatile Game game;
 	
 	// Their status within that game
-	private GameState.STATUS status;
+	private volatile GameState.STATUS status;
+	
+	// Their client connection
+	private volatile ClientConnection connection = null;
 	
-	// Their server thread
-	private BlackjackServerThread thread = null;
+	// Where their balance is saved, or null for the default user manager
+	private volatile UserManagerInterface userManager = null;
 	
 	// For debug output
 	private final static Logger LOGGER = BlackjackLogger.createLogger(User.class.getName()); 
@@ -118,6 +126,25 @@ public class User {
 	public void setUserMetadata(UserMetadata user) {
 		this.userMetadata = user;
 	}
+	/**
+	 * Gets where the user's balance is saved when it changes,
+	 * which is the server's user manager unless something else
+	 * was set.
+	 * @return the user manager
+	 */
+	public UserManagerInterface getUserManager() {
+		UserManagerInterface manager = userManager;
+		return manager == null ? FlatfileUserManager.getDefaultUserManager() : manager;
+	}
+	/**
+	 * Sets where the user's balance is saved when it changes. A
+	 * simulated player, for one, shouldn't be saved to the
+	 * server's user database.
+	 * @param userManager the user manager, or null for the default
+	 */
+	public void setUserManager(UserManagerInterface userManager) {
+		this.userManager = userManager;
+	}
 	/**
 	 * Get the user's hand. Since our implementation allows the
 	 * player to be in one game at a time, we can store this on
@@ -199,12 +226,12 @@ public class User {
 
 	/**
 	 * If the user is connected (and they should be), keep a pointer
-	 * to their server thread around, so messages can get sent
+	 * to their client connection around, so messages can get sent
 	 * 
-	 * @param thread The server thread to set
+	 * @param connection The client connection to set
 	 */
-	public void setBlackjackServerThread(BlackjackServerThread thread) {
-		this.thread = thread;
+	public void setClientConnection(ClientConnection connection) {
+		this.connection = connection;
 	}
 	
 	/**
@@ -252,8 +279,8 @@ public class User {
 	 */
 	public boolean setProtocolState( BlackjackProtocol.STATE state ) {
 		
-		if( thread != null && thread.getProtocol() != null ) {
-			thread.getProtocol().setState( state );
+		if( connection != null && connection.getProtocol() != null ) {
+			connection.getProtocol().setState( state );
 			return true;
 		}
 		
@@ -268,8 +295,8 @@ public class User {
 	 */
 	public boolean hasSpecifiedBet() {
 		
-		if( thread != null && thread.getProtocol() != null ) {
-			return thread.getProtocol().getBet() != null;
+		if( connection != null && connection.getProtocol() != null ) {
+			return connection.getProtocol().getBet() != null;
 		}
 		
 		// THis would be bad
@@ -285,8 +312,8 @@ public class User {
 	 */
 	public Integer getBet() {
 		
-		if( thread != null && thread.getProtocol() != null ) {
-			return thread.getProtocol().getBet();
+		if( connection != null && connection.getProtocol() != null ) {
+			return connection.getProtocol().getBet();
 		}
 		
 		// This is sort of bad....
@@ -299,8 +326,8 @@ public class User {
 	 * to make a game-playing move to 'true'
 	 */
 	public void resetForNextRound() {
-		if( thread != null && thread.getProtocol() != null ) {
-			thread.getProtocol().setBet(null);
+		if( connection != null && connection.getProtocol() != null ) {
+			connection.getProtocol().setBet(null);
 			this.setHand(null);
 			this.setHasFinishedGamePlayThisRound( false );
 		}
@@ -323,18 +350,68 @@ public class User {
 		
 		boolean success = false;
 		
-		if( thread == null ) {
+		if( connection == null ) {
 			LOGGER.severe( "Had a request to send user " + 
 					(userMetadata == null ? userMetadata.getUsername() : "with no metadata" ) + 
 					" a response, but couldn't find their socket." );
 		} else {
-			thread.sendMessage( code );
+			connection.sendMessage( code );
 			success = true;
 		}
 		
 		return success;
 	}
 
+	/**
+	 * Sends an already-encoded message to the user. It's
+	 * flushed right away, unless the calling thread has a
+	 * {@link MessageBatch} open.
+	 * 
+	 * @param message What to send
+	 * @return true if the user has a connection to send it on
+	 */
+	public boolean sendMessage(EncodedMessage message) {
+		
+		boolean success = queueMessage( message );
+		if( success ) {
+			flushMessages();
+		}
+		return success;
+	}
+
+	/**
+	 * Queues an already-encoded message for the user, without
+	 * flushing it.
+	 * 
+	 * @param message What to send
+	 * @return true if the user has a connection to queue it on
+	 */
+	public boolean queueMessage(EncodedMessage message) {
+		
+		ClientConnection current = connection;
+		if( current == null ) {
+			LOGGER.severe( "Had a request to send user " + 
+					(userMetadata == null ? "with no metadata" : userMetadata.getUsername() ) + 
+					" a response, but couldn't find their socket." );
+			return false;
+		}
+		current.queueMessage( message );
+		return true;
+	}
+	
+	/**
+	 * Flushes whatever has been queued for the user, unless
+	 * the calling thread has a {@link MessageBatch} open, in
+	 * which case it's flushed when the batch ends.
+	 */
+	public void flushMessages() {
+		
+		ClientConnection current = connection;
+		if( current != null && !MessageBatch.defer( current ) ) {
+			current.flushMessages();
+		}
+	}
+
 	/**
 	 * If a user is forced to timeout while betting, they
 	 * have their state changed to not being in a session,
@@ -343,8 +420,8 @@ public class User {
 	public void forceTimeoutWhileBetting() {
 		
 		// First change the state
-		if( thread != null && thread.getProtocol() != null ) {
-			thread.getProtocol().setState( STATE.NOT_IN_SESSION );
+		if( connection != null && connection.getProtocol() != null ) {
+			connection.getProtocol().setState( STATE.NOT_IN_SESSION );
 		}
 		
 		// THen send the response code
@@ -359,8 +436,8 @@ public class User {
 	 */
 	public void forceTimeoutWhilePlaying() {
 		// First change the state
-		if( thread != null && thread.getProtocol() != null ) {
-			thread.getProtocol().setState( STATE.NOT_IN_SESSION );
+		if( connection != null && connection.getProtocol() != null ) {
+			connection.getProtocol().setState( STATE.NOT_IN_SESSION );
 		}
 		
 		// THen send the response code
@@ -383,15 +460,13 @@ public class User {
 	public void handlePlacedBet(Integer desiredBet) {
 		if( desiredBet != null ) {
 			// First, set the protocol state
-			if( thread != null && thread.getProtocol() != null ) {
-				thread.getProtocol().setBet(desiredBet);
+			if( connection != null && connection.getProtocol() != null ) {
+				connection.getProtocol().setBet(desiredBet);
 			}
 			
-			// Next, deduct from the user's account, and force a save
+			// Next, deduct from the user's account, which is saved right away
 			if( userMetadata != null ) {
-				userMetadata.setBalance( userMetadata.getBalance() - desiredBet );
-				UserManagerInterface userManager = FlatfileUserManager.getDefaultUserManager();
-				userManager.save();
+				getUserManager().adjustBalance( userMetadata, -desiredBet );
 			}
 			
 			// Finally, alert others in the game about the bet
@@ -425,8 +500,8 @@ public class User {
 	 * needs to be set to reflect this by changing state
 	 */
 	public void setIsPlayerTurn() {
-		if( thread != null && thread.getProtocol() != null ) {
-			thread.getProtocol().setState( STATE.IN_SESSION_AND_YOUR_TURN );
+		if( connection != null && connection.getProtocol() != null ) {
+			connection.getProtocol().setState( STATE.IN_SESSION_AND_YOUR_TURN );
 		} else {
 			LOGGER.severe( "We were unable to move the user to the 'YOUR_TURN' state" );
 		}
@@ -16,7 +16,6 @@ package drexel.edu.blackjack.server.game.driver;
 
 import java.util.logging.Logger;
 
-import drexel.edu.blackjack.cards.DealtCard;
 import drexel.edu.blackjack.cards.Hand;
 import drexel.edu.blackjack.server.game.Game;
 import drexel.edu.blackjack.server.game.GameState;
@@ -49,9 +48,7 @@ public class CheckForDealerBlackjackAction extends GameAction {
 				if( hand.getIsBlackJack() ) {
 					state.notifyPlayersOfDealerBlackjack();
 					// Flip over the card to reveal it
-					for( DealtCard card : hand.getFacedownCards() ) {
-						card.changeToFaceUp();
-					}
+					hand.turnFaceUp();
 					// And notify players about the change so they see too
 					state.notifyOthersOfUpdatedHand( null, hand );
 				}
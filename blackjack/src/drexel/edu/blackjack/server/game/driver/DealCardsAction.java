@@ -13,17 +13,16 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server.game.driver;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Logger;
 
+import drexel.edu.blackjack.cards.Card;
 import drexel.edu.blackjack.cards.DealerShoeInterface;
-import drexel.edu.blackjack.cards.DealtCard;
 import drexel.edu.blackjack.cards.Hand;
 import drexel.edu.blackjack.cards.Card.RANK;
 import drexel.edu.blackjack.cards.Card.SUIT;
 import drexel.edu.blackjack.server.game.Game;
 import drexel.edu.blackjack.server.game.GameState;
+import drexel.edu.blackjack.server.game.Roster;
 import drexel.edu.blackjack.server.game.User;
 import drexel.edu.blackjack.util.BlackjackLogger;
 
@@ -39,6 +38,10 @@ public class DealCardsAction extends GameAction {
 	// And of course our logger
 	private final static Logger LOGGER = BlackjackLogger.createLogger(DealCardsAction.class.getName());
 
+	// Where each hand's two cards are dealt to. Only the table's
+	// owner deals, so it can be reused from hand to hand.
+	private final Card[] dealt = new Card[2];
+
 	@Override
 	public boolean doAction(Game game) {
 		
@@ -49,25 +52,16 @@ public class DealCardsAction extends GameAction {
 			if( state == null ) {
 				LOGGER.severe( "Trying to deal cards, but there's no game state..." );
 			} else {
-				// Get the list of users
-				User[] users = state.getCopyOfPlayers();
-				if( users != null ) {
-					// Then active users
-					List<User> activeUsers = new ArrayList<User>();
-					for( User user : users ) {
-						if( user != null && user.getStatus() != null && 
-								user.getStatus() == GameState.STATUS.ACTIVE ) {
-							activeUsers.add( user );
-						}
-					}
-					// IF there are no active players we automatically succeed,
-					// and don't even have to deal out the dealer's cards
-					if( activeUsers.size() == 0 ) {
-						success = true;
-					} else {
-						// Otherwise, we have to deal cards
-						success = dealCardsToActivePlayers( activeUsers, state );
-					}
+				// Get the roster, which has the active users already picked out
+				Roster users = state.getRoster();
+				
+				// IF there are no active players we automatically succeed,
+				// and don't even have to deal out the dealer's cards
+				if( users.getActiveCount() == 0 ) {
+					success = true;
+				} else {
+					// Otherwise, we have to deal cards
+					success = dealCardsToActivePlayers( users, state );
 				}
 			}
 		}
@@ -80,13 +74,13 @@ public class DealCardsAction extends GameAction {
 	 * game state. Also sends notification about the cards
 	 * being dealt.
 	 * 
-	 * @param users The list of active users who need cards dealt,
-	 * guaranteed to be non-null and active
+	 * @param users The roster, whose active users need cards dealt,
+	 * guaranteed to be non-null
 	 * @param state The game state that has, amongst other things,
 	 * the dealer shoe. Guaranteed to be non-null
 	 * @return True if the action succeeded, false otherwise
 	 */
-	private boolean dealCardsToActivePlayers(List<User> activeUsers, GameState state) {
+	private boolean dealCardsToActivePlayers(Roster users, GameState state) {
 		boolean success = true;
 		
 		// First, make sure we have a game shoe
@@ -96,7 +90,8 @@ public class DealCardsAction extends GameAction {
 		} else {
 			
 			// Deal to each of the players
-			for( User user : activeUsers ) {
+			for( int i = 0; i < users.getActiveCount(); i++ ) {
+				User user = users.getActive(i);
 				Hand hand = null;
 				// TEST: If you comment this out, and create a player with a username of
 				// user1, they will always get dealt a blackjack.
@@ -139,14 +134,13 @@ public class DealCardsAction extends GameAction {
 		
 		Hand hand = new Hand(user);
 		
-		// First card is facedown
-		hand.receiveCard( shuffleIfNeededAndDealCard( state ) );
-		
-		// Second card is faceup
-		DealtCard card = shuffleIfNeededAndDealCard( state );
-		if( card != null ) {
-			card.changeToFaceUp();
-			hand.receiveCard( card );
+		// Both cards come off the top together, after a shuffle if
+		// it's needed. First card is facedown, second is faceup
+		shuffleIfNecessary( state );
+		DealerShoeInterface shoe = state.getDealerShoe();
+		if( shoe != null && shoe.deal( 2, dealt, 0 ) == 2 ) {
+			hand.receiveCard( dealt[0], false );
+			hand.receiveCard( dealt[1], true );
 		}
 		
 		// If there aren't two cards in the hand, there must
@@ -164,8 +158,8 @@ public class DealCardsAction extends GameAction {
 	 */
 	private Hand dealBlackjack( User player ) {
 		Hand hand = new Hand(player);
-		hand.receiveCard( new DealtCard( RANK.ACE, SUIT.DIAMONDS) );
-		hand.receiveCard( new DealtCard( RANK.QUEEN, SUIT.HEARTS) );
+		hand.receiveCard( Card.valueOf( RANK.ACE, SUIT.DIAMONDS), false );
+		hand.receiveCard( Card.valueOf( RANK.QUEEN, SUIT.HEARTS), true );
 		return hand;
 	}
 
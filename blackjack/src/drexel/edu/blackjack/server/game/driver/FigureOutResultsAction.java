@@ -14,17 +14,15 @@
  ******************************************************************************/
 package drexel.edu.blackjack.server.game.driver;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Logger;
 
 import drexel.edu.blackjack.cards.Hand;
 import drexel.edu.blackjack.cards.Hand.COMPARISON_RESULT;
-import drexel.edu.blackjack.db.user.FlatfileUserManager;
 import drexel.edu.blackjack.db.user.UserManagerInterface;
 import drexel.edu.blackjack.db.user.UserMetadata;
 import drexel.edu.blackjack.server.game.Game;
 import drexel.edu.blackjack.server.game.GameState;
+import drexel.edu.blackjack.server.game.Roster;
 import drexel.edu.blackjack.server.game.User;
 import drexel.edu.blackjack.util.BlackjackLogger;
 
@@ -51,18 +49,12 @@ public class FigureOutResultsAction extends GameAction {
 			} else if( state.getDealerHand() == null ) {
 				LOGGER.severe( "Trying to tally results, but there's no non-null hand..." );
 			} else {
-				// Get a list of the active players
-				User[] users = state.getCopyOfPlayers();
-				List<User> activePlayers = new ArrayList<User>();
-				for( User user : users ) {
-					if( user.isActive() ) {
-						activePlayers.add( user );
-					}
-				}
+				// Get the active players from the roster
+				Roster users = state.getRoster();
 				
 				// And process their results, one by one
-				for( User player : activePlayers ) {
-					computeResults( player, state );
+				for( int i = 0; i < users.getActiveCount(); i++ ) {
+					computeResults( users.getActive(i), state );
 				}
 				
 				success = true;
@@ -104,7 +96,7 @@ public class FigureOutResultsAction extends GameAction {
 			if( result != COMPARISON_RESULT.LOSE ) {
 				
 				// For handling the account deposits
-				UserManagerInterface manager = FlatfileUserManager.getDefaultUserManager();
+				UserManagerInterface manager = user.getUserManager();
 				
 				// ANd need to know their original bet
 				Integer bet = user.getBet();
@@ -117,14 +109,10 @@ public class FigureOutResultsAction extends GameAction {
 					LOGGER.severe( "Can't credit the user's account because their metadata was null?" );
 				} else if( result == COMPARISON_RESULT.TIE ) {
 					// THey get back their original bet
-					int originalAccount = metadata.getBalance();
-					metadata.setBalance( originalAccount + bet );
-					manager.save();
+					manager.adjustBalance( metadata, bet );
 				} else {
 					// THey get back twice their original bet
-					int originalAccount = metadata.getBalance();
-					metadata.setBalance( originalAccount + (2*bet) );
-					manager.save();
+					manager.adjustBalance( metadata, 2*bet );
 				}
 			}
 		}
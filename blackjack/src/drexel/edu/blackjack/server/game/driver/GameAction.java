@@ -9,13 +9,15 @@
  * 
  * Purpose: The GamePlayingThread keeps an ordered list of game actions, which
  * are basically using the Command design pattern so that there is a 'do work'
- * method, which receives the Game object as its parameter.
+ * method, which receives the Game object as its parameter. Actions can also
+ * be done a step at a time, so a table never has to hold a thread while it
+ * waits on its players.
  ******************************************************************************/
 package drexel.edu.blackjack.server.game.driver;
 
 import java.util.Random;
 
-import drexel.edu.blackjack.cards.DealtCard;
+import drexel.edu.blackjack.cards.Card;
 import drexel.edu.blackjack.server.game.Game;
 import drexel.edu.blackjack.server.game.GameState;
 
@@ -43,32 +45,57 @@ import drexel.edu.blackjack.server.game.GameState;
  * pattern on subclasses. Sharing them across multiple
  * threads might cause problems, and I'm not knowledgeable
  * enough about threads to really know for sure.
+ * <P>
+ * <b>CONCURRENT:</b> Tables are played on the shared
+ * {@link TableScheduler}, which calls {@link #step(Game)}.
+ * An action that never waits just does its
+ * {@link #doAction(Game)}. One that has to wait -- on bets,
+ * on a player's play, or just for a dramatic pause --
+ * overrides the step instead, and returns from it with how
+ * long it wants to wait, rather than sleeping. It's stepped again
+ * when the time is up, or sooner if a player does something
+ * in the meantime, so it has to remember where it was, and
+ * check again what it was waiting on. That's also why one
+ * instance can't be shared by more than one game.
+ * <P>
+ * Actions get the time only through their
+ * {@link GameClock}, so a simulation can play them without
+ * ever really waiting.
  * 
  * @author Jennifer
  */
 public abstract class GameAction {
 
 	/**
-	 * Constant that is true on planet earth.
+	 * Returned from {@link #step(Game)} when the action is done.
 	 */
-	protected int SECOND_IN_MILLISECONDS	= 1000;
+	public static final long FINISHED		= -1;
 	
 	/**
-	 * When we are waiting for players to make bets
-	 * or make game plays, we check and see if they
-	 * have every this often.
+	 * Returned from {@link #step(Game)} when the action failed.
 	 */
-	protected int SWEEP_DELAY				= 500;
+	public static final long FAILED			= -2;
 
+	/**
+	 * Constant that is true on planet earth.
+	 */
+	protected int SECOND_IN_MILLISECONDS	= 1000;
+	
 	// When we force a pause in the action, for the sake of realism,
 	// it's going to be of at least this amount of milliseconds
 	private int BASE_SLEEP_TIME				= 500;
 	
 	// And then it will add up to another delta number of milliseconds
 	private int SLEEP_DELTA					= 750;
+	
+	// For picking how long the pauses are
+	private Random random					= new Random();
+	
+	// Where the time comes from
+	private GameClock clock					= GameClock.SYSTEM;
 
 	/**
-	 * The only thing an action has to do is perform. This
+	 * An action that never waits only has to perform. This
 	 * is the method that requests that the action 'do its
 	 * thing', whatever that is. This may involve changing
 	 * the game state, sending messages to clients, updating
@@ -90,8 +117,58 @@ public abstract class GameAction {
 	 * and false if it was not. Typically the response
 	 * to a failure is terminating the game and evicting
 	 * all the players, so be cautious in returning false.
+	 * @throws UnsupportedOperationException If it's an action
+	 * that waits, which can only be stepped
 	 */
-	public abstract boolean doAction( Game game );
+	public boolean doAction( Game game ) {
+		throw new UnsupportedOperationException( getClass().getName() + " can only be stepped." );
+	}
+	
+	/**
+	 * Performs the next step of the action, without blocking. This
+	 * is what the {@link TableScheduler} calls. Most actions never
+	 * wait, so by default the whole action is done in one step.
+	 * Actions that wait override it, and not {@link #doAction(Game)}.
+	 * 
+	 * @param game The game to perform the action on
+	 * @return {@link #FINISHED} if the action is done, {@link #FAILED}
+	 * if it failed (just like doAction() returning false), or else the
+	 * number of milliseconds to wait before it's stepped again. It may
+	 * be stepped sooner than that, if a player acts in the meantime.
+	 */
+	public long step( Game game ) {
+		return doAction( game ) ? FINISHED : FAILED;
+	}
+	
+	/**
+	 * Sets the clock the action gets the time from, and waits on.
+	 * 
+	 * @param clock The clock, or null for the real time
+	 */
+	public void setClock( GameClock clock ) {
+		this.clock = (clock == null ? GameClock.SYSTEM : clock);
+	}
+	
+	/**
+	 * Sets where the action picks how long its pauses are from.
+	 * The actions of a table that has to play the same way
+	 * every time share one, from its
+	 * {@link drexel.edu.blackjack.server.game.DeterministicMode}.
+	 * 
+	 * @param pacing The random numbers, or null for the action's own
+	 */
+	public void setPacing( Random pacing ) {
+		if( pacing != null ) {
+			this.random = pacing;
+		}
+	}
+	
+	/**
+	 * @return The clock the action gets the time from
+	 */
+	public GameClock getClock() {
+		return clock;
+	}
 	
 	/** 
 	 * Given a state containing a dealer's shoe, check and see
@@ -121,11 +198,10 @@ public abstract class GameAction {
 	 * 
 	 * @param state Contains a shoe from which to deal a card,
 	 * possibly reshuffling first
-	 * @return The card dealt, in a facedown state, or null if 
-	 * there was a problem
+	 * @return The card dealt, or null if there was a problem
 	 */
-	protected DealtCard shuffleIfNeededAndDealCard(GameState state) {
-		DealtCard card = null;
+	protected Card shuffleIfNeededAndDealCard(GameState state) {
+		Card card = null;
 		
 		shuffleIfNecessary( state );
 		if( state != null && state.getDealerShoe() != null ) {
@@ -136,15 +212,14 @@ public abstract class GameAction {
 	}
 	
 	/**
-	 * Introduces a slight pause so that things
-	 * don't come so blazingly fast.
+	 * How long a slight pause should be, so that things don't
+	 * come so blazingly fast. A step returns this, to be
+	 * stepped again once it's gone by.
+	 * 
+	 * @return The number of milliseconds
 	 */
-	protected void pauseAMoment() {
-		Random random = new Random();
-		try {
-			Thread.sleep( BASE_SLEEP_TIME + random.nextInt(SLEEP_DELTA) );
-		} catch (InterruptedException e) {
-		}
+	protected long getPauseTime() {
+		return BASE_SLEEP_TIME + random.nextInt(SLEEP_DELTA);
 	}
 
 }
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - GameClock.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Where the game actions get the time from, and how they wait, so
+ * that a game can be played against the wall clock, as on the server, or
+ * against a simulated one that never actually waits.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.game.driver;
+
+/**
+ * The game actions never look at the time except through
+ * their clock, and never wait at all; a step returns how
+ * long it wants to wait instead. On the server the clock is
+ * {@link #SYSTEM}, the real time. A headless simulation gives
+ * them one that it just moves forward as long as a step asks,
+ * so a round plays out as fast as the CPU allows.
+ *
+ * @author Jennifer
+ */
+public interface GameClock {
+
+	/**
+	 * The real time
+	 */
+	public static final GameClock SYSTEM = new GameClock() {
+
+		@Override
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/**
+	 * @return The time, in milliseconds
+	 */
+	public long currentTimeMillis();
+
+}
@@ -7,35 +7,78 @@
  * o Carol Greco
  * o Duc Anh Nguyen
  * 
- * Purpose: This thread is used to implement the functionality related to playing
- * a game of blackjack. Every time a game is started, a thread gets started;
- * when the game is over (all players left), it is destroyed. It is mostly a
- * big loop that drives through the various commands that represent activity
- * at different stages of the game (e.g., shuffling, dealing cards, taking
- * bets) and figuring out when everyone has left, to exit.
+ * Purpose: This is used to implement the functionality related to playing
+ * a game of blackjack. Every time a game is started, it starts running on its
+ * shard of the shared TableScheduler; when the game is over (all players left),
+ * it stops. It drives through the various commands that represent activity at
+ * different stages of the game (e.g., shuffling, dealing cards, taking bets), a
+ * step at a time, and figures out when everyone has left, to stop. In between
+ * steps, it runs whatever its players' commands have handed it to do.
  ******************************************************************************/
 package drexel.edu.blackjack.server.game.driver;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
+import drexel.edu.blackjack.server.MessageBatch;
+import drexel.edu.blackjack.server.game.DeterministicMode;
 import drexel.edu.blackjack.server.game.Game;
+import drexel.edu.blackjack.server.game.TableOwner;
+import drexel.edu.blackjack.server.game.driver.TableScheduler.Shard;
 import drexel.edu.blackjack.util.BlackjackLogger;
 
 /**
  * This is the class that actually handles playing a 
  * game by requesting bets, dealing cards, requesting
- * plays, etc., etc.
+ * plays, etc., etc. 
+ * <P>
+ * <b>CONCURRENT:</b> Despite the name, a table doesn't
+ * have a thread of its own. It's placed on one shard of
+ * the shared {@link TableScheduler}, and run there one
+ * {@link GameAction#step(Game)} at a time. When a step
+ * says to wait, the table sets a timer and gives up the
+ * thread. The timer, or a player acting at the table,
+ * puts it back in the shard's queue.
+ * <P>
+ * The table is also the {@link TableOwner} of its game.
+ * Commands that change the game, like a player's BET or
+ * HIT, are handed to it as messages, which it runs on its
+ * turn, before its next step. Only one turn of a table is
+ * ever run at once, so the game's state has a single writer.
+ * A table can be moved to another shard between turns.
  * 
  * @author Jennifer
  */
-public class GamePlayingThread extends Thread {
+public class GamePlayingThread implements Runnable, TableOwner {
 
 	/************************************************************
 	 * Private class variables
 	 ***********************************************************/
 	
+	// Where the game is: not being played, ready to run a step,
+	// running one, or waiting for a while
+	private enum TABLE_STATE { IDLE, READY, STEPPING, WAITING }
+	
+	// How many messages are run in one turn, before the table goes
+	// to the back of the queue to let the others on its shard go
+	private static final int MESSAGES_PER_TURN	= 64;
+	
+	// How long, in milliseconds, to wait on the table to start a message
+	private static final long MESSAGE_TIMEOUT	= 10 * 1000;
+	
 	// This holds the list of actions that we have to perform, in order, in
 	// the process of running a game.
 	private List<GameAction> gameActions = null;
@@ -50,6 +93,34 @@ public class GamePlayingThread extends Thread {
 	// A game playing thread is responsible for one and only one game
 	private Game game = null;
 	
+	// CONCURRENT: What's been handed to the table to run
+	private final Queue<Runnable> messages = new ConcurrentLinkedQueue<Runnable>();
+	
+	// CONCURRENT: Guards the scheduling variables below
+	private final ReentrantLock scheduleLock = new ReentrantLock();
+	private volatile TABLE_STATE tableState = TABLE_STATE.IDLE;
+	
+	// The shard the table runs on
+	private volatile Shard shard = null;
+	
+	// Whether the table's in its shard's queue, and the thread
+	// running its turn, if it's running one right now
+	private boolean queued = false;
+	private volatile Thread turnThread = null;
+	
+	// Set if a player acted while a step was running, so that
+	// the table doesn't go on to wait for something that already happened
+	private boolean woken = false;
+	
+	// The timer for the current wait, and a number so a timer that
+	// goes off after the wait is over can tell it's too late
+	private ScheduledFuture<?> timer = null;
+	private int waitNumber = 0;
+	
+	// When the table last went into the queue, and how long it's waited there
+	private long queuedAt = 0;
+	private final QueueDelayStats queueDelays = new QueueDelayStats();
+	
 	private final static Logger LOGGER = BlackjackLogger.createLogger( GamePlayingThread.class.getName() );
 
 	/************************************************************
@@ -57,33 +128,135 @@ public class GamePlayingThread extends Thread {
 	 ***********************************************************/
 	
 	/**
-	 * Creates the thread. Does not start it.
-	 * @param game Game to play in this thread.
+	 * Creates the table, on the server's scheduler. Does not start it.
+	 * @param game Game to play
 	 */
 	public GamePlayingThread( Game game ) {
+		this( game, TableScheduler.getDefaultTableScheduler() );
+	}
+	
+	/**
+	 * Creates the table, and places it on one of the scheduler's
+	 * shards. Does not start it.
+	 * @param game Game to play
+	 * @param scheduler What to run it on
+	 */
+	public GamePlayingThread( Game game, TableScheduler scheduler ) {
 		// Need to know the game we're playing
 		this.game = game;
 		
-		// Create an ordered list of actions for playing the game
-		gameActions = new ArrayList<GameAction>();
-		gameActions.add( new StartNewRoundAction() );
-		gameActions.add( new WaitForBetsAction() );
-		gameActions.add( new RemoveNonBettersAction() );
-		gameActions.add( new ShuffleIfNeededAction() );
-		gameActions.add( new DealCardsAction() );
-		gameActions.add( new CheckForDealerBlackjackAction() );
-		gameActions.add( new GetPlayerActionsAction() );
-		gameActions.add( new PlayDealerHandAction() );
-		gameActions.add( new FigureOutResultsAction() );
+		// Create an ordered list of actions for playing the game. If the
+		// server's running deterministically, the table's shuffles and
+		// pauses come from its streams.
+		DeterministicMode mode = DeterministicMode.getDefault();
+		if( mode != null && game != null && game.getGameState() != null ) {
+			gameActions = createGameActions( GameClock.SYSTEM, mode.createPacing( game.getId() ) );
+			mode.configure( game.getGameState(), game.getId() );
+		} else {
+			gameActions = createGameActions( GameClock.SYSTEM );
+		}
 		
 		// And note that we're at the first one
-		this.gameActionIndex = 0;		
+		this.gameActionIndex = 0;
+		
+		// CONCURRENT: Find it a shard, and take ownership of the game
+		scheduler.register( this );
+		if( game != null ) {
+			game.setOwner( this );
+		}
+		
+		// CONCURRENT: When a player acts, a waiting table gets stepped right away
+		if( game != null && game.getGameState() != null ) {
+			game.getGameState().setPlayerActionListener( new Runnable() {
+				@Override
+				public void run() {
+					wake();
+				}
+			} );
+		}
 	}
 
 	/************************************************************
 	 * Public methods
 	 ***********************************************************/
 	
+	/**
+	 * Creates the ordered list of actions that plays a game,
+	 * a round at a time. Each table needs its own, as actions
+	 * remember where they were between steps.
+	 * 
+	 * @param clock Where the actions get the time from
+	 * @return The actions, in the order they're done in
+	 */
+	public static List<GameAction> createGameActions( GameClock clock ) {
+		return createGameActions( clock, null );
+	}
+	
+	/**
+	 * Creates the ordered list of actions that plays a game,
+	 * with their pauses all picked from the same random numbers.
+	 * 
+	 * @param clock Where the actions get the time from
+	 * @param pacing Where the pauses are picked from, or null
+	 * for each action to pick its own
+	 * @return The actions, in the order they're done in
+	 */
+	public static List<GameAction> createGameActions( GameClock clock, Random pacing ) {
+		
+		List<GameAction> actions = new ArrayList<GameAction>();
+		actions.add( new StartNewRoundAction() );
+		actions.add( new WaitForBetsAction() );
+		actions.add( new RemoveNonBettersAction() );
+		actions.add( new ShuffleIfNeededAction() );
+		actions.add( new DealCardsAction() );
+		actions.add( new CheckForDealerBlackjackAction() );
+		actions.add( new GetPlayerActionsAction() );
+		actions.add( new PlayDealerHandAction() );
+		actions.add( new FigureOutResultsAction() );
+		for( GameAction action : actions ) {
+			action.setClock( clock );
+			action.setPacing( pacing );
+		}
+		return actions;
+	}
+	
+	/**
+	 * Starts playing the game, from the start of a round. If it's
+	 * already being played, it just keeps going.
+	 * 
+	 * @return true if it was started, false if it was already
+	 * being played
+	 */
+	public boolean start() {
+		
+		scheduleLock.lock();
+		try {
+			if( tableState != TABLE_STATE.IDLE ) {
+				return false;
+			}
+			LOGGER.info( "Starting to play " + (game == null ? "a null game" : game.getId() ) );
+			if( game == null ) {
+				LOGGER.severe( "Somehow playing a table with a null game." );
+				return false;
+			}
+			keepPlaying = true;
+			gameActionIndex = 0;
+			tableState = TABLE_STATE.READY;
+			enqueue();
+			return true;
+		} finally {
+			scheduleLock.unlock();
+		}
+	}
+	
+	/**
+	 * Is the game still being played?
+	 * @return true if it's running, false if it finished or never started
+	 */
+	public boolean isAlive() {
+		return tableState != TABLE_STATE.IDLE;
+	}
+	
 	/**
 	 * Get the game the thread is playing
 	 * @return Game the thread is playing
@@ -92,51 +265,368 @@ public class GamePlayingThread extends Thread {
 		return game;
 	}
 	
+	/**
+	 * @return The shard the table runs on
+	 */
+	public Shard getShard() {
+		return shard;
+	}
+	
+	/**
+	 * @return How long this table has waited for its shard
+	 */
+	public QueueDelayStats getQueueDelayStats() {
+		return queueDelays;
+	}
+	
+	/**
+	 * CONCURRENT: Hands the table something to run, on its next
+	 * turn. Messages are run one at a time, in the order they're
+	 * handed over.
+	 * 
+	 * @param message What to run
+	 * @throws RejectedExecutionException If the scheduler has been
+	 * shut down, so it would never be run
+	 */
+	public void post( Runnable message ) {
+		
+		messages.add( message );
+		scheduleLock.lock();
+		try {
+			if( !enqueue() ) {
+				messages.remove( message );
+				throw new RejectedExecutionException( "The table scheduler has been shut down." );
+			}
+		} finally {
+			scheduleLock.unlock();
+		}
+	}
+	
+	/**
+	 * CONCURRENT: Hands the table a message, and waits for what
+	 * it returns. On the table's own turn, it's just run.
+	 * <P>
+	 * If the table doesn't get to the message in time, it's
+	 * called off and will never run, so a caller that gets a
+	 * TimeoutException can undo whatever it did on the way in.
+	 * Once the table has started the message, though, it can't
+	 * be called off halfway, so the caller waits for it to
+	 * finish and gets what really happened.
+	 * 
+	 * @param message What to run
+	 * @return What it returned
+	 * @throws TimeoutException If the table didn't start it in
+	 * time, so it wasn't run at all
+	 * @throws Exception If it threw one, or the table couldn't run
+	 * it
+	 */
+	@Override
+	public <T> T call( Callable<T> message ) throws Exception {
+		
+		if( turnThread == Thread.currentThread() ) {
+			return message.call();
+		}
+		
+		// Whoever sets this first decides: the table, by starting
+		// the message, or the caller, by giving up on it
+		final AtomicBoolean claimed = new AtomicBoolean( false );
+		FutureTask<T> task = new FutureTask<T>( message ) {
+			@Override
+			public void run() {
+				if( claimed.compareAndSet( false, true ) ) {
+					super.run();
+				}
+			}
+		};
+		post( task );
+		try {
+			try {
+				return task.get( MESSAGE_TIMEOUT, TimeUnit.MILLISECONDS );
+			} catch( TimeoutException e ) {
+				if( claimed.compareAndSet( false, true ) ) {
+					task.cancel( false );
+					throw e;
+				}
+				// The table's running it, so it finishes either way
+				return task.get();
+			}
+		} catch( ExecutionException e ) {
+			if( e.getCause() instanceof Exception ) {
+				throw (Exception)e.getCause();
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * CONCURRENT: Something the table might be waiting on has
+	 * happened, so if it's waiting, it's put back in the queue
+	 * right away.
+	 */
+	public void wake() {
+		
+		scheduleLock.lock();
+		try {
+			if( tableState == TABLE_STATE.WAITING ) {
+				if( timer != null ) {
+					timer.cancel( false );
+					timer = null;
+				}
+				tableState = TABLE_STATE.READY;
+				enqueue();
+			} else if( tableState == TABLE_STATE.STEPPING ) {
+				woken = true;
+			}
+		} finally {
+			scheduleLock.unlock();
+		}
+	}
+	
+	/**
+	 * Runs the table's turn: the messages it's been handed,
+	 * and then, if it's ready for it, the next step of the
+	 * game. This is what its shard calls.
+	 */
 	@Override
 	public void run() {
-		LOGGER.info( "Starting the game playing thread for " + (game == null ? "a null game" : game.getId() ) );
 		
-		// First off, need to start the game and send 'gimme your bet' messages to all the players
-		if( game == null ) {
-			LOGGER.severe( "Somehow in a game playing thread with a null game." );
-		} else {
-			bigGameLoop();
+		long startedAt = System.nanoTime();
+		scheduleLock.lock();
+		try {
+			if( !queued || turnThread != null ) {
+				return;
+			}
+			queued = false;
+			turnThread = Thread.currentThread();
+			queueDelays.record( startedAt - queuedAt );
+		} finally {
+			scheduleLock.unlock();
+		}
+		
+		try {
+			// What the players did comes first, so the step sees it
+			runMessages();
+			if( startStep() ) {
+				finishStep( nextStep() );
+			}
+		} finally {
+			long busy = System.nanoTime() - startedAt;
+			queueDelays.recordBusy( busy );
+			Shard current = shard;
+			if( current != null ) {
+				current.recordBusy( busy );
+			}
+			
+			// Back of the queue if there's more to do, so the other tables get their turn
+			scheduleLock.lock();
+			try {
+				turnThread = null;
+				if( !messages.isEmpty() || tableState == TABLE_STATE.READY ) {
+					enqueue();
+				}
+			} finally {
+				scheduleLock.unlock();
+			}
 		}
 	}
 
 	/************************************************************
-	 * Private methods
+	 * Package methods
 	 ***********************************************************/
 	
 	/**
-	 * The big game loop moves through the actions involved
-	 * in playing the game. At some point it realizes that 
-	 * there are no more players, and nothing else to do, and it
-	 * finally ends.
+	 * CONCURRENT: Moves the table to another shard. If it's in the
+	 * old one's queue, or running there, that turn is finished
+	 * first; it goes in the new one's queue after that.
+	 * 
+	 * @param to The shard to run it on
+	 * @return The shard it was on, or null if none
 	 */
-	private void bigGameLoop() {
+	Shard moveTo( Shard to ) {
 		
-		// This loops through until something sets this to false somewhere
-		while( keepPlaying() ) {
+		scheduleLock.lock();
+		try {
+			Shard from = shard;
+			shard = to;
+			return from;
+		} finally {
+			scheduleLock.unlock();
+		}
+	}
 
-			// This should never happen
-			if( gameActions == null || gameActionIndex < 0 || gameActionIndex >= gameActions.size() ) {
-				LOGGER.severe( "Something went wrong in our bigGameLoop() with internal variables." );
-				this.keepPlaying = false;
+	/************************************************************
+	 * Private methods
+	 ***********************************************************/
+	
+	/**
+	 * Runs the messages that have been handed to the table, up
+	 * to a turn's worth.
+	 */
+	private void runMessages() {
+		
+		for( int i = 0; i < MESSAGES_PER_TURN; i++ ) {
+			Runnable message = messages.poll();
+			if( message == null ) {
+				return;
+			}
+			try {
+				message.run();
+			} catch( RuntimeException e ) {
+				LOGGER.severe( "Exception in a message to the table for " + (game == null ? "a null game" : game.getId() ) + ": " + e );
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * If the table's ready for its next step, notes that it's
+	 * running it.
+	 * 
+	 * @return true if a step should be run
+	 */
+	private boolean startStep() {
+		
+		scheduleLock.lock();
+		try {
+			if( tableState != TABLE_STATE.READY ) {
+				return false;
+			}
+			tableState = TABLE_STATE.STEPPING;
+			woken = false;
+			return true;
+		} finally {
+			scheduleLock.unlock();
+		}
+	}
+	
+	/**
+	 * Figures out what happens after a step: stop, go again,
+	 * or wait a while.
+	 * 
+	 * @param result What the step returned
+	 */
+	private void finishStep( long result ) {
+		
+		scheduleLock.lock();
+		try {
+			if( result == GameAction.FAILED || (result == GameAction.FINISHED && !keepPlaying()) ) {
+				LOGGER.info( "Done with the big game loop." );
+				tableState = TABLE_STATE.IDLE;
+			} else if( result == GameAction.FINISHED || result <= 0 || woken ) {
+				tableState = TABLE_STATE.READY;
 			} else {
-				GameAction nextAction = gameActions.get(gameActionIndex);
-				if( !nextAction.doAction( game ) ) {
-					LOGGER.severe( "Something went wrong in the game action " + nextAction.getClass().getName() + ".doAction() method" );
-					this.keepPlaying = false;
-				} else {
-					// Advance the game index, looping to the beginning if we pass the end
-					gameActionIndex = (gameActionIndex+1) % gameActions.size();
-				}		
+				tableState = TABLE_STATE.WAITING;
+				final int number = ++waitNumber;
+				timer = shard.schedule( new Runnable() {
+					@Override
+					public void run() {
+						timeUp( number );
+					}
+				}, result );
 			}
-			
+		} catch( RejectedExecutionException e ) {
+			LOGGER.severe( "The table scheduler has been shut down, so the game can't go on." );
+			tableState = TABLE_STATE.IDLE;
+		} finally {
+			scheduleLock.unlock();
+		}
+	}
+	
+	/**
+	 * Runs a step of the current action, and moves on to the
+	 * next action if it finished.
+	 * 
+	 * @return What the action's step returned
+	 */
+	private long nextStep() {
+
+		// This should never happen
+		if( gameActions == null || gameActionIndex < 0 || gameActionIndex >= gameActions.size() ) {
+			LOGGER.severe( "Something went wrong in our bigGameLoop() with internal variables." );
+			this.keepPlaying = false;
+			return GameAction.FAILED;
+		}
+		
+		GameAction nextAction = gameActions.get(gameActionIndex);
+		long result = GameAction.FAILED;
+		try {
+			result = stepInBatch( nextAction );
+		} catch( RuntimeException e ) {
+			LOGGER.severe( "Exception in the game action " + nextAction.getClass().getName() + ".step(): " + e );
+			e.printStackTrace();
+		}
+		
+		if( result == GameAction.FAILED ) {
+			LOGGER.severe( "Something went wrong in the game action " + nextAction.getClass().getName() + ".step() method" );
+			this.keepPlaying = false;
+		} else if( result == GameAction.FINISHED ) {
+			// Advance the game index, looping to the beginning if we pass the end
+			gameActionIndex = (gameActionIndex+1) % gameActions.size();
+		}
+		return result;
+	}
+
+	/**
+	 * Performs one step of a game action. Messages the action sends
+	 * are held in a {@link MessageBatch}, so each player gets all
+	 * the messages from one step of the game (like every card
+	 * dealt in a round) in a single write.
+	 * 
+	 * @param action The action to perform
+	 * @return The result of the action's step() method
+	 */
+	private long stepInBatch( GameAction action ) {
+		MessageBatch.begin();
+		try {
+			return action.step( game );
+		} finally {
+			MessageBatch.end();
 		}
+	}
+	
+	/**
+	 * CONCURRENT: Must hold the schedule lock. Puts the table at the
+	 * back of its shard's queue, unless it's already there, or in the
+	 * middle of its turn, which puts it back when it's done.
+	 * 
+	 * @return false if the shard has been shut down
+	 */
+	private boolean enqueue() {
 		
-		LOGGER.info( "Done with the big game loop." );
+		if( queued || turnThread != null ) {
+			return true;
+		}
+		try {
+			queued = true;
+			queuedAt = System.nanoTime();
+			shard.execute( this );
+			return true;
+		} catch( RejectedExecutionException e ) {
+			LOGGER.severe( "The table scheduler has been shut down, so the game can't go on." );
+			queued = false;
+			tableState = TABLE_STATE.IDLE;
+			return false;
+		}
+	}
+	
+	/**
+	 * A wait's timer went off. If the table is still on that
+	 * wait, it's put back in the queue.
+	 * 
+	 * @param number Which wait it was for
+	 */
+	private void timeUp( int number ) {
+		
+		scheduleLock.lock();
+		try {
+			if( tableState == TABLE_STATE.WAITING && number == waitNumber ) {
+				timer = null;
+				tableState = TABLE_STATE.READY;
+				enqueue();
+			}
+		} finally {
+			scheduleLock.unlock();
+		}
 	}
 
 	/**
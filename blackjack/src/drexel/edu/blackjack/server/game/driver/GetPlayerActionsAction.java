@@ -14,7 +14,6 @@ package drexel.edu.blackjack.server.game.driver;
 
 import java.util.logging.Logger;
 
-import drexel.edu.blackjack.cards.DealtCard;
 import drexel.edu.blackjack.cards.Hand;
 import drexel.edu.blackjack.server.game.Game;
 import drexel.edu.blackjack.server.game.GameState;
@@ -35,41 +34,91 @@ public class GetPlayerActionsAction extends GameAction {
 	// We give someone up to this long to make each play
 	private int PLAY_WAIT_TIME		= 60 * SECOND_IN_MILLISECONDS;
 	
+	// When stepped, the player we're waiting on, and until when
+	private User player			= null;
+	private long deadline		= 0;
+	
 	// And of course our logger
 	private final static Logger LOGGER = BlackjackLogger.createLogger(GetPlayerActionsAction.class.getName());
 
+	/**
+	 * CONCURRENT: Each player's HIT or STAND gets us stepped again.
+	 */
 	@Override
-	public boolean doAction(Game game) {
+	public long step(Game game) {
 		
-		boolean success = false;
+		GameState state = (game == null ? null : game.getGameState());
+		if( state == null || state.getDealerHand() == null ) {
+			LOGGER.severe( "Trying to handle player actions, but there's no game state (or else no dealer hand)..." );
+			player = null;
+			return FAILED;
+		}
 		
-		if( game != null ) {
-			GameState state = game.getGameState();
-			if( state == null || state.getDealerHand() == null ) {
-				LOGGER.severe( "Trying to handle player actions, but there's no game state (or else no dealer hand)..." );
-			} else if( state.getDealerHand().getIsBlackJack() ) {
+		// Starting out
+		if( player == null ) {
+			if( state.getDealerHand().getIsBlackJack() ) {
 				LOGGER.info( "Skipping player actions as the dealer has blackjack." );
-				success = true;
-			} else {
-				// Loop through whoever needs to bet
-				User player = state.getNextPlayerToPlay();
-				while( player != null ) {
-					promptPlayerForGamePlay( player, state );
-					player = state.getNextPlayerToPlay();
-				}
-				success = true;
+				return FINISHED;
+			}
+			return promptNextPlayer( state );
+		}
+		
+		// Otherwise we've been waiting on the player
+		if( state.hasPlayer( player ) && player.getNeedsToMakeAPlay() ) {
+			long remaining = deadline - getClock().currentTimeMillis();
+			if( remaining > 0 ) {
+				// Nothing yet, keep waiting
+				return remaining;
 			}
+			// If they exceeded the limit without making a play, well, too bad for them
+			timeOut( player, state );
+		} else if( state.hasPlayer( player ) && !player.getFinishedGamePlayThisRound() ) {
+			// They hit, and can keep going
+			return askForPlay( player, state );
 		}
 		
-		return success;
+		// They're done, or left the game, or timed out
+		return promptNextPlayer( state );
 	}
 
 	/**
-	 * Prompts the player for their game play. This is done in
-	 * a timer session, like the betting
-	 * @param player
+	 * When stepped, starts the turn of the next player who
+	 * needs one, and asks them for their play.
+	 * 
+	 * @return How long to wait for it, or FINISHED if
+	 * everyone has played
 	 */
-	private void promptPlayerForGamePlay(User player, GameState state ) {
+	private long promptNextPlayer( GameState state ) {
+		
+		player = state.getNextPlayerToPlay();
+		while( player != null ) {
+			if( startTurn( player, state ) ) {
+				return askForPlay( player, state );
+			}
+			player = state.getNextPlayerToPlay();
+		}
+		return FINISHED;
+	}
+	
+	/**
+	 * When stepped, asks the player for a play, and starts
+	 * the clock on it.
+	 * 
+	 * @return How long to wait for it
+	 */
+	private long askForPlay( User player, GameState state ) {
+		state.notifyAllOfGameplayNeeded( player );
+		deadline = getClock().currentTimeMillis() + PLAY_WAIT_TIME;
+		return PLAY_WAIT_TIME;
+	}
+
+	/**
+	 * Starts a player's turn, by turning over their cards.
+	 * 
+	 * @return True if they have to play, false if they're
+	 * already done (they have a blackjack)
+	 */
+	private boolean startTurn( User player, GameState state ) {
 		
 		// STATEFUL: Need to set them into the 'IN_SESSION_AND_YOUR_TURN' state
 		player.setIsPlayerTurn();
@@ -78,11 +127,11 @@ public class GetPlayerActionsAction extends GameAction {
 		Hand hand = player.getHand();
 		if( hand == null ) {
 			LOGGER.severe( "A user was prompted for gameplay with a null hand!" );
-			return;
-		}
-		for( DealtCard card : hand.getFacedownCards() ) {
-			card.changeToFaceUp();
+			// Nothing they can play, so they're done, or we'd keep coming back to them
+			player.setHasFinishedGamePlayThisRound(true);
+			return false;
 		}
+		hand.turnFaceUp();
 		state.notifyOthersOfUpdatedHand( player, hand );
 
 		// If it's a blackjack, they don't have to play
@@ -90,42 +139,19 @@ public class GetPlayerActionsAction extends GameAction {
 			state.notifyAllOfGameAction( player, GameState.BLACKJACK_KEYWORD );
 			player.setNeedsToMakeAPlay( false );
 			player.setHasFinishedGamePlayThisRound(true);
-		} else {
-			// Otherwise they'll need to play
-			boolean idledOut = false;
-			while( !player.getFinishedGamePlayThisRound() && !idledOut ) {
-
-				// This is when we started this whole process
-				long start = System.currentTimeMillis();
-				
-				// This is how long we've been waiting up until now
-				long delta = System.currentTimeMillis() - start;
-
-				state.notifyAllOfGameplayNeeded( player );
-				while( player.getNeedsToMakeAPlay() && delta < PLAY_WAIT_TIME ) {
-					
-					// Sleep a while to give them time to check
-					try {
-						Thread.sleep( SWEEP_DELAY );
-					} catch( InterruptedException e ) {
-						// It's just waking us up
-					}
-					
-					// Recalculate delta before checking again
-					delta = System.currentTimeMillis() - start;
-				}
-				
-				// If they exceeded the limit without making a play, well, too bad for them
-				// If this is true, they'll be marked as still needing to make a play
-				if( player.getNeedsToMakeAPlay() ) {
-					// Force them to idle timeout
-					player.forceTimeoutWhilePlaying();
-					// Remove them from the list of game players
-					state.removePlayer(player);
-					idledOut = true;
-				}
-			}
+			return false;
 		}
+		return true;
+	}
+	
+	/**
+	 * The player didn't make a play in time.
+	 */
+	private void timeOut( User player, GameState state ) {
+		// Force them to idle timeout
+		player.forceTimeoutWhilePlaying();
+		// Remove them from the list of game players
+		state.removePlayer(player);
 	}
 
 }
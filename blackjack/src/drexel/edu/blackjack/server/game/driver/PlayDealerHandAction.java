@@ -15,91 +15,109 @@ package drexel.edu.blackjack.server.game.driver;
 import java.util.logging.Logger;
 
 import drexel.edu.blackjack.cards.DealerShoeInterface;
-import drexel.edu.blackjack.cards.DealtCard;
 import drexel.edu.blackjack.cards.Hand;
 import drexel.edu.blackjack.server.game.Game;
 import drexel.edu.blackjack.server.game.GameState;
+import drexel.edu.blackjack.server.game.Roster;
 import drexel.edu.blackjack.server.game.User;
 import drexel.edu.blackjack.util.BlackjackLogger;
 
 /**
  * Plays out the dealer's hand. As per the rules of blackjack
- * the dealer hits on 16, and stands on 17 or higher.
+ * the dealer hits on 16, and stands on 17 or higher, unless
+ * the table's rules give a different stand point.
  * 
  * @author Jennifer
  */
 public class PlayDealerHandAction extends GameAction {
 
+	// When stepped, whether the dealer's hand has been turned over yet, and
+	// whether the dealer has to play it
+	private boolean revealed			= false;
+	private boolean dealerNeedsToPlay	= false;
+	
 	// And of course our logger
 	private final static Logger LOGGER = BlackjackLogger.createLogger(PlayDealerHandAction.class.getName());
 
+	/**
+	 * Turns the dealer's hand over, and then hits until it
+	 * reaches the table's stand point, normally 17, with a
+	 * slight pause before each hit. Otherwise the dealer makes
+	 * his play in like 2 ms, and that's just too fast, it
+	 * looks silly.
+	 */
 	@Override
-	public boolean doAction(Game game) {
+	public long step(Game game) {
 		
-		boolean success = false;
+		GameState state = (game == null ? null : game.getGameState());
+		if( state == null || state.getDealerHand() == null || state.getDealerShoe() == null ) {
+			LOGGER.severe( "Trying to play the dealer hand, but there's no game state (or hand, or shoe)..." );
+			revealed = false;
+			return FAILED;
+		}
 		
-		if( game != null ) {
-			GameState state = game.getGameState();
-			if( state == null ) {
-				LOGGER.severe( "Trying to check for dealer blackjack, but there's no game state..." );
-			} else if( state.getDealerHand() == null ) {
-				LOGGER.severe( "Trying to check for dealer blackjack, but there's no non-null hand..." );
-			} else if( state.getDealerShoe() == null ) {
-				LOGGER.severe( "Trying to check for dealer blackjack, but there's no non-null shoe..." );
-			} else {
-				Hand hand = state.getDealerHand();
-				if( !hand.getIsBlackJack() ) {
-					playOutDealerHand( hand, state );
-				}
-				success = true;
-			}
+		Hand hand = state.getDealerHand();
+		if( hand.getIsBlackJack() ) {
+			return FINISHED;
+		}
+		
+		// The first step turns the hand over, and each one after takes a card
+		if( !revealed ) {
+			dealerNeedsToPlay = revealDealerHand( hand, state );
+			revealed = true;
+		} else {
+			dealerHits( hand, state );
 		}
 		
-		return success;
+		// Pause between hits
+		if( dealerNeedsToPlay && hand.getDealerShouldHit(state.getRules().getDealerStandPoint()) ) {
+			return getPauseTime();
+		}
+		finishDealerHand( hand, state, dealerNeedsToPlay );
+		revealed = false;
+		return FINISHED;
 	}
 
 	/**
-	 * Play out the dealer hand by hitting on 16, standing on
-	 * 17+.
+	 * Turns over the dealer's facedown cards.
 	 * 
-	 * @param hand A non-null hand that belongs to the dealer
-	 * @param state A non-null state with a non-null shoe
+	 * @return True if the dealer needs to play the hand
 	 */
-	private void playOutDealerHand( Hand hand, GameState state ) {
-		
-		// Just loop around hitting, so long as the dealer should hit on the hand
-		DealerShoeInterface shoe = state.getDealerShoe();
+	private boolean revealDealerHand( Hand hand, GameState state ) {
 		
 		// First has to turn over their facedown cards
-		for( DealtCard card : hand.getFacedownCards() ) {
-			card.changeToFaceUp();
-		}
+		hand.turnFaceUp();
 		
 		// And notify players about the change
 		state.notifyOthersOfUpdatedHand( null, hand );
 		 
 		// Figure out if the dealer even needs to play. If everyone
 		// else busted (or left), the dealer doesn't need to
-		boolean dealerNeedsToPlay = doesDealerNeedToPlay( state );
-
-		// Keep hitting until we should hit no more
-		while( dealerNeedsToPlay && hand.getDealerShouldHit(null) ) {
-			
-			// This just pauses a tiny bit, otherwise the dealer makes his
-			// play in like 2 ms, and that's just too fast, it looks silly
-			pauseAMoment();
-			
-			// Notify that the dealer decided to hit
-			state.notifyOthersOfGameAction( null, GameState.HIT_KEYWORD );
-			
-			// Deal a single card
-			DealtCard card = shoe.dealTopCard();
-			card.changeToFaceUp();
-			hand.receiveCard(card);
-			
-			// By calling the set method, it'll notify other users
-			state.setDealerHandAndNotify( hand );
-		}
+		return doesDealerNeedToPlay( state );
+	}
+	
+	/**
+	 * The dealer takes one card.
+	 */
+	private void dealerHits( Hand hand, GameState state ) {
+		
+		// Just loop around hitting, so long as the dealer should hit on the hand
+		DealerShoeInterface shoe = state.getDealerShoe();
+		
+		// Notify that the dealer decided to hit
+		state.notifyOthersOfGameAction( null, GameState.HIT_KEYWORD );
+		
+		// Deal a single card
+		hand.receiveCard(shoe.dealTopCard(), true);
+		
+		// By calling the set method, it'll notify other users
+		state.setDealerHandAndNotify( hand );
+	}
+	
+	/**
+	 * Once the dealer is done hitting, says how it turned out.
+	 */
+	private void finishDealerHand( Hand hand, GameState state, boolean dealerNeedsToPlay ) {
 		
 		// Now here, the dealer either decided to stand, or busted
 		// Need to send a message to that effect -- unless all the other
@@ -124,10 +142,10 @@ public class PlayDealerHandAction extends GameAction {
 		// Start off assuming he doesn't
 		boolean needToPlay = false;
 		
-		User[] players = state.getCopyOfPlayers();
+		Roster players = state.getRoster();
 		if( players != null ) {
-			for( User player : players ) {
-				Hand hand = player.getHand();
+			for( int i = 0; i < players.size(); i++ ) {
+				Hand hand = players.get(i).getHand();
 				if( hand != null ) {
 					// If at least one player is not busted, dealer
 					// has to play.
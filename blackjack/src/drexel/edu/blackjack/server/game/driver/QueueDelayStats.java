@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - QueueDelayStats.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ * 
+ * Purpose: Keeps track of how long a table waited in the TableScheduler's
+ * queue, between being ready to run a step and actually getting to run it,
+ * and how long it kept its shard busy once it did.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.game.driver;
+
+/**
+ * How long a table has been kept waiting for a thread
+ * by the {@link TableScheduler}. If the scheduler is
+ * keeping up, this stays small no matter how many
+ * tables there are.
+ * <P>
+ * The time spent actually running the table is kept too,
+ * so that a table that keeps its shard busy can be moved
+ * to one that isn't.
+ * <P>
+ * <b>CONCURRENT:</b> Delays are recorded by whichever
+ * scheduler thread runs the table, and read and reset
+ * by the one that reports them, so access is synchronized.
+ * 
+ * @author Jennifer
+ */
+public class QueueDelayStats {
+
+	// How many steps were run, and how long they waited in total, and at most
+	private long steps			= 0;
+	private long totalNanos		= 0;
+	private long maxNanos		= 0;
+	
+	// How long the table's runs took, in total
+	private long busyNanos		= 0;
+	
+	/**
+	 * Records a step that waited the given time to be run
+	 * 
+	 * @param nanos How long it waited, in nanoseconds
+	 */
+	public synchronized void record( long nanos ) {
+		steps++;
+		totalNanos += nanos;
+		maxNanos = Math.max( maxNanos, nanos );
+	}
+	
+	/**
+	 * Records how long a run of the table took
+	 * 
+	 * @param nanos How long it ran, in nanoseconds
+	 */
+	public synchronized void recordBusy( long nanos ) {
+		busyNanos += nanos;
+	}
+	
+	/**
+	 * @return How many steps have been recorded
+	 */
+	public synchronized long getSteps() {
+		return steps;
+	}
+	
+	/**
+	 * @return The average delay, in milliseconds, or 0 if
+	 * there were no steps
+	 */
+	public synchronized double getAverageDelay() {
+		return steps == 0 ? 0 : totalNanos / (steps * 1000000.0);
+	}
+	
+	/**
+	 * @return The longest delay, in milliseconds
+	 */
+	public synchronized double getMaxDelay() {
+		return maxNanos / 1000000.0;
+	}
+	
+	/**
+	 * @return How long the table ran in total, in nanoseconds
+	 */
+	public synchronized long getBusyNanos() {
+		return busyNanos;
+	}
+	
+	/**
+	 * Starts over, as if nothing had been recorded
+	 */
+	public synchronized void reset() {
+		steps = 0;
+		totalNanos = 0;
+		maxNanos = 0;
+		busyNanos = 0;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return String.format( "%d steps, queue delay %.3f ms average, %.3f ms max, busy %.3f ms",
+				steps, getAverageDelay(), getMaxDelay(), busyNanos / 1000000.0 );
+	}
+}
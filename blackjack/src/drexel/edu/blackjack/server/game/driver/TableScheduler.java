@@ -0,0 +1,441 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - TableScheduler.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Runs every table on the server on a small, shared set of threads,
+ * rather than giving each one a thread of its own that spends most of its
+ * time asleep waiting on players. Each table belongs to one of the threads,
+ * its shard, which is the only thread that changes anything at the table.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.game.driver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * <b>CONCURRENT:</b> A fixed number of shards that run
+ * the tables. A shard is a single thread, with its own
+ * queue, and every {@link GamePlayingThread} is placed
+ * on one of them when it's made: whichever has the fewest
+ * tables. Everything the table does, its own steps and
+ * the commands its players hand it, is run on its shard,
+ * so only one thread ever changes the table at a time,
+ * without any locks.
+ * <P>
+ * A table that's ready to run goes to the back of its
+ * shard's queue, and after its turn, if it's still ready,
+ * it goes to the back again. So every table on the shard
+ * that has something to do gets its turn, and no one table
+ * can hog it. A table that's waiting on its players, or a
+ * pause, isn't in the queue at all. It costs nothing until
+ * a timer, or a player, wakes it up.
+ * <P>
+ * The number of shards is the number of processors,
+ * unless the {@value #THREADS_PROPERTY} system property
+ * says otherwise.
+ * <P>
+ * How long each table waits in the queue, and how busy
+ * each shard is, is kept, and logged every so often. At
+ * the same time, if one shard is running hot while another
+ * isn't, a table is moved from the one to the other. Tables
+ * can also be moved by hand, with {@link #move(GamePlayingThread, Shard)}.
+ *
+ * @author Jennifer
+ */
+public class TableScheduler {
+
+	/**
+	 * The system property for how many threads to use
+	 */
+	public static final String THREADS_PROPERTY	= "tableThreads";
+
+	/**
+	 * A shard that's busy more than this share of the time
+	 * is running hot, and has a table moved off of it
+	 */
+	public static final double HOT_SHARE		= 0.75;
+
+	// How often, in milliseconds, the queue delays are logged
+	private static final long REPORT_PERIOD		= 60 * 1000;
+
+	// The one the server uses
+	private static TableScheduler scheduler		= null;
+
+	// The threads the tables run on
+	private final Shard[] shards;
+
+	// The tables that have been placed on a shard, for reporting
+	private final Set<GamePlayingThread> tables	=
+			Collections.newSetFromMap( new ConcurrentHashMap<GamePlayingThread,Boolean>() );
+
+	// And our logger
+	private final static Logger LOGGER = BlackjackLogger.createLogger(TableScheduler.class.getName());
+
+	/************************************************************
+	 * Constructor
+	 ***********************************************************/
+
+	/**
+	 * Creates a scheduler with its own threads
+	 *
+	 * @param threads How many threads, that is shards, to run
+	 * tables on
+	 */
+	public TableScheduler( int threads ) {
+
+		shards = new Shard[Math.max( 1, threads )];
+		for( int i = 0; i < shards.length; i++ ) {
+			shards[i] = new Shard( i );
+		}
+
+		// Now and then, say how the tables are doing
+		shards[0].executor.scheduleAtFixedRate( new Runnable() {
+			@Override
+			public void run() {
+				report();
+			}
+		}, REPORT_PERIOD, REPORT_PERIOD, TimeUnit.MILLISECONDS );
+	}
+
+	/************************************************************
+	 * Public methods
+	 ***********************************************************/
+
+	/**
+	 * Gets the scheduler that the server's tables run on,
+	 * creating it the first time.
+	 *
+	 * @return The scheduler
+	 */
+	public static synchronized TableScheduler getDefaultTableScheduler() {
+		if( scheduler == null ) {
+			int threads = Integer.getInteger( THREADS_PROPERTY, Runtime.getRuntime().availableProcessors() );
+			scheduler = new TableScheduler( threads );
+			LOGGER.info( "Running tables on " + threads + " shards." );
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Places a table on the shard with the fewest tables. A
+	 * table that's already been placed stays where it is.
+	 *
+	 * @param table The table
+	 */
+	public synchronized void register( GamePlayingThread table ) {
+
+		if( tables.add( table ) ) {
+			Shard shard = shards[0];
+			for( Shard candidate : shards ) {
+				if( candidate.getTableCount() < shard.getTableCount() ) {
+					shard = candidate;
+				}
+			}
+			table.moveTo( shard );
+			shard.tableCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Moves a table to another shard. Whatever the table was
+	 * in the middle of on the old shard is finished there
+	 * first; after that, it's only run on the new one.
+	 *
+	 * @param table The table, which has to have been registered
+	 * @param to The shard to move it to, which has to be one
+	 * of this scheduler's
+	 * @return true if it moved, false if it was already there,
+	 * or either wasn't known
+	 */
+	public synchronized boolean move( GamePlayingThread table, Shard to ) {
+
+		if( table == null || to == null || !tables.contains( table ) || shards[to.getIndex()] != to ) {
+			return false;
+		}
+		Shard from = table.moveTo( to );
+		if( from == to ) {
+			return false;
+		}
+		if( from != null ) {
+			from.tableCount.decrementAndGet();
+		}
+		to.tableCount.incrementAndGet();
+		LOGGER.info( "Moved " + getName( table ) + " from shard " +
+				(from == null ? "(none)" : Integer.toString( from.getIndex() )) + " to shard " + to.getIndex() + "." );
+		return true;
+	}
+
+	/**
+	 * If the busiest shard is running hot, moves a table from it
+	 * to the least busy one. The table moved is the busiest one
+	 * that takes no more than half the difference between them,
+	 * so the two end up closer, without trading places.
+	 *
+	 * @return The table that was moved, or null if none was
+	 */
+	public synchronized GamePlayingThread rebalance() {
+
+		Shard hottest = shards[0];
+		Shard coolest = shards[0];
+		for( Shard shard : shards ) {
+			if( shard.getBusyShare() > hottest.getBusyShare() ) {
+				hottest = shard;
+			}
+			if( shard.getBusyShare() < coolest.getBusyShare() ) {
+				coolest = shard;
+			}
+		}
+		if( hottest == coolest || hottest.getBusyShare() < HOT_SHARE ) {
+			return null;
+		}
+
+		// The busy time, since the shard started counting, that can be moved
+		double limit = (hottest.getBusyShare() - coolest.getBusyShare()) / 2 * hottest.getElapsedNanos();
+		GamePlayingThread busiest = null;
+		for( GamePlayingThread table : tables ) {
+			long busy = table.getQueueDelayStats().getBusyNanos();
+			if( table.getShard() == hottest && busy > 0 && busy <= limit &&
+					(busiest == null || busy > busiest.getQueueDelayStats().getBusyNanos()) ) {
+				busiest = table;
+			}
+		}
+		if( busiest != null ) {
+			move( busiest, coolest );
+		}
+		return busiest;
+	}
+
+	/**
+	 * @return How many threads, that is shards, the tables run on
+	 */
+	public int getThreadCount() {
+		return shards.length;
+	}
+
+	/**
+	 * @return The shards, in order
+	 */
+	public List<Shard> getShards() {
+		List<Shard> list = new ArrayList<Shard>();
+		Collections.addAll( list, shards );
+		return list;
+	}
+
+	/**
+	 * Gets the queue delays of the tables that have run since
+	 * the last report, one line per table.
+	 *
+	 * @return The lines, or an empty string if none ran
+	 */
+	public String getQueueDelayReport() {
+
+		StringBuilder str = new StringBuilder();
+		for( GamePlayingThread table : tables ) {
+			QueueDelayStats stats = table.getQueueDelayStats();
+			if( stats.getSteps() > 0 ) {
+				str.append( getName( table ) );
+				str.append( ": " );
+				str.append( stats.toString() );
+				str.append( "\n" );
+			}
+		}
+		return str.toString();
+	}
+
+	/**
+	 * Gets where the tables are, and how busy each shard has
+	 * been since the last report, one line per shard.
+	 *
+	 * @return The lines
+	 */
+	public String getPlacementReport() {
+
+		StringBuilder str = new StringBuilder();
+		for( Shard shard : shards ) {
+			str.append( shard.toString() );
+			str.append( ":" );
+			for( GamePlayingThread table : tables ) {
+				if( table.getShard() == shard ) {
+					str.append( " " );
+					str.append( getName( table ) );
+				}
+			}
+			str.append( "\n" );
+		}
+		return str.toString();
+	}
+
+	/**
+	 * Stops the threads. Tables that are still running just
+	 * stop where they are.
+	 */
+	public void shutdown() {
+		for( Shard shard : shards ) {
+			shard.executor.shutdownNow();
+		}
+	}
+
+	/************************************************************
+	 * Private methods
+	 ***********************************************************/
+
+	/**
+	 * Logs the queue delays of the tables that ran, and where
+	 * the tables are, moves a table if a shard is running hot,
+	 * and starts them all over.
+	 */
+	private void report() {
+
+		String report = getQueueDelayReport();
+		if( report.length() > 0 ) {
+			LOGGER.info( "Table queue delays:\n" + report );
+			LOGGER.info( "Table shards:\n" + getPlacementReport() );
+		}
+		rebalance();
+		for( GamePlayingThread table : tables ) {
+			table.getQueueDelayStats().reset();
+		}
+		for( Shard shard : shards ) {
+			shard.reset();
+		}
+	}
+
+	/**
+	 * @return What to call the table in the reports
+	 */
+	private static String getName( GamePlayingThread table ) {
+		return table.getGame() == null ? "(no game)" : table.getGame().getId();
+	}
+
+	/************************************************************
+	 * The shards
+	 ***********************************************************/
+
+	/**
+	 * <b>CONCURRENT:</b> One of the threads that tables run on.
+	 * It keeps track of how many tables it has, and how busy
+	 * it's been running them.
+	 */
+	public static class Shard {
+
+		// Which one it is
+		private final int index;
+
+		// The thread, which runs the tables' turns and their timers
+		private final ScheduledThreadPoolExecutor executor;
+
+		// How many tables are on it
+		private final AtomicInteger tableCount	= new AtomicInteger();
+
+		// How long it's spent running tables, since it started counting
+		private final AtomicLong busyNanos		= new AtomicLong();
+		private volatile long periodStart		= System.nanoTime();
+
+		/**
+		 * Creates the shard, and its thread
+		 *
+		 * @param index Which one it is
+		 */
+		private Shard( final int index ) {
+			this.index = index;
+			executor = new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+				@Override
+				public Thread newThread( Runnable runnable ) {
+					Thread thread = new Thread( runnable, "TableShard-" + index );
+					thread.setDaemon( true );
+					return thread;
+				}
+			} );
+			executor.setRemoveOnCancelPolicy( true );
+		}
+
+		/**
+		 * @return Which shard it is, counting from 0
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return How many tables are on it
+		 */
+		public int getTableCount() {
+			return tableCount.get();
+		}
+
+		/**
+		 * @return The share of the time, from 0 to 1, that it's
+		 * been running tables since the last report
+		 */
+		public double getBusyShare() {
+			long elapsed = getElapsedNanos();
+			return elapsed <= 0 ? 0 : Math.min( 1.0, busyNanos.get() / (double)elapsed );
+		}
+		
+		/**
+		 * @return How long since the last report, in nanoseconds
+		 */
+		long getElapsedNanos() {
+			return System.nanoTime() - periodStart;
+		}
+
+		@Override
+		public String toString() {
+			return String.format( "shard %d, %d tables, busy %.1f%%", index, getTableCount(), getBusyShare() * 100 );
+		}
+
+		/**
+		 * Puts a table's turn at the back of the queue
+		 *
+		 * @param turn What to run
+		 */
+		void execute( Runnable turn ) {
+			executor.execute( turn );
+		}
+
+		/**
+		 * Runs something on the shard after a delay
+		 *
+		 * @param task What to run
+		 * @param delay How long to wait first, in milliseconds
+		 * @return So it can be cancelled
+		 */
+		ScheduledFuture<?> schedule( Runnable task, long delay ) {
+			return executor.schedule( task, delay, TimeUnit.MILLISECONDS );
+		}
+
+		/**
+		 * Records time spent running a table
+		 *
+		 * @param nanos How long, in nanoseconds
+		 */
+		void recordBusy( long nanos ) {
+			busyNanos.addAndGet( nanos );
+		}
+
+		/**
+		 * Starts counting again
+		 */
+		private void reset() {
+			busyNanos.set( 0 );
+			periodStart = System.nanoTime();
+		}
+	}
+}
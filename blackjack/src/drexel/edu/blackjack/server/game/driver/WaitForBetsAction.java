@@ -8,11 +8,11 @@
  * o Duc Anh Nguyen
  * 
  * Purpose: This class represents the game waiting for bets to be placed. It
- * basically does a loop for however long is stipulated, checking every few
- * seconds to see if all the active players have placed bets or not. If so, it
- * returns immediately. If not, it repeats the sleeping-checking process, until
- * it has exceeded the maximum time. At this point it returns, even though
- * some player have not bet. Those players are dealt with in a different action.
+ * waits for however long is stipulated, being woken up each time a player
+ * places a bet, to see if all the active players have placed bets or not. If
+ * so, it returns immediately. If not, it keeps waiting, until it has exceeded
+ * the maximum time. At this point it returns, even though some player have
+ * not bet. Those players are dealt with in a different action.
  ******************************************************************************/
 package drexel.edu.blackjack.server.game.driver;
 
@@ -23,9 +23,10 @@ import drexel.edu.blackjack.server.game.GameState;
 import drexel.edu.blackjack.util.BlackjackLogger;
 
 /**
- * This starts up a loop for BETTING_WAIT_TIME milliseconds,
- * checking periodically to see if all the ACTIVE players have
- * placed their bets yet.
+ * This waits for up to BETTING_WAIT_TIME milliseconds for all
+ * the ACTIVE players to place their bets. The game state wakes
+ * it up whenever a bet comes in, so the round moves on as soon
+ * as the last one does.
  * 
  * @author Jennifer
  *
@@ -35,42 +36,40 @@ public class WaitForBetsAction extends GameAction {
 	// We give people up to this long to place their bets
 	private int BETTING_WAIT_TIME		= 60 * SECOND_IN_MILLISECONDS;
 	
+	// When stepped, this is when the current wait is up, or 0 if not waiting yet
+	private long deadline = 0;
+	
 	// And of course our logger
 	private final static Logger LOGGER = BlackjackLogger.createLogger(WaitForBetsAction.class.getName());
 
+	/**
+	 * CONCURRENT: The bets get us stepped again as they come in.
+	 * <P>
+	 * Finishing does NOT mean that everyone placed bets! It means
+	 * that the process of waiting for bets was successful.
+	 */
 	@Override
-	public boolean doAction(Game game) {
-		
-		boolean success = false;
+	public long step(Game game) {
 		
 		GameState state = (game == null ? null : game.getGameState() );
 		if( state == null ) {
 			LOGGER.severe( "While waiting for bets somehow have a null state object." );
-		} else {
-			// This is when we started this whole process
-			long start = System.currentTimeMillis();
-			
-			// This is how long we've been waiting up until now
-			long delta = System.currentTimeMillis() - start;
-			
-			while( state.arePlayersWithOutstandingBets() && delta < BETTING_WAIT_TIME ) {
-				
-				// Sleep a while to give them time to check
-				try {
-					Thread.sleep( SWEEP_DELAY );
-				} catch( InterruptedException e ) {
-					// It's just waking us up
-				}
-				
-				// Recalculate delta before checking again
-				delta = System.currentTimeMillis() - start;
-			}
-			
-			success = true;
+			deadline = 0;
+			return FAILED;
 		}
 		
-		// Success does NOT mean that everyone placed bets! It means that
-		// the process of waiting for bets was successful.
-		return success;
+		// The first step starts the clock
+		long now = getClock().currentTimeMillis();
+		if( deadline == 0 ) {
+			deadline = now + BETTING_WAIT_TIME;
+		}
+		
+		// Done once the bets are in, or time's up. Otherwise wait out the
+		// rest of the time, though any bet will get us stepped again.
+		if( !state.arePlayersWithOutstandingBets() || now >= deadline ) {
+			deadline = 0;
+			return FINISHED;
+		}
+		return deadline - now;
 	}
 }
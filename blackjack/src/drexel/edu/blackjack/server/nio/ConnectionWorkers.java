@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - ConnectionWorkers.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: The threads that run protocol commands and TLS handshake work for
+ * connections serviced by a selector loop, so that a command that has to wait
+ * never holds up the other connections on the loop.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.nio;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import drexel.edu.blackjack.util.ThreadMode;
+
+/**
+ * <b>CONCURRENT:</b> A selector loop's thread only moves bytes.
+ * Anything that can take a while is run here instead: protocol
+ * commands, which can wait on a game table or on the disk, and
+ * the SSLEngine's delegated tasks, which do the handshake's
+ * crypto. When it's done, the connection hands the result back
+ * to its loop.
+ * <P>
+ * A connection only has one thing running here at a time. With
+ * platform threads there's a fixed number of workers,
+ * -DworkerThreads=N (four per processor), and a bounded queue of
+ * -DworkerQueue=N (1024) things waiting for one, so a burst of
+ * commands doesn't cost a thread per connection. When the queue
+ * is full, {@link #execute(Runnable, Runnable)} says so, and the
+ * connection stops reading until it's told there's room. With
+ * virtual threads, which are cheap, each thing gets one of its
+ * own, and there's never a wait.
+ *
+ * @author Jennifer
+ */
+final class ConnectionWorkers {
+
+	/**
+	 * The system properties with how many workers there are, and
+	 * how many things can wait for one, with platform threads
+	 */
+	public static final String THREADS_PROPERTY		= "workerThreads";
+	public static final String QUEUE_PROPERTY		= "workerQueue";
+
+	// How long an idle virtual worker is kept around
+	private static final long KEEP_ALIVE_SECONDS	= 60;
+
+	// Used to name the workers
+	private static final AtomicInteger created		= new AtomicInteger();
+
+	// Told when there's room in the queue again
+	private static final Queue<Runnable> waiting	= new ConcurrentLinkedQueue<Runnable>();
+
+	// Shared by every connection on every loop
+	private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+	/**
+	 * Only static methods
+	 */
+	private ConnectionWorkers() {
+	}
+
+	/**
+	 * Runs something on a worker, if there's room for it.
+	 *
+	 * @param task What to run
+	 * @param whenRoom If there isn't room, this is run once there
+	 * might be, on whatever thread notices. It should only hand
+	 * the task back to its loop to try again.
+	 * @return True if the task will be run, or false if there
+	 * wasn't room
+	 */
+	static boolean execute( Runnable task, Runnable whenRoom ) {
+		try {
+			EXECUTOR.execute( task );
+			return true;
+		} catch( RejectedExecutionException e ) {
+			waiting.add( whenRoom );
+
+			// In case the room opened up before we were waiting
+			wakeWaiting();
+			return false;
+		}
+	}
+
+	/**
+	 * Tells connections that were waiting that there's room,
+	 * for as long as there is
+	 */
+	private static void wakeWaiting() {
+		Runnable whenRoom = null;
+		while( EXECUTOR.getQueue().remainingCapacity() > 0 && (whenRoom = waiting.poll()) != null ) {
+			whenRoom.run();
+		}
+	}
+
+	private static ThreadPoolExecutor createExecutor() {
+		ThreadFactory factory = new ThreadFactory() {
+			@Override
+			public Thread newThread( Runnable runnable ) {
+				Thread thread = ThreadMode.newThread( "ConnectionWorker-" + created.incrementAndGet(), runnable );
+				thread.setDaemon( true );
+				return thread;
+			}
+		};
+		if( ThreadMode.isUsingVirtualThreads() ) {
+			return new ThreadPoolExecutor( 0, Integer.MAX_VALUE,
+					KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), factory );
+		}
+
+		int threads = Math.max( 1, Integer.getInteger( THREADS_PROPERTY, 4 * Runtime.getRuntime().availableProcessors() ) );
+		int queue = Math.max( 1, Integer.getInteger( QUEUE_PROPERTY, 1024 ) );
+		return new ThreadPoolExecutor( threads, threads, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>( queue ), factory ) {
+			@Override
+			protected void beforeExecute( Thread thread, Runnable task ) {
+				// Taking this task off the queue made room
+				wakeWaiting();
+			}
+		};
+	}
+
+}
@@ -0,0 +1,903 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - NioClientConnection.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: A single client connection serviced by a selector loop rather than
+ * its own thread. It does the TLS work with an SSLEngine, splits decrypted
+ * input into lines for the protocol, and encrypts whatever is sent back.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+
+import drexel.edu.blackjack.server.BinaryCodec;
+import drexel.edu.blackjack.server.BlackjackProtocol;
+import drexel.edu.blackjack.server.BlackjackServer;
+import drexel.edu.blackjack.server.ClientConnection;
+import drexel.edu.blackjack.server.EncodedMessage;
+import drexel.edu.blackjack.server.MessageBatch;
+import drexel.edu.blackjack.server.OverflowPolicy;
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.server.commands.CommandMetadata;
+import drexel.edu.blackjack.server.timeouts.IdleTimeoutDaemon;
+import drexel.edu.blackjack.util.BinaryFramer;
+import drexel.edu.blackjack.util.BlackjackLogger;
+import drexel.edu.blackjack.util.LineFramer;
+
+/**
+ * <b>CONCURRENT:</b> Everything to do with the socket and the
+ * SSLEngine happens on the owning {@link SelectorLoop}'s thread,
+ * except for the two things that can take a while: commands, which
+ * can wait on a game table or the disk, and the SSLEngine's
+ * delegated tasks. Those run on the {@link ConnectionWorkers}, one
+ * at a time per connection, and the loop picks up where it left off
+ * once they're done. Input that comes in meanwhile waits, in order,
+ * and a client that sends too much of it stops being read from. So
+ * does one whose work can't be taken because the workers are all
+ * busy and their queue is full, until there's room.
+ * Game threads that send a message only append plaintext to the
+ * outbound buffer, under a lock, and ask the loop to flush it.
+ * Once the client has switched to binary framing, they append
+ * the message itself, and the loop encodes it as a frame.
+ * The buffer is bounded, and a client that lets it fill up has
+ * messages dropped or is disconnected, as per the
+ * {@link OverflowPolicy}.
+ * <P>
+ * <b>SECURITY:</b> As with the thread-per-connection transport, a
+ * client that sends more than
+ * {@link BlackjackServer#MAX_BYTES_PER_LINE} bytes without an
+ * end-of-line is disconnected, without buffering the excess.
+ * The same goes for a binary frame, once the client has switched
+ * to binary framing with the BINARY command.
+ *
+ * @author Jennifer
+ */
+public class NioClientConnection implements ClientConnection {
+
+	/**********************************************************
+	 * Local variables go here
+	 *********************************************************/
+
+	// How much room to start with for outbound plaintext. It grows if needed.
+	private static final int INITIAL_OUTBOUND_SIZE		= 512;
+	
+	// How much room to start with for input that's waiting on a command
+	private static final int INITIAL_INBOUND_SIZE		= 512;
+	
+	// How much input can be waiting on a command before we stop reading
+	private static final int MAX_INBOUND_BACKLOG		= 4 * BlackjackServer.MAX_BYTES_PER_LINE;
+
+	// The client's socket, in non-blocking mode
+	private SocketChannel channel = null;
+
+	// Does the TLS work for the connection
+	private SSLEngine engine = null;
+
+	// The loop that services us, and our registration with its selector
+	private SelectorLoop loop = null;
+	private SelectionKey key = null;
+
+	// There's a protocol state that goes with it
+	private BlackjackProtocol protocol = null;
+
+	// Encrypted bytes read from the network that haven't been unwrapped yet
+	private ByteBuffer networkIn = null;
+
+	// Encrypted bytes waiting to be written to the network
+	private ByteBuffer networkOut = null;
+
+	// Plaintext waiting to be encrypted. Other threads append to this,
+	// so it is only touched while holding the outbound lock.
+	private ByteBuffer outbound = null;
+	private final Object outboundLock = new Object();
+
+	// How much plaintext can be waiting, and what to do past that
+	private int outboundLimit = OverflowPolicy.getConfiguredLimit();
+	private OverflowPolicy overflowPolicy = OverflowPolicy.getConfiguredPolicy();
+
+	// Messages waiting to be encoded, once the client has switched to binary
+	// framing, and how long they are as text; guarded by the outbound lock
+	private List<EncodedMessage> unframed = new ArrayList<EncodedMessage>();
+	private int unframedLength = 0;
+
+	// What the loop is currently encoding; swapped with unframed
+	private List<EncodedMessage> framing = new ArrayList<EncodedMessage>();
+
+	// Set once the client has fallen too far behind; guarded by the outbound lock
+	private boolean overflowed = false;
+
+	// How many messages were dropped or caused a disconnect
+	private AtomicInteger overflowCount = new AtomicInteger( 0 );
+
+	// Decrypted input that hasn't been framed yet, because a command
+	// is still running. Only touched on the loop's thread.
+	private ByteBuffer inbound = null;
+	
+	// Set while a command, or the SSLEngine's delegated tasks, are
+	// running on a worker. Only touched on the loop's thread.
+	private boolean commandRunning = false;
+	private boolean tasksRunning = false;
+	
+	// Work the workers had no room for, which is tried again when
+	// they do. Only touched on the loop's thread.
+	private Runnable deferred = null;
+	
+	// Has the loop try the deferred work again
+	private final Runnable retryDeferred = new Runnable() {
+		@Override
+		public void run() {
+			loop.execute( new Runnable() {
+				@Override
+				public void run() {
+					if( deferred != null && !closed ) {
+						Runnable work = deferred;
+						deferred = null;
+						submit( work );
+						pumpAndClose();
+					}
+				}
+			});
+		}
+	};
+
+	// Assembles lines from decrypted input
+	private LineFramer framer = new LineFramer( BlackjackServer.MAX_BYTES_PER_LINE, BlackjackServer.EOL );
+
+	// Hands each line the framer assembles to handleLine()
+	private LineFramer.LineListener lineListener = new LineFramer.LineListener() {
+		@Override
+		public boolean lineReceived( CharSequence line ) {
+			handleLine( line );
+			return !commandRunning && !closeAfterFlush && binaryFramer == null;
+		}
+	};
+
+	// Set once the client switches to binary framing. Frames are decoded,
+	// and outbound messages encoded, on the loop's thread. outboundCodec
+	// is set under the outbound lock, once the last text message is queued.
+	private BinaryCodec codec = null;
+	private BinaryFramer binaryFramer = null;
+	private BinaryCodec outboundCodec = null;
+
+	// Hands each frame the binary framer assembles to handleCommand()
+	private BinaryFramer.FrameListener frameListener = new BinaryFramer.FrameListener() {
+		@Override
+		public boolean frameReceived( byte[] data, int offset, int length ) throws IOException {
+			handleCommand( codec.decodeCommand( data, offset, length ) );
+			return !commandRunning && !closeAfterFlush;
+		}
+	};
+
+	// Keeps other threads from queuing up more than one flush at a time
+	private AtomicBoolean flushScheduled = new AtomicBoolean( false );
+
+	// Set when we've sent something that requires the client be disconnected
+	private boolean closeAfterFlush = false;
+
+	// Set once the connection is closed
+	private volatile boolean closed = false;
+
+	// And a logger for errors
+	private final static Logger LOGGER = BlackjackLogger.createLogger(NioClientConnection.class.getName());
+
+	/**********************************************************
+	 * Constructor goes here
+	 *********************************************************/
+
+	/**
+	 * Create a connection for a client that has just been
+	 * accepted. It isn't serviced until {@link #register()}
+	 * is run on the loop's thread.
+	 *
+	 * @param channel The client's socket, already in non-blocking mode
+	 * @param engine The server-mode SSLEngine for the connection
+	 * @param loop The selector loop that will service it
+	 */
+	public NioClientConnection( SocketChannel channel, SSLEngine engine, SelectorLoop loop ) {
+		this.channel = channel;
+		this.engine = engine;
+		this.loop = loop;
+		this.protocol = new BlackjackProtocol(this);
+
+		int packetSize = engine.getSession().getPacketBufferSize();
+		networkIn = ByteBuffer.allocate( packetSize );
+		networkOut = ByteBuffer.allocate( packetSize );
+		outbound = ByteBuffer.allocate( INITIAL_OUTBOUND_SIZE );
+		inbound = ByteBuffer.allocate( INITIAL_INBOUND_SIZE );
+	}
+
+	/**********************************************************
+	 * Public methods go here
+	 *********************************************************/
+
+	/**
+	 * Get the protocol instance associated with this connection.
+	 * @return the protocol
+	 */
+	@Override
+	public BlackjackProtocol getProtocol() {
+		return protocol;
+	}
+
+	/**
+	 * Queues the toString() of the response code to be sent,
+	 * and has the selector loop flush it, unless the calling
+	 * thread has a {@link MessageBatch} open. Safe to call from
+	 * any thread; it never blocks on the socket.
+	 *
+	 * @param code What to send
+	 */
+	@Override
+	public void sendMessage( ResponseCode code ) {
+		if( closed ) {
+			LOGGER.finer( "Wanted to send a message to a client whose connection is closed." );
+			return;
+		}
+		queueForSending( code.getEncoded() );
+		if( !MessageBatch.defer( this ) ) {
+			scheduleFlush();
+		}
+	}
+
+	/**
+	 * Queues an already-encoded message, without flushing it.
+	 * Safe to call from any thread.
+	 *
+	 * @param message What to send
+	 */
+	@Override
+	public void queueMessage( EncodedMessage message ) {
+		if( closed ) {
+			LOGGER.finer( "Wanted to queue a message to a client whose connection is closed." );
+			return;
+		}
+		queueForSending( message );
+	}
+
+	/**
+	 * Has the selector loop encrypt and write everything
+	 * queued so far. Safe to call from any thread.
+	 */
+	@Override
+	public void flushMessages() {
+		if( !closed ) {
+			scheduleFlush();
+		}
+	}
+
+	/**
+	 * Called by the idle timeout daemon when the client has been
+	 * idle for too long.
+	 */
+	@Override
+	public void forceDisconnectDueToTimeout() {
+		LOGGER.info( "Inside a client connection, about to force a timeout disconnect!" );
+		closeConnection();
+	}
+
+	/**
+	 * Closes the connection. The actual work is done on the
+	 * selector loop's thread.
+	 */
+	@Override
+	public void closeConnection() {
+		loop.execute( new Runnable() {
+			@Override
+			public void run() {
+				close();
+			}
+		});
+	}
+
+	/**
+	 * How many times has a message to this client been dropped,
+	 * or caused a disconnect, because it wasn't keeping up?
+	 *
+	 * @return The count
+	 */
+	@Override
+	public int getOverflowCount() {
+		return overflowCount.get();
+	}
+
+	/**
+	 * @return true if closed, false if still open
+	 */
+	@Override
+	public boolean isClosed() {
+		return closed || !channel.isOpen();
+	}
+
+	/**********************************************************
+	 * Package-private methods, called on the loop's thread
+	 *********************************************************/
+
+	/**
+	 * Registers with the loop's selector, starts the TLS
+	 * handshake, and starts being monitored for idleness.
+	 */
+	void register() {
+		try {
+			key = channel.register( loop.getSelector(), SelectionKey.OP_READ, this );
+			engine.beginHandshake();
+		} catch (IOException e) {
+			LOGGER.warning( "Unable to register a new client connection: " + e.getMessage() );
+			close();
+			return;
+		}
+
+		IdleTimeoutDaemon daemon = IdleTimeoutDaemon.getDefaultIdleTimeoutDaemon();
+		if( daemon != null ) {
+			daemon.addClientConnection(this);
+		} else {
+			LOGGER.warning( "Cannot register a client connection with the timeout daemon." );
+		}
+
+		pumpAndClose();
+	}
+
+	/**
+	 * Called by the loop when the selector says the socket is
+	 * readable and/or writable.
+	 *
+	 * @param readyOperations The ready set from the selection key
+	 */
+	void handleReadyOperations( int readyOperations ) {
+		if( (readyOperations & SelectionKey.OP_READ) != 0 ) {
+			try {
+				if( channel.read( networkIn ) < 0 ) {
+					LOGGER.finer( "Client closed their end of the connection." );
+					close();
+					return;
+				}
+			} catch (IOException e) {
+				LOGGER.finer( "Socket was closed for a connection." );
+				close();
+				return;
+			}
+		}
+		pumpAndClose();
+	}
+
+	/**********************************************************
+	 * Private methods go here
+	 *********************************************************/
+
+	/**
+	 * Moves data through the SSLEngine, and closes the
+	 * connection if that fails for any reason.
+	 */
+	private void pumpAndClose() {
+		try {
+			pump();
+		} catch (IOException e) {
+			LOGGER.finer( "Closing a client connection: " + e.getMessage() );
+			close();
+		} catch (RuntimeException e) {
+			LOGGER.severe( "Unexpected error on a client connection: " + e );
+			close();
+		}
+	}
+
+	/**
+	 * Keeps doing whatever the SSLEngine needs done (running
+	 * handshake tasks, unwrapping input, wrapping output) until
+	 * no more progress can be made, then writes what it can to
+	 * the socket and decides what to wait for next.
+	 *
+	 * @throws IOException If anything goes wrong with the connection
+	 */
+	private void pump() throws IOException {
+
+		// Input that was waiting on a command that's since finished
+		processInput();
+
+		boolean progress = true;
+		while( progress && !closed ) {
+			progress = step();
+
+			// Once everything before a disconnecting response is out,
+			// say goodbye properly with a TLS close_notify
+			if( !progress && closeAfterFlush && !engine.isOutboundDone() && !hasOutbound() ) {
+				engine.closeOutbound();
+				progress = true;
+			}
+		}
+
+		if( closed ) {
+			return;
+		}
+
+		boolean flushed = flushNetwork();
+		if( closeAfterFlush && flushed && engine.isOutboundDone() ) {
+			close();
+		} else if( key.isValid() ) {
+			// A client that's sent a lot more than we've gotten to, or whose
+			// work is waiting on the workers, isn't read from for now
+			int operations = (inbound.position() >= MAX_INBOUND_BACKLOG || deferred != null ? 0 : SelectionKey.OP_READ);
+			key.interestOps( flushed ? operations : operations | SelectionKey.OP_WRITE );
+		}
+	}
+
+	/**
+	 * Does one thing the SSLEngine needs done.
+	 *
+	 * @return true if it made progress, false if it's waiting on the network
+	 * @throws IOException If anything goes wrong with the connection
+	 */
+	private boolean step() throws IOException {
+		switch( engine.getHandshakeStatus() ) {
+		case NEED_TASK:
+			// The handshake waits until a worker's done them
+			if( !tasksRunning ) {
+				runDelegatedTasks();
+			}
+			return false;
+		case NEED_WRAP:
+			return wrap();
+		case NEED_UNWRAP:
+			return unwrap();
+		default:
+			// Not handshaking, so move application data in both directions
+			boolean unwrapped = unwrap();
+			boolean wrapped = wrap();
+			return unwrapped || wrapped;
+		}
+	}
+
+	/**
+	 * Decrypts what we can of the network input, and hands
+	 * any complete lines to the protocol.
+	 *
+	 * @return true if anything was consumed or produced
+	 * @throws IOException If the input can't be decrypted or is too long
+	 */
+	private boolean unwrap() throws IOException {
+
+		ByteBuffer application = loop.getApplicationBuffer( engine.getSession().getApplicationBufferSize() );
+
+		networkIn.flip();
+		SSLEngineResult result = engine.unwrap( networkIn, application );
+		networkIn.compact();
+
+		deliverLines( application );
+
+		switch( result.getStatus() ) {
+		case BUFFER_UNDERFLOW:
+			// Need more from the network. Make sure a whole record will fit.
+			int packetSize = engine.getSession().getPacketBufferSize();
+			if( networkIn.capacity() < packetSize ) {
+				ByteBuffer bigger = ByteBuffer.allocate( packetSize );
+				networkIn.flip();
+				bigger.put( networkIn );
+				networkIn = bigger;
+			}
+			return false;
+		case BUFFER_OVERFLOW:
+			// The session's buffer size went up; next call gets a bigger buffer
+			return true;
+		case CLOSED:
+			closeAfterFlush = true;
+			return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+		default:
+			return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+		}
+	}
+
+	/**
+	 * Encrypts what we can of the outbound plaintext.
+	 *
+	 * @return true if anything was consumed or produced
+	 * @throws IOException If the output can't be encrypted
+	 */
+	private boolean wrap() throws IOException {
+
+		frameMessages();
+
+		SSLEngineResult result = null;
+		synchronized( outboundLock ) {
+			outbound.flip();
+			result = engine.wrap( outbound, networkOut );
+			outbound.compact();
+		}
+
+		switch( result.getStatus() ) {
+		case BUFFER_OVERFLOW:
+			// No room for another record until the socket takes some
+			int pending = networkOut.position();
+			flushNetwork();
+			return networkOut.position() < pending;
+		case CLOSED:
+			return result.bytesProduced() > 0;
+		default:
+			return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+		}
+	}
+
+	/**
+	 * Adds decrypted input to what's waiting to be framed, and
+	 * frames what it can.
+	 *
+	 * @param application Decrypted input, in write mode
+	 * @throws IOException If a line is longer than the protocol allows
+	 */
+	private void deliverLines( ByteBuffer application ) throws IOException {
+
+		application.flip();
+		if( application.hasRemaining() && !closeAfterFlush ) {
+			if( inbound.remaining() < application.remaining() ) {
+				ByteBuffer bigger = ByteBuffer.allocate(
+						Math.max( inbound.capacity() * 2, inbound.position() + application.remaining() ) );
+				inbound.flip();
+				bigger.put( inbound );
+				inbound = bigger;
+			}
+			inbound.put( application );
+		}
+		application.clear();
+		processInput();
+	}
+
+	/**
+	 * Frames waiting input until it gets to a command, and has a
+	 * worker run it. Nothing more is framed until it's done, so
+	 * commands run in the order they were sent, and a command
+	 * that switches framing does so before the next is framed.
+	 *
+	 * @throws IOException If a line is longer than the protocol allows
+	 */
+	private void processInput() throws IOException {
+
+		if( commandRunning || closeAfterFlush || inbound.position() == 0 ) {
+			return;
+		}
+		inbound.flip();
+		try {
+			// SECURITY: The framers throw rather than buffer a line or frame that's too long
+			if( binaryFramer == null ) {
+				framer.feed( inbound, lineListener );
+			}
+			if( binaryFramer != null && !commandRunning && !closeAfterFlush ) {
+				binaryFramer.feed( inbound, frameListener );
+			}
+		} finally {
+			inbound.compact();
+		}
+	}
+
+	/**
+	 * Has a worker pass a line to the protocol.
+	 *
+	 * @param inputLine The line, stripped of its EOL. Only valid
+	 * during this call, so it's copied.
+	 */
+	private void handleLine( CharSequence inputLine ) {
+		LOGGER.finer( "Inside a client connection, about to process some input" );
+		runCommand( inputLine.toString(), null );
+	}
+
+	/**
+	 * Has a worker pass a command that arrived in a binary frame
+	 * to the protocol.
+	 *
+	 * @param metadata The decoded command
+	 */
+	private void handleCommand( CommandMetadata metadata ) {
+		runCommand( null, metadata );
+	}
+
+	/**
+	 * Runs a command on a worker, and then has the loop queue
+	 * its response and carry on with the input.
+	 *
+	 * @param line The command as a line, or null if it was decoded
+	 * @param metadata The decoded command, if it wasn't a line
+	 */
+	private void runCommand( final String line, final CommandMetadata metadata ) {
+
+		commandRunning = true;
+		submit( new Runnable() {
+			@Override
+			public void run() {
+				// Anything the command sends to other clients is held until
+				// we're done, then goes out as one write per client
+				ResponseCode response = null;
+				MessageBatch.begin();
+				try {
+					response = (line != null ? protocol.respondTo( line ) : protocol.respondTo( metadata ));
+				} catch( RuntimeException e ) {
+					LOGGER.severe( "Unexpected error running a command: " + e );
+					response = new ResponseCode( ResponseCode.CODE.INTERNAL_ERROR, "The command could not be run." );
+				} finally {
+					MessageBatch.end();
+				}
+
+				final ResponseCode finished = response;
+				loop.execute( new Runnable() {
+					@Override
+					public void run() {
+						commandRunning = false;
+						if( !closed ) {
+							queueResponse( finished );
+							pumpAndClose();
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Has a worker run the SSLEngine's delegated tasks, which do
+	 * the handshake's crypto, and then has the loop carry on with
+	 * the handshake.
+	 */
+	private void runDelegatedTasks() {
+
+		// They're taken from the engine here, on the loop's thread
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		Runnable task = engine.getDelegatedTask();
+		while( task != null ) {
+			tasks.add( task );
+			task = engine.getDelegatedTask();
+		}
+
+		tasksRunning = true;
+		submit( new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for( Runnable task : tasks ) {
+						task.run();
+					}
+				} catch( RuntimeException e ) {
+					LOGGER.warning( "A TLS handshake task failed: " + e );
+				}
+				loop.execute( new Runnable() {
+					@Override
+					public void run() {
+						tasksRunning = false;
+						if( !closed ) {
+							pumpAndClose();
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Hands work to the workers or, if they've no room, holds on
+	 * to it until they do. Nothing more is read meanwhile.
+	 *
+	 * @param work What to run
+	 */
+	private void submit( Runnable work ) {
+		if( !ConnectionWorkers.execute( work, retryDeferred ) ) {
+			deferred = work;
+		}
+	}
+
+	/**
+	 * Queues the response to a command. If the command asked for
+	 * binary framing, the response is the last thing sent as text,
+	 * and both directions switch right after it.
+	 *
+	 * @param response The response
+	 */
+	private void queueResponse( ResponseCode response ) {
+
+		// Our own response is written by the pump that runs after this
+		if( protocol.takeBinaryFramingRequest() ) {
+			codec = new BinaryCodec( BlackjackServer.MAX_BYTES_PER_LINE );
+			binaryFramer = new BinaryFramer( BlackjackServer.MAX_BYTES_PER_LINE );
+			queueForSending( response.getEncoded(), codec );
+		} else {
+			queueForSending( response.getEncoded() );
+		}
+
+		// Was it a code that requires us to disconnect them?
+		if( response.requiresDisconnect() ) {
+			closeAfterFlush = true;
+		}
+	}
+
+	/**
+	 * Appends an already-encoded message to the outbound plaintext,
+	 * unless the client has fallen too far behind. Then, as per the
+	 * {@link OverflowPolicy}, it's dropped or the client is
+	 * disconnected.
+	 *
+	 * @param message What to send
+	 */
+	private void queueForSending( EncodedMessage message ) {
+		queueForSending( message, null );
+	}
+
+	/**
+	 * Appends an already-encoded message to the outbound plaintext,
+	 * as {@link #queueForSending(EncodedMessage)} does. Then, if it
+	 * was queued and a codec is given, switches to binary framing:
+	 * every message after it waits for the loop to encode it with
+	 * the codec. That's decided under the outbound lock, so nothing
+	 * can get in between.
+	 *
+	 * @param message What to send, which is the last text message
+	 * @param switchTo The codec to encode later messages with, or
+	 * null to not switch
+	 */
+	private void queueForSending( EncodedMessage message, BinaryCodec switchTo ) {
+		OverflowPolicy.ACTION action = null;
+		synchronized( outboundLock ) {
+			if( overflowed ) {
+				return;
+			}
+			action = overflowPolicy.decide( outbound.position() + unframedLength, outboundLimit, message );
+			if( action == OverflowPolicy.ACTION.QUEUE && outboundCodec != null ) {
+				unframed.add( message );
+				unframedLength += message.getLength();
+				return;
+			} else if( action == OverflowPolicy.ACTION.QUEUE ) {
+				appendToOutbound( message );
+				if( switchTo != null ) {
+					outboundCodec = switchTo;
+				}
+				return;
+			}
+			overflowCount.incrementAndGet();
+			if( action == OverflowPolicy.ACTION.DISCONNECT ) {
+				overflowed = true;
+			}
+		}
+
+		if( action == OverflowPolicy.ACTION.DISCONNECT ) {
+			LOGGER.warning( "A client fell too far behind in reading its messages, disconnecting it." );
+			closeConnection();
+		}
+	}
+
+	/**
+	 * Encodes the messages waiting for binary framing, and appends
+	 * the frames to the outbound plaintext. The encoding is done
+	 * outside the outbound lock, so threads sending messages don't
+	 * wait on it. Only run on the loop's thread.
+	 */
+	private void frameMessages() {
+
+		BinaryCodec codec = null;
+		synchronized( outboundLock ) {
+			if( unframed.isEmpty() ) {
+				return;
+			}
+			List<EncodedMessage> swap = framing;
+			framing = unframed;
+			unframed = swap;
+			codec = outboundCodec;
+		}
+
+		// Messages are only left unframed once the codec is set
+		int textLength = 0;
+		for( int i = 0; i < framing.size(); i++ ) {
+			textLength += framing.get( i ).getLength();
+			framing.set( i, codec.encodeResponse( framing.get( i ) ) );
+		}
+
+		synchronized( outboundLock ) {
+			for( EncodedMessage frame : framing ) {
+				appendToOutbound( frame );
+			}
+			unframedLength -= textLength;
+		}
+		framing.clear();
+	}
+
+	/**
+	 * Appends a message to the outbound plaintext, growing it if
+	 * need be. The caller must hold the outbound lock.
+	 *
+	 * @param message What to append
+	 */
+	private void appendToOutbound( EncodedMessage message ) {
+		int length = message.getLength();
+		if( outbound.remaining() < length ) {
+			ByteBuffer bigger = ByteBuffer.allocate(
+					Math.max( outbound.capacity() * 2, outbound.position() + length ) );
+			outbound.flip();
+			bigger.put( outbound );
+			outbound = bigger;
+		}
+		message.copyTo( outbound );
+	}
+
+	/**
+	 * @return true if there is plaintext waiting to be encrypted,
+	 * or messages waiting to be encoded
+	 */
+	private boolean hasOutbound() {
+		synchronized( outboundLock ) {
+			return outbound.position() > 0 || !unframed.isEmpty();
+		}
+	}
+
+	/**
+	 * Has the loop flush the outbound plaintext, unless a flush
+	 * is already waiting to happen.
+	 */
+	private void scheduleFlush() {
+		if( flushScheduled.compareAndSet( false, true ) ) {
+			loop.execute( new Runnable() {
+				@Override
+				public void run() {
+					flushScheduled.set( false );
+					if( !closed && key != null ) {
+						pumpAndClose();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes as much encrypted output as the socket will take.
+	 *
+	 * @return true if all of it was written
+	 * @throws IOException If the write fails
+	 */
+	private boolean flushNetwork() throws IOException {
+		networkOut.flip();
+		while( networkOut.hasRemaining() && channel.write( networkOut ) > 0 ) {
+			// Keep writing while the socket takes it
+		}
+		networkOut.compact();
+		return networkOut.position() == 0;
+	}
+
+	/**
+	 * Closes the socket, stops being monitored for idleness, and
+	 * logs out the user. Only the first call does anything.
+	 */
+	private void close() {
+
+		if( closed ) {
+			return;
+		}
+		closed = true;
+
+		LOGGER.info( "Inside a client connection, about to shut down the connection" );
+		if( key != null ) {
+			key.cancel();
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// At this point we're about to end anyway, so ignore it
+		}
+
+		IdleTimeoutDaemon daemon = IdleTimeoutDaemon.getDefaultIdleTimeoutDaemon();
+		if( daemon != null ) {
+			daemon.removeClientConnection(this);
+		}
+
+		// Don't forget to log out the user
+		if( protocol != null ) {
+			protocol.logoutUserOnDisconnect();
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SelectorLoop.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: One of the I/O threads of the selector-based transport. It owns a
+ * selector that many client connections are registered with, and services
+ * whichever of them have data to read or room to write.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * <b>CONCURRENT:</b> Each loop is a single thread servicing many
+ * client connections. Every connection is only ever touched by the
+ * loop it is registered with; other threads that need something done
+ * to a connection (sending it a message, closing it) hand the loop
+ * a task through {@link #execute(Runnable)}, which wakes the selector
+ * up to run it.
+ *
+ * @author Jennifer
+ */
+public class SelectorLoop extends Thread {
+
+	/**********************************************************
+	 * Local variables go here
+	 *********************************************************/
+
+	// The selector that all our connections are registered with
+	private Selector selector = null;
+
+	// Work handed to us by other threads, run between selects
+	private Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+
+	// Decrypted input is always consumed as soon as it is unwrapped,
+	// so a single buffer can be shared by every connection on the loop
+	private ByteBuffer applicationBuffer = null;
+
+	// Set to false to stop the loop
+	private volatile boolean keepRunning = true;
+
+	// And a logger for errors
+	private final static Logger LOGGER = BlackjackLogger.createLogger(SelectorLoop.class.getName());
+
+	/**********************************************************
+	 * Constructor goes here
+	 *********************************************************/
+
+	/**
+	 * Creates a loop with its own selector. It still needs
+	 * to be started.
+	 *
+	 * @param index Which loop this is, only used for naming
+	 * @throws IOException If the selector cannot be opened
+	 */
+	public SelectorLoop( int index ) throws IOException {
+		super( "SelectorLoop-" + index );
+		this.selector = Selector.open();
+	}
+
+	/**********************************************************
+	 * Public methods go here
+	 *********************************************************/
+
+	/**
+	 * Queues up a task to be run on this loop's thread, and
+	 * wakes the selector so it runs promptly. Safe to call
+	 * from any thread.
+	 *
+	 * @param task What to run
+	 */
+	public void execute( Runnable task ) {
+		pendingTasks.add( task );
+		selector.wakeup();
+	}
+
+	/**
+	 * Stops the loop the next time it wakes up.
+	 */
+	public void shutdown() {
+		keepRunning = false;
+		selector.wakeup();
+	}
+
+	/**********************************************************
+	 * This is the meat of the thread, the run() method. It
+	 * alternates between running tasks handed to it by other
+	 * threads, and servicing connections that the selector
+	 * says are ready.
+	 *********************************************************/
+	@Override
+	public void run() {
+
+		while( keepRunning ) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				LOGGER.severe( "Selector failed in a selector loop: " + e.getMessage() );
+				continue;
+			}
+
+			runPendingTasks();
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while( keys.hasNext() ) {
+				SelectionKey key = keys.next();
+				keys.remove();
+
+				NioClientConnection connection = (NioClientConnection)key.attachment();
+				if( connection != null && key.isValid() ) {
+					connection.handleReadyOperations( key.readyOps() );
+				}
+			}
+		}
+
+		try {
+			selector.close();
+		} catch (IOException e) {
+			// We're stopping anyway
+		}
+	}
+
+	/**********************************************************
+	 * Package-private methods go here
+	 *********************************************************/
+
+	/**
+	 * Get the selector, for registering connections with.
+	 * Only valid to use from this loop's thread.
+	 *
+	 * @return the selector
+	 */
+	Selector getSelector() {
+		return selector;
+	}
+
+	/**
+	 * Get the shared buffer that decrypted input is unwrapped
+	 * into. Only valid to use from this loop's thread.
+	 *
+	 * @param minimumSize How big the buffer has to be
+	 * @return An empty buffer of at least that size
+	 */
+	ByteBuffer getApplicationBuffer( int minimumSize ) {
+		if( applicationBuffer == null || applicationBuffer.capacity() < minimumSize ) {
+			applicationBuffer = ByteBuffer.allocate( minimumSize );
+		}
+		applicationBuffer.clear();
+		return applicationBuffer;
+	}
+
+	/**********************************************************
+	 * Private methods go here
+	 *********************************************************/
+
+	/**
+	 * Runs everything other threads have asked us to do. A bad
+	 * task shouldn't take down every connection on the loop, so
+	 * anything it throws is logged and dropped.
+	 */
+	private void runPendingTasks() {
+		Runnable task = pendingTasks.poll();
+		while( task != null ) {
+			try {
+				task.run();
+			} catch( RuntimeException e ) {
+				LOGGER.severe( "Task failed in a selector loop: " + e );
+			}
+			task = pendingTasks.poll();
+		}
+	}
+
+}
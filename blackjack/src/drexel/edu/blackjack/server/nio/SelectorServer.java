@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SelectorServer.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Accepts client connections for the selector-based transport, and
+ * spreads them over a fixed number of selector loops, instead of starting a
+ * thread for each one.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * <b>CONCURRENT:</b> The thread calling {@link #acceptConnections()}
+ * does nothing but accept sockets. Each new connection is given to
+ * the next selector loop in turn, so the number of threads servicing
+ * clients stays fixed no matter how many clients connect.
+ * <P>
+ * <b>SECURITY:</b> Every accepted connection gets its own server-mode
+ * SSLEngine from the server's SSLContext.
+ *
+ * @author Jennifer
+ */
+public class SelectorServer {
+
+	/**********************************************************
+	 * Local variables go here
+	 *********************************************************/
+
+	// Where engines for new connections come from
+	private SSLContext context = null;
+
+	// The I/O threads
+	private SelectorLoop[] loops = null;
+
+	// Which loop gets the next connection
+	private int nextLoop = 0;
+
+	// The listening socket
+	private ServerSocketChannel serverChannel = null;
+
+	// And a logger for errors
+	private final static Logger LOGGER = BlackjackLogger.createLogger(SelectorServer.class.getName());
+
+	/**********************************************************
+	 * Constructor goes here
+	 *********************************************************/
+
+	/**
+	 * Creates the server and starts its selector loops.
+	 *
+	 * @param context The SSL context to create engines from
+	 * @param numberOfLoops How many I/O threads to use
+	 * @throws IOException If a selector can't be opened
+	 */
+	public SelectorServer( SSLContext context, int numberOfLoops ) throws IOException {
+		this.context = context;
+		this.loops = new SelectorLoop[Math.max( 1, numberOfLoops )];
+		for( int i = 0; i < loops.length; i++ ) {
+			loops[i] = new SelectorLoop( i );
+			loops[i].start();
+		}
+		LOGGER.info( "Started " + loops.length + " selector loops." );
+	}
+
+	/**********************************************************
+	 * Public methods go here
+	 *********************************************************/
+
+	/**
+	 * SERVICE: Binds to the port that clients will connect to.
+	 *
+	 * @param port The port to bind to
+	 * @throws IOException If it can't be bound
+	 */
+	public void bind( int port ) throws IOException {
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind( new InetSocketAddress( port ) );
+	}
+
+	/**
+	 * @return The port it's bound to, which is the one it was
+	 * given unless that was 0
+	 * @throws IOException If it isn't bound
+	 */
+	public int getPort() throws IOException {
+		if( serverChannel == null ) {
+			throw new IOException( "The server isn't bound to a port." );
+		}
+		return ((InetSocketAddress)serverChannel.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * Loops forever, accepting clients and handing them to
+	 * the selector loops. Returns only if the listening
+	 * socket fails.
+	 *
+	 * @throws IOException If the listening socket fails
+	 */
+	public void acceptConnections() throws IOException {
+		while( true ) {
+			SocketChannel channel = serverChannel.accept();
+			try {
+				channel.configureBlocking( false );
+			} catch (IOException e) {
+				LOGGER.warning( "Unable to make a client socket non-blocking: " + e.getMessage() );
+				channel.close();
+				continue;
+			}
+
+			SSLEngine engine = context.createSSLEngine();
+			engine.setUseClientMode( false );
+
+			// CONCURRENT: This is where each new connection is given
+			// to one of the shared I/O threads
+			SelectorLoop loop = loops[nextLoop];
+			nextLoop = (nextLoop + 1) % loops.length;
+
+			final NioClientConnection connection = new NioClientConnection( channel, engine, loop );
+			loop.execute( new Runnable() {
+				@Override
+				public void run() {
+					connection.register();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Closes the listening socket and stops the selector loops.
+	 */
+	public void close() {
+		if( serverChannel != null ) {
+			try {
+				serverChannel.close();
+			} catch (IOException e) {
+				// We're about to exit anyway, so oh well
+			}
+		}
+		for( SelectorLoop loop : loops ) {
+			loop.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Selector-based transport for client connections
+ * <P>
+ * CS544 Computer Networks Spring 2013
+ * <P>
+ * 5/26/2013
+ * <P>
+ * <b>Purpose:</b> Rather than dedicating a thread to every connected client,
+ * which mostly sits blocked waiting on an idle player, the classes in this
+ * package multiplex all client connections over a small, fixed pool of
+ * selector threads. TLS is done with an SSLEngine per connection, and input
+ * lines are handed to the same protocol object the thread-per-connection
+ * transport uses.
+ * <P>
+ * <b>CONCURRENT:</b> All classes in this package are concerned with the
+ * concurrent requirement, as this is how many clients are serviced at once.
+ * <b>SECURITY:</b> Connections are encrypted with TLS, and the protocol limit
+ * on line length is enforced as bytes are decrypted.
+ *  
+ * @author Jennifer Lautenschlager
+ * @author Constantine Lazarakis
+ * @author Carol Greco
+ * @author Duc Anh Nguyen
+ * @version 1.0
+ ******************************************************************************/
+
+package drexel.edu.blackjack.server.nio;
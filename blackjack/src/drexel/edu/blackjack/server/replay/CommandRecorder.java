@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - CommandRecorder.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Writes down every command that every client sends, and when, so
+ * that a load test can be played back against the server exactly as it
+ * happened the first time.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.replay;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.server.commands.CommandMetadata;
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * A transcript of the commands clients send. After a
+ * {@link #HEADER} line, there's a line per command, of
+ * how many milliseconds after the recording started it
+ * came in, which session it came in on, and the command,
+ * separated by tabs. The command is written without its
+ * tag, as the replayer tags them itself. A session that
+ * closes gets a line with no command.
+ * <P>
+ * <b>SECURITY:</b> Transcripts have everyone's passwords
+ * in them, in the clear, so this is only for load tests
+ * with test accounts.
+ * <P>
+ * <b>CONCURRENT:</b> Every connection's thread records
+ * to the same one, so lines are written one at a time.
+ * <P>
+ * The server records when the {@value #RECORD_PROPERTY}
+ * system property is set to the file to write.
+ *
+ * @author Jennifer
+ */
+public class CommandRecorder {
+
+	/**
+	 * The system property with the file to record to
+	 */
+	public static final String RECORD_PROPERTY	= "record";
+
+	/**
+	 * The first line of every transcript
+	 */
+	public static final String HEADER			= "# Blackjack command transcript";
+
+	// Separates the parts of a line
+	private static final char SEPARATOR			= '\t';
+
+	// The one the server uses, if any, and whether it's been looked for
+	private static CommandRecorder defaultRecorder	= null;
+	private static boolean lookedForDefault			= false;
+
+	private final Writer writer;
+	private final long start					= System.nanoTime();
+	private final AtomicInteger sessions		= new AtomicInteger();
+	private final StringBuilder line			= new StringBuilder();
+	private boolean closed						= false;
+
+	// And our logger
+	private final static Logger LOGGER = BlackjackLogger.createLogger(CommandRecorder.class.getName());
+
+	/**
+	 * One line of a transcript
+	 */
+	public static class Entry {
+
+		private final long offset;
+		private final int session;
+		private final String command;
+
+		/**
+		 * @param offset Milliseconds after the recording started
+		 * @param session Which session it came in on
+		 * @param command The command, without a tag, or null if
+		 * the session closed
+		 */
+		public Entry( long offset, int session, String command ) {
+			this.offset = offset;
+			this.session = session;
+			this.command = command;
+		}
+
+		/**
+		 * @return Milliseconds after the recording started
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return Which session it came in on
+		 */
+		public int getSession() {
+			return session;
+		}
+
+		/**
+		 * @return The command, without a tag, or null if the
+		 * session closed
+		 */
+		public String getCommand() {
+			return command;
+		}
+
+		/**
+		 * @return True if the session closed
+		 */
+		public boolean isClose() {
+			return command == null;
+		}
+	}
+
+	/**
+	 * Starts a transcript.
+	 *
+	 * @param writer Where to write it
+	 * @throws IOException If the header couldn't be written
+	 */
+	public CommandRecorder( Writer writer ) throws IOException {
+		this.writer = writer;
+		writer.write( HEADER );
+		writer.write( '\n' );
+	}
+
+	/**
+	 * Gets the server's recorder, which writes to the file
+	 * in the {@value #RECORD_PROPERTY} system property, and
+	 * is closed when the server shuts down.
+	 *
+	 * @return The recorder, or null if the server isn't
+	 * recording
+	 */
+	public static synchronized CommandRecorder getDefault() {
+		if( !lookedForDefault ) {
+			lookedForDefault = true;
+			String filename = System.getProperty( RECORD_PROPERTY );
+			if( filename != null ) {
+				try {
+					final CommandRecorder recorder = new CommandRecorder( new BufferedWriter( new FileWriter( filename ) ) );
+					Runtime.getRuntime().addShutdownHook( new Thread( "CommandRecorderShutdown" ) {
+						@Override
+						public void run() {
+							recorder.close();
+						}
+					} );
+					defaultRecorder = recorder;
+					LOGGER.warning( "Recording every command, passwords included, to " + filename + "." );
+				} catch( IOException e ) {
+					LOGGER.severe( "Couldn't record commands to " + filename + ", so not recording: " + e.getMessage() );
+				}
+			}
+		}
+		return defaultRecorder;
+	}
+
+	/**
+	 * @return A number for a new session, which its
+	 * commands are recorded under
+	 */
+	public int openSession() {
+		return sessions.incrementAndGet();
+	}
+
+	/**
+	 * Records a command.
+	 *
+	 * @param session The session it came in on
+	 * @param metadata The command
+	 */
+	public void record( int session, CommandMetadata metadata ) {
+		if( metadata != null && metadata.getCommandWord() != null ) {
+			write( session, metadata.getCommandWord(), metadata.getParameters() );
+		}
+	}
+
+	/**
+	 * Records that a session closed.
+	 *
+	 * @param session The session
+	 */
+	public void recordClose( int session ) {
+		write( session, null, null );
+	}
+
+	/**
+	 * Writes out anything that's buffered, and stops
+	 * recording.
+	 */
+	public synchronized void close() {
+		if( !closed ) {
+			closed = true;
+			try {
+				writer.close();
+			} catch( IOException e ) {
+				LOGGER.severe( "Couldn't finish the command transcript: " + e.getMessage() );
+			}
+		}
+	}
+
+	/**
+	 * Reads a line of a transcript.
+	 *
+	 * @param str The line
+	 * @return What's on it, or null if it's the header, or
+	 * blank, or not a transcript line
+	 */
+	public static Entry parse( String str ) {
+		if( str == null || str.length() == 0 || str.startsWith( "#" ) ) {
+			return null;
+		}
+		int first = str.indexOf( SEPARATOR );
+		int second = (first < 0 ? -1 : str.indexOf( SEPARATOR, first + 1 ));
+		if( second < 0 ) {
+			return null;
+		}
+		try {
+			long offset = Long.parseLong( str.substring( 0, first ) );
+			int session = Integer.parseInt( str.substring( first + 1, second ) );
+			String command = str.substring( second + 1 );
+			return new Entry( offset, session, command.length() == 0 ? null : command );
+		} catch( NumberFormatException e ) {
+			return null;
+		}
+	}
+
+	private synchronized void write( int session, String commandWord, List<String> parameters ) {
+		if( closed ) {
+			return;
+		}
+		line.setLength( 0 );
+		line.append( (System.nanoTime() - start) / 1000000L );
+		line.append( SEPARATOR );
+		line.append( session );
+		line.append( SEPARATOR );
+		if( commandWord != null ) {
+			line.append( commandWord );
+			if( parameters != null ) {
+				for( String parameter : parameters ) {
+					line.append( ' ' );
+					line.append( parameter );
+				}
+			}
+		}
+		line.append( '\n' );
+		try {
+			writer.append( line );
+		} catch( IOException e ) {
+			LOGGER.severe( "Couldn't record a command, so not recording any more: " + e.getMessage() );
+			close();
+		}
+	}
+
+}
@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - TranscriptReplayer.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Plays a recorded command transcript back against a server, with
+ * a connection for each session that was recorded, and reports how fast the
+ * server kept up. Together with a seeded server, it gives load tests that
+ * can be compared run to run.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.replay;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * Sends the commands in a transcript from a
+ * {@link CommandRecorder} to a server, each at the time it
+ * was recorded, on a connection of its own for each
+ * session. Every command is tagged with its place in the
+ * transcript, so the response can be matched up with it
+ * to time it.
+ * <P>
+ * If the server was started with the same -Dseed as the
+ * one that was recorded, the same cards are dealt, and
+ * any difference in how fast it keeps up is down to the
+ * server.
+ * <P>
+ * It's run from the command line: -Dreplay=file is the
+ * transcript, -Dhost=name is the server (localhost), and
+ * -Dspeed=N plays it N times as fast (1). After the last
+ * command, it waits -Dlinger=N milliseconds (2000) for the
+ * last responses.
+ * <P>
+ * The transcript is always sent as text, so a recorded
+ * BINARY command is skipped.
+ *
+ * @author Jennifer
+ */
+public class TranscriptReplayer {
+
+	/**
+	 * The system properties it's run with
+	 */
+	public static final String REPLAY_PROPERTY	= "replay";
+	public static final String HOST_PROPERTY	= "host";
+	public static final String SPEED_PROPERTY	= "speed";
+	public static final String LINGER_PROPERTY	= "linger";
+
+	// Every command is tagged with this and its place in the transcript
+	private static final String TAG_START		= "r";
+
+	// This isn't sent, since the replay is all text
+	private static final String BINARY_COMMAND	= "BINARY";
+
+	// SECURITY: These are as the command-line client has them
+	private static final String KEYSTORE_TYPE			= "JKS";
+	private static final String KEYSTORE_FILE			= "blackjack.keystore";
+	private static final String KEYSTORE_PASSWORD		= "password";
+	private static final String CERTIFICATE_PASSWORD	= "password";
+	private static final String CERTIFICATE_TYPE		= "SunX509";
+	private static final String SECURITY_PROTOCOL		= "TLS";
+
+	// SERVICE: The port the server runs on
+	private static final int PORT						= 55555;
+
+	private final List<CommandRecorder.Entry> entries;
+	private final String host;
+	private final double speed;
+
+	// When each command was sent, and how long each response took
+	private final AtomicLongArray sent;
+	private final AtomicLongArray latencies;
+	private final AtomicInteger responses	= new AtomicInteger();
+
+	// And our logger
+	private final static Logger LOGGER = BlackjackLogger.createLogger(TranscriptReplayer.class.getName());
+
+	/**
+	 * One of the recorded sessions, and its connection
+	 */
+	private class Session extends Thread {
+
+		private final Socket socket;
+		private final PrintWriter writer;
+		private final BufferedReader reader;
+
+		Session( int number, SSLSocketFactory factory ) throws IOException {
+			super( "ReplaySession-" + number );
+			setDaemon( true );
+			socket = factory.createSocket( host, PORT );
+			writer = new PrintWriter( socket.getOutputStream() );
+			reader = new BufferedReader( new InputStreamReader( socket.getInputStream() ) );
+		}
+
+		void send( int index, String command ) {
+			sent.set( index, System.nanoTime() );
+			writer.println( ResponseCode.TAG_PREFIX + TAG_START + index + " " + command );
+			writer.flush();
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch( IOException e ) {
+				// It's going either way
+			}
+		}
+
+		/**
+		 * Reads whatever comes back, timing the responses
+		 * to our commands
+		 */
+		@Override
+		public void run() {
+			try {
+				String line = null;
+				while( (line = reader.readLine()) != null ) {
+					long now = System.nanoTime();
+					ResponseCode code = ResponseCode.getCodeFromString( line );
+					String tag = (code == null ? null : code.getTag());
+					if( tag != null && tag.startsWith( TAG_START ) ) {
+						try {
+							int index = Integer.parseInt( tag.substring( TAG_START.length() ) );
+							int slot = responses.getAndIncrement();
+							if( index >= 0 && index < sent.length() && slot < latencies.length() ) {
+								latencies.set( slot, now - sent.get( index ) );
+							}
+						} catch( NumberFormatException e ) {
+							// Not one of ours
+						}
+					}
+				}
+			} catch( IOException e ) {
+				// The session closed
+			}
+		}
+	}
+
+	/**
+	 * @param entries The transcript
+	 * @param host The server
+	 * @param speed How many times as fast as it was recorded
+	 * to play it
+	 */
+	public TranscriptReplayer( List<CommandRecorder.Entry> entries, String host, double speed ) {
+		this.entries = entries;
+		this.host = host;
+		this.speed = (speed > 0 ? speed : 1.0);
+		this.sent = new AtomicLongArray( entries.size() );
+		this.latencies = new AtomicLongArray( entries.size() );
+	}
+
+	/**
+	 * Reads a transcript.
+	 *
+	 * @param filename The file it's in
+	 * @return What's in it
+	 * @throws IOException If it can't be read, or isn't a
+	 * transcript
+	 */
+	public static List<CommandRecorder.Entry> read( String filename ) throws IOException {
+		BufferedReader reader = new BufferedReader( new FileReader( filename ) );
+		try {
+			String line = reader.readLine();
+			if( !CommandRecorder.HEADER.equals( line ) ) {
+				throw new IOException( filename + " isn't a command transcript." );
+			}
+			List<CommandRecorder.Entry> entries = new ArrayList<CommandRecorder.Entry>();
+			while( (line = reader.readLine()) != null ) {
+				CommandRecorder.Entry entry = CommandRecorder.parse( line );
+				if( entry != null ) {
+					entries.add( entry );
+				}
+			}
+			return entries;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Plays the transcript, and prints how it went.
+	 *
+	 * @param linger How long to wait for responses after
+	 * the last command, in milliseconds
+	 * @throws IOException If a session couldn't connect
+	 * @throws GeneralSecurityException If TLS couldn't be
+	 * set up
+	 * @throws InterruptedException If it's interrupted
+	 */
+	public void replay( long linger ) throws IOException, GeneralSecurityException, InterruptedException {
+		SSLSocketFactory factory = createSocketFactory();
+		Map<Integer,Session> sessions = new HashMap<Integer,Session>();
+		int commands = 0;
+		int skipped = 0;
+
+		long start = System.nanoTime();
+		for( int i = 0; i < entries.size(); i++ ) {
+			CommandRecorder.Entry entry = entries.get( i );
+
+			// Wait until it's time
+			long due = start + (long)(entry.getOffset() * 1000000L / speed);
+			long wait = due - System.nanoTime();
+			if( wait > 0 ) {
+				Thread.sleep( wait / 1000000L, (int)(wait % 1000000L) );
+			}
+
+			Session session = sessions.get( entry.getSession() );
+			if( entry.isClose() ) {
+				if( session != null ) {
+					session.close();
+				}
+			} else if( entry.getCommand().regionMatches( true, 0, BINARY_COMMAND, 0, BINARY_COMMAND.length() ) ) {
+				skipped++;
+			} else {
+				if( session == null ) {
+					session = new Session( entry.getSession(), factory );
+					session.start();
+					sessions.put( entry.getSession(), session );
+				}
+				session.send( i, entry.getCommand() );
+				commands++;
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+
+		// Give the last responses time to come back
+		Thread.sleep( linger );
+		for( Session session : sessions.values() ) {
+			session.close();
+		}
+
+		int count = Math.min( responses.get(), latencies.length() );
+		long[] sorted = new long[count];
+		for( int i = 0; i < count; i++ ) {
+			sorted[i] = latencies.get( i );
+		}
+		Arrays.sort( sorted );
+		System.out.println( "Replayed " + commands + " commands on " + sessions.size() + " sessions in " +
+				String.format( "%.2f", elapsed / 1e9 ) + " seconds, " +
+				String.format( "%.1f", commands / (elapsed / 1e9) ) + " commands per second" +
+				(skipped > 0 ? ", skipping " + skipped + " BINARY commands" : "") );
+		System.out.println( "Got " + count + " responses. Latency in ms: p50 " + millis( sorted, 0.50 ) +
+				", p99 " + millis( sorted, 0.99 ) + ", max " + millis( sorted, 1.0 ) );
+	}
+
+	private static String millis( long[] sorted, double fraction ) {
+		if( sorted.length == 0 ) {
+			return "-";
+		}
+		int index = Math.min( sorted.length - 1, (int)Math.ceil( fraction * sorted.length ) - 1 );
+		return String.format( "%.2f", sorted[Math.max( 0, index )] / 1e6 );
+	}
+
+	/**
+	 * SECURITY: Connects with TLS, trusting the blackjack
+	 * certificate, as the command-line client does
+	 */
+	private SSLSocketFactory createSocketFactory() throws IOException, GeneralSecurityException {
+		KeyStore ks = KeyStore.getInstance( KEYSTORE_TYPE );
+		InputStream inputStream = getClass().getClassLoader().getResourceAsStream( KEYSTORE_FILE );
+		if( inputStream == null ) {
+			throw new IOException( "Couldn't find " + KEYSTORE_FILE + " on the classpath." );
+		}
+		try {
+			ks.load( inputStream, KEYSTORE_PASSWORD.toCharArray() );
+		} finally {
+			inputStream.close();
+		}
+
+		KeyManagerFactory kmf = KeyManagerFactory.getInstance( CERTIFICATE_TYPE );
+		kmf.init( ks, CERTIFICATE_PASSWORD.toCharArray() );
+		TrustManagerFactory tmf = TrustManagerFactory.getInstance( TrustManagerFactory.getDefaultAlgorithm() );
+		tmf.init( ks );
+
+		SSLContext sc = SSLContext.getInstance( SECURITY_PROTOCOL );
+		sc.init( kmf.getKeyManagers(), tmf.getTrustManagers(), null );
+		return sc.getSocketFactory();
+	}
+
+	/**
+	 * Replays the transcript in the {@value #REPLAY_PROPERTY}
+	 * system property.
+	 *
+	 * @param args Not used
+	 */
+	public static void main( String[] args ) {
+		String filename = System.getProperty( REPLAY_PROPERTY );
+		if( filename == null ) {
+			System.err.println( "Give the transcript to replay with -D" + REPLAY_PROPERTY + "=file" );
+			System.exit( 1 );
+		}
+		String host = System.getProperty( HOST_PROPERTY, "localhost" );
+		long linger = Long.getLong( LINGER_PROPERTY, 2000 );
+		double speed = 1.0;
+		try {
+			speed = Double.parseDouble( System.getProperty( SPEED_PROPERTY, "1.0" ) );
+		} catch( NumberFormatException e ) {
+			LOGGER.warning( "The speed isn't a number, so replaying at the recorded speed." );
+		}
+
+		try {
+			TranscriptReplayer replayer = new TranscriptReplayer( read( filename ), host, speed );
+			replayer.replay( linger );
+		} catch( IOException e ) {
+			LOGGER.severe( "Couldn't replay " + filename + ": " + e.getMessage() );
+			System.exit( 1 );
+		} catch( GeneralSecurityException e ) {
+			LOGGER.severe( "Couldn't set up TLS to replay: " + e.getMessage() );
+			System.exit( 1 );
+		} catch( InterruptedException e ) {
+			LOGGER.warning( "Interrupted while replaying." );
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+/*******************************************************************************
+ * Recording what clients send the server, and playing it back
+ * <P>
+ * CS544 Computer Networks Spring 2013
+ * <P>
+ * 5/26/2013
+ * <P>
+ * <b>Purpose:</b> This package has a recorder that the server can write
+ * every command it gets to, with when it got it and which connection it came
+ * in on, and a replayer that plays such a transcript back against a server.
+ * With the server's deterministic mode, which deals the same cards every
+ * time for the same seed, load tests can be run again and compared.
+ * <P>
+ * <b>SECURITY:</b> Transcripts have passwords in them, in the clear, so
+ * they're only for test accounts.
+ * @author Jennifer Lautenschlager
+ * @author Constantine Lazarakis
+ * @author Carol Greco
+ * @author Duc Anh Nguyen
+ * @version 1.0
+ ******************************************************************************/
+package drexel.edu.blackjack.server.replay;
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - HouseEdgeResult.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: How a batch of simulated hands came out, and what that says about
+ * the player's expected value and the house edge.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.sim;
+
+/**
+ * The tally of a batch of hands, each bet one unit. As a
+ * hand can only win one unit, lose one, or tie, the counts
+ * are all that's needed for the mean and variance. Results
+ * from batches played apart can be {@link #merge(HouseEdgeResult)}d.
+ * It doesn't change once it's made.
+ *
+ * @author Jennifer
+ */
+public class HouseEdgeResult {
+
+	/**
+	 * How many standard errors either side of the mean a
+	 * 95% confidence interval is
+	 */
+	public static final double Z_95 = 1.959964;
+
+	private final long wins;
+	private final long losses;
+	private final long ties;
+	private final long shuffles;
+
+	/**
+	 * @param wins How many hands the player won
+	 * @param losses How many they lost
+	 * @param ties How many they tied
+	 * @param shuffles How many times the shoe was shuffled
+	 */
+	public HouseEdgeResult( long wins, long losses, long ties, long shuffles ) {
+		this.wins = wins;
+		this.losses = losses;
+		this.ties = ties;
+		this.shuffles = shuffles;
+	}
+
+	/**
+	 * @param other Another batch's results
+	 * @return The results of both batches together
+	 */
+	public HouseEdgeResult merge( HouseEdgeResult other ) {
+		return new HouseEdgeResult( wins + other.wins, losses + other.losses,
+				ties + other.ties, shuffles + other.shuffles );
+	}
+
+	/**
+	 * @return How many hands were played
+	 */
+	public long getHands() {
+		return wins + losses + ties;
+	}
+
+	/**
+	 * @return How many hands the player won
+	 */
+	public long getWins() {
+		return wins;
+	}
+
+	/**
+	 * @return How many hands the player lost
+	 */
+	public long getLosses() {
+		return losses;
+	}
+
+	/**
+	 * @return How many hands were ties
+	 */
+	public long getTies() {
+		return ties;
+	}
+
+	/**
+	 * @return How many times the shoe was shuffled
+	 */
+	public long getShuffles() {
+		return shuffles;
+	}
+
+	/**
+	 * @return What the player can expect to win per unit bet,
+	 * which is negative when the house has the edge
+	 */
+	public double getExpectedValue() {
+		long hands = getHands();
+		return hands == 0 ? 0 : (double)(wins - losses) / hands;
+	}
+
+	/**
+	 * @return The house edge, which is the player's expected
+	 * loss per unit bet
+	 */
+	public double getHouseEdge() {
+		return -getExpectedValue();
+	}
+
+	/**
+	 * @return The sample variance of what one hand wins
+	 */
+	public double getVariance() {
+		long hands = getHands();
+		if( hands < 2 ) {
+			return 0;
+		}
+		double mean = getExpectedValue();
+		double meanOfSquares = (double)(wins + losses) / hands;
+		return (meanOfSquares - mean * mean) * hands / (hands - 1);
+	}
+
+	/**
+	 * @return The standard error of the expected value
+	 */
+	public double getStandardError() {
+		long hands = getHands();
+		return hands == 0 ? 0 : Math.sqrt( getVariance() / hands );
+	}
+
+	/**
+	 * @return The low end of the 95% confidence interval of
+	 * the expected value
+	 */
+	public double getLowerBound() {
+		return getExpectedValue() - Z_95 * getStandardError();
+	}
+
+	/**
+	 * @return The high end of the 95% confidence interval of
+	 * the expected value
+	 */
+	public double getUpperBound() {
+		return getExpectedValue() + Z_95 * getStandardError();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append( getHands() ).append( " hands: " );
+		str.append( wins ).append( " won, " ).append( losses ).append( " lost, " ).append( ties ).append( " tied\n" );
+		str.append( String.format( "EV %.5f per unit, variance %.5f, 95%% CI [%.5f, %.5f]\n",
+				getExpectedValue(), getVariance(), getLowerBound(), getUpperBound() ) );
+		str.append( String.format( "House edge %.3f%%", getHouseEdge() * 100 ) );
+		return str.toString();
+	}
+
+}
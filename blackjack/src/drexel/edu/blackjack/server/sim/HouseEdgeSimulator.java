@@ -0,0 +1,386 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - HouseEdgeSimulator.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Estimates the house edge of a game by playing a very large number
+ * of hands, split up across all the processors with fork/join. The hands are
+ * played by the same rules as the game, but with plain ints for the shoe and
+ * the hands, so that billions of them can be played in minutes.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.sim;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import drexel.edu.blackjack.cards.Card;
+import drexel.edu.blackjack.cards.Hand;
+import drexel.edu.blackjack.db.game.GameMetadata;
+import drexel.edu.blackjack.db.game.TableRules;
+
+/**
+ * Plays hands of a game's rules, as fast as it can, and
+ * tallies how they come out. The rules are the game's:
+ * <UL>
+ * <LI>The shoe has the game's number of decks, and is
+ * shuffled before a hand's first two cards are dealt if
+ * more of it has been dealt than the game's
+ * {@link TableRules#getReshufflePenetration()}, as in
+ * {@link drexel.edu.blackjack.server.game.GameState#needToShuffle()}.
+ * <LI>Each seat is dealt two cards, then the dealer two,
+ * the second one being the dealer's upcard.
+ * <LI>If the dealer has blackjack no one plays. Otherwise
+ * players without blackjack hit or stand, by the
+ * {@link Strategy}.
+ * <LI>If anyone's left standing, the dealer hits until the
+ * stand point from the game's {@link TableRules}. Like
+ * {@link Hand#getDealerShouldHit(int)}, the
+ * dealer stands once <i>any</i> total of the hand, counting
+ * each ace as 1 or 11, reaches it.
+ * <LI>Wins pay even money, ties push, and there's no
+ * doubling, splitting, or insurance.
+ * </UL>
+ * A hand is an int of its total with aces as 1, and an int
+ * of how many aces it has, which is all the rules above
+ * need.
+ * <P>
+ * <b>CONCURRENT:</b> The hands to play are split in half
+ * until there are few enough for one task. Each task has its
+ * own shoe and its own random number stream, split from its
+ * parent's, so tasks share nothing while they play. As the
+ * splitting doesn't depend on the number of threads, the
+ * same seed gives the same results on any machine.
+ *
+ * @author Jennifer
+ */
+public class HouseEdgeSimulator {
+
+	/**
+	 * How the players decide between hitting and standing
+	 */
+	public enum Strategy {
+
+		/**
+		 * Hit and stand by the same rule as the dealer.
+		 */
+		MIMIC_THE_DEALER {
+			@Override
+			public boolean wantsToHit( int hard, int aces, int dealerUpcard, int standPoint ) {
+				return dealerShouldHit( hard, aces, standPoint );
+			}
+		},
+
+		/**
+		 * Basic strategy, for a game with nothing but hitting
+		 * and standing.
+		 */
+		BASIC {
+			@Override
+			public boolean wantsToHit( int hard, int aces, int dealerUpcard, int standPoint ) {
+				int total = getBestTotal( hard, aces );
+				boolean dealerIsWeak = dealerUpcard >= 2 && dealerUpcard <= 6;
+				if( total != hard ) {
+					// Soft hands hit up to 17, and 18 against a 9, 10, or ace
+					return total <= 17 || (total == 18 && !dealerIsWeak && dealerUpcard != 7 && dealerUpcard != 8);
+				} else if( total <= 11 ) {
+					return true;
+				} else if( total == 12 ) {
+					return dealerUpcard < 4 || dealerUpcard > 6;
+				} else if( total <= 16 ) {
+					return !dealerIsWeak;
+				}
+				return false;
+			}
+		};
+
+		/**
+		 * @param hard The total of the player's hand, counting
+		 * aces as 1
+		 * @param aces How many aces are in the hand
+		 * @param dealerUpcard The value of the dealer's faceup
+		 * card, with an ace as 1
+		 * @param standPoint Where the dealer stands
+		 * @return True to hit, false to stand
+		 */
+		public abstract boolean wantsToHit( int hard, int aces, int dealerUpcard, int standPoint );
+	}
+
+	// How many rounds one task plays, rather than splitting them up
+	private static final long ROUNDS_PER_TASK	= 1 << 16;
+
+	// The values of the cards in one deck, with an ace as 1
+	private static final int[] DECK = createDeck();
+
+	// What's being simulated
+	private final int decks;
+	private final int standPoint;
+	private final float penetration;
+	private final Strategy strategy;
+	private final int seats;
+
+	/**
+	 * Sets up a simulation of a game.
+	 *
+	 * @param game The game, whose table rules are used
+	 * @param strategy How the players play
+	 * @param seats How many players are at the table, which
+	 * affects how fast the shoe is used up
+	 */
+	public HouseEdgeSimulator( GameMetadata game, Strategy strategy, int seats ) {
+		TableRules rules = game.getTableRules();
+		this.decks = rules.getNumDecks();
+		this.standPoint = rules.getDealerStandPoint();
+		this.penetration = rules.getReshufflePenetration();
+		this.strategy = (strategy == null ? Strategy.BASIC : strategy);
+		this.seats = Math.max( 1, seats );
+	}
+
+	/**
+	 * Plays the hands in the common fork/join pool.
+	 *
+	 * @param hands How many hands to play, at least. All seats
+	 * play each round, so it's rounded up to a whole round.
+	 * @param seed Where the random numbers start
+	 * @return How the hands came out
+	 */
+	public HouseEdgeResult simulate( long hands, long seed ) {
+		return simulate( hands, seed, ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Plays the hands in the given pool.
+	 *
+	 * @param hands How many hands to play, at least. All seats
+	 * play each round, so it's rounded up to a whole round.
+	 * @param seed Where the random numbers start
+	 * @param pool Where to play them
+	 * @return How the hands came out
+	 */
+	public HouseEdgeResult simulate( long hands, long seed, ForkJoinPool pool ) {
+		long rounds = (hands + seats - 1) / seats;
+		return pool.invoke( new RoundsTask( rounds, new SplittableRandom( seed ) ) );
+	}
+
+	/**
+	 * @return The point the dealer stands at
+	 */
+	public int getStandPoint() {
+		return standPoint;
+	}
+
+	/**
+	 * @return How many decks are in the shoe
+	 */
+	public int getDecks() {
+		return decks;
+	}
+
+	/**
+	 * The best total of a hand: the hard total, plus 10 for
+	 * an ace if that doesn't bust it, as in {@link Hand#getBestValue()}.
+	 *
+	 * @param hard The total, counting aces as 1
+	 * @param aces How many aces are in the hand
+	 * @return The best total
+	 */
+	public static int getBestTotal( int hard, int aces ) {
+		return (aces > 0 && hard + 10 <= 21) ? hard + 10 : hard;
+	}
+
+	/**
+	 * Whether the dealer hits, by the same rule as
+	 * {@link Hand#getDealerShouldHit(int)}:
+	 * only if every total, counting each ace as 1 or 11, is
+	 * under the stand point.
+	 *
+	 * @param hard The total, counting aces as 1
+	 * @param aces How many aces are in the hand
+	 * @param standPoint Where the dealer stands
+	 * @return True if the dealer hits
+	 */
+	public static boolean dealerShouldHit( int hard, int aces, int standPoint ) {
+		return hard + 10 * aces < standPoint;
+	}
+
+	/**
+	 * @return The values of the cards in one deck
+	 */
+	private static int[] createDeck() {
+		int[] deck = new int[Card.SUIT.values().length * Card.RANK.values().length];
+		int i = 0;
+		for( Card.SUIT suit : Card.SUIT.values() ) {
+			for( Card.RANK rank : Card.RANK.values() ) {
+				deck[i++] = Card.valueOf( rank, suit ).getValue();
+			}
+		}
+		return deck;
+	}
+
+	/**
+	 * Plays some rounds, splitting them with another task if
+	 * there are too many for one.
+	 */
+	private class RoundsTask extends RecursiveTask<HouseEdgeResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long rounds;
+		private final SplittableRandom random;
+
+		RoundsTask( long rounds, SplittableRandom random ) {
+			this.rounds = rounds;
+			this.random = random;
+		}
+
+		@Override
+		protected HouseEdgeResult compute() {
+			if( rounds <= ROUNDS_PER_TASK ) {
+				return new Table( random ).play( rounds );
+			}
+			long half = rounds / 2;
+			RoundsTask first = new RoundsTask( half, random.split() );
+			first.fork();
+			HouseEdgeResult second = new RoundsTask( rounds - half, random ).compute();
+			return first.join().merge( second );
+		}
+	}
+
+	/**
+	 * <b>STATEFUL:</b> One task's table: its shoe and its seats.
+	 */
+	private class Table {
+
+		// The shoe, the next card in it, and how much of it can be
+		// dealt before it has to be shuffled
+		private final int[] shoe = new int[decks * DECK.length];
+		private int next;
+		private final float shuffleAt = penetration * shoe.length;
+		private final SplittableRandom random;
+
+		// The seats' hands
+		private final int[] hard = new int[seats];
+		private final int[] aces = new int[seats];
+
+		// The tally
+		private long wins = 0;
+		private long losses = 0;
+		private long ties = 0;
+		private long shuffles = 0;
+
+		Table( SplittableRandom random ) {
+			this.random = random;
+			for( int i = 0; i < shoe.length; i++ ) {
+				shoe[i] = DECK[i % DECK.length];
+			}
+			// A new shoe has to be shuffled before it's dealt from
+			next = shoe.length;
+		}
+
+		HouseEdgeResult play( long rounds ) {
+			for( long round = 0; round < rounds; round++ ) {
+				playRound();
+			}
+			return new HouseEdgeResult( wins, losses, ties, shuffles );
+		}
+
+		private void playRound() {
+
+			// Two cards each, then two for the dealer
+			for( int seat = 0; seat < seats; seat++ ) {
+				shuffleIfNeeded();
+				int first = shoe[next++];
+				int second = shoe[next++];
+				hard[seat] = first + second;
+				aces[seat] = (first == 1 ? 1 : 0) + (second == 1 ? 1 : 0);
+			}
+			shuffleIfNeeded();
+			int facedown = shoe[next++];
+			int upcard = shoe[next++];
+			int dealerHard = facedown + upcard;
+			int dealerAces = (facedown == 1 ? 1 : 0) + (upcard == 1 ? 1 : 0);
+
+			// Nobody plays against a dealer blackjack
+			boolean dealerHasBlackjack = isBlackjack( dealerHard, dealerAces );
+			boolean anyoneStanding = false;
+			for( int seat = 0; seat < seats; seat++ ) {
+				if( !dealerHasBlackjack && !isBlackjack( hard[seat], aces[seat] ) ) {
+					while( hard[seat] <= 21 && strategy.wantsToHit( hard[seat], aces[seat], upcard, standPoint ) ) {
+						int card = hit();
+						hard[seat] += card;
+						aces[seat] += (card == 1 ? 1 : 0);
+					}
+				}
+				anyoneStanding |= hard[seat] <= 21;
+			}
+
+			// The dealer only plays if there's someone to beat
+			if( !dealerHasBlackjack && anyoneStanding ) {
+				while( dealerShouldHit( dealerHard, dealerAces, standPoint ) ) {
+					int card = hit();
+					dealerHard += card;
+					dealerAces += (card == 1 ? 1 : 0);
+				}
+			}
+
+			// And see how everyone did
+			int dealerTotal = getBestTotal( dealerHard, dealerAces );
+			for( int seat = 0; seat < seats; seat++ ) {
+				if( hard[seat] > 21 ) {
+					losses++;
+				} else if( dealerHard > 21 ) {
+					wins++;
+				} else {
+					int total = getBestTotal( hard[seat], aces[seat] );
+					if( total > dealerTotal ) {
+						wins++;
+					} else if( total < dealerTotal ) {
+						losses++;
+					} else {
+						ties++;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Before a hand is dealt, shuffles if more of the shoe
+		 * has been dealt than the rules allow.
+		 */
+		private void shuffleIfNeeded() {
+			if( next > shuffleAt ) {
+				shuffle();
+			}
+		}
+
+		/**
+		 * A card from the top of the shoe, as a hit.
+		 */
+		private int hit() {
+			if( next == shoe.length ) {
+				shuffle();
+			}
+			return shoe[next++];
+		}
+
+		private void shuffle() {
+			for( int i = shoe.length - 1; i > 0; i-- ) {
+				int j = random.nextInt( i + 1 );
+				int card = shoe[i];
+				shoe[i] = shoe[j];
+				shoe[j] = card;
+			}
+			next = 0;
+			shuffles++;
+		}
+
+		private boolean isBlackjack( int hard, int aces ) {
+			return aces > 0 && hard == 11;
+		}
+	}
+
+}
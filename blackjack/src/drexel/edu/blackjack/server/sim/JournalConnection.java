@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - JournalConnection.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: A client connection that writes everything sent on it to a
+ * journal, one line per message, instead of to a socket.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.sim;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.server.BlackjackProtocol;
+import drexel.edu.blackjack.server.ClientConnection;
+import drexel.edu.blackjack.server.EncodedMessage;
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * Where a scripted player's messages go, if they're to be
+ * kept. Each one is written as the line a client would have
+ * read, optionally starting with a label, like the player's
+ * username, so several players can share a journal.
+ * <P>
+ * <b>CONCURRENT:</b> Writes are synchronized on the journal,
+ * so players on different threads can share one.
+ *
+ * @author Jennifer
+ */
+public class JournalConnection implements ClientConnection {
+
+	// Where the lines go
+	private final Writer journal;
+
+	// What each line starts with, or null for nothing
+	private final String label;
+
+	// Whether it's been closed
+	private volatile boolean closed = false;
+
+	// And a logger for errors
+	private final static Logger LOGGER = BlackjackLogger.createLogger( JournalConnection.class.getName() );
+
+	/**
+	 * @param journal Where to write the messages
+	 * @param label What each line starts with, or null for nothing
+	 */
+	public JournalConnection( Writer journal, String label ) {
+		this.journal = journal;
+		this.label = label;
+	}
+
+	@Override
+	public BlackjackProtocol getProtocol() {
+		return null;
+	}
+
+	@Override
+	public void sendMessage( ResponseCode code ) {
+		queueMessage( EncodedMessage.encode( code ) );
+	}
+
+	@Override
+	public void queueMessage( EncodedMessage message ) {
+		if( closed ) {
+			return;
+		}
+		synchronized( journal ) {
+			try {
+				if( label != null ) {
+					journal.write( label );
+					journal.write( ' ' );
+				}
+				journal.write( message.toString() );
+				journal.write( '\n' );
+			} catch( IOException e ) {
+				LOGGER.severe( "Could not write to the journal: " + e );
+				closed = true;
+			}
+		}
+	}
+
+	@Override
+	public void flushMessages() {
+		// The journal's written as messages come in
+	}
+
+	@Override
+	public int getOverflowCount() {
+		return 0;
+	}
+
+	@Override
+	public void forceDisconnectDueToTimeout() {
+		closeConnection();
+	}
+
+	@Override
+	public void closeConnection() {
+		closed = true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+}
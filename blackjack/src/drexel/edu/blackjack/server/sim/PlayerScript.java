@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - PlayerScript.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Decides what a scripted player does when it's asked to bet, or
+ * asked for a play.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.sim;
+
+import drexel.edu.blackjack.cards.Hand;
+import drexel.edu.blackjack.db.game.GameMetadata;
+import drexel.edu.blackjack.server.game.User;
+
+/**
+ * What a {@link ScriptedPlayer} does. The player sends the
+ * BET, HIT, or STAND command that the script decides on,
+ * just as a client would.
+ *
+ * @author Jennifer
+ */
+public interface PlayerScript {
+
+	/**
+	 * Plays like the dealer: bets the minimum, and hits until
+	 * the hand is at 17 or more.
+	 */
+	public static final PlayerScript MIMIC_THE_DEALER = new PlayerScript() {
+
+		@Override
+		public int getBet( User player, GameMetadata game ) {
+			return game.getMinBet();
+		}
+
+		@Override
+		public boolean wantsToHit( User player, Hand dealerHand ) {
+			Hand hand = player.getHand();
+			return hand != null && hand.getDealerShouldHit( Hand.DEFAULT_DEALER_STAND_POINT );
+		}
+	};
+
+	/**
+	 * @param player Who is betting
+	 * @param game What they're betting on
+	 * @return How much to bet, or 0 to not bet at all
+	 */
+	public int getBet( User player, GameMetadata game );
+
+	/**
+	 * @param player Whose turn it is; their hand is on them
+	 * @param dealerHand The dealer's hand, as the player can see it
+	 * @return True to HIT, false to STAND
+	 */
+	public boolean wantsToHit( User player, Hand dealerHand );
+
+}
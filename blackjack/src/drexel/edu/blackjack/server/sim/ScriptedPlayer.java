@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - ScriptedPlayer.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: A player that lives in the same process as the game, and plays by
+ * a script. It's the client connection for its user, so the game sends it
+ * messages just as it would a real client, and it sends BET, HIT, and STAND
+ * through the protocol just as a real client would.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.sim;
+
+import drexel.edu.blackjack.db.user.UserMetadata;
+import drexel.edu.blackjack.server.BlackjackProtocol;
+import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
+import drexel.edu.blackjack.server.ClientConnection;
+import drexel.edu.blackjack.server.EncodedMessage;
+import drexel.edu.blackjack.server.MessageBatch;
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.server.commands.BetCommand;
+import drexel.edu.blackjack.server.commands.HitCommand;
+import drexel.edu.blackjack.server.commands.StandCommand;
+import drexel.edu.blackjack.server.game.Game;
+import drexel.edu.blackjack.server.game.User;
+
+/**
+ * <b>STATEFUL:</b> A scripted player. It has a protocol of its
+ * own, and the commands it sends go through it, so they're
+ * checked against the protocol state like any client's.
+ * Nothing is sent until {@link #act()} is called, which is
+ * when the player looks at its protocol state to see if it's
+ * been asked to bet or play.
+ * <P>
+ * What the game sends the player is passed on to a sink,
+ * which is just another client connection, like a
+ * {@link JournalConnection}. With no sink, messages are only
+ * counted.
+ *
+ * @author Jennifer
+ */
+public class ScriptedPlayer implements ClientConnection {
+
+	// The user this is the connection for, and its protocol
+	private final User user;
+	private final BlackjackProtocol protocol;
+
+	// What it does
+	private final PlayerScript script;
+
+	// Where the messages go, or null
+	private final ClientConnection sink;
+
+	// The game it's in, or null
+	private Game game = null;
+
+	// How many messages it's been sent
+	private long messages = 0;
+
+	// How many bets it's placed, and their total
+	private long bets = 0;
+	private long wagered = 0;
+
+	// Whether it's been closed
+	private boolean closed = false;
+
+	/**
+	 * Makes a player, for a user with the metadata.
+	 *
+	 * @param metadata Who the player is, and their balance
+	 * @param script What they do
+	 * @param sink Where their messages go, or null to not keep them
+	 */
+	public ScriptedPlayer( UserMetadata metadata, PlayerScript script, ClientConnection sink ) {
+		this.user = new User( metadata );
+		this.script = script;
+		this.sink = sink;
+		this.protocol = new BlackjackProtocol( this );
+		protocol.setUser( user );
+		protocol.setUsername( metadata.getUsername() );
+	}
+
+	/*********************************************************************
+	 * Public methods go here
+	 ********************************************************************/
+
+	/**
+	 * STATEFUL: Puts the player in a game, as JOINSESSION would.
+	 *
+	 * @param game The game
+	 * @return True if they joined it
+	 */
+	public boolean join( Game game ) {
+		STATE previousState = protocol.getState();
+		protocol.setState( STATE.IN_SESSION_AS_OBSERVER );
+		if( !game.addPlayer( user ) ) {
+			protocol.setState( previousState );
+			return false;
+		}
+		user.setGame( game );
+		this.game = game;
+		return true;
+	}
+
+	/**
+	 * STATEFUL: If the player's been asked to bet, or for a play,
+	 * it sends the command the script decides on.
+	 *
+	 * @return True if it sent a command
+	 */
+	public boolean act() {
+
+		if( game == null ) {
+			return false;
+		}
+
+		STATE state = protocol.getState();
+		if( state == STATE.IN_SESSION_AWAITING_BETS && !user.hasSpecifiedBet() ) {
+			int bet = script.getBet( user, game.getMetadata() );
+			if( bet <= 0 ) {
+				return false;
+			}
+			if( !send( BetCommand.COMMAND_WORD + " " + bet ).isError() ) {
+				bets++;
+				wagered += bet;
+			}
+			return true;
+		}
+
+		if( state == STATE.IN_SESSION_AND_YOUR_TURN && user.getNeedsToMakeAPlay() ) {
+			boolean hit = script.wantsToHit( user, game.getGameState().getDealerHand() );
+			send( hit ? HitCommand.COMMAND_WORD : StandCommand.COMMAND_WORD );
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The user the player is
+	 */
+	public User getUser() {
+		return user;
+	}
+
+	/**
+	 * @return How many messages the game has sent the player
+	 */
+	public long getMessageCount() {
+		return messages;
+	}
+
+	/**
+	 * @return How many bets the player has placed
+	 */
+	public long getBetCount() {
+		return bets;
+	}
+
+	/**
+	 * @return How much the player has bet, in total
+	 */
+	public long getWagered() {
+		return wagered;
+	}
+
+	/*********************************************************************
+	 * The client connection, as the game sees it
+	 ********************************************************************/
+
+	@Override
+	public BlackjackProtocol getProtocol() {
+		return protocol;
+	}
+
+	@Override
+	public void sendMessage( ResponseCode code ) {
+		queueMessage( EncodedMessage.encode( code ) );
+		if( !MessageBatch.defer( this ) ) {
+			flushMessages();
+		}
+	}
+
+	@Override
+	public void queueMessage( EncodedMessage message ) {
+		messages++;
+		if( sink != null ) {
+			sink.queueMessage( message );
+		}
+	}
+
+	@Override
+	public void flushMessages() {
+		if( sink != null ) {
+			sink.flushMessages();
+		}
+	}
+
+	@Override
+	public int getOverflowCount() {
+		return 0;
+	}
+
+	@Override
+	public void forceDisconnectDueToTimeout() {
+		closeConnection();
+	}
+
+	@Override
+	public void closeConnection() {
+		closed = true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/*********************************************************************
+	 * Private methods go here
+	 ********************************************************************/
+
+	/**
+	 * Sends a command through the protocol, and gets the
+	 * response, as a client would.
+	 */
+	private ResponseCode send( String command ) {
+		ResponseCode response = protocol.respondTo( command );
+		sendMessage( response );
+		return response;
+	}
+
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SimulatedClock.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: A clock for the game actions that never waits. Waiting just moves
+ * its time forward, so pauses, and the time players are given to bet and
+ * play, take no time at all.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.sim;
+
+import drexel.edu.blackjack.server.game.driver.GameClock;
+
+/**
+ * A simulated clock. It starts at zero, and only moves when
+ * the simulation lets time go by, for as long as a game
+ * action asked to wait. Scripted players act as soon as
+ * they're asked, so there's never anything to wait for; a
+ * player that doesn't act just runs out of time right away.
+ * <P>
+ * It's for one simulation, played on one thread.
+ *
+ * @author Jennifer
+ */
+public class SimulatedClock implements GameClock {
+
+	// The simulated time, in milliseconds
+	private long now = 0;
+
+	@Override
+	public long currentTimeMillis() {
+		return now;
+	}
+
+	/**
+	 * Lets some time go by, right away.
+	 *
+	 * @param millis How long
+	 */
+	public void advance( long millis ) {
+		if( millis > 0 ) {
+			now += millis;
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SimulatedUserManager.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Keeps the accounts of simulated players in memory, so that a
+ * simulation never writes to the server's user database.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.sim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import drexel.edu.blackjack.db.user.AlreadyLoggedInException;
+import drexel.edu.blackjack.db.user.UserManagerInterface;
+import drexel.edu.blackjack.db.user.UserMetadata;
+
+/**
+ * A user manager that only holds its users in memory.
+ * Saving does nothing, as there's nowhere to save to; a
+ * player's balance is on their metadata, and changing it
+ * there is all there is to adjusting it.
+ *
+ * @author Jennifer
+ */
+public class SimulatedUserManager implements UserManagerInterface {
+
+	// The users, by username
+	private final Map<String,UserMetadata> users = new HashMap<String,UserMetadata>();
+
+	@Override
+	public boolean load() {
+		return true;
+	}
+
+	@Override
+	public boolean save() {
+		return true;
+	}
+
+	@Override
+	public boolean adjustBalance( UserMetadata user, int delta ) {
+		user.setBalance( user.getBalance() + delta );
+		return true;
+	}
+
+	@Override
+	public boolean add( UserMetadata user ) {
+		if( users.containsKey( user.getUsername() ) ) {
+			return false;
+		}
+		users.put( user.getUsername(), user );
+		return true;
+	}
+
+	@Override
+	public UserMetadata loginUser( String username, String password ) throws AlreadyLoggedInException {
+		UserMetadata user = users.get( username );
+		return (user != null && user.getPassword().equals( password )) ? user : null;
+	}
+
+	@Override
+	public boolean logoutUser( String username ) {
+		return users.containsKey( username );
+	}
+
+	@Override
+	public List<UserMetadata> getUsers() {
+		return new ArrayList<UserMetadata>( users.values() );
+	}
+
+	@Override
+	public boolean remove( String username ) throws UserNotFoundException {
+		if( users.remove( username ) == null ) {
+			throw new UserNotFoundException();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean changePassword( String username, String newPassword ) throws UserNotFoundException {
+		UserMetadata user = users.get( username );
+		if( user == null ) {
+			throw new UserNotFoundException();
+		}
+		// The password can only be set by the user database, so make a new user
+		UserMetadata.Builder builder = new UserMetadata.Builder();
+		builder.setUsername( username ).setPassword( newPassword ).setFullname( user.getFullname() ).setBalance( user.getBalance() );
+		users.put( username, builder.build() );
+		return true;
+	}
+
+}
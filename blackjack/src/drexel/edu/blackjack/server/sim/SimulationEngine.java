@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SimulationEngine.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Plays a game without a server: the same game actions a table on
+ * the server steps through, with scripted players and a simulated clock, on
+ * the calling thread, as fast as it can. It reports how fast that was, how
+ * much it allocated, and how the house did.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.sim;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import drexel.edu.blackjack.cards.SecureShuffleEntropy;
+import drexel.edu.blackjack.db.game.GameMetadata;
+import drexel.edu.blackjack.db.user.UserMetadata;
+import drexel.edu.blackjack.server.ClientConnection;
+import drexel.edu.blackjack.server.MessageBatch;
+import drexel.edu.blackjack.server.game.DeterministicMode;
+import drexel.edu.blackjack.server.game.Game;
+import drexel.edu.blackjack.server.game.StandbyShoe;
+import drexel.edu.blackjack.server.game.driver.GameAction;
+import drexel.edu.blackjack.server.game.driver.GamePlayingThread;
+import drexel.edu.blackjack.util.BlackjackLogger;
+
+/**
+ * A headless game. It plays the actions from
+ * {@link GamePlayingThread#createGameActions(drexel.edu.blackjack.server.game.driver.GameClock)}
+ * a step at a time, just as a table does, but without a
+ * scheduler: after every step its {@link ScriptedPlayer}s
+ * get to act, and when a step asks to wait, and no one
+ * acted, the {@link SimulatedClock} just moves forward.
+ * <P>
+ * The game has no owner, so the players' commands are run
+ * right away, on the engine's thread, which is the only
+ * thread the simulation uses.
+ * <P>
+ * Run from the command line, it plays -Drounds=N rounds
+ * (10000 by default) with -Dplayers=N players (3) who play
+ * like the dealer, on -Ddecks=N decks (1), after -Dwarmup=N
+ * rounds (1000) to let the JIT settle, and prints a report.
+ * -Djournal=file writes every message the players get to
+ * the file, and -Dseed=N shuffles from a master seed, so
+ * two runs with the same seed write the same journal.
+ *
+ * @author Jennifer
+ */
+public class SimulationEngine {
+
+	/******************************************************************************
+	 * Class variables go here
+	 *****************************************************************************/
+
+	// What can be set on the command line
+	private static final String ROUNDS_PROPERTY		= "rounds";
+	private static final String PLAYERS_PROPERTY	= "players";
+	private static final String DECKS_PROPERTY		= "decks";
+	private static final String WARMUP_PROPERTY		= "warmup";
+	private static final String JOURNAL_PROPERTY	= "journal";
+
+	// Simulated players start with this much, so they don't run out
+	private static final int STARTING_BALANCE		= 1000000000;
+
+	// The game, the actions that play it, and where they are
+	private final Game game;
+	private final List<GameAction> actions;
+	private int actionIndex = 0;
+
+	// The simulated time
+	private final SimulatedClock clock = new SimulatedClock();
+
+	// The players, and where their accounts are kept
+	private final List<ScriptedPlayer> players = new ArrayList<ScriptedPlayer>();
+	private final SimulatedUserManager accounts = new SimulatedUserManager();
+
+	// And a logger for errors
+	private final static Logger LOGGER = BlackjackLogger.createLogger( SimulationEngine.class.getName() );
+
+	/******************************************************************************
+	 * Constructor goes here
+	 *****************************************************************************/
+
+	/**
+	 * Sets up a game to simulate. It's not one of the server's
+	 * games, so nothing on the server knows about it.
+	 *
+	 * @param metadata The game to play
+	 */
+	public SimulationEngine( GameMetadata metadata ) {
+		this( metadata, null );
+	}
+
+	/**
+	 * Sets up a game to simulate, which plays the same way
+	 * every time with the same seed, as long as the players
+	 * do too.
+	 *
+	 * @param metadata The game to play
+	 * @param mode Where the shuffles and pauses come from, or
+	 * null for them to be random
+	 */
+	public SimulationEngine( GameMetadata metadata, DeterministicMode mode ) {
+		game = new Game( metadata );
+		actions = GamePlayingThread.createGameActions( clock,
+				mode == null ? null : mode.createPacing( metadata.getId() ) );
+
+		// The engine plays it, so joining doesn't need to start anything
+		game.getGameState().setGameStarter( new Runnable() {
+			@Override
+			public void run() {
+			}
+		} );
+		
+		// And it's all on this thread, shuffles included, which aren't
+		// for real play so don't need auditing
+		if( mode == null ) {
+			game.getGameState().setShuffleExecutor( StandbyShoe.SAME_THREAD );
+			game.getGameState().setShuffleEntropy( new SecureShuffleEntropy( false ) );
+		} else {
+			mode.configure( game.getGameState(), metadata.getId() );
+		}
+	}
+
+	/******************************************************************************
+	 * Public methods go here
+	 *****************************************************************************/
+
+	/**
+	 * Adds a scripted player to the game.
+	 *
+	 * @param username Their username
+	 * @param balance What they start with
+	 * @param script How they play
+	 * @param sink Where their messages go, or null to not keep them
+	 * @return The player, or null if they couldn't join
+	 */
+	public ScriptedPlayer addPlayer( String username, int balance, PlayerScript script, ClientConnection sink ) {
+
+		UserMetadata.Builder builder = new UserMetadata.Builder();
+		builder.setUsername( username ).setPassword( username ).setFullname( username ).setBalance( balance );
+		UserMetadata metadata = builder.build();
+		if( metadata == null || !accounts.add( metadata ) ) {
+			LOGGER.severe( "Could not make a simulated player called " + username );
+			return null;
+		}
+
+		ScriptedPlayer player = new ScriptedPlayer( metadata, script, sink );
+		player.getUser().setUserManager( accounts );
+		if( !player.join( game ) ) {
+			LOGGER.severe( "Simulated player " + username + " could not join the game." );
+			return null;
+		}
+		players.add( player );
+		return player;
+	}
+
+	/**
+	 * Plays rounds, as fast as it can. It stops early if all the
+	 * players have left, like if their scripts never bet, or if
+	 * an action fails.
+	 *
+	 * @param rounds How many rounds to play
+	 * @return What happened
+	 */
+	public SimulationReport run( int rounds ) {
+
+		long startingBalances = getTotalBalance();
+		long startingMessages = getTotalMessages();
+		long startingBets = getTotalBets();
+		long startingWagered = getTotalWagered();
+		long startingTime = clock.currentTimeMillis();
+		long startingAllocation = getAllocatedBytes();
+		long startedAt = System.nanoTime();
+
+		int played = 0;
+		while( played < rounds ) {
+
+			GameAction action = actions.get( actionIndex );
+			long result = stepInBatch( action );
+			boolean acted = playersAct();
+
+			if( result == GameAction.FAILED ) {
+				LOGGER.severe( "The game action " + action.getClass().getName() + " failed, so the simulation stopped." );
+				break;
+			} else if( result == GameAction.FINISHED ) {
+				actionIndex = (actionIndex + 1) % actions.size();
+				if( actionIndex == 0 ) {
+					played++;
+					if( !game.isActive() ) {
+						LOGGER.warning( "Everyone left the simulated game after " + played + " rounds." );
+						break;
+					}
+				}
+			} else if( !acted ) {
+				// Nobody did what it's waiting on, so let the time go by
+				clock.advance( result );
+			}
+		}
+
+		long elapsed = System.nanoTime() - startedAt;
+		long endingAllocation = getAllocatedBytes();
+		long allocated = (startingAllocation < 0 || endingAllocation < 0) ? -1 : endingAllocation - startingAllocation;
+
+		return new SimulationReport( played, elapsed, clock.currentTimeMillis() - startingTime, allocated,
+				getTotalMessages() - startingMessages, getTotalBets() - startingBets,
+				getTotalWagered() - startingWagered, startingBalances - getTotalBalance() );
+	}
+
+	/**
+	 * @return The game being simulated
+	 */
+	public Game getGame() {
+		return game;
+	}
+
+	/**
+	 * @return The simulated clock
+	 */
+	public SimulatedClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * @return The players, in the order they joined
+	 */
+	public List<ScriptedPlayer> getPlayers() {
+		return Collections.unmodifiableList( players );
+	}
+
+	/**
+	 * Runs a simulation from the command line, and prints the report.
+	 */
+	public static void main( String[] args ) throws IOException {
+
+		int rounds = Integer.getInteger( ROUNDS_PROPERTY, 10000 );
+		int playerCount = Integer.getInteger( PLAYERS_PROPERTY, 3 );
+		int decks = Integer.getInteger( DECKS_PROPERTY, 1 );
+		int warmup = Integer.getInteger( WARMUP_PROPERTY, 1000 );
+		String journalFile = System.getProperty( JOURNAL_PROPERTY );
+
+		GameMetadata.Builder builder = new GameMetadata.Builder();
+		builder.setId( "simulation" );
+		builder.setNumDecks( decks );
+		builder.setMinBet( 10 );
+		builder.setMaxBet( 100 );
+		builder.setMinPlayers( 1 );
+		builder.setMaxPlayers( playerCount );
+		builder.setRules( new ArrayList<String>() );
+		SimulationEngine engine = new SimulationEngine( builder.build(), DeterministicMode.getDefault() );
+
+		Writer journal = (journalFile == null ? null : new BufferedWriter( new FileWriter( journalFile ) ));
+		try {
+			for( int i = 1; i <= playerCount; i++ ) {
+				String username = "sim" + i;
+				ClientConnection sink = (journal == null ? null : new JournalConnection( journal, username ));
+				engine.addPlayer( username, STARTING_BALANCE, PlayerScript.MIMIC_THE_DEALER, sink );
+			}
+
+			if( warmup > 0 ) {
+				engine.run( warmup );
+			}
+			System.out.println( engine.run( rounds ) );
+		} finally {
+			if( journal != null ) {
+				journal.close();
+			}
+		}
+	}
+
+	/******************************************************************************
+	 * Private methods go here
+	 *****************************************************************************/
+
+	/**
+	 * Performs one step of an action, with the messages it sends
+	 * held in a {@link MessageBatch}, as a table does.
+	 */
+	private long stepInBatch( GameAction action ) {
+		MessageBatch.begin();
+		try {
+			return action.step( game );
+		} finally {
+			MessageBatch.end();
+		}
+	}
+
+	/**
+	 * Lets each player act, if they've been asked to.
+	 *
+	 * @return True if any of them did
+	 */
+	private boolean playersAct() {
+		boolean acted = false;
+		for( int i = 0; i < players.size(); i++ ) {
+			if( players.get(i).act() ) {
+				acted = true;
+			}
+		}
+		return acted;
+	}
+
+	/**
+	 * @return The players' balances, added up
+	 */
+	private long getTotalBalance() {
+		long total = 0;
+		for( int i = 0; i < players.size(); i++ ) {
+			total += players.get(i).getUser().getUserMetadata().getBalance();
+		}
+		return total;
+	}
+
+	/**
+	 * @return How many messages the players have been sent, added up
+	 */
+	private long getTotalMessages() {
+		long total = 0;
+		for( int i = 0; i < players.size(); i++ ) {
+			total += players.get(i).getMessageCount();
+		}
+		return total;
+	}
+
+	/**
+	 * @return How many bets the players have made, added up
+	 */
+	private long getTotalBets() {
+		long total = 0;
+		for( int i = 0; i < players.size(); i++ ) {
+			total += players.get(i).getBetCount();
+		}
+		return total;
+	}
+
+	/**
+	 * @return How much the players have wagered, added up
+	 */
+	private long getTotalWagered() {
+		long total = 0;
+		for( int i = 0; i < players.size(); i++ ) {
+			total += players.get(i).getWagered();
+		}
+		return total;
+	}
+
+	/**
+	 * @return How much this thread has allocated, or -1 if the
+	 * JVM can't say
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if( bean instanceof com.sun.management.ThreadMXBean ) {
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean)bean;
+			if( hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled() ) {
+				return hotspot.getThreadAllocatedBytes( Thread.currentThread().getId() );
+			}
+		}
+		return -1;
+	}
+
+}
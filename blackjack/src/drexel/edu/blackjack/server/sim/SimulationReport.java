@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SimulationReport.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: What a run of the simulation engine found: how fast it played,
+ * how much it allocated, and how the house did.
+ ******************************************************************************/
+package drexel.edu.blackjack.server.sim;
+
+/**
+ * The results of one {@link SimulationEngine#run(int)}. It
+ * doesn't change once it's made.
+ *
+ * @author Jennifer
+ */
+public class SimulationReport {
+
+	private final int rounds;
+	private final long elapsedNanos;
+	private final long simulatedMillis;
+	private final long allocatedBytes;
+	private final long messages;
+	private final long bets;
+	private final long wagered;
+	private final long houseWinnings;
+
+	/**
+	 * @param rounds How many rounds were played
+	 * @param elapsedNanos How long they took, really
+	 * @param simulatedMillis How long they took on the simulated clock
+	 * @param allocatedBytes How much the engine's thread allocated, or
+	 * -1 if the JVM can't say
+	 * @param messages How many messages were sent to players
+	 * @param bets How many bets were placed
+	 * @param wagered How much was bet, in total
+	 * @param houseWinnings How much the players' balances went down
+	 */
+	public SimulationReport( int rounds, long elapsedNanos, long simulatedMillis,
+			long allocatedBytes, long messages, long bets, long wagered, long houseWinnings ) {
+		this.rounds = rounds;
+		this.elapsedNanos = elapsedNanos;
+		this.simulatedMillis = simulatedMillis;
+		this.allocatedBytes = allocatedBytes;
+		this.messages = messages;
+		this.bets = bets;
+		this.wagered = wagered;
+		this.houseWinnings = houseWinnings;
+	}
+
+	/**
+	 * @return How many rounds were played
+	 */
+	public int getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * @return How long the rounds took, in real nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return How long the rounds would have taken, in milliseconds,
+	 * if every wait had been real
+	 */
+	public long getSimulatedMillis() {
+		return simulatedMillis;
+	}
+
+	/**
+	 * @return Rounds played per real second
+	 */
+	public double getRoundsPerSecond() {
+		return elapsedNanos <= 0 ? 0 : rounds * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * @return How many bytes were allocated, or -1 if the JVM
+	 * can't say
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return Bytes allocated per round, or -1 if the JVM can't say
+	 */
+	public long getBytesPerRound() {
+		return (allocatedBytes < 0 || rounds == 0) ? -1 : allocatedBytes / rounds;
+	}
+
+	/**
+	 * @return How many messages were sent to the players
+	 */
+	public long getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return How many bets were placed
+	 */
+	public long getBets() {
+		return bets;
+	}
+
+	/**
+	 * @return How much was bet, in total
+	 */
+	public long getWagered() {
+		return wagered;
+	}
+
+	/**
+	 * @return How much the house won, which is how much the
+	 * players' balances went down
+	 */
+	public long getHouseWinnings() {
+		return houseWinnings;
+	}
+
+	/**
+	 * @return What the house won, as a fraction of what was bet
+	 */
+	public double getHouseEdge() {
+		return wagered == 0 ? 0 : (double)houseWinnings / wagered;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append( rounds ).append( " rounds in " ).append( elapsedNanos / 1000000 ).append( " ms" );
+		str.append( String.format( " (%.0f rounds/s)", getRoundsPerSecond() ) );
+		str.append( ", " ).append( simulatedMillis / 1000 ).append( " s simulated\n" );
+		if( allocatedBytes < 0 ) {
+			str.append( "Allocation: unknown\n" );
+		} else {
+			str.append( "Allocation: " ).append( getBytesPerRound() ).append( " bytes/round\n" );
+		}
+		str.append( "Messages: " ).append( messages ).append( "\n" );
+		str.append( "Bets: " ).append( bets ).append( ", wagered " ).append( wagered );
+		str.append( String.format( ", house won %d (%.2f%% edge)", houseWinnings, getHouseEdge() * 100 ) );
+		return str.toString();
+	}
+
+}
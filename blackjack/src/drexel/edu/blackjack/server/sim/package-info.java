@@ -0,0 +1,19 @@
+/*******************************************************************************
+ * Functionality for playing games on the server without any clients
+ * <P>
+ * CS544 Computer Networks Spring 2013
+ * <P>
+ * 5/26/2013
+ * <P>
+ * <b>Purpose:</b> This package has a headless simulation engine that plays a
+ * game with the same game actions a table on the server uses, but with
+ * scripted players instead of connected clients, and a simulated clock, so
+ * that rounds are played as fast as the CPU allows. It's used to measure
+ * how fast the game code is, and to check the house's edge.
+ * @author Jennifer Lautenschlager
+ * @author Constantine Lazarakis
+ * @author Carol Greco
+ * @author Duc Anh Nguyen
+ * @version 1.0
+ ******************************************************************************/
+package drexel.edu.blackjack.server.sim;
@@ -18,14 +18,15 @@ package drexel.edu.blackjack.server.timeouts;
 
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import drexel.edu.blackjack.server.BlackjackProtocol;
-import drexel.edu.blackjack.server.BlackjackServerThread;
+import drexel.edu.blackjack.server.ClientConnection;
 import drexel.edu.blackjack.util.BlackjackLogger;
+import drexel.edu.blackjack.util.ThreadMode;
 
 /**
  * <b>STATEFUL:</b> This class keeps track of all client connections. Every 5 seconds
@@ -41,7 +42,7 @@ import drexel.edu.blackjack.util.BlackjackLogger;
  * 
  * @author Jennifer
  */
-public class IdleTimeoutDaemon extends Thread {
+public class IdleTimeoutDaemon implements Runnable {
 
 	/***********************************************************
 	 * Local variables go here.
@@ -57,9 +58,13 @@ public class IdleTimeoutDaemon extends Thread {
 	// in a map for ease of lookup
 	private Map<BlackjackProtocol.STATE,TimeoutDefinition> timeoutMap;
 	
-	// Here is where we keep a list of all the server threads that
+	// Here is where we keep a list of all the client connections that
 	// we are monitoring
-	private volatile Set<BlackjackServerThread> clientThreads;
+	private volatile Set<ClientConnection> clientConnections;
+	
+	// The thread that does the sweeping. It's a platform or virtual
+	// thread depending on the server's thread mode.
+	private Thread thread = null;
 	
 	// Our singleton instance
 	private static IdleTimeoutDaemon daemon = null;
@@ -74,8 +79,9 @@ public class IdleTimeoutDaemon extends Thread {
 	
 	private IdleTimeoutDaemon() {
 	
-		// Need somewhere to store the threads, and it better be synchronized
-		clientThreads = Collections.synchronizedSet(new HashSet<BlackjackServerThread>());
+		// Need somewhere to store the connections. It's a concurrent set, so
+		// sweeping it never holds a lock while clients are being disconnected.
+		clientConnections = Collections.newSetFromMap(new ConcurrentHashMap<ClientConnection,Boolean>());
 		
 		// And need to establish the timeouts that we are monitoring
 		etsablishTimeoutMap();
@@ -87,43 +93,44 @@ public class IdleTimeoutDaemon extends Thread {
 	
 	/**
 	 * This gets the one and only copy of the idle timeout daemon,
-	 * which it ensures is started.
+	 * which it ensures is started. It runs on a thread created
+	 * by {@link ThreadMode}.
 	 * 
 	 * @return The one and only idle timeout daemon
 	 */
 	public static IdleTimeoutDaemon getDefaultIdleTimeoutDaemon() {
 		if( daemon == null ) {
 			daemon = new IdleTimeoutDaemon();
-			daemon.start();
+			daemon.thread = ThreadMode.newThread( "IdleTimeoutDaemon", daemon );
+			daemon.thread.start();
 		}
 		return daemon;
 	}
 	
 	/**
-	 * Adds a thread that represents a connection to a client for the
-	 * timeout idler daemon to monitor. This should be done once a
-	 * connection is established.
+	 * Adds a connection to a client for the timeout idler daemon
+	 * to monitor. This should be done once a connection is established.
 	 * 
-	 * @param thread What to monitor
+	 * @param connection What to monitor
 	 * @return true if added successfully, else false
 	 */
-	public boolean addBlackjackServerThread( BlackjackServerThread thread ) {
+	public boolean addClientConnection( ClientConnection connection ) {
 		LOGGER.info( "Adding a client connection to monitor in the idle timeout daemon." );
-		return clientThreads.add(thread);
+		return clientConnections.add(connection);
 	}
 	
 	/**
-	 * Removes a thread from the list to be monitored. This will be done
+	 * Removes a connection from the list to be monitored. This will be done
 	 * automatically if it ends up being in a disconnected state (that the
 	 * monitor can detect). But it should be done whenever a session ends
-	 * and the thread is no longer active.
+	 * and the connection is no longer active.
 	 * 
-	 * @param thread What to stop monitoring
+	 * @param connection What to stop monitoring
 	 * @return true if removed successfully, else false
 	 */
-	public boolean removeBlackjackServerThread( BlackjackServerThread thread ) {
+	public boolean removeClientConnection( ClientConnection connection ) {
 		LOGGER.info( "Removing a client connection to monitor from the idle timeout daemon." );
-		return clientThreads.remove(thread);
+		return clientConnections.remove(connection);
 	}
 	
 	/**********************************************************
@@ -145,60 +152,48 @@ public class IdleTimeoutDaemon extends Thread {
 			
 			LOGGER.finer( "About to sweep the connections." );
 			
-			// Keep a list of threads that need to be removed. We can't
-			// remove them while we're iterating through them, though
-			Set<BlackjackServerThread> threadsToReap = Collections.synchronizedSet(
-					new HashSet<BlackjackServerThread>() );
-			
-			// Cycle through all of the connections
-			synchronized( clientThreads ) {
-				for( BlackjackServerThread thread : clientThreads ) {
-					
-					// First looked for closed sockets that we need to remove
-					if( !thread.isAlive() || ( thread.getSocket() != null && thread.getSocket().isClosed()) ) {
-						LOGGER.info( "Found a dead client connection thread to remove." );
-						threadsToReap.add(thread);
-					} else if( thread.getProtocol() != null ) {
-						// Then look for a relevant timer based on state
-						LOGGER.finer( "Thread state is: " + thread.getProtocol().getState() );
-						TimeoutDefinition timeout = this.timeoutMap.get( thread.getProtocol().getState() );
-						if( timeout != null ) {
-							
-							LOGGER.finer( "Found a timeout definition for the state." );
-							
-							// Figure out how much time has passed since the relevant timer
-							long currentTime = System.currentTimeMillis();
-							long delta = 0;
-							if( thread.getProtocol() != null && timeout.getType() != null ) {
-								if( timeout.getType().equals( TimeoutDefinition.TYPE.LAST_COMMAND) &&
-										thread.getProtocol().getLastCommand() != null ) {
-									delta = currentTime - thread.getProtocol().getLastCommand();
-								} else if( timeout.getType().equals(TimeoutDefinition.TYPE.TIMER) &&
-										thread.getProtocol().getTimer() != null ) {
-									delta = currentTime - thread.getProtocol().getTimer();
-								}
-							}
-							
-							LOGGER.finer( "The delta on the thread is " + delta );
-							LOGGER.finer( "The timeout value is " + timeout.getTimeoutInMilliseconds() );
-							
-							// If it's more than the timeout, we have to do something
-							if( delta > timeout.getTimeoutInMilliseconds() ) {
-								// STATEFUL: This will actually force a state change, to the
-								// disconnected state. We only have timeouts that disconnect
-								// currently implemented through this mechanism.
-								thread.forceDisconnectDueToTimeout();
+			// Cycle through all of the connections. The set is concurrent, so
+			// there's no need to lock it, and dead connections can be removed
+			// as we go
+			for( ClientConnection connection : clientConnections ) {
+				
+				// First looked for closed connections that we need to remove
+				if( connection.isClosed() ) {
+					LOGGER.info( "Found a dead client connection to remove." );
+					clientConnections.remove(connection);
+				} else if( connection.getProtocol() != null ) {
+					// Then look for a relevant timer based on state
+					LOGGER.finer( "Connection state is: " + connection.getProtocol().getState() );
+					TimeoutDefinition timeout = this.timeoutMap.get( connection.getProtocol().getState() );
+					if( timeout != null ) {
+						
+						LOGGER.finer( "Found a timeout definition for the state." );
+						
+						// Figure out how much time has passed since the relevant timer
+						long currentTime = System.currentTimeMillis();
+						long delta = 0;
+						if( connection.getProtocol() != null && timeout.getType() != null ) {
+							if( timeout.getType().equals( TimeoutDefinition.TYPE.LAST_COMMAND) &&
+									connection.getProtocol().getLastCommand() != null ) {
+								delta = currentTime - connection.getProtocol().getLastCommand();
+							} else if( timeout.getType().equals(TimeoutDefinition.TYPE.TIMER) &&
+									connection.getProtocol().getTimer() != null ) {
+								delta = currentTime - connection.getProtocol().getTimer();
 							}
 						}
-					}				
-				}
-			}
-			
-			// Now remove the threads we marked to reap
-			synchronized( threadsToReap ) {
-				for( BlackjackServerThread threadToReap : threadsToReap ) {
-					clientThreads.remove(threadToReap);
-				}
+						
+						LOGGER.finer( "The delta on the connection is " + delta );
+						LOGGER.finer( "The timeout value is " + timeout.getTimeoutInMilliseconds() );
+						
+						// If it's more than the timeout, we have to do something
+						if( delta > timeout.getTimeoutInMilliseconds() ) {
+							// STATEFUL: This will actually force a state change, to the
+							// disconnected state. We only have timeouts that disconnect
+							// currently implemented through this mechanism.
+							connection.forceDisconnectDueToTimeout();
+						}
+					}
+				}				
 			}
 		}
 	}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - HandBenchmark.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: A microbenchmark of Hand.java's point valuation, against the way
+ * it used to be done with a set of every possible total.
+ ******************************************************************************/
+package drexel.edu.blackjack.test.cards;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import drexel.edu.blackjack.cards.Card;
+import drexel.edu.blackjack.cards.Hand;
+
+/**
+ * Plays the same hands, card by card, with {@link Hand} and
+ * with a copy of how hands used to be valued, asking the
+ * questions the game asks as it goes: is it busted, is it
+ * a blackjack, should the dealer hit, who won. Prints the
+ * time and bytes allocated per hand for each, and the
+ * speedup. Run with 'ant benchmark-hand'.
+ * <P>
+ * -Dhands=N sets how many hands are in a pass (1000000),
+ * and -Dpasses=N how many passes are timed (5), after as
+ * many again to warm up.
+ *
+ * @author Jennifer
+ */
+public class HandBenchmark {
+
+	// How many different deals to cycle through
+	private static final int DEALS = 4096;
+
+	// Keeps the JIT from throwing the work away
+	private static long sink = 0;
+
+	public static void main( String[] args ) {
+
+		int hands = Integer.getInteger( "hands", 1000000 );
+		int passes = Integer.getInteger( "passes", 5 );
+		Card[][][] deals = createDeals( new Random( 544 ) );
+
+		for( int i = 0; i < passes; i++ ) {
+			playLegacy( deals, hands );
+			playCurrent( deals, hands );
+		}
+
+		long legacyNanos = 0, legacyBytes = 0, currentNanos = 0, currentBytes = 0;
+		for( int i = 0; i < passes; i++ ) {
+			long bytes = getAllocatedBytes();
+			long start = System.nanoTime();
+			playLegacy( deals, hands );
+			legacyNanos += System.nanoTime() - start;
+			legacyBytes += getAllocatedBytes() - bytes;
+
+			bytes = getAllocatedBytes();
+			start = System.nanoTime();
+			playCurrent( deals, hands );
+			currentNanos += System.nanoTime() - start;
+			currentBytes += getAllocatedBytes() - bytes;
+		}
+
+		long total = (long)hands * passes;
+		System.out.println( String.format( "Set of totals: %.1f ns/hand, %d bytes/hand",
+				(double)legacyNanos / total, legacyBytes / total ) );
+		System.out.println( String.format( "Hard total:    %.1f ns/hand, %d bytes/hand",
+				(double)currentNanos / total, currentBytes / total ) );
+		System.out.println( String.format( "Speedup:       %.1fx", (double)legacyNanos / currentNanos ) );
+		System.out.println( "(" + sink + ")" );
+	}
+
+	/**
+	 * Makes random deals: for each, the player's cards and
+	 * then the dealer's, each 2 to 5 of them.
+	 */
+	private static Card[][][] createDeals( Random random ) {
+		Card[][][] deals = new Card[DEALS][2][];
+		for( int i = 0; i < DEALS; i++ ) {
+			for( int j = 0; j < 2; j++ ) {
+				deals[i][j] = new Card[2 + random.nextInt( 4 )];
+				for( int k = 0; k < deals[i][j].length; k++ ) {
+					deals[i][j][k] = Card.valueOf( random.nextInt( Card.NUMBER_OF_CODES ) );
+				}
+			}
+		}
+		return deals;
+	}
+
+	private static void playCurrent( Card[][][] deals, int hands ) {
+		long result = 0;
+		for( int i = 0; i < hands; i++ ) {
+			Card[][] deal = deals[i & (DEALS - 1)];
+			Hand player = new Hand( null );
+			Hand dealer = new Hand( null );
+			for( Card card : deal[0] ) {
+				player.receiveCard( card, true );
+				result += player.getIsBusted() ? 1 : 0;
+			}
+			result += player.getIsBlackJack() ? 2 : 0;
+			for( Card card : deal[1] ) {
+				dealer.receiveCard( card, true );
+				result += dealer.getDealerShouldHit( null ) ? 4 : 0;
+			}
+			result += player.compareToDealerHand( dealer ).ordinal();
+		}
+		sink += result;
+	}
+
+	private static void playLegacy( Card[][][] deals, int hands ) {
+		long result = 0;
+		for( int i = 0; i < hands; i++ ) {
+			Card[][] deal = deals[i & (DEALS - 1)];
+			LegacyHand player = new LegacyHand();
+			LegacyHand dealer = new LegacyHand();
+			for( Card card : deal[0] ) {
+				player.receiveCard( card );
+				result += player.getIsBusted() ? 1 : 0;
+			}
+			result += player.getIsBlackJack() ? 2 : 0;
+			for( Card card : deal[1] ) {
+				dealer.receiveCard( card );
+				result += dealer.getDealerShouldHit() ? 4 : 0;
+			}
+			result += player.compareToDealerHand( dealer );
+		}
+		sink += result;
+	}
+
+	/**
+	 * @return How much this thread has allocated, or 0 if the
+	 * JVM can't say
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if( bean instanceof com.sun.management.ThreadMXBean ) {
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes( Thread.currentThread().getId() );
+		}
+		return 0;
+	}
+
+	/**
+	 * How Hand used to value its points, for comparison.
+	 */
+	private static class LegacyHand {
+
+		private final ArrayList<Card> cards = new ArrayList<Card>();
+		private final HashSet<Integer> points = new HashSet<Integer>();
+
+		LegacyHand() {
+			points.add( 0 );
+		}
+
+		void receiveCard( Card card ) {
+			cards.add( card );
+			ArrayList<Integer> temp = new ArrayList<Integer>();
+			for( int v : card.getValues() ) {
+				ArrayList<Integer> spoints = new ArrayList<Integer>( points );
+				for( int i = 0; i < spoints.size(); i++ ) {
+					spoints.set( i, spoints.get( i ) + v );
+				}
+				temp.addAll( spoints );
+			}
+			points.clear();
+			points.addAll( temp );
+		}
+
+		List<Integer> getPossibleValues() {
+			return new ArrayList<Integer>( points );
+		}
+
+		boolean getIsBusted() {
+			for( int i : points ) {
+				if( i <= 21 ) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		boolean getIsBlackJack() {
+			if( cards.size() != 2 ) return false;
+			for( int i : points ) {
+				if( i == 21 ) return true;
+			}
+			return false;
+		}
+
+		boolean getDealerShouldHit() {
+			for( int p : getPossibleValues() ) {
+				if( p >= 17 ) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		int compareToDealerHand( LegacyHand dealerHand ) {
+			if( getIsBusted() ) {
+				return 1;
+			}
+			if( dealerHand.getIsBusted() ) {
+				return 0;
+			}
+			Integer thisHandValue = null;
+			for( Integer value : getPossibleValues() ) {
+				if( thisHandValue == null || (value > thisHandValue && value <= 21) ) {
+					thisHandValue = value;
+				}
+			}
+			Integer dealerHandValue = null;
+			for( Integer value : dealerHand.getPossibleValues() ) {
+				if( dealerHandValue == null || (value > dealerHandValue && value <= 21) ) {
+					dealerHandValue = value;
+				}
+			}
+			return thisHandValue > dealerHandValue ? 0 : (thisHandValue < dealerHandValue ? 1 : 2);
+		}
+	}
+
+}
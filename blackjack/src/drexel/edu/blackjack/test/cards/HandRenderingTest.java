@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - HandRenderingTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of how Hand.java shows itself to its owner and to
+ * everyone else, and when it has to work that out again.
+ ******************************************************************************/
+package drexel.edu.blackjack.test.cards;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.cards.Card;
+import drexel.edu.blackjack.cards.Hand;
+import drexel.edu.blackjack.db.user.UserMetadata;
+import drexel.edu.blackjack.server.game.User;
+
+public class HandRenderingTest {
+
+	@Test
+	public void testViewsAreReusedUntilTheHandChanges() {
+		Hand hand = new Hand(null);
+		hand.receiveCard(Card.valueOf(Card.RANK.NINE, Card.SUIT.DIAMONDS), false);
+		hand.receiveCard(Card.valueOf(Card.RANK.QUEEN, Card.SUIT.HEARTS), true);
+
+		String owner = hand.toString(true);
+		String everyone = hand.toString(false);
+		assertEquals("9D QH", owner);
+		assertEquals("X QH", everyone);
+		assertSame(owner, hand.toString(true));
+		assertSame(everyone, hand.toString(false));
+		User someoneElse = new User(new UserMetadata.Builder().setUsername("someoneElse").build());
+		assertSame(everyone, hand.toString(someoneElse));
+		assertSame(owner, hand.toString((User)null));
+	}
+
+	@Test
+	public void testReceivingACardChangesTheViews() {
+		Hand hand = new Hand(null);
+		assertEquals(0, hand.getVersion());
+		assertEquals("", hand.toString(false));
+
+		hand.receiveCard(Card.valueOf(Card.RANK.TWO, Card.SUIT.CLUBS), false);
+		assertEquals(1, hand.getVersion());
+		assertEquals("X", hand.toString(false));
+
+		hand.receiveCard(Card.valueOf(Card.RANK.ACE, Card.SUIT.SPADES), true);
+		assertEquals(2, hand.getVersion());
+		assertEquals("X AS", hand.toString(false));
+		assertEquals("2C AS", hand.toString(true));
+	}
+
+	@Test
+	public void testTurningCardsOverChangesTheViews() {
+		Hand hand = new Hand(null);
+		hand.receiveCard(Card.valueOf(Card.RANK.JACK, Card.SUIT.SPADES), false);
+		hand.receiveCard(Card.valueOf(Card.RANK.FIVE, Card.SUIT.HEARTS), true);
+		String before = hand.toString(false);
+		int version = hand.getVersion();
+
+		assertTrue(hand.turnFaceUp());
+		assertEquals(version + 1, hand.getVersion());
+		assertEquals("JS 5H", hand.toString(false));
+		assertNotSame(before, hand.toString(false));
+
+		// Nothing left to turn over, so nothing changes
+		assertFalse(hand.turnFaceUp());
+		assertEquals(version + 1, hand.getVersion());
+	}
+
+}
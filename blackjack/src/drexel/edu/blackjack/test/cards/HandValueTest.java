@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - HandValueTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of how Hand.java values its points, and compares them.
+ ******************************************************************************/
+package drexel.edu.blackjack.test.cards;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.cards.Card;
+import drexel.edu.blackjack.cards.Hand;
+
+public class HandValueTest {
+
+	private Hand createHand(Card.RANK... ranks) {
+		Hand hand = new Hand(null);
+		for (Card.RANK rank : ranks) {
+			hand.receiveCard(Card.valueOf(rank, Card.SUIT.SPADES), true);
+		}
+		return hand;
+	}
+
+	@Test
+	public void testPossibleValues() {
+		assertEquals(Arrays.asList(0), createHand().getPossibleValues());
+		assertEquals(Arrays.asList(15), createHand(Card.RANK.FIVE, Card.RANK.KING).getPossibleValues());
+		assertEquals(Arrays.asList(8, 18, 28),
+				createHand(Card.RANK.ACE, Card.RANK.ACE, Card.RANK.SIX).getPossibleValues());
+	}
+
+	@Test
+	public void testBestValue() {
+		assertEquals(18, createHand(Card.RANK.ACE, Card.RANK.ACE, Card.RANK.SIX).getBestValue());
+		assertEquals(12, createHand(Card.RANK.ACE, Card.RANK.ACE, Card.RANK.TEN).getBestValue());
+		assertEquals(25, createHand(Card.RANK.TEN, Card.RANK.FIVE, Card.RANK.QUEEN).getBestValue());
+		assertTrue(createHand(Card.RANK.TEN, Card.RANK.FIVE, Card.RANK.QUEEN).getIsBusted());
+		assertFalse(createHand(Card.RANK.ACE, Card.RANK.ACE, Card.RANK.TEN).getIsBusted());
+	}
+
+	@Test
+	public void testBlackjackNeedsTwoCards() {
+		assertTrue(createHand(Card.RANK.ACE, Card.RANK.JACK).getIsBlackJack());
+		assertFalse(createHand(Card.RANK.ACE, Card.RANK.FIVE, Card.RANK.FIVE).getIsBlackJack());
+		assertFalse(createHand(Card.RANK.ACE, Card.RANK.NINE).getIsBlackJack());
+	}
+
+	@Test
+	public void testDealerStandsOnAnyTotalReachingTheStandPoint() {
+		assertTrue(createHand(Card.RANK.TEN, Card.RANK.SIX).getDealerShouldHit(null));
+		assertFalse(createHand(Card.RANK.ACE, Card.RANK.SIX).getDealerShouldHit(null));
+		assertTrue(createHand(Card.RANK.ACE, Card.RANK.FIVE).getDealerShouldHit(null));
+	}
+
+	@Test
+	public void testComparisonUsesTheBestValue() {
+		// Soft 12 is a 12, not a 22 or 32
+		Hand player = createHand(Card.RANK.ACE, Card.RANK.ACE, Card.RANK.TEN);
+		assertEquals(Hand.COMPARISON_RESULT.LOSE, player.compareToDealerHand(createHand(Card.RANK.TEN, Card.RANK.EIGHT)));
+		assertEquals(Hand.COMPARISON_RESULT.WIN, player.compareToDealerHand(createHand(Card.RANK.TEN, Card.RANK.SIX, Card.RANK.TEN)));
+
+		Hand soft = createHand(Card.RANK.ACE, Card.RANK.SEVEN);
+		assertEquals(Hand.COMPARISON_RESULT.TIE, soft.compareToDealerHand(createHand(Card.RANK.TEN, Card.RANK.EIGHT)));
+		assertEquals(Hand.COMPARISON_RESULT.WIN, soft.compareToDealerHand(createHand(Card.RANK.TEN, Card.RANK.SEVEN)));
+		assertEquals(Hand.COMPARISON_RESULT.LOSE,
+				createHand(Card.RANK.TEN, Card.RANK.TEN, Card.RANK.TWO).compareToDealerHand(createHand(Card.RANK.TEN, Card.RANK.SEVEN)));
+	}
+
+}
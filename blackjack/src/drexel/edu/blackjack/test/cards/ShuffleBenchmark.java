@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - ShuffleBenchmark.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: A benchmark of how fast 8 deck shoes are shuffled with seeds from
+ * SecureShuffleEntropy, against shuffling them with a SecureRandom directly.
+ ******************************************************************************/
+package drexel.edu.blackjack.test.cards;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import drexel.edu.blackjack.cards.SecureShuffleEntropy;
+import drexel.edu.blackjack.cards.ShuffleEntropy;
+import drexel.edu.blackjack.cards.SimpleDealerShoe;
+
+/**
+ * Shuffles 8 deck shoes over and over, first on one thread
+ * and then on several at once, as many tables would. Each
+ * thread has its own shoe. Directly, every swap asks one
+ * shared DRBG SecureRandom for a number; with the entropy,
+ * each shuffle takes one seed from its thread's generator
+ * and works out the swaps from it. Prints the shuffles per
+ * second of each, and the speedup. Run with
+ * 'ant benchmark-shuffle'.
+ * <P>
+ * -Dshuffles=N sets how many shuffles each thread does in
+ * a pass (5000), and -Dthreads=N how many threads there
+ * are when there are several (the number of processors).
+ * <P>
+ * The seeded shuffle keeps getting faster for the first few
+ * seconds, as the JIT gets to it, so one pass to warm up
+ * isn't enough: an early pass can be several times slower
+ * than a later one. Before each kind of shuffle is timed,
+ * it's run for -Dwarmup=N seconds (2), and then the median
+ * of three timed passes is reported. On a machine with one
+ * processor, several threads shouldn't be any faster than
+ * one; if they are, it wasn't warmed up long enough.
+ *
+ * @author Jennifer
+ */
+public class ShuffleBenchmark {
+
+	private static final int DECKS = 8;
+
+	// How many passes are timed, of which the median is reported
+	private static final int TIMED_PASSES = 3;
+
+	public static void main( String[] args ) throws Exception {
+
+		int shuffles = Integer.getInteger( "shuffles", 5000 );
+		int threads = Integer.getInteger( "threads", Runtime.getRuntime().availableProcessors() );
+		long warmup = Integer.getInteger( "warmup", 2 ) * 1000000000L;
+
+		System.out.println( Runtime.getRuntime().availableProcessors() + " processor(s), " +
+				shuffles + " shuffles per thread per pass" );
+
+		final SecureRandom direct = createSecureRandom();
+		final ShuffleEntropy entropy = new SecureShuffleEntropy( false );
+
+		for( int count : (threads == 1 ? new int[] { 1 } : new int[] { 1, threads }) ) {
+			ShoeMaker directShoes = new ShoeMaker() {
+				@Override
+				public SimpleDealerShoe create() {
+					return new SimpleDealerShoe( DECKS, (Random)direct );
+				}
+			};
+			ShoeMaker entropyShoes = new ShoeMaker() {
+				@Override
+				public SimpleDealerShoe create() {
+					return new SimpleDealerShoe( DECKS, entropy );
+				}
+			};
+
+			double directRate = measure( directShoes, count, shuffles, warmup );
+			double entropyRate = measure( entropyShoes, count, shuffles, warmup );
+
+			System.out.println( count + " thread" + (count == 1 ? "" : "s") + ":" );
+			System.out.println( String.format( "  SecureRandom directly: %,.0f shuffles/s", directRate ) );
+			System.out.println( String.format( "  Seeded entropy:        %,.0f shuffles/s", entropyRate ) );
+			System.out.println( String.format( "  Speedup:               %.1fx", entropyRate / directRate ) );
+		}
+	}
+
+	/**
+	 * Makes each thread's shoe
+	 */
+	private interface ShoeMaker {
+		SimpleDealerShoe create();
+	}
+
+	/**
+	 * Warms up, then times a few passes.
+	 *
+	 * @return The median of the timed passes' shuffles per
+	 * second
+	 */
+	private static double measure( ShoeMaker maker, int threads, int shuffles, long warmup ) throws InterruptedException {
+
+		long warmUntil = System.nanoTime() + warmup;
+		do {
+			run( maker, threads, shuffles );
+		} while( System.nanoTime() < warmUntil );
+
+		double[] rates = new double[TIMED_PASSES];
+		for( int i = 0; i < rates.length; i++ ) {
+			rates[i] = run( maker, threads, shuffles );
+		}
+		Arrays.sort( rates );
+		return rates[rates.length / 2];
+	}
+
+	/**
+	 * Shuffles on some threads at once.
+	 *
+	 * @return How many shuffles were done per second, across
+	 * all of the threads
+	 */
+	private static double run( final ShoeMaker maker, int threads, final int shuffles ) throws InterruptedException {
+
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final CountDownLatch done = new CountDownLatch( threads );
+		for( int i = 0; i < threads; i++ ) {
+			Thread thread = new Thread( new Runnable() {
+				@Override
+				public void run() {
+					SimpleDealerShoe shoe = maker.create();
+					try {
+						start.await();
+						for( int j = 0; j < shuffles; j++ ) {
+							shoe.shuffle();
+						}
+					} catch( InterruptedException e ) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			} );
+			thread.setDaemon( true );
+			thread.start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - begin;
+		return (double)threads * shuffles * 1e9 / elapsed;
+	}
+
+	private static SecureRandom createSecureRandom() {
+		try {
+			return SecureRandom.getInstance( "DRBG" );
+		} catch( NoSuchAlgorithmException e ) {
+			return new SecureRandom();
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - ShuffleEntropyTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of SecureShuffleEntropy.java and ShuffleSeed.java, and
+ * that a shuffle can be checked and repeated from its seed.
+ ******************************************************************************/
+package drexel.edu.blackjack.test.cards;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.cards.Card;
+import drexel.edu.blackjack.cards.SecureShuffleEntropy;
+import drexel.edu.blackjack.cards.ShuffleEntropy;
+import drexel.edu.blackjack.cards.ShuffleSeed;
+import drexel.edu.blackjack.cards.SimpleDealerShoe;
+
+public class ShuffleEntropyTest {
+
+	/**
+	 * Hands out seeds from another source, and keeps track
+	 * of which were retired
+	 */
+	private static class RecordingEntropy implements ShuffleEntropy {
+
+		private final ShuffleEntropy source;
+		private final List<ShuffleSeed> retired = new ArrayList<ShuffleSeed>();
+
+		RecordingEntropy( ShuffleEntropy source ) {
+			this.source = source;
+		}
+
+		@Override
+		public ShuffleSeed nextSeed() {
+			return source.nextSeed();
+		}
+
+		@Override
+		public void retire( ShuffleSeed seed ) {
+			retired.add( seed );
+		}
+	}
+
+	/**
+	 * Always hands out the same seed
+	 */
+	private static ShuffleEntropy revealed( final ShuffleSeed seed ) {
+		return new ShuffleEntropy() {
+			@Override
+			public ShuffleSeed nextSeed() {
+				return seed;
+			}
+
+			@Override
+			public void retire( ShuffleSeed seed ) {
+			}
+		};
+	}
+
+	private int[] dealAll( SimpleDealerShoe shoe ) {
+		int[] codes = new int[shoe.getTotalNumberOfCards()];
+		for( int i = 0; i < codes.length; i++ ) {
+			codes[i] = shoe.dealTopCard().getCode();
+		}
+		return codes;
+	}
+
+	@Test
+	public void testSeedsAreNumberedAndNeverRepeat() {
+		ShuffleEntropy entropy = new SecureShuffleEntropy( false );
+		Set<String> seen = new HashSet<String>();
+		long last = 0;
+		for( int i = 0; i < 3 * SecureShuffleEntropy.BLOCK_SEEDS; i++ ) {
+			ShuffleSeed seed = entropy.nextSeed();
+			assertTrue( seed.getNumber() > last );
+			last = seed.getNumber();
+			assertTrue( seen.add( seed.getSeedAsHex() ) );
+			assertEquals( 64, seed.getCommitment().length() );
+			assertFalse( seed.toString().contains( seed.getSeedAsHex() ) );
+		}
+	}
+
+	@Test
+	public void testShuffleCanBeRepeatedFromItsRevealedSeed() {
+		SimpleDealerShoe shoe = new SimpleDealerShoe( 8, new SecureShuffleEntropy( false ) );
+		shoe.shuffle();
+		ShuffleSeed seed = shoe.getSeed();
+		int[] dealt = dealAll( shoe );
+
+		// Every card is there, the right number of times
+		int[] counts = new int[Card.NUMBER_OF_CODES];
+		for( int code : dealt ) {
+			counts[code]++;
+		}
+		for( int count : counts ) {
+			assertEquals( 8, count );
+		}
+
+		// Anyone with the seed gets the same commitment, and the same cards
+		ShuffleSeed audited = ShuffleSeed.reveal( seed.getNumber(), seed.getSeedAsHex() );
+		assertEquals( seed.getCommitment(), audited.getCommitment() );
+		assertTrue( audited.sameSeedAs( seed ) );
+		SimpleDealerShoe replay = new SimpleDealerShoe( 8, revealed( audited ) );
+		replay.shuffle();
+		assertArrayEquals( dealt, dealAll( replay ) );
+	}
+
+	@Test
+	public void testReshufflingRetiresTheLastSeed() {
+		RecordingEntropy entropy = new RecordingEntropy( new SecureShuffleEntropy( false ) );
+		SimpleDealerShoe shoe = new SimpleDealerShoe( 1, entropy );
+		assertNull( shoe.getSeed() );
+
+		shoe.shuffle();
+		ShuffleSeed first = shoe.getSeed();
+		assertTrue( entropy.retired.isEmpty() );
+
+		shoe.shuffle();
+		assertEquals( 1, entropy.retired.size() );
+		assertSame( first, entropy.retired.get( 0 ) );
+		assertFalse( first.sameSeedAs( shoe.getSeed() ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testSeedsHaveToBeTheRightSize() {
+		ShuffleSeed.reveal( 1, "00ff" );
+	}
+
+}
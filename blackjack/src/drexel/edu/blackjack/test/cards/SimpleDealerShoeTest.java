@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SimpleDealerShoeTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of SimpleDealerShoe.java, and the shared cards it deals.
+ ******************************************************************************/
+package drexel.edu.blackjack.test.cards;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.cards.Card;
+import drexel.edu.blackjack.cards.Hand;
+import drexel.edu.blackjack.cards.SimpleDealerShoe;
+
+public class SimpleDealerShoeTest {
+
+	@Test
+	public void testCardsAreShared() {
+		Card card = Card.valueOf(Card.RANK.TEN, Card.SUIT.HEARTS);
+		assertSame(card, Card.valueOf(Card.RANK.TEN, Card.SUIT.HEARTS));
+		assertSame(card, Card.valueOf(card.getCode()));
+		assertEquals("10H", card.toString());
+		for (int code = 0; code < Card.NUMBER_OF_CODES; code++) {
+			assertEquals(code, Card.valueOf(code).getCode());
+		}
+	}
+
+	@Test
+	public void testShuffledShoeDealsEveryCardOnce() {
+		SimpleDealerShoe shoe = new SimpleDealerShoe(4, new Random(544));
+		shoe.shuffle();
+		assertEquals(4 * 52, shoe.getTotalNumberOfCards());
+
+		int[] counts = new int[Card.NUMBER_OF_CODES];
+		while (!shoe.isEmpty()) {
+			counts[shoe.dealTopCard().getCode()]++;
+		}
+		for (int count : counts) {
+			assertEquals(4, count);
+		}
+		assertNull(shoe.dealTopCard());
+		assertEquals(1.0f, shoe.getPercentageOfDealtCards(), 0.0001f);
+
+		// Shuffling puts them all back
+		shoe.shuffle();
+		assertEquals(0, shoe.getNumberOfDealtCards());
+		assertFalse(shoe.isEmpty());
+	}
+
+	@Test
+	public void testDealingSeveral() {
+		SimpleDealerShoe shoe = new SimpleDealerShoe(1);
+		Card[] cards = new Card[60];
+		assertEquals(2, shoe.deal(2, cards, 0));
+		assertEquals(2, shoe.getNumberOfDealtCards());
+		assertEquals(2f / 52, shoe.getPercentageOfDealtCards(), 0.0001f);
+
+		// Unshuffled, they come in code order
+		assertEquals(0, cards[0].getCode());
+		assertEquals(1, cards[1].getCode());
+
+		// Only what's left can be dealt
+		assertEquals(50, shoe.deal(60, cards, 2));
+		assertTrue(shoe.isEmpty());
+		assertEquals(0, shoe.deal(1, cards, 0));
+	}
+
+	@Test
+	public void testHandKeepsTrackOfFaceup() {
+		Hand hand = new Hand(null);
+		Card facedown = Card.valueOf(Card.RANK.ACE, Card.SUIT.SPADES);
+		Card faceup = Card.valueOf(Card.RANK.KING, Card.SUIT.CLUBS);
+		hand.receiveCard(facedown, false);
+		hand.receiveCard(faceup, true);
+
+		assertFalse(hand.isFaceUp(0));
+		assertTrue(hand.isFaceUp(1));
+		List<Card> down = hand.getFacedownCards();
+		assertEquals(1, down.size());
+		assertSame(facedown, down.get(0));
+		assertEquals("X KC", hand.toString(false));
+		assertEquals("AS KC", hand.toString(true));
+
+		assertTrue(hand.turnFaceUp());
+		assertFalse(hand.turnFaceUp());
+		assertEquals(0, hand.getFacedownCards().size());
+		assertEquals("AS KC", hand.toString(false));
+		assertTrue(hand.getIsBlackJack());
+	}
+
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - TableRulesTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of TableRules.java, and how games and tables use it.
+ ******************************************************************************/
+package drexel.edu.blackjack.test.db.game;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.cards.Card;
+import drexel.edu.blackjack.cards.DealerShoeInterface;
+import drexel.edu.blackjack.cards.Hand;
+import drexel.edu.blackjack.db.game.GameMetadata;
+import drexel.edu.blackjack.db.game.TableRules;
+import drexel.edu.blackjack.server.game.GameState;
+
+public class TableRulesTest {
+
+	private GameMetadata createGame(String... rules) {
+		GameMetadata.Builder builder = new GameMetadata.Builder();
+		builder.setId("rules");
+		builder.setNumDecks(2);
+		builder.setRules(new ArrayList<String>(Arrays.asList(rules)));
+		return builder.build();
+	}
+
+	@Test
+	public void testDefaults() {
+		TableRules rules = TableRules.parse(4, null);
+		assertEquals(4, rules.getNumDecks());
+		assertEquals(TableRules.DEFAULT_DEALER_STAND_POINT, rules.getDealerStandPoint());
+		assertEquals(TableRules.DEFAULT_RESHUFFLE_PENETRATION, rules.getReshufflePenetration(), 0f);
+
+		rules = TableRules.parse(0, Arrays.asList("No insurance", "Blackjack pays 3 to 2"));
+		assertEquals(1, rules.getNumDecks());
+		assertEquals(17, rules.getDealerStandPoint());
+	}
+
+	@Test
+	public void testParsesTheRulesThatChangeTheTable() {
+		TableRules rules = TableRules.parse(6, Arrays.asList(
+				"Dealer must hit soft 16 to stand",
+				"Reshuffle when 75% of the shoe is dealt"));
+		assertEquals(16, rules.getDealerStandPoint());
+		assertEquals(0.75f, rules.getReshufflePenetration(), 0.0001f);
+		assertEquals(16, Hand.getDealerStandPoint(Arrays.asList("Dealer must hit soft 16 to stand")));
+
+		// There's only so far into the shoe it can go
+		rules = TableRules.parse(6, Arrays.asList("Reshuffle at 100%"));
+		assertEquals(TableRules.MAX_RESHUFFLE_PENETRATION, rules.getReshufflePenetration(), 0f);
+	}
+
+	@Test
+	public void testGamesKeepTheirRulesWhenReadBackIn() throws Exception {
+		GameMetadata game = createGame("Dealer must hit soft 16 to stand");
+		assertEquals(16, game.getTableRules().getDealerStandPoint());
+		assertEquals(2, game.getTableRules().getNumDecks());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(game);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		GameMetadata read = (GameMetadata)in.readObject();
+		in.close();
+
+		assertEquals(game.getRules(), read.getRules());
+		assertNotNull(read.getTableRules());
+		assertEquals(16, read.getTableRules().getDealerStandPoint());
+		assertEquals(2, read.getTableRules().getNumDecks());
+	}
+
+	@Test
+	public void testTableShufflesByItsRules() {
+		GameState state = new GameState("rules", new TableRules(1, 17, 0.75f));
+		DealerShoeInterface shoe = state.getDealerShoe();
+		shoe.shuffle();
+		Card[] cards = new Card[52];
+		shoe.deal(39, cards, 0);
+		assertFalse(state.needToShuffle());
+		shoe.deal(1, cards, 0);
+		assertTrue(state.needToShuffle());
+
+		// The old constructor still shuffles at half
+		state = new GameState("rules", 1);
+		shoe = state.getDealerShoe();
+		shoe.deal(27, cards, 0);
+		assertTrue(state.needToShuffle());
+	}
+
+	@Test
+	public void testDealerStandsByTheRules() {
+		Hand hand = new Hand(null);
+		hand.receiveCard(Card.valueOf(Card.RANK.TEN, Card.SUIT.CLUBS), true);
+		hand.receiveCard(Card.valueOf(Card.RANK.SIX, Card.SUIT.CLUBS), true);
+		assertTrue(hand.getDealerShouldHit(createGame().getTableRules().getDealerStandPoint()));
+		assertFalse(hand.getDealerShouldHit(createGame("Dealer must hit soft 16 to stand").getTableRules().getDealerStandPoint()));
+	}
+
+}
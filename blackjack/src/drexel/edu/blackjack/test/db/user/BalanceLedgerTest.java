@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - BalanceLedgerTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of BalanceLedger.java, that balance changes are written
+ * and replayed, and that a torn write at the end is cut off
+ ******************************************************************************/
+package drexel.edu.blackjack.test.db.user;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.db.user.BalanceLedger;
+import drexel.edu.blackjack.db.user.UserMetadata;
+
+public class BalanceLedgerTest {
+
+	private File file = null;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile( "balances", ".ledger" );
+		file.delete();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static UserMetadata user( String username ) {
+		return new UserMetadata.Builder().setUsername( username ).setPassword( "password" )
+				.setFullname( username ).setBalance( 1000 ).build();
+	}
+
+	private static Map<String,UserMetadata> users( String... usernames ) {
+		Map<String,UserMetadata> users = new HashMap<String,UserMetadata>();
+		for( String username : usernames ) {
+			users.put( username, user( username ) );
+		}
+		return users;
+	}
+
+	@Test
+	public void testChangesAreReplayedInOrder() throws Exception {
+		BalanceLedger ledger = new BalanceLedger( file, 0, 1000, null );
+		ledger.append( "user1", -10, 990 );
+		ledger.append( "user2", -20, 980 );
+		assertTrue( ledger.awaitDurable( ledger.append( "user1", 20, 1010 ) ) );
+		assertEquals( 3, ledger.getRecordCount() );
+		ledger.close();
+		assertEquals( 3 * BalanceLedger.RECORD_BYTES, file.length() );
+
+		Map<String,UserMetadata> users = users( "user1", "user2", "user3" );
+		BalanceLedger reopened = new BalanceLedger( file, 0, 1000, null );
+		assertEquals( 3, reopened.replay( users ) );
+		assertEquals( 1010, users.get( "user1" ).getBalance() );
+		assertEquals( 980, users.get( "user2" ).getBalance() );
+		assertEquals( 1000, users.get( "user3" ).getBalance() );
+		reopened.close();
+	}
+
+	@Test
+	public void testTornRecordIsCutOff() throws Exception {
+		BalanceLedger ledger = new BalanceLedger( file, 0, 1000, null );
+		ledger.append( "user1", -10, 990 );
+		assertTrue( ledger.awaitDurable( ledger.append( "user1", -10, 980 ) ) );
+		ledger.close();
+
+		// Half of a third record made it to disk before a crash
+		FileOutputStream out = new FileOutputStream( file, true );
+		out.write( new byte[BalanceLedger.RECORD_BYTES / 2] );
+		out.close();
+
+		Map<String,UserMetadata> users = users( "user1" );
+		BalanceLedger reopened = new BalanceLedger( file, 0, 1000, null );
+		assertEquals( 2, reopened.replay( users ) );
+		assertEquals( 980, users.get( "user1" ).getBalance() );
+		assertEquals( 2 * BalanceLedger.RECORD_BYTES, file.length() );
+
+		// And new changes go after the last good one
+		assertTrue( reopened.awaitDurable( reopened.append( "user1", 30, 1010 ) ) );
+		reopened.close();
+		assertEquals( 3 * BalanceLedger.RECORD_BYTES, file.length() );
+	}
+
+	@Test
+	public void testTornWriteOfSeveralRecordsIsCutOff() throws Exception {
+		BalanceLedger ledger = new BalanceLedger( file, 0, 1000, null );
+		assertTrue( ledger.awaitDurable( ledger.append( "user1", -10, 990 ) ) );
+		ledger.close();
+
+		// A batch of records was being written, and only zeroes made it
+		FileOutputStream out = new FileOutputStream( file, true );
+		out.write( new byte[2 * BalanceLedger.RECORD_BYTES + 10] );
+		out.close();
+
+		Map<String,UserMetadata> users = users( "user1" );
+		BalanceLedger reopened = new BalanceLedger( file, 0, 1000, null );
+		assertEquals( 1, reopened.replay( users ) );
+		assertEquals( 990, users.get( "user1" ).getBalance() );
+		assertEquals( BalanceLedger.RECORD_BYTES, file.length() );
+		reopened.close();
+	}
+
+	@Test
+	public void testBadRecordInTheMiddleFails() throws Exception {
+		BalanceLedger ledger = new BalanceLedger( file, 0, 1000, null );
+		ledger.append( "user1", -10, 990 );
+		ledger.append( "user1", -10, 980 );
+		assertTrue( ledger.awaitDurable( ledger.append( "user1", -10, 970 ) ) );
+		ledger.close();
+
+		// Flip a bit in the second record's balance
+		RandomAccessFile corrupt = new RandomAccessFile( file, "rw" );
+		corrupt.seek( BalanceLedger.RECORD_BYTES + 13 );
+		int b = corrupt.read();
+		corrupt.seek( BalanceLedger.RECORD_BYTES + 13 );
+		corrupt.write( b ^ 1 );
+		corrupt.close();
+
+		BalanceLedger reopened = new BalanceLedger( file, 0, 1000, null );
+		try {
+			reopened.replay( users( "user1" ) );
+			fail( "A bad record with good ones after it should fail the replay" );
+		} catch( IOException e ) {
+			// Nothing's cut off, so it can be repaired
+			assertEquals( 3 * BalanceLedger.RECORD_BYTES, file.length() );
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void testFlushWaitsForEverything() throws Exception {
+		BalanceLedger ledger = new BalanceLedger( file, 50, 1000, null );
+		ledger.append( "user1", -10, 990 );
+		ledger.append( "user1", -10, 980 );
+		assertTrue( ledger.flush() );
+		assertEquals( 2 * BalanceLedger.RECORD_BYTES, file.length() );
+		ledger.close();
+	}
+
+	@Test
+	public void testChangesFromManyThreadsAreAllWritten() throws Exception {
+		final BalanceLedger ledger = new BalanceLedger( file, 5, 100000, null );
+		final AtomicInteger durable = new AtomicInteger();
+		Thread[] threads = new Thread[8];
+		for( int i = 0; i < threads.length; i++ ) {
+			final String username = "user" + i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for( int j = 1; j <= 25; j++ ) {
+						if( ledger.awaitDurable( ledger.append( username, 1, 1000 + j ) ) ) {
+							durable.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for( Thread thread : threads ) {
+			thread.join();
+		}
+		assertEquals( 200, durable.get() );
+		assertEquals( 200, ledger.getRecordCount() );
+		ledger.close();
+
+		Map<String,UserMetadata> users = users( "user0", "user7" );
+		BalanceLedger reopened = new BalanceLedger( file, 0, 100000, null );
+		assertEquals( 200, reopened.replay( users ) );
+		assertEquals( 1025, users.get( "user0" ).getBalance() );
+		assertEquals( 1025, users.get( "user7" ).getBalance() );
+		reopened.close();
+	}
+
+	@Test
+	public void testCompactsOnceBigEnough() throws Exception {
+		final CountDownLatch compacted = new CountDownLatch( 1 );
+		final BalanceLedger[] holder = new BalanceLedger[1];
+		BalanceLedger ledger = new BalanceLedger( file, 0, 3, new Runnable() {
+			@Override
+			public void run() {
+				holder[0].truncate();
+				compacted.countDown();
+			}
+		} );
+		holder[0] = ledger;
+		for( int i = 0; i < 3; i++ ) {
+			assertTrue( ledger.awaitDurable( ledger.append( "user1", 1, 1001 + i ) ) );
+		}
+		assertTrue( compacted.await( 5, TimeUnit.SECONDS ) );
+		assertEquals( 0, ledger.getRecordCount() );
+		ledger.close();
+		assertEquals( 0, file.length() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testLongUsernamesDontFit() {
+		StringBuilder username = new StringBuilder();
+		while( username.length() <= BalanceLedger.MAX_USERNAME_BYTES ) {
+			username.append( 'x' );
+		}
+		assertFalse( BalanceLedger.fits( username.toString() ) );
+		new BalanceLedger( file, 0, 1000, null ).append( username.toString(), 1, 1 );
+	}
+
+}
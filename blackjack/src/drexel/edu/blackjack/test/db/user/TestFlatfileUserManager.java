@@ -91,4 +91,27 @@ public class TestFlatfileUserManager {
 		}
 	}
 
+	@Test
+	public void testAdjustedBalanceSurvivesReload() throws Exception {
+		UserManagerInterface f = FlatfileUserManager.getDefaultTestUserManager();
+		UserMetadata u3 = new UserMetadata.Builder()
+			.setBalance(100)
+			.setUsername("ledgeruser")
+			.setPassword("ledgerpass")
+			.setFullname("ledger user")
+			.build();
+		f.add(u3);
+		UserMetadata loaded = f.loginUser(u3.getUsername(), u3.getPassword());
+		int balance = loaded.getBalance();
+		assertTrue(f.adjustBalance(loaded, -10));
+		assertTrue(f.adjustBalance(loaded, 25));
+		assertEquals(balance + 15, loaded.getBalance());
+		f.logoutUser(u3.getUsername());
+		
+		// Reloading replays the ledger over the file
+		assertTrue(f.load());
+		assertEquals(balance + 15, f.loginUser(u3.getUsername(), u3.getPassword()).getBalance());
+		f.logoutUser(u3.getUsername());
+	}
+
 }
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - BinaryCodecTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ * 
+ * Purpose: Unit test of BinaryCodec.java
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.server.BinaryCodec;
+import drexel.edu.blackjack.server.EncodedMessage;
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.server.commands.CommandMetadata;
+import drexel.edu.blackjack.util.BinaryFramer;
+
+public class BinaryCodecTest {
+
+	// Same limit the server uses
+	private static final int LIMIT		= 1024;
+	
+	// One codec for each end of a connection
+	private BinaryCodec server;
+	private BinaryCodec client;
+	
+	@Before
+	public void setUp() throws Exception {
+		server = new BinaryCodec( LIMIT );
+		client = new BinaryCodec( LIMIT );
+	}
+
+	@Test
+	public void testResponsesRoundTrip() throws IOException {
+		String[] lines = {
+				"200 Version BJP 1.0",
+				"@req-7 200 OK",
+				"220 ",
+				"404",
+				"604 user1 AS 10H X -3 hello   there",
+				"201 Capabilities follow\nVERSION 1.0\nPIPELINING\n",
+				"Not a response at all"
+		};
+		for( String line : lines ) {
+			ResponseCode expected = ResponseCode.getCodeFromString( line );
+			ResponseCode actual = response( client, server.encodeResponse( bytes( line ), 0, line.length() ) );
+			if( expected == null ) {
+				assertNull( actual );
+			} else {
+				assertNotNull( line, actual );
+				assertEquals( line, expected.toString(), actual.toString() );
+				assertEquals( expected.getTag(), actual.getTag() );
+			}
+		}
+	}
+
+	@Test
+	public void testCardsTakeOneByte() throws IOException {
+		String line = "604 AS 10H QD X";
+		byte[] frame = server.encodeResponse( bytes( line ), 0, line.length() );
+		
+		// One for the length, two for the header, and one for each card
+		assertEquals( 7, frame.length );
+		assertEquals( line, response( client, frame ).toString() );
+	}
+
+	@Test
+	public void testRepeatedWordsShrink() throws IOException {
+		String line = "604 somebody_with_a_long_name has joined the session";
+		byte[] first = server.encodeResponse( bytes( line ), 0, line.length() );
+		byte[] second = server.encodeResponse( bytes( line ), 0, line.length() );
+		assertTrue( second.length < first.length );
+		
+		assertEquals( line, response( client, first ).toString() );
+		assertEquals( line, response( client, second ).toString() );
+	}
+
+	@Test
+	public void testResponsesFromPartsMatchTheText() throws IOException {
+		String[] lines = {
+				"@req-7 604 user1 AS 10H X -3 hello   there",
+				"604 somebody_with_a_long_name has joined the session",
+				"220 "
+		};
+		BinaryCodec fromText = new BinaryCodec( LIMIT );
+		for( String line : lines ) {
+			ResponseCode code = ResponseCode.getCodeFromString( line );
+			EncodedMessage message = code.getEncoded();
+			
+			// Twice, so the second time uses the handles from the first
+			for( int i = 0; i < 2; i++ ) {
+				byte[] expected = fromText.encodeResponse( bytes( line ), 0, line.length() );
+				assertArrayEquals( line, expected, frame( server.encodeResponse( message ) ) );
+			}
+			
+			// The tokens are shared, but a new connection has no handles yet
+			byte[] frame = frame( new BinaryCodec( LIMIT ).encodeResponse( message ) );
+			assertEquals( line, code.toString(), response( new BinaryCodec( LIMIT ), frame ).toString() );
+		}
+	}
+
+	@Test
+	public void testCommandsRoundTrip() throws IOException {
+		CommandMetadata cm = command( server, client.encodeCommand( "@a1 BET 50" ) );
+		assertEquals( "a1", cm.getTag() );
+		assertEquals( "BET", cm.getCommandWord() );
+		assertEquals( Arrays.asList( "50" ), cm.getParameters() );
+		
+		cm = command( server, client.encodeCommand( "JOINSESSION  game1" ) );
+		assertNull( cm.getTag() );
+		assertEquals( "JOINSESSION", cm.getCommandWord() );
+		assertEquals( Arrays.asList( "game1" ), cm.getParameters() );
+
+		cm = command( server, client.encodeCommand( "FROB a b" ) );
+		assertEquals( "FROB", cm.getCommandWord() );
+		assertEquals( Arrays.asList( "a", "b" ), cm.getParameters() );
+	}
+
+	@Test
+	public void testPasswordsAreNotInterned() throws IOException {
+		byte[] first = client.encodeCommand( "PASSWORD secretsecret" );
+		byte[] second = client.encodeCommand( "PASSWORD secretsecret" );
+		assertArrayEquals( first, second );
+		
+		CommandMetadata cm = command( server, second );
+		assertEquals( Arrays.asList( "secretsecret" ), cm.getParameters() );
+	}
+
+	@Test
+	public void testMalformedFramesAreRejected() {
+		byte[][] bodies = {
+				{ (byte)0x80 },				// truncated varint
+				{ 0x02, (byte)0x85 },		// unknown handle
+				{ 0x02, 0x00, 0x05 },		// string longer than the frame
+				{ (byte)0xFF, 0x7F }		// unknown command
+		};
+		for( byte[] body : bodies ) {
+			try {
+				server.decodeCommand( body, 0, body.length );
+				fail( "Expected a malformed frame to be rejected" );
+			} catch( IOException e ) {
+				// Expected
+			}
+		}
+	}
+
+	@Test
+	public void testDecodedCommandIsLimited() {
+		StringBuilder line = new StringBuilder( "USERNAME" );
+		while( line.length() <= LIMIT ) {
+			line.append( " abcdefghij" );
+		}
+		try {
+			command( new BinaryCodec( LIMIT ), new BinaryCodec( LIMIT * 2 ).encodeCommand( line.toString() ) );
+			fail( "Expected an over-limit command to be rejected" );
+		} catch( IOException e ) {
+			// Expected
+		}
+	}
+
+	/**********************************************************************************
+	 * Helpers
+	 *********************************************************************************/
+	
+	// Text as the server would have queued it
+	private byte[] bytes( String line ) {
+		return line.getBytes();
+	}
+	
+	// The bytes of an encoded message
+	private byte[] frame( EncodedMessage message ) {
+		byte[] frame = new byte[message.getLength()];
+		message.copyTo( frame, 0 );
+		return frame;
+	}
+	
+	// Decodes a frame as a response, with its length checked and removed
+	private ResponseCode response( BinaryCodec codec, byte[] frame ) throws IOException {
+		byte[] body = unframe( frame );
+		return codec.decodeResponse( body, 0, body.length );
+	}
+	
+	// Decodes a frame as a command, with its length checked and removed
+	private CommandMetadata command( BinaryCodec codec, byte[] frame ) throws IOException {
+		byte[] body = unframe( frame );
+		return codec.decodeCommand( body, 0, body.length );
+	}
+	
+	// A frame's body
+	private byte[] unframe( byte[] frame ) throws IOException {
+		final List<byte[]> bodies = new ArrayList<byte[]>();
+		BinaryFramer framer = new BinaryFramer( LIMIT * 4 );
+		assertEquals( frame.length, framer.feed( frame, 0, frame.length, new BinaryFramer.FrameListener() {
+			@Override
+			public boolean frameReceived( byte[] data, int offset, int length ) {
+				bodies.add( Arrays.copyOfRange( data, offset, offset + length ) );
+				return true;
+			}
+		} ) );
+		assertEquals( 1, bodies.size() );
+		return bodies.get(0);
+	}
+
+}
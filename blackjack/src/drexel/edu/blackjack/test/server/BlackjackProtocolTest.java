@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - BlackjackProtocolTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.server.BlackjackProtocol;
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.server.commands.CapabilitiesCommand;
+
+public class BlackjackProtocolTest {
+
+	private BlackjackProtocol protocol = null;
+
+	@Before
+	public void setUp() throws Exception {
+		protocol = new BlackjackProtocol( null );
+	}
+
+	@Test
+	public void testUntaggedCommand() {
+		ResponseCode code = ResponseCode.getCodeFromString( protocol.processInput( "VERSION" ) );
+		assertNotNull( code );
+		assertTrue( code.hasSameCode( ResponseCode.CODE.VERSION ) );
+		assertNull( code.getTag() );
+	}
+
+	@Test
+	public void testTaggedCommand() {
+		String response = protocol.processInput( "@req-1 VERSION" );
+		assertTrue( response.startsWith( "@req-1 " ) );
+
+		ResponseCode code = ResponseCode.getCodeFromString( response );
+		assertNotNull( code );
+		assertTrue( code.hasSameCode( ResponseCode.CODE.VERSION ) );
+		assertEquals( "req-1", code.getTag() );
+		assertEquals( response, code.toString() );
+	}
+
+	@Test
+	public void testPipelinedCommandsKeepTheirTags() {
+		ResponseCode first = ResponseCode.getCodeFromString( protocol.processInput( "@1 VERSION" ) );
+		ResponseCode second = ResponseCode.getCodeFromString( protocol.processInput( "@2 CAPABILITIES" ) );
+		ResponseCode third = ResponseCode.getCodeFromString( protocol.processInput( "CAPABILITIES" ) );
+
+		assertEquals( "1", first.getTag() );
+		assertEquals( "2", second.getTag() );
+		assertNull( third.getTag() );
+
+		// Multiline responses are only tagged on their first line
+		assertTrue( second.hasSameCode( ResponseCode.CODE.CAPABILITIES_FOLLOW ) );
+		assertEquals( third.getNumberOfLines(), second.getNumberOfLines() );
+		assertEquals( CapabilitiesCommand.PIPELINING, second.getMultiline( second.getNumberOfLines() - 1 ) );
+	}
+
+	@Test
+	public void testInvalidTag() {
+		String tooLong = "@";
+		for( int i = 0; i <= ResponseCode.MAX_TAG_LENGTH; i++ ) {
+			tooLong += "x";
+		}
+		String[] invalid = { "@ VERSION", "@a#b VERSION", tooLong + " VERSION" };
+		for( String line : invalid ) {
+			ResponseCode code = ResponseCode.getCodeFromString( protocol.processInput( line ) );
+			assertNotNull( code );
+			assertTrue( code.hasSameCode( ResponseCode.CODE.SYNTAX_ERROR ) );
+			assertNull( code.getTag() );
+		}
+	}
+
+	@Test
+	public void testTypedResponse() {
+		ResponseCode code = protocol.respondTo( "@t QUIT" );
+		assertTrue( code.hasSameCode( ResponseCode.CODE.NEED_TO_BE_AUTHENTICATED ) );
+		assertEquals( "t", code.getTag() );
+		assertFalse( code.requiresDisconnect() );
+		assertEquals( protocol.processInput( "@t QUIT" ), code.getEncoded().toString() );
+	}
+
+	@Test
+	public void testCommandWordIgnoresCase() {
+		assertTrue( protocol.respondTo( "version" ).hasSameCode( ResponseCode.CODE.VERSION ) );
+		assertTrue( protocol.respondTo( "  \tVeRsIoN" ).hasSameCode( ResponseCode.CODE.VERSION ) );
+	}
+
+	@Test
+	public void testJunkSharesItsResponse() {
+		ResponseCode junk = protocol.respondTo( "\u0001\u00ff garbage" );
+		assertSame( ResponseCode.CODE.UNKNOWN_COMMAND.getResponse(), junk );
+		assertSame( junk, protocol.respondTo( "" ) );
+		
+		// Tagging it makes a copy, leaving the shared one alone
+		ResponseCode tagged = protocol.respondTo( "@j1 garbage" );
+		assertNotSame( junk, tagged );
+		assertEquals( "j1", tagged.getTag() );
+		assertNull( junk.getTag() );
+	}
+
+	@Test
+	public void testTaggedResponseParsing() {
+		assertNull( ResponseCode.getCodeFromString( "@abc" ) );
+		assertNull( ResponseCode.getCodeFromString( "@a!c 200 OK" ) );
+
+		ResponseCode code = ResponseCode.getCodeFromString( "@abc 200 OK" );
+		assertNotNull( code );
+		assertEquals( "abc", code.getTag() );
+		assertEquals( Integer.valueOf( 200 ), code.getCode() );
+	}
+
+}
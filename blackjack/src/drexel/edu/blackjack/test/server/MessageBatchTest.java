@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - MessageBatchTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ * 
+ * Purpose: Unit test of MessageBatch.java
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.server.BlackjackProtocol;
+import drexel.edu.blackjack.server.ClientConnection;
+import drexel.edu.blackjack.server.EncodedMessage;
+import drexel.edu.blackjack.server.MessageBatch;
+import drexel.edu.blackjack.server.ResponseCode;
+
+public class MessageBatchTest {
+
+	/**
+	 * A connection that just counts what's sent and flushed,
+	 * the same way the real ones decide when to flush.
+	 */
+	private static class CountingConnection implements ClientConnection {
+		
+		int queued = 0;
+		int flushes = 0;
+		
+		@Override
+		public BlackjackProtocol getProtocol() {
+			return null;
+		}
+		
+		@Override
+		public void sendMessage( ResponseCode code ) {
+			queued++;
+			if( !MessageBatch.defer( this ) ) {
+				flushMessages();
+			}
+		}
+		
+		@Override
+		public void queueMessage( EncodedMessage message ) {
+			queued++;
+		}
+		
+		@Override
+		public void flushMessages() {
+			if( queued > 0 ) {
+				flushes++;
+				queued = 0;
+			}
+		}
+		
+		@Override
+		public int getOverflowCount() {
+			return 0;
+		}
+		
+		@Override
+		public void forceDisconnectDueToTimeout() {
+		}
+		
+		@Override
+		public void closeConnection() {
+		}
+		
+		@Override
+		public boolean isClosed() {
+			return false;
+		}
+	}
+	
+	// Two clients to send to
+	private CountingConnection first;
+	private CountingConnection second;
+	
+	// Something to send them
+	private ResponseCode code;
+	
+	@Before
+	public void setUp() throws Exception {
+		first = new CountingConnection();
+		second = new CountingConnection();
+		code = new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_STAND );
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// Don't leave a batch open on the test thread
+		while( MessageBatch.isBatching() ) {
+			MessageBatch.end();
+		}
+	}
+	
+	@Test
+	public void testNoBatchFlushesEveryMessage() {
+		assertFalse( MessageBatch.isBatching() );
+		first.sendMessage( code );
+		first.sendMessage( code );
+		assertEquals( 2, first.flushes );
+	}
+	
+	@Test
+	public void testBatchFlushesEachConnectionOnce() {
+		MessageBatch.begin();
+		for( int i = 0; i < 5; i++ ) {
+			first.sendMessage( code );
+			second.sendMessage( code );
+		}
+		assertEquals( 0, first.flushes );
+		assertEquals( 0, second.flushes );
+		MessageBatch.end();
+		
+		assertFalse( MessageBatch.isBatching() );
+		assertEquals( 1, first.flushes );
+		assertEquals( 1, second.flushes );
+	}
+	
+	@Test
+	public void testOnlyOutermostBatchFlushes() {
+		MessageBatch.begin();
+		first.sendMessage( code );
+		MessageBatch.begin();
+		first.sendMessage( code );
+		MessageBatch.end();
+		
+		// The inner end() doesn't flush, and the batch stays open
+		assertTrue( MessageBatch.isBatching() );
+		first.sendMessage( code );
+		assertEquals( 0, first.flushes );
+		MessageBatch.end();
+		assertEquals( 1, first.flushes );
+		assertFalse( MessageBatch.isBatching() );
+	}
+	
+	@Test
+	public void testFlushWithinBatch() {
+		MessageBatch.begin();
+		first.sendMessage( code );
+		MessageBatch.flush();
+		assertEquals( 1, first.flushes );
+		assertTrue( MessageBatch.isBatching() );
+		
+		// Nothing new, so ending doesn't flush again
+		MessageBatch.end();
+		assertEquals( 1, first.flushes );
+	}
+	
+	@Test
+	public void testBatchIsPerThread() throws InterruptedException {
+		MessageBatch.begin();
+		Thread other = new Thread( new Runnable() {
+			@Override
+			public void run() {
+				second.sendMessage( code );
+			}
+		});
+		other.start();
+		other.join();
+		
+		// The other thread had no batch, so it flushed right away
+		assertEquals( 1, second.flushes );
+		MessageBatch.end();
+	}
+	
+	@Test
+	public void testEndWithoutBegin() {
+		MessageBatch.end();
+		assertFalse( MessageBatch.isBatching() );
+	}
+
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - OutboundQueueTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ * 
+ * Purpose: Unit test of OutboundQueue.java
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.server.EncodedMessage;
+import drexel.edu.blackjack.server.OutboundQueue;
+import drexel.edu.blackjack.server.OverflowPolicy;
+import drexel.edu.blackjack.server.ResponseCode;
+
+public class OutboundQueueTest {
+
+	/**
+	 * Counts how many times it's written to and flushed.
+	 */
+	private static class CountingStream extends ByteArrayOutputStream {
+		
+		int writes = 0;
+		int flushes = 0;
+		
+		@Override
+		public synchronized void write( byte[] b, int off, int len ) {
+			writes++;
+			super.write( b, off, len );
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			flushes++;
+		}
+	}
+	
+	// Class to test
+	private OutboundQueue queue;
+	
+	// Where it writes
+	private CountingStream stream;
+	
+	@Before
+	public void setUp() throws Exception {
+		queue = new OutboundQueue();
+		stream = new CountingStream();
+	}
+
+	@Test
+	public void testQueuedMessagesAreWrittenTogether() throws IOException {
+		queue.add( "625 game1 user1 STAND" );
+		queue.add( "624 game1 user2 KD 3S" );
+		queue.add( "623 game1 user2 HIT" );
+		assertEquals( 0, stream.size() );
+		
+		queue.writeTo( stream );
+		assertEquals( 1, stream.writes );
+		assertEquals( 1, stream.flushes );
+		assertEquals( "625 game1 user1 STAND\n624 game1 user2 KD 3S\n623 game1 user2 HIT\n", stream.toString() );
+		assertEquals( 0, queue.getPendingLength() );
+	}
+	
+	@Test
+	public void testNothingQueuedWritesNothing() throws IOException {
+		assertEquals( 0, queue.writeTo( stream ) );
+		assertEquals( 0, stream.writes );
+		assertEquals( 0, stream.flushes );
+	}
+	
+	@Test
+	public void testQueueGrowsAndKeepsOrder() throws IOException {
+		StringBuilder expected = new StringBuilder();
+		for( int i = 0; i < 200; i++ ) {
+			queue.add( "MESSAGE " + i );
+			expected.append( "MESSAGE " + i + "\n" );
+		}
+		queue.writeTo( stream );
+		
+		// A second round reuses the buffers
+		queue.add( "LAST" );
+		expected.append( "LAST\n" );
+		queue.writeTo( stream );
+		
+		assertEquals( 2, stream.writes );
+		assertEquals( expected.toString(), stream.toString() );
+	}
+
+	@Test
+	public void testDropPolicyDropsUpdatesAtLimit() {
+		OutboundQueue small = new OutboundQueue( 100, OverflowPolicy.DROP_UPDATES );
+		EncodedMessage update = EncodedMessage.encode(
+				new ResponseCode( ResponseCode.CODE.PLAYER_ACTION, "game1 user2 HIT" ) );
+		EncodedMessage response = EncodedMessage.encode( "223 Okay, you stand." );
+		assertTrue( update.isDroppable() );
+		assertFalse( response.isDroppable() );
+		
+		// Fill it up to the limit with updates
+		int queued = 0;
+		while( small.add( update ) == OverflowPolicy.ACTION.QUEUE ) {
+			queued++;
+		}
+		assertEquals( 100 / update.getLength(), queued );
+		assertEquals( 1, small.getOverflowCount() );
+		assertFalse( small.isOverflowed() );
+		
+		// Other messages are still queued, until twice the limit
+		while( small.getPendingLength() + response.getLength() <= 200 ) {
+			assertEquals( OverflowPolicy.ACTION.QUEUE, small.add( response ) );
+		}
+		assertEquals( OverflowPolicy.ACTION.DISCONNECT, small.add( response ) );
+		assertTrue( small.isOverflowed() );
+		assertEquals( 2, small.getOverflowCount() );
+		
+		// Once overflowed, everything is dropped
+		assertEquals( OverflowPolicy.ACTION.DROP, small.add( response ) );
+	}
+	
+	@Test
+	public void testDisconnectPolicyDisconnectsAtLimit() {
+		OutboundQueue small = new OutboundQueue( 100, OverflowPolicy.DISCONNECT );
+		EncodedMessage update = EncodedMessage.encode(
+				new ResponseCode( ResponseCode.CODE.PLAYER_ACTION, "game1 user2 HIT" ) );
+		while( small.add( update ) == OverflowPolicy.ACTION.QUEUE ) {
+		}
+		assertTrue( small.isOverflowed() );
+		assertEquals( 1, small.getOverflowCount() );
+	}
+	
+	@Test
+	public void testWriterWaitsForRequest() throws Exception {
+		queue.add( "620 game1 user1" );
+		
+		final ByteArrayOutputStream written = new ByteArrayOutputStream();
+		Thread writer = new Thread( new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while( queue.awaitWriteRequest() ) {
+						queue.writeTo( written );
+					}
+					queue.writeTo( written );
+				} catch( Exception e ) {
+					// The test checks what was written
+				}
+			}
+		});
+		writer.start();
+		
+		// Queuing alone doesn't wake the writer
+		Thread.sleep( 100 );
+		assertEquals( 0, written.size() );
+		
+		queue.requestWrite();
+		queue.add( "621 game1 user1" );
+		
+		// Closing still lets the writer finish what was queued
+		queue.close();
+		writer.join( 2000 );
+		assertFalse( writer.isAlive() );
+		assertEquals( "620 game1 user1\n621 game1 user1\n", written.toString() );
+	}
+
+}
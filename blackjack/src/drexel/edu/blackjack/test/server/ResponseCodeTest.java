@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - ResponseCodeTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ * 
+ * Purpose: Unit test of the encoded form of ResponseCode.java
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.server.EncodedMessage;
+import drexel.edu.blackjack.server.ResponseCode;
+
+public class ResponseCodeTest {
+
+	@Test
+	public void testDefaultMessagesShareTheirBytes() {
+		ResponseCode first = new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_QUIT );
+		ResponseCode second = new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_QUIT );
+		assertSame( first.getEncoded(), second.getEncoded() );
+		assertSame( ResponseCode.CODE.SUCCESSFULLY_QUIT.getEncoded(), first.getEncoded() );
+		assertEquals( first.toString(), first.getEncoded().toString() );
+		assertSame( first.getEncoded(), EncodedMessage.encode( first ) );
+	}
+
+	@Test
+	public void testCustomTextIsEncoded() {
+		ResponseCode code = new ResponseCode( ResponseCode.CODE.SYNTAX_ERROR, "Bad parameter" );
+		assertEquals( code.toString(), code.getEncoded().toString() );
+		assertNotSame( ResponseCode.CODE.SYNTAX_ERROR.getEncoded(), code.getEncoded() );
+		assertNull( ResponseCode.CODE.PLAYER_JOINED.getEncoded() );
+	}
+
+	@Test
+	public void testChangesAreEncoded() {
+		ResponseCode code = new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_QUIT );
+		EncodedMessage shared = code.getEncoded();
+		
+		code.setTag( "q1" );
+		assertEquals( "@q1 " + shared.toString(), code.getEncoded().toString() );
+		
+		code.setTag( null );
+		code.setText( "Bye" );
+		assertEquals( code.toString(), code.getEncoded().toString() );
+		assertNotSame( shared, code.getEncoded() );
+		
+		// The shared bytes weren't touched
+		assertEquals( new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_QUIT ).toString(), shared.toString() );
+	}
+
+	@Test
+	public void testSharedResponsesCantChange() {
+		ResponseCode shared = ResponseCode.CODE.UNKNOWN_COMMAND.getResponse();
+		assertTrue( shared.isShared() );
+		assertSame( shared, ResponseCode.CODE.UNKNOWN_COMMAND.getResponse() );
+		try {
+			shared.setTag( "x" );
+			fail( "A shared response was tagged" );
+		} catch( IllegalStateException e ) {
+			// Expected
+		}
+		
+		ResponseCode copy = new ResponseCode( shared );
+		assertFalse( copy.isShared() );
+		copy.setTag( "x" );
+		assertEquals( "@x " + shared.toString(), copy.toString() );
+		assertNull( shared.getTag() );
+	}
+
+	@Test
+	public void testTableUpdatesAreDroppable() {
+		ResponseCode update = new ResponseCode( ResponseCode.CODE.PLAYER_JOINED, "game1 user1" );
+		assertTrue( update.getEncoded().isDroppable() );
+		assertFalse( new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_QUIT ).getEncoded().isDroppable() );
+	}
+
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - CommandTableTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ * 
+ * Purpose: Unit test of CommandTable.java
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.commands;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.server.BlackjackProtocol.STATE;
+import drexel.edu.blackjack.server.commands.BetCommand;
+import drexel.edu.blackjack.server.commands.BlackjackCommand;
+import drexel.edu.blackjack.server.commands.CapabilitiesCommand;
+import drexel.edu.blackjack.server.commands.CommandTable;
+import drexel.edu.blackjack.server.commands.PasswordCommand;
+import drexel.edu.blackjack.server.commands.UnknownCommand;
+import drexel.edu.blackjack.server.commands.UsernameCommand;
+import drexel.edu.blackjack.server.commands.VersionCommand;
+
+public class CommandTableTest {
+
+	private CommandTable table = null;
+	private UsernameCommand username = null;
+	private CapabilitiesCommand capabilities = null;
+
+	@Before
+	public void setUp() throws Exception {
+		username = new UsernameCommand();
+		capabilities = new CapabilitiesCommand();
+		
+		List<BlackjackCommand> commands = new ArrayList<BlackjackCommand>();
+		commands.add( new UnknownCommand() );
+		commands.add( username );
+		commands.add( new PasswordCommand() );
+		commands.add( capabilities );
+		commands.add( new VersionCommand() );
+		commands.add( new BetCommand() );
+		table = new CommandTable( commands );
+	}
+
+	@Test
+	public void testLookupIgnoresCase() {
+		assertSame( username, table.lookup( "USERNAME" ) );
+		assertSame( username, table.lookup( "username" ) );
+		assertSame( username, table.lookup( "UserName" ) );
+		assertSame( capabilities, table.lookup( "capabilities" ) );
+	}
+
+	@Test
+	public void testLookupInPlace() {
+		String line = "@7 capabilities now";
+		assertSame( capabilities, table.lookup( line, 3, 15 ) );
+		assertNull( table.lookup( line, 3, 14 ) );
+		assertNull( table.lookup( line, 3, 3 ) );
+	}
+
+	@Test
+	public void testJunkIsNotFound() {
+		assertNull( table.lookup( (String)null ) );
+		assertNull( table.lookup( "" ) );
+		assertNull( table.lookup( "USERNAMES" ) );
+		assertNull( table.lookup( "USERNAM" ) );
+		assertNull( table.lookup( "\u00ffjunk\u0000" ) );
+		assertNull( table.lookup( "HIT" ) );
+		assertNull( table.lookup( "THISISMUCHTOOLONGTOBEACOMMAND" ) );
+	}
+
+	@Test
+	public void testUnknownCommandIsLeftOut() {
+		assertEquals( 5, table.getCommands().size() );
+		assertSame( username, table.getCommands().get(0) );
+	}
+
+	@Test
+	public void testDuplicateWordKeepsTheFirst() {
+		List<BlackjackCommand> commands = new ArrayList<BlackjackCommand>();
+		commands.add( username );
+		commands.add( new UsernameCommand() );
+		CommandTable duplicates = new CommandTable( commands );
+		assertEquals( 1, duplicates.getCommands().size() );
+		assertSame( username, duplicates.lookup( "username" ) );
+	}
+
+	@Test
+	public void testCommandsByState() {
+		List<BlackjackCommand> valid = table.getCommands( STATE.WAITING_FOR_USERNAME );
+		assertTrue( valid.contains( username ) );
+		assertTrue( valid.contains( capabilities ) );
+		assertFalse( valid.contains( table.lookup( "PASSWORD" ) ) );
+		
+		String lines = table.getCapabilities( STATE.WAITING_FOR_USERNAME );
+		assertTrue( lines.startsWith( "USERNAME username\n" ) );
+		assertTrue( lines.contains( "CAPABILITIES\n" ) );
+		assertFalse( lines.contains( "PASSWORD" ) );
+		
+		assertTrue( table.getCapabilities( STATE.WAITING_FOR_PASSWORD ).startsWith( "PASSWORD password\n" ) );
+	}
+
+}
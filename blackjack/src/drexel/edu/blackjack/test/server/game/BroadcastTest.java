@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - BroadcastTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ * 
+ * Purpose: Unit test of Broadcast.java
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.game;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.db.user.UserMetadata;
+import drexel.edu.blackjack.server.BlackjackProtocol;
+import drexel.edu.blackjack.server.ClientConnection;
+import drexel.edu.blackjack.server.EncodedMessage;
+import drexel.edu.blackjack.server.MessageBatch;
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.server.game.Broadcast;
+import drexel.edu.blackjack.server.game.User;
+
+public class BroadcastTest {
+
+	/**
+	 * A connection that remembers the last message queued on it,
+	 * and how many times it was flushed.
+	 */
+	private static class RecordingConnection implements ClientConnection {
+		
+		volatile EncodedMessage last = null;
+		volatile int queued = 0;
+		int flushes = 0;
+		
+		@Override
+		public BlackjackProtocol getProtocol() {
+			return null;
+		}
+		
+		@Override
+		public void sendMessage( ResponseCode code ) {
+			queueMessage( EncodedMessage.encode( code ) );
+			flushMessages();
+		}
+		
+		@Override
+		public void queueMessage( EncodedMessage message ) {
+			last = message;
+			queued++;
+		}
+		
+		@Override
+		public void flushMessages() {
+			flushes++;
+		}
+		
+		@Override
+		public int getOverflowCount() {
+			return 0;
+		}
+		
+		@Override
+		public void forceDisconnectDueToTimeout() {
+		}
+		
+		@Override
+		public void closeConnection() {
+		}
+		
+		@Override
+		public boolean isClosed() {
+			return false;
+		}
+	}
+	
+	/**
+	 * Makes a number of connected users, named user0, user1, ...
+	 */
+	private User[] makeUsers( int count, RecordingConnection[] connections ) {
+		User[] users = new User[count];
+		for( int i = 0; i < count; i++ ) {
+			UserMetadata metadata = new UserMetadata.Builder().setUsername( "user" + i ).
+					setPassword( "password" ).setFullname( "User " + i ).setBalance( 100 ).build();
+			users[i] = new User( metadata );
+			connections[i] = new RecordingConnection();
+			users[i].setClientConnection( connections[i] );
+		}
+		return users;
+	}
+	
+	@Test
+	public void testEveryoneButExceptGetsSameMessage() {
+		RecordingConnection[] connections = new RecordingConnection[5];
+		User[] users = makeUsers( 5, connections );
+		ResponseCode code = new ResponseCode( ResponseCode.CODE.PLAYER_ACTION, "game1 user2 HIT" );
+		
+		assertTrue( Broadcast.send( code, users, users[2] ) );
+		
+		EncodedMessage shared = connections[0].last;
+		assertNotNull( shared );
+		assertEquals( "623 game1 user2 HIT", shared.toString() );
+		for( int i = 0; i < users.length; i++ ) {
+			if( i == 2 ) {
+				assertNull( connections[i].last );
+				assertEquals( 0, connections[i].flushes );
+			} else {
+				// The very same encoded message, not just an equal one
+				assertSame( shared, connections[i].last );
+				assertEquals( 1, connections[i].flushes );
+			}
+		}
+	}
+	
+	@Test
+	public void testLargeAudienceIsSplit() {
+		int count = Broadcast.SPLIT_THRESHOLD * 3 + 7;
+		RecordingConnection[] connections = new RecordingConnection[count];
+		User[] users = makeUsers( count, connections );
+		EncodedMessage message = EncodedMessage.encode( "622 game1 user1 100" );
+		
+		assertTrue( Broadcast.send( message, users, null ) );
+		for( RecordingConnection connection : connections ) {
+			assertSame( message, connection.last );
+			assertEquals( 1, connection.queued );
+			assertEquals( 1, connection.flushes );
+		}
+	}
+	
+	@Test
+	public void testBatchDefersFlush() {
+		RecordingConnection[] connections = new RecordingConnection[3];
+		User[] users = makeUsers( 3, connections );
+		EncodedMessage message = EncodedMessage.encode( "621 game1 user1" );
+		
+		MessageBatch.begin();
+		try {
+			Broadcast.send( message, users, null );
+			Broadcast.send( message, users, null );
+			assertEquals( 0, connections[0].flushes );
+		} finally {
+			MessageBatch.end();
+		}
+		for( RecordingConnection connection : connections ) {
+			assertEquals( 2, connection.queued );
+			assertEquals( 1, connection.flushes );
+		}
+	}
+	
+	@Test
+	public void testNullPlayers() {
+		assertFalse( Broadcast.send( EncodedMessage.encode( "621 game1 user1" ), null, null ) );
+	}
+
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - DeterministicModeTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of DeterministicMode.java, and that a seeded table deals
+ * the same cards every time
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.game;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.cards.DealerShoeInterface;
+import drexel.edu.blackjack.server.game.DeterministicMode;
+import drexel.edu.blackjack.server.game.GameState;
+
+public class DeterministicModeTest {
+
+	/**
+	 * Deals out a seeded table's first shoe, and a few
+	 * cards of the one after it
+	 */
+	private int[] dealSeeded( long seed, String tableId ) {
+		GameState state = new GameState( tableId, 1 );
+		new DeterministicMode( seed ).configure( state, tableId );
+		DealerShoeInterface shoe = state.getDealerShoe();
+		int[] codes = new int[shoe.getTotalNumberOfCards() + 10];
+		for( int i = 0; i < shoe.getTotalNumberOfCards(); i++ ) {
+			codes[i] = shoe.dealTopCard().getCode();
+		}
+		state.shuffle();
+		shoe = state.getDealerShoe();
+		for( int i = codes.length - 10; i < codes.length; i++ ) {
+			codes[i] = shoe.dealTopCard().getCode();
+		}
+		return codes;
+	}
+
+	@Test
+	public void testStreamsDifferByTableAndUse() {
+		DeterministicMode mode = new DeterministicMode( 544 );
+		Set<Long> seeds = new HashSet<Long>();
+		for( String table : new String[] { "table1", "table2", "table3" } ) {
+			assertTrue( seeds.add( mode.deriveSeed( table, "shuffles" ) ) );
+			assertTrue( seeds.add( mode.deriveSeed( table, "pacing" ) ) );
+		}
+		assertEquals( mode.deriveSeed( "table1", "shuffles" ),
+				new DeterministicMode( 544 ).deriveSeed( "table1", "shuffles" ) );
+		assertFalse( mode.deriveSeed( "table1", "shuffles" ) ==
+				new DeterministicMode( 545 ).deriveSeed( "table1", "shuffles" ) );
+	}
+
+	@Test
+	public void testSameSeedDealsTheSameCards() {
+		int[] dealt = dealSeeded( 544, "table1" );
+		assertArrayEquals( dealt, dealSeeded( 544, "table1" ) );
+		assertFalse( Arrays.equals( dealt, dealSeeded( 544, "table2" ) ) );
+	}
+
+	@Test
+	public void testPacingIsRepeatable() {
+		DeterministicMode mode = new DeterministicMode( 544 );
+		assertEquals( mode.createPacing( "table1" ).nextLong(), mode.createPacing( "table1" ).nextLong() );
+	}
+
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - RosterTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of Roster.java, through the game state that makes them
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.game;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.db.user.UserMetadata;
+import drexel.edu.blackjack.server.game.GameState;
+import drexel.edu.blackjack.server.game.Roster;
+import drexel.edu.blackjack.server.game.User;
+
+public class RosterTest {
+
+	private GameState state = null;
+	private User[] users = null;
+
+	@Before
+	public void setUp() throws Exception {
+		state = new GameState( "rostertest", 1 );
+		users = new User[3];
+		for( int i = 0; i < users.length; i++ ) {
+			UserMetadata metadata = new UserMetadata.Builder().setUsername( "user" + i ).
+					setPassword( "password" ).setFullname( "User " + i ).setBalance( 100 ).build();
+			users[i] = new User( metadata );
+		}
+	}
+
+	@Test
+	public void testEmptyTable() {
+		Roster roster = state.getRoster();
+		assertNotNull( roster );
+		assertEquals( 0, roster.size() );
+		assertEquals( 0, roster.getActiveCount() );
+		assertEquals( 0, roster.getObserverCount() );
+		assertFalse( roster.contains( users[0] ) );
+		assertNull( roster.getPlayer( "user0" ) );
+	}
+
+	@Test
+	public void testJoinsMakeNewVersions() {
+		Roster before = state.getRoster();
+		state.addPlayer( users[0] );
+		state.addPlayer( users[1] );
+		Roster after = state.getRoster();
+
+		// The old one didn't change
+		assertEquals( 0, before.size() );
+		assertFalse( before.contains( users[0] ) );
+
+		assertEquals( 2, after.size() );
+		assertTrue( after.getVersion() > before.getVersion() );
+		assertSame( users[0], after.get(0) );
+		assertSame( users[1], after.get(1) );
+		assertEquals( 2, state.getNumberOfPlayers() );
+	}
+
+	@Test
+	public void testNewPlayersAreObservers() {
+		state.addPlayer( users[0] );
+		state.addPlayer( users[1] );
+		Roster roster = state.getRoster();
+
+		assertEquals( 0, roster.getActiveCount() );
+		assertEquals( 2, roster.getObserverCount() );
+		assertSame( users[0], roster.getObserver(0) );
+		assertSame( users[1], roster.getObserver(1) );
+	}
+
+	@Test
+	public void testNewRoundMakesEveryoneActive() {
+		state.addPlayer( users[0] );
+		state.addPlayer( users[1] );
+		Roster before = state.getRoster();
+		state.startNewRound();
+		state.addPlayer( users[2] );
+		Roster after = state.getRoster();
+
+		assertTrue( after.getVersion() > before.getVersion() );
+		assertEquals( 2, after.getActiveCount() );
+		assertSame( users[0], after.getActive(0) );
+		assertSame( users[1], after.getActive(1) );
+		assertEquals( 1, after.getObserverCount() );
+		assertSame( users[2], after.getObserver(0) );
+	}
+
+	@Test
+	public void testLeaving() {
+		state.addPlayer( users[0] );
+		state.addPlayer( users[1] );
+		state.addPlayer( users[2] );
+		Roster before = state.getRoster();
+
+		assertTrue( state.removePlayer( users[1] ) );
+		Roster after = state.getRoster();
+		assertEquals( 2, after.size() );
+		assertSame( users[0], after.get(0) );
+		assertSame( users[2], after.get(1) );
+		assertFalse( after.contains( users[1] ) );
+		assertTrue( before.contains( users[1] ) );
+
+		// Leaving twice doesn't make a new roster
+		assertFalse( state.removePlayer( users[1] ) );
+		assertSame( after, state.getRoster() );
+	}
+
+	@Test
+	public void testLookupByUsername() {
+		state.addPlayer( users[0] );
+		state.addPlayer( users[1] );
+		Roster roster = state.getRoster();
+
+		assertSame( users[1], roster.getPlayer( "user1" ) );
+		assertNull( roster.getPlayer( "user2" ) );
+		assertNull( roster.getPlayer( null ) );
+		assertTrue( roster.contains( users[0] ) );
+		assertFalse( roster.contains( users[2] ) );
+		assertFalse( roster.contains( null ) );
+	}
+
+	@Test
+	public void testArrayIsACopy() {
+		state.addPlayer( users[0] );
+		Roster roster = state.getRoster();
+
+		User[] copy = roster.toArray();
+		copy[0] = users[1];
+		assertSame( users[0], roster.get(0) );
+	}
+
+}
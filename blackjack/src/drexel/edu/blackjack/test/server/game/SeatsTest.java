@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SeatsTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of Seats.java, and joining a game with a reserved seat
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.game;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.db.game.GameMetadata;
+import drexel.edu.blackjack.db.user.UserMetadata;
+import drexel.edu.blackjack.server.game.Game;
+import drexel.edu.blackjack.server.game.Seats;
+import drexel.edu.blackjack.server.game.TableOwner;
+import drexel.edu.blackjack.server.game.User;
+
+public class SeatsTest {
+
+	private Game game = null;
+	private Seats seats = null;
+
+	@Before
+	public void setUp() throws Exception {
+		GameMetadata.Builder builder = new GameMetadata.Builder();
+		builder.setId( "seatstest" );
+		builder.setNumDecks( 1 );
+		builder.setMinPlayers( 1 );
+		builder.setMaxPlayers( 3 );
+		game = new Game( builder.build() );
+		seats = game.getGameState().getSeats();
+	}
+
+	@Test
+	public void testReserveUpToTheLimit() {
+		assertNotNull( game.reserveSeat() );
+		assertNotNull( game.reserveSeat() );
+		assertTrue( game.stillHasRoom() );
+		assertNotNull( game.reserveSeat() );
+		assertFalse( game.stillHasRoom() );
+		assertNull( game.reserveSeat() );
+		assertEquals( 3, seats.getReserved() );
+		assertEquals( 0, seats.getTaken() );
+	}
+
+	@Test
+	public void testReleaseGivesTheSeatBack() {
+		Seats.Reservation[] held = new Seats.Reservation[3];
+		for( int i = 0; i < held.length; i++ ) {
+			held[i] = game.reserveSeat();
+		}
+		assertNull( game.reserveSeat() );
+
+		assertTrue( held[1].release() );
+		// Only the first release counts
+		assertFalse( held[1].release() );
+		assertEquals( 2, seats.getReserved() );
+		assertNotNull( game.reserveSeat() );
+	}
+
+	@Test
+	public void testClaimTakesTheSeat() {
+		User player = createUser( "claimer" );
+		Seats.Reservation seat = game.reserveSeat();
+
+		assertTrue( game.addPlayer( player, seat ) );
+		assertEquals( 1, seats.getTaken() );
+		assertEquals( 0, seats.getReserved() );
+		assertTrue( game.getGameState().hasPlayer( player ) );
+
+		// Releasing after it was claimed does nothing, and it can't be used again
+		assertFalse( seat.release() );
+		assertFalse( game.addPlayer( createUser( "again" ), seat ) );
+		assertEquals( 1, seats.getTaken() );
+
+		// And leaving gives the seat back
+		game.removePlayer( player );
+		assertEquals( 0, seats.getTaken() );
+	}
+
+	@Test
+	public void testExpiredReservationCantBeClaimed() throws InterruptedException {
+		Seats.Reservation seat = seats.reserve( 3, 0 );
+		assertNotNull( seat );
+		Thread.sleep( 5 );
+
+		assertFalse( game.addPlayer( createUser( "late" ), seat ) );
+		assertEquals( 0, seats.getTaken() );
+		assertEquals( 0, seats.getReserved() );
+		assertFalse( seat.isPending() );
+	}
+
+	@Test
+	public void testExpiredReservationsAreGivenBack() throws InterruptedException {
+		for( int i = 0; i < 3; i++ ) {
+			assertNotNull( seats.reserve( 3, 0 ) );
+		}
+		Thread.sleep( 5 );
+
+		// Nobody claimed or released them, but they've run out
+		assertTrue( game.stillHasRoom() );
+		assertEquals( 0, seats.getReserved() );
+	}
+
+	@Test
+	public void testBurstOfJoinsNeverOverfills() throws InterruptedException {
+		final int threads = 32;
+		final CountDownLatch go = new CountDownLatch( 1 );
+		final CountDownLatch done = new CountDownLatch( threads );
+		final AtomicInteger joined = new AtomicInteger();
+		
+		// Players are added one at a time, as they would be at a table
+		game.setOwner( new TableOwner() {
+			@Override
+			public synchronized <T> T call( Callable<T> message ) throws Exception {
+				return message.call();
+			}
+		} );
+
+		for( int i = 0; i < threads; i++ ) {
+			final User player = createUser( "burst" + i );
+			new Thread( new Runnable() {
+				@Override
+				public void run() {
+					try {
+						go.await();
+						Seats.Reservation seat = game.reserveSeat();
+						if( seat != null ) {
+							try {
+								if( game.addPlayer( player, seat ) ) {
+									joined.incrementAndGet();
+								}
+							} finally {
+								seat.release();
+							}
+						}
+					} catch( InterruptedException e ) {
+						// Just don't join
+					} finally {
+						done.countDown();
+					}
+				}
+			} ).start();
+		}
+
+		go.countDown();
+		assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+		assertEquals( 3, joined.get() );
+		assertEquals( 3, game.getGameState().getNumberOfPlayers() );
+		assertEquals( 3, seats.getTaken() );
+		assertEquals( 0, seats.getReserved() );
+	}
+
+	/**
+	 * Makes a user with a username
+	 */
+	private User createUser( String username ) {
+		return new User( new UserMetadata.Builder().setUsername( username ).
+				setPassword( "password" ).setFullname( "A Player" ).build() );
+	}
+
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - StandbyShoeTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of StandbyShoe.java, and how a table switches shoes when
+ * it reshuffles
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.game;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.cards.Card;
+import drexel.edu.blackjack.cards.DealerShoeInterface;
+import drexel.edu.blackjack.cards.SimpleDealerShoe;
+import drexel.edu.blackjack.server.game.GameState;
+import drexel.edu.blackjack.server.game.StandbyShoe;
+
+public class StandbyShoeTest {
+
+	/**
+	 * Holds on to what it's given, until it's told to run it
+	 */
+	private static class HeldExecutor implements Executor {
+
+		private final List<Runnable> held = new ArrayList<Runnable>();
+
+		@Override
+		public void execute( Runnable command ) {
+			held.add( command );
+		}
+
+		void runAll() {
+			for( Runnable command : held ) {
+				command.run();
+			}
+			held.clear();
+		}
+	}
+
+	private void dealSome( DealerShoeInterface shoe, int n ) {
+		shoe.deal( n, new Card[n], 0 );
+	}
+
+	@Test
+	public void testShoeIsOnlyReadyOnceShuffled() {
+		HeldExecutor executor = new HeldExecutor();
+		StandbyShoe standby = new StandbyShoe( executor );
+		SimpleDealerShoe shoe = new SimpleDealerShoe( 2 );
+		dealSome( shoe, 30 );
+
+		standby.prepare( shoe );
+		assertNull( standby.take() );
+
+		executor.runAll();
+		assertSame( shoe, standby.take() );
+		assertEquals( 0, shoe.getNumberOfDealtCards() );
+
+		// And it can only be taken once
+		assertNull( standby.take() );
+	}
+
+	@Test
+	public void testTableSwitchesToTheStandbyShoe() {
+		GameState state = new GameState( "standby", 1 );
+		state.setShuffleExecutor( StandbyShoe.SAME_THREAD );
+
+		DealerShoeInterface first = state.getDealerShoe();
+		dealSome( first, 40 );
+		assertTrue( state.needToShuffle() );
+
+		state.shuffle();
+		DealerShoeInterface second = state.getDealerShoe();
+		assertNotSame( first, second );
+		assertEquals( 0, second.getNumberOfDealtCards() );
+		assertFalse( state.needToShuffle() );
+
+		// The one that was dealt from is the next standby
+		dealSome( second, 40 );
+		state.shuffle();
+		assertSame( first, state.getDealerShoe() );
+		assertEquals( 0, first.getNumberOfDealtCards() );
+	}
+
+	@Test
+	public void testTableShufflesItselfIfTheStandbyIsNotReady() {
+		HeldExecutor executor = new HeldExecutor();
+		GameState state = new GameState( "standby", 1 );
+		state.setShuffleExecutor( executor );
+
+		DealerShoeInterface first = state.getDealerShoe();
+		dealSome( first, 40 );
+		state.shuffle();
+		assertSame( first, state.getDealerShoe() );
+		assertEquals( 0, first.getNumberOfDealtCards() );
+
+		// Once it's ready, it's used
+		executor.runAll();
+		state.shuffle();
+		assertNotSame( first, state.getDealerShoe() );
+	}
+
+}
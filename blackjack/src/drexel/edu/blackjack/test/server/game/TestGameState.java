@@ -13,14 +13,34 @@ package drexel.edu.blackjack.test.server.game;
 
 import static org.junit.Assert.*;
 
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import drexel.edu.blackjack.db.game.GameMetadata;
+import drexel.edu.blackjack.db.user.UserMetadata;
+import drexel.edu.blackjack.server.game.Game;
+import drexel.edu.blackjack.server.game.GameState;
+import drexel.edu.blackjack.server.game.User;
+import drexel.edu.blackjack.server.game.driver.GameAction;
+import drexel.edu.blackjack.server.game.driver.GameClock;
+import drexel.edu.blackjack.server.game.driver.WaitForBetsAction;
+import drexel.edu.blackjack.server.sim.JournalConnection;
+
 public class TestGameState {
 
+	private GameState state = null;
+	private User player = null;
+
 	@Before
 	public void setUp() throws Exception {
+		state = new GameState( "testgame", 1 );
+		player = new User();
+		state.addPlayer( player );
+		player.setNeedsToMakeAPlay( true );
 	}
 
 	@After
@@ -32,4 +52,80 @@ public class TestGameState {
 		fail("Not yet implemented");
 	}
 
+	@Test
+	public void testPlayingTellsTheListener() {
+		final AtomicInteger heard = new AtomicInteger();
+		state.setPlayerActionListener( new Runnable() {
+			@Override
+			public void run() {
+				heard.incrementAndGet();
+			}
+		} );
+		long count = state.getPlayerActionCount();
+		
+		player.setNeedsToMakeAPlay( false );
+		state.signalPlayerAction();
+		assertEquals( 1, heard.get() );
+		assertEquals( count + 1, state.getPlayerActionCount() );
+	}
+
+	@Test
+	public void testLeavingTellsTheListener() {
+		final AtomicInteger heard = new AtomicInteger();
+		state.setPlayerActionListener( new Runnable() {
+			@Override
+			public void run() {
+				heard.incrementAndGet();
+			}
+		} );
+		
+		assertTrue( state.removePlayer( player ) );
+		assertEquals( 1, heard.get() );
+		assertFalse( state.hasPlayer( player ) );
+	}
+
+	@Test
+	public void testWaitingForBetsIsDoneWithNoBetsOutstanding() {
+		Game game = createGame();
+		game.getGameState().addPlayer( new User() );
+		assertFalse( game.getGameState().arePlayersWithOutstandingBets() );
+		assertEquals( GameAction.FINISHED, new WaitForBetsAction().step( game ) );
+	}
+
+	@Test
+	public void testWaitingForBetsTimesOutOnTheClock() {
+		Game game = createGame();
+		User better = new User( new UserMetadata.Builder().setUsername( "better" ).build() );
+		better.setClientConnection( new JournalConnection( new StringWriter(), null ) );
+		game.getGameState().addPlayer( better );
+		game.getGameState().startNewRound();
+		assertTrue( game.getGameState().arePlayersWithOutstandingBets() );
+		
+		final long[] now = new long[1];
+		WaitForBetsAction action = new WaitForBetsAction();
+		action.setClock( new GameClock() {
+			@Override
+			public long currentTimeMillis() {
+				return now[0];
+			}
+		} );
+		
+		// It asks to be stepped again once the time's up, and is done then
+		long wait = action.step( game );
+		assertTrue( wait > 0 );
+		now[0] += wait - 1;
+		assertEquals( 1, action.step( game ) );
+		now[0] += 1;
+		assertEquals( GameAction.FINISHED, action.step( game ) );
+	}
+
+	private Game createGame() {
+		GameMetadata.Builder builder = new GameMetadata.Builder();
+		builder.setId( "steppedgame" );
+		builder.setNumDecks( 1 );
+		builder.setMinPlayers( 1 );
+		builder.setMaxPlayers( 4 );
+		return new Game( builder.build() );
+	}
+
 }
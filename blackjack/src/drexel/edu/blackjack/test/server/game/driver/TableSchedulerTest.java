@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - TableSchedulerTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ * 
+ * Purpose: Unit test of TableScheduler.java, and the tables it runs
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.game.driver;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.db.game.GameMetadata;
+import drexel.edu.blackjack.db.user.UserMetadata;
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.server.game.Game;
+import drexel.edu.blackjack.server.game.User;
+import drexel.edu.blackjack.server.game.driver.GamePlayingThread;
+import drexel.edu.blackjack.server.game.driver.QueueDelayStats;
+import drexel.edu.blackjack.server.game.driver.TableScheduler;
+import drexel.edu.blackjack.server.game.driver.TableScheduler.Shard;
+
+public class TableSchedulerTest {
+
+	private TableScheduler scheduler = null;
+
+	@Before
+	public void setUp() throws Exception {
+		scheduler = new TableScheduler( 2 );
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testManyTablesOnFewThreads() throws InterruptedException {
+		
+		// With nobody at them, each table starts a round and stops
+		List<GamePlayingThread> tables = new ArrayList<GamePlayingThread>();
+		for( int i = 0; i < 5000; i++ ) {
+			GamePlayingThread table = new GamePlayingThread( createGame( "table" + i ), scheduler );
+			tables.add( table );
+			assertTrue( table.start() );
+		}
+		
+		for( GamePlayingThread table : tables ) {
+			assertTrue( waitUntilStopped( table ) );
+			assertEquals( 1, table.getQueueDelayStats().getSteps() );
+		}
+		assertEquals( 2, scheduler.getThreadCount() );
+		assertTrue( scheduler.getQueueDelayReport().contains( "table4999: 1 steps" ) );
+	}
+
+	@Test
+	public void testWaitingTableIsWokenByPlayer() throws InterruptedException {
+		
+		Game game = createGame( "waiting" );
+		GamePlayingThread table = new GamePlayingThread( game, scheduler );
+		User player = new User( new UserMetadata.Builder().setUsername( "player" ).
+				setPassword( "password" ).setFullname( "A Player" ).build() );
+		game.getGameState().addPlayer( player );
+		
+		// Starts a round, then waits on the player's bet
+		assertTrue( table.start() );
+		assertFalse( table.start() );
+		Thread.sleep( 300 );
+		assertTrue( table.isAlive() );
+		assertEquals( 2, table.getQueueDelayStats().getSteps() );
+		
+		// Leaving wakes the table, which sees there's no one left
+		game.getGameState().removePlayer( player );
+		assertTrue( waitUntilStopped( table ) );
+		
+		// And it can be started again
+		game.getGameState().addPlayer( player );
+		assertTrue( table.start() );
+		game.getGameState().removePlayer( player );
+		assertTrue( waitUntilStopped( table ) );
+	}
+
+	@Test
+	public void testTablesAreSpreadOverShards() {
+		
+		List<GamePlayingThread> tables = new ArrayList<GamePlayingThread>();
+		for( int i = 0; i < 4; i++ ) {
+			tables.add( new GamePlayingThread( createGame( "spread" + i ), scheduler ) );
+		}
+		List<Shard> shards = scheduler.getShards();
+		assertEquals( 2, shards.get(0).getTableCount() );
+		assertEquals( 2, shards.get(1).getTableCount() );
+		
+		// Moving one by hand shows up in the placement
+		GamePlayingThread table = tables.get(0);
+		Shard other = (table.getShard() == shards.get(0) ? shards.get(1) : shards.get(0));
+		assertTrue( scheduler.move( table, other ) );
+		assertFalse( scheduler.move( table, other ) );
+		assertSame( other, table.getShard() );
+		assertEquals( 3, other.getTableCount() );
+		assertTrue( scheduler.getPlacementReport().contains( "shard " + other.getIndex() + ", 3 tables" ) );
+		
+		// Nothing's busy, so there's nothing to rebalance
+		assertNull( scheduler.rebalance() );
+	}
+
+	@Test
+	public void testMessagesRunOnTheTablesShard() throws Exception {
+		
+		final Game game = createGame( "messages" );
+		GamePlayingThread table = new GamePlayingThread( game, scheduler );
+		assertSame( table, game.getOwner() );
+		
+		Callable<String> whereAmI = new Callable<String>() {
+			@Override
+			public String call() {
+				return Thread.currentThread().getName();
+			}
+		};
+		assertEquals( "TableShard-" + table.getShard().getIndex(), table.call( whereAmI ) );
+		
+		// After a move, it's run on the new shard
+		Shard other = scheduler.getShards().get( 1 - table.getShard().getIndex() );
+		assertTrue( scheduler.move( table, other ) );
+		assertEquals( "TableShard-" + other.getIndex(), table.call( whereAmI ) );
+		
+		// A command handed over while the table's running is just run
+		ResponseCode code = game.handle( new Callable<ResponseCode>() {
+			@Override
+			public ResponseCode call() {
+				return game.handle( new Callable<ResponseCode>() {
+					@Override
+					public ResponseCode call() {
+						return new ResponseCode( ResponseCode.CODE.SUCCESSFULLY_STAND, Thread.currentThread().getName() );
+					}
+				} );
+			}
+		} );
+		assertEquals( ResponseCode.CODE.SUCCESSFULLY_STAND.getCode(), code.getCode().intValue() );
+		assertEquals( "TableShard-" + other.getIndex(), code.getText() );
+	}
+
+	@Test
+	public void testQueueDelayStats() {
+		QueueDelayStats stats = new QueueDelayStats();
+		assertEquals( 0, stats.getAverageDelay(), 0 );
+		
+		stats.record( 1000000 );
+		stats.record( 3000000 );
+		assertEquals( 2, stats.getSteps() );
+		assertEquals( 2.0, stats.getAverageDelay(), 0.0001 );
+		assertEquals( 3.0, stats.getMaxDelay(), 0.0001 );
+		
+		stats.reset();
+		assertEquals( 0, stats.getSteps() );
+	}
+
+	/**
+	 * A game no one is registered to, so it's not started
+	 * by joining it
+	 */
+	private Game createGame( String id ) {
+		GameMetadata.Builder builder = new GameMetadata.Builder();
+		builder.setId( id );
+		builder.setNumDecks( 1 );
+		builder.setMinPlayers( 1 );
+		builder.setMaxPlayers( 4 );
+		return new Game( builder.build() );
+	}
+
+	/**
+	 * Gives the table up to ten seconds to stop
+	 */
+	private boolean waitUntilStopped( GamePlayingThread table ) throws InterruptedException {
+		long end = System.currentTimeMillis() + 10000;
+		while( table.isAlive() && System.currentTimeMillis() < end ) {
+			Thread.sleep( 10 );
+		}
+		return !table.isAlive();
+	}
+
+}
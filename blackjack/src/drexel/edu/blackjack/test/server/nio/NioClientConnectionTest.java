@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - NioClientConnectionTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Tests of the selector-based transport, with a real TLS client
+ * connecting, logging in, and sending commands
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.nio;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import drexel.edu.blackjack.db.user.FlatfileUserManager;
+import drexel.edu.blackjack.db.user.UserMetadata;
+import drexel.edu.blackjack.server.ResponseCode;
+import drexel.edu.blackjack.server.nio.SelectorServer;
+
+public class NioClientConnectionTest {
+
+	private static final String USERNAME	= "niotestuser";
+	private static final String PASSWORD	= "niotestpass";
+
+	// How long to wait for a response before failing
+	private static final int TIMEOUT_MILLIS	= 10000;
+
+	private static SSLContext context = null;
+	private static SelectorServer server = null;
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		KeyStore ks = KeyStore.getInstance( "JKS" );
+		InputStream inputStream = NioClientConnectionTest.class.getClassLoader().getResourceAsStream( "blackjack.keystore" );
+		assertNotNull( "The keystore should be on the classpath", inputStream );
+		try {
+			ks.load( inputStream, "password".toCharArray() );
+		} finally {
+			inputStream.close();
+		}
+		KeyManagerFactory kmf = KeyManagerFactory.getInstance( "SunX509" );
+		kmf.init( ks, "password".toCharArray() );
+		TrustManagerFactory tmf = TrustManagerFactory.getInstance( TrustManagerFactory.getDefaultAlgorithm() );
+		tmf.init( ks );
+		context = SSLContext.getInstance( "TLS" );
+		context.init( kmf.getKeyManagers(), tmf.getTrustManagers(), null );
+
+		// It's fine if the user's already there from an earlier run
+		FlatfileUserManager.getDefaultUserManager().add( new UserMetadata.Builder()
+				.setUsername( USERNAME ).setPassword( PASSWORD ).setFullname( "NIO Test" ).setBalance( 100 ).build() );
+
+		server = new SelectorServer( context, 1 );
+		server.bind( 0 );
+		Thread acceptor = new Thread( "NioTestAcceptor" ) {
+			@Override
+			public void run() {
+				try {
+					server.acceptConnections();
+				} catch( Exception e ) {
+					// Closed at the end of the tests
+				}
+			}
+		};
+		acceptor.setDaemon( true );
+		acceptor.start();
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		if( server != null ) {
+			server.close();
+		}
+	}
+
+	@Test
+	public void testLoginAndCommandRoundTrip() throws Exception {
+		Socket socket = context.getSocketFactory().createSocket( "localhost", server.getPort() );
+		socket.setSoTimeout( TIMEOUT_MILLIS );
+		try {
+			PrintWriter writer = new PrintWriter( socket.getOutputStream() );
+			BufferedReader reader = new BufferedReader( new InputStreamReader( socket.getInputStream() ) );
+
+			assertResponse( ResponseCode.CODE.WAITING_FOR_PASSWORD, send( writer, reader, "USERNAME " + USERNAME ) );
+			assertResponse( ResponseCode.CODE.SUCCESSFULLY_AUTHENTICATED, send( writer, reader, "PASSWORD " + PASSWORD ) );
+			assertResponse( ResponseCode.CODE.VERSION, send( writer, reader, "VERSION" ) );
+		} finally {
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testPipelinedCommandsAnswerInOrder() throws Exception {
+		Socket socket = context.getSocketFactory().createSocket( "localhost", server.getPort() );
+		socket.setSoTimeout( TIMEOUT_MILLIS );
+		try {
+			PrintWriter writer = new PrintWriter( socket.getOutputStream() );
+			BufferedReader reader = new BufferedReader( new InputStreamReader( socket.getInputStream() ) );
+
+			// All in one write, so the server has them all before it's answered any
+			writer.print( "@a USERNAME " + USERNAME + "\n@b PASSWORD " + PASSWORD + "\n@c VERSION\n" );
+			writer.flush();
+
+			ResponseCode response = ResponseCode.getCodeFromString( reader.readLine() );
+			assertResponse( ResponseCode.CODE.WAITING_FOR_PASSWORD, response );
+			assertEquals( "a", response.getTag() );
+			response = ResponseCode.getCodeFromString( reader.readLine() );
+			assertResponse( ResponseCode.CODE.SUCCESSFULLY_AUTHENTICATED, response );
+			assertEquals( "b", response.getTag() );
+			response = ResponseCode.getCodeFromString( reader.readLine() );
+			assertResponse( ResponseCode.CODE.VERSION, response );
+			assertEquals( "c", response.getTag() );
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static ResponseCode send( PrintWriter writer, BufferedReader reader, String command ) throws Exception {
+		writer.print( command + "\n" );
+		writer.flush();
+		return ResponseCode.getCodeFromString( reader.readLine() );
+	}
+
+	private static void assertResponse( ResponseCode.CODE expected, ResponseCode response ) {
+		assertNotNull( "There should have been a response", response );
+		assertEquals( Integer.valueOf( expected.getCode() ), response.getCode() );
+	}
+
+}
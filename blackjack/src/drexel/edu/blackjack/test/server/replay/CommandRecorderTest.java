@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - CommandRecorderTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of CommandRecorder.java, and that what it writes can be
+ * read back for replaying
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.replay;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.server.commands.CommandMetadata;
+import drexel.edu.blackjack.server.replay.CommandRecorder;
+
+public class CommandRecorderTest {
+
+	@Test
+	public void testRecordsCommandsWithoutTags() throws Exception {
+		StringWriter transcript = new StringWriter();
+		CommandRecorder recorder = new CommandRecorder( transcript );
+		int first = recorder.openSession();
+		int second = recorder.openSession();
+		assertFalse( first == second );
+
+		CommandMetadata metadata = new CommandMetadata( "JOINSESSION  table1" );
+		metadata.setTag( "t1" );
+		recorder.record( first, metadata );
+		recorder.record( second, new CommandMetadata( "BET 10" ) );
+		recorder.recordClose( first );
+		recorder.close();
+
+		String[] lines = transcript.toString().split( "\n" );
+		assertEquals( 4, lines.length );
+		assertEquals( CommandRecorder.HEADER, lines[0] );
+		assertNull( CommandRecorder.parse( lines[0] ) );
+
+		CommandRecorder.Entry entry = CommandRecorder.parse( lines[1] );
+		assertEquals( first, entry.getSession() );
+		assertEquals( "JOINSESSION table1", entry.getCommand() );
+		assertFalse( entry.isClose() );
+
+		entry = CommandRecorder.parse( lines[2] );
+		assertEquals( second, entry.getSession() );
+		assertEquals( "BET 10", entry.getCommand() );
+
+		entry = CommandRecorder.parse( lines[3] );
+		assertEquals( first, entry.getSession() );
+		assertTrue( entry.isClose() );
+		assertTrue( entry.getOffset() >= 0 );
+	}
+
+	@Test
+	public void testNothingIsRecordedOnceClosed() throws Exception {
+		StringWriter transcript = new StringWriter();
+		CommandRecorder recorder = new CommandRecorder( transcript );
+		recorder.close();
+		recorder.record( recorder.openSession(), new CommandMetadata( "LISTGAMES" ) );
+		assertEquals( CommandRecorder.HEADER + "\n", transcript.toString() );
+	}
+
+	@Test
+	public void testJunkLinesAreNotEntries() {
+		assertNull( CommandRecorder.parse( null ) );
+		assertNull( CommandRecorder.parse( "" ) );
+		assertNull( CommandRecorder.parse( "LISTGAMES" ) );
+		assertNull( CommandRecorder.parse( "x\t1\tLISTGAMES" ) );
+		assertNotNull( CommandRecorder.parse( "12\t1\tLISTGAMES" ) );
+	}
+
+}
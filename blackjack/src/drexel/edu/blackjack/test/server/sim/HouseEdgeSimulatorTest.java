@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - HouseEdgeSimulatorTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of HouseEdgeSimulator.java and HouseEdgeResult.java
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.sim;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import drexel.edu.blackjack.cards.Card;
+import drexel.edu.blackjack.cards.Hand;
+import drexel.edu.blackjack.db.game.GameMetadata;
+import drexel.edu.blackjack.server.sim.HouseEdgeResult;
+import drexel.edu.blackjack.server.sim.HouseEdgeSimulator;
+
+public class HouseEdgeSimulatorTest {
+
+	private GameMetadata createGame( int decks, String rule ) {
+		GameMetadata.Builder builder = new GameMetadata.Builder();
+		builder.setId( "edgetest" );
+		builder.setNumDecks( decks );
+		builder.setMinPlayers( 1 );
+		builder.setMaxPlayers( 4 );
+		ArrayList<String> rules = new ArrayList<String>();
+		if( rule != null ) {
+			rules.add( rule );
+		}
+		builder.setRules( rules );
+		return builder.build();
+	}
+
+	@Test
+	public void testStandPointComesFromTheRules() {
+		assertEquals( 17, Hand.getDealerStandPoint( null ) );
+		assertEquals( 17, new HouseEdgeSimulator( createGame( 1, null ), null, 1 ).getStandPoint() );
+		assertEquals( 16, new HouseEdgeSimulator( createGame( 1, "Dealer must hit soft 16 to stand" ),
+				null, 1 ).getStandPoint() );
+	}
+
+	@Test
+	public void testTotalsMatchHand() {
+		Random random = new Random( 544 );
+		Card.RANK[] ranks = Card.RANK.values();
+		for( int trial = 0; trial < 5000; trial++ ) {
+			Hand hand = new Hand( null );
+			int hard = 0;
+			int aces = 0;
+			int cards = 2 + random.nextInt( 4 );
+			for( int i = 0; i < cards; i++ ) {
+				Card card = Card.valueOf( ranks[random.nextInt( ranks.length )], Card.SUIT.CLUBS );
+				hand.receiveCard( card, true );
+				hard += card.getValues()[0];
+				aces += (card.getRank() == Card.RANK.ACE ? 1 : 0);
+			}
+
+			assertEquals( hand.getIsBusted(), hard > 21 );
+			assertEquals( hand.getDealerShouldHit( null ), HouseEdgeSimulator.dealerShouldHit( hard, aces, 17 ) );
+			if( !hand.getIsBusted() ) {
+				int best = 0;
+				for( int value : hand.getPossibleValues() ) {
+					if( value <= 21 && value > best ) {
+						best = value;
+					}
+				}
+				assertEquals( best, HouseEdgeSimulator.getBestTotal( hard, aces ) );
+			}
+		}
+	}
+
+	@Test
+	public void testSameSeedSameResultsOnAnyPool() {
+		HouseEdgeSimulator simulator = new HouseEdgeSimulator( createGame( 2, null ),
+				HouseEdgeSimulator.Strategy.BASIC, 2 );
+		ForkJoinPool one = new ForkJoinPool( 1 );
+		ForkJoinPool four = new ForkJoinPool( 4 );
+		try {
+			HouseEdgeResult first = simulator.simulate( 500000, 7, one );
+			HouseEdgeResult second = simulator.simulate( 500000, 7, four );
+			assertEquals( 500000, first.getHands() );
+			assertEquals( first.getWins(), second.getWins() );
+			assertEquals( first.getLosses(), second.getLosses() );
+			assertEquals( first.getTies(), second.getTies() );
+			assertEquals( first.getShuffles(), second.getShuffles() );
+		} finally {
+			one.shutdown();
+			four.shutdown();
+		}
+	}
+
+	@Test
+	public void testHouseHasAnEdge() {
+		HouseEdgeResult mimic = new HouseEdgeSimulator( createGame( 4, null ),
+				HouseEdgeSimulator.Strategy.MIMIC_THE_DEALER, 1 ).simulate( 1000000, 11 );
+		HouseEdgeResult basic = new HouseEdgeSimulator( createGame( 4, null ),
+				HouseEdgeSimulator.Strategy.BASIC, 1 ).simulate( 1000000, 11 );
+
+		// Even money on a blackjack, so even basic strategy loses
+		assertTrue( mimic.getHouseEdge() > 0.04 && mimic.getHouseEdge() < 0.09 );
+		assertTrue( basic.getHouseEdge() > 0.01 && basic.getHouseEdge() < 0.05 );
+		assertTrue( mimic.getUpperBound() < basic.getLowerBound() );
+	}
+
+	@Test
+	public void testResultStatistics() {
+		HouseEdgeResult result = new HouseEdgeResult( 3, 5, 2, 0 );
+		assertEquals( 10, result.getHands() );
+		assertEquals( -0.2, result.getExpectedValue(), 1e-9 );
+		assertEquals( 0.2, result.getHouseEdge(), 1e-9 );
+		// Mean of squares 0.8, less 0.04, times 10/9
+		assertEquals( 0.76 * 10 / 9, result.getVariance(), 1e-9 );
+		assertTrue( result.getLowerBound() < -0.2 && result.getUpperBound() > -0.2 );
+
+		HouseEdgeResult merged = result.merge( new HouseEdgeResult( 1, 0, 0, 2 ) );
+		assertEquals( 11, merged.getHands() );
+		assertEquals( 4, merged.getWins() );
+		assertEquals( 2, merged.getShuffles() );
+	}
+
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - SimulationEngineTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Unit test of SimulationEngine.java, playing headless games with
+ * scripted players
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.sim;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.cards.Hand;
+import drexel.edu.blackjack.db.game.GameMetadata;
+import drexel.edu.blackjack.server.game.DeterministicMode;
+import drexel.edu.blackjack.server.game.User;
+import drexel.edu.blackjack.server.sim.JournalConnection;
+import drexel.edu.blackjack.server.sim.PlayerScript;
+import drexel.edu.blackjack.server.sim.ScriptedPlayer;
+import drexel.edu.blackjack.server.sim.SimulationEngine;
+import drexel.edu.blackjack.server.sim.SimulationReport;
+
+public class SimulationEngineTest {
+
+	private SimulationEngine engine = null;
+
+	private static GameMetadata createMetadata() {
+		GameMetadata.Builder builder = new GameMetadata.Builder();
+		builder.setId( "simulationtest" );
+		builder.setNumDecks( 2 );
+		builder.setMinBet( 10 );
+		builder.setMaxBet( 100 );
+		builder.setMinPlayers( 1 );
+		builder.setMaxPlayers( 3 );
+		builder.setRules( new ArrayList<String>() );
+		return builder.build();
+	}
+
+	/**
+	 * Plays a seeded game, and gets everything the players were told
+	 */
+	private static String playSeeded( long seed ) {
+		SimulationEngine seeded = new SimulationEngine( createMetadata(), new DeterministicMode( seed ) );
+		StringWriter journal = new StringWriter();
+		seeded.addPlayer( "sim1", 1000000, PlayerScript.MIMIC_THE_DEALER, new JournalConnection( journal, "sim1" ) );
+		seeded.addPlayer( "sim2", 1000000, PlayerScript.MIMIC_THE_DEALER, new JournalConnection( journal, "sim2" ) );
+		seeded.run( 50 );
+		return journal.toString();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		engine = new SimulationEngine( createMetadata() );
+	}
+
+	@Test
+	public void testPlaysRoundsWithoutWaiting() {
+		engine.addPlayer( "sim1", 1000000, PlayerScript.MIMIC_THE_DEALER, null );
+		engine.addPlayer( "sim2", 1000000, PlayerScript.MIMIC_THE_DEALER, null );
+
+		long startedAt = System.currentTimeMillis();
+		SimulationReport report = engine.run( 200 );
+
+		assertEquals( 200, report.getRounds() );
+		assertEquals( 400, report.getBets() );
+		assertEquals( 4000, report.getWagered() );
+		assertTrue( report.getMessages() > 0 );
+
+		// The pauses alone add up to minutes, but only on the simulated clock
+		assertTrue( report.getSimulatedMillis() > 60 * 1000 );
+		assertTrue( System.currentTimeMillis() - startedAt < 30 * 1000 );
+	}
+
+	@Test
+	public void testBalancesMatchTheReport() {
+		ScriptedPlayer player = engine.addPlayer( "sim1", 1000000, PlayerScript.MIMIC_THE_DEALER, null );
+		SimulationReport report = engine.run( 100 );
+		assertEquals( 1000000 - report.getHouseWinnings(), player.getUser().getUserMetadata().getBalance() );
+	}
+
+	@Test
+	public void testJournalGetsEveryMessage() {
+		StringWriter journal = new StringWriter();
+		ScriptedPlayer player = engine.addPlayer( "sim1", 1000000, PlayerScript.MIMIC_THE_DEALER,
+				new JournalConnection( journal, "sim1" ) );
+		engine.run( 10 );
+
+		String[] lines = journal.toString().split( "\n" );
+		assertEquals( player.getMessageCount(), lines.length );
+		for( String line : lines ) {
+			assertTrue( line.startsWith( "sim1 " ) );
+		}
+	}
+
+	@Test
+	public void testSameSeedPlaysTheSameWay() {
+		String first = playSeeded( 544 );
+		assertTrue( first.length() > 0 );
+		assertEquals( first, playSeeded( 544 ) );
+		assertFalse( first.equals( playSeeded( 545 ) ) );
+	}
+
+	@Test
+	public void testStopsWhenPlayersNeverBet() {
+		engine.addPlayer( "sim1", 1000000, new PlayerScript() {
+			@Override
+			public int getBet( User player, GameMetadata game ) {
+				return 0;
+			}
+			@Override
+			public boolean wantsToHit( User player, Hand dealerHand ) {
+				return false;
+			}
+		}, null );
+
+		// They're dropped for not betting, which ends the game
+		SimulationReport report = engine.run( 10 );
+		assertTrue( report.getRounds() < 10 );
+		assertEquals( 0, report.getBets() );
+		assertFalse( engine.getGame().isActive() );
+	}
+
+}
@@ -0,0 +1,16 @@
+/*******************************************************************************
+ * Unit tests for classes in the {@link drexel.edu.blackjack.server.sim} package
+ * <P>
+ * CS544 Computer Networks Spring 2013
+ * <P>
+ * 5/26/2013
+ * <P>
+ * <b>Purpose:</b> This package contains JUnit tests, used purely for testing
+ * purposes.
+ * @author Jennifer Lautenschlager
+ * @author Constantine Lazarakis
+ * @author Carol Greco
+ * @author Duc Anh Nguyen
+ * @version 1.0
+ ******************************************************************************/
+package drexel.edu.blackjack.test.server.sim;
\ No newline at end of file
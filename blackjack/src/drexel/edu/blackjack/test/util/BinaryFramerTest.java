@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - BinaryFramerTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ * 
+ * Purpose: Unit test of BinaryFramer.java
+ ******************************************************************************/
+package drexel.edu.blackjack.test.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.util.BinaryFramer;
+
+public class BinaryFramerTest {
+
+	// Same limit the server uses
+	private static final int LIMIT		= 1024;
+	
+	// Class to test
+	private BinaryFramer framer;
+	
+	// Copies of whatever frames the framer hands over
+	private List<byte[]> frames;
+	private BinaryFramer.FrameListener collector;
+	
+	@Before
+	public void setUp() throws Exception {
+		framer = new BinaryFramer( LIMIT );
+		frames = new ArrayList<byte[]>();
+		collector = new BinaryFramer.FrameListener() {
+			@Override
+			public boolean frameReceived( byte[] data, int offset, int length ) {
+				frames.add( Arrays.copyOfRange( data, offset, offset + length ) );
+				return true;
+			}
+		};
+	}
+
+	@Test
+	public void testFramesAreSplitOnLength() throws IOException {
+		byte[] data = { 2, 'h', 'i', 0, 1, 'x' };
+		assertEquals( data.length, framer.feed( data, 0, data.length, collector ) );
+		assertEquals( 3, frames.size() );
+		assertArrayEquals( "hi".getBytes(), frames.get(0) );
+		assertEquals( 0, frames.get(1).length );
+		assertArrayEquals( "x".getBytes(), frames.get(2) );
+		assertEquals( 0, framer.getPendingLength() );
+	}
+
+	@Test
+	public void testFrameSplitAcrossFeeds() throws IOException {
+		byte[] body = new byte[300];
+		for( int i = 0; i < body.length; i++ ) {
+			body[i] = (byte)i;
+		}
+		
+		// 300 takes two bytes as a varint
+		byte[] data = new byte[body.length + 2];
+		data[0] = (byte)(0x80 | (300 & 0x7F));
+		data[1] = (byte)(300 >>> 7);
+		System.arraycopy( body, 0, data, 2, body.length );
+		
+		// Feed it a byte at a time, then in two pieces
+		for( int i = 0; i < data.length; i++ ) {
+			framer.feed( data, i, 1, collector );
+		}
+		framer.feed( data, 0, 100, collector );
+		assertEquals( 98, framer.getPendingLength() );
+		framer.feed( ByteBuffer.wrap( data, 100, data.length - 100 ), collector );
+		
+		assertEquals( 2, frames.size() );
+		assertArrayEquals( body, frames.get(0) );
+		assertArrayEquals( body, frames.get(1) );
+	}
+
+	@Test
+	public void testStopConsumesNoMore() throws IOException {
+		BinaryFramer.FrameListener stopper = new BinaryFramer.FrameListener() {
+			@Override
+			public boolean frameReceived( byte[] data, int offset, int length ) {
+				frames.add( Arrays.copyOfRange( data, offset, offset + length ) );
+				return false;
+			}
+		};
+		ByteBuffer buffer = ByteBuffer.wrap( new byte[] { 1, 'a', 1, 'b' } );
+		framer.feed( buffer, stopper );
+		assertEquals( 1, frames.size() );
+		assertEquals( 2, buffer.position() );
+	}
+
+	@Test
+	public void testOverLimitIsRejected() {
+		byte[] data = { (byte)0x81, 0x08 };	// 1025
+		try {
+			framer.feed( data, 0, data.length, collector );
+			fail( "Expected an over-limit frame to be rejected" );
+		} catch( IOException e ) {
+			// Expected
+		}
+		assertEquals( 0, framer.getPendingLength() );
+	}
+
+	@Test
+	public void testMalformedLengthIsRejected() {
+		byte[] data = { (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80 };
+		try {
+			framer.feed( data, 0, data.length, collector );
+			fail( "Expected a malformed length to be rejected" );
+		} catch( IOException e ) {
+			// Expected
+		}
+	}
+
+}
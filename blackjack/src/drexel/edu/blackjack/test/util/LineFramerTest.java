@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - LineFramerTest.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ * 
+ * Purpose: Unit test of LineFramer.java
+ ******************************************************************************/
+package drexel.edu.blackjack.test.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import drexel.edu.blackjack.util.LineFramer;
+
+public class LineFramerTest {
+
+	// Same limit and delimiter the server uses
+	private static final int LIMIT		= 1024;
+	private static final String EOL		= "\n";
+	
+	// Class to test
+	private LineFramer framer;
+	
+	// Copies of whatever lines the framer hands over
+	private List<String> lines;
+	private LineFramer.LineListener collector;
+	
+	@Before
+	public void setUp() throws Exception {
+		framer = new LineFramer( LIMIT, EOL );
+		lines = new ArrayList<String>();
+		collector = new LineFramer.LineListener() {
+			@Override
+			public boolean lineReceived( CharSequence line ) {
+				lines.add( line.toString() );
+				return true;
+			}
+		};
+	}
+
+	@Test
+	public void testLinesAreSplitOnDelimiter() throws IOException {
+		byte[] data = "VERSION BJP 1.0\nUSERNAME user1\n".getBytes();
+		assertEquals( data.length, framer.feed( data, 0, data.length, collector ) );
+		assertEquals( 2, lines.size() );
+		assertEquals( "VERSION BJP 1.0", lines.get(0) );
+		assertEquals( "USERNAME user1", lines.get(1) );
+		assertEquals( 0, framer.getPendingLength() );
+	}
+	
+	@Test
+	public void testLastCharacterIsKept() throws IOException {
+		// Lines without a carriage return must keep their last character
+		byte[] data = "ACCOUNT\n".getBytes();
+		framer.feed( data, 0, data.length, collector );
+		assertEquals( "ACCOUNT", lines.get(0) );
+	}
+	
+	@Test
+	public void testCarriageReturnIsPassedThrough() throws IOException {
+		// Trimming is the command parser's job, not the framer's
+		byte[] data = "ACCOUNT\r\n".getBytes();
+		framer.feed( data, 0, data.length, collector );
+		assertEquals( "ACCOUNT\r", lines.get(0) );
+	}
+	
+	@Test
+	public void testPartialLineSpansFeeds() throws IOException {
+		byte[] first = "LISTG".getBytes();
+		byte[] second = "AMES\nQU".getBytes();
+		framer.feed( first, 0, first.length, collector );
+		assertTrue( lines.isEmpty() );
+		assertEquals( first.length, framer.getPendingLength() );
+		framer.feed( second, 0, second.length, collector );
+		assertEquals( 1, lines.size() );
+		assertEquals( "LISTGAMES", lines.get(0) );
+		assertEquals( 2, framer.getPendingLength() );
+	}
+	
+	@Test
+	public void testFeedFromByteBuffer() throws IOException {
+		ByteBuffer heap = ByteBuffer.wrap( "xxHIT\nST".getBytes() );
+		heap.position( 2 );
+		framer.feed( heap, collector );
+		assertFalse( heap.hasRemaining() );
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect( 16 );
+		direct.put( "AND\n".getBytes() );
+		direct.flip();
+		framer.feed( direct, collector );
+		assertFalse( direct.hasRemaining() );
+		
+		assertEquals( 2, lines.size() );
+		assertEquals( "HIT", lines.get(0) );
+		assertEquals( "STAND", lines.get(1) );
+	}
+	
+	@Test
+	public void testListenerCanStopFraming() throws IOException {
+		LineFramer.LineListener stopper = new LineFramer.LineListener() {
+			@Override
+			public boolean lineReceived( CharSequence line ) {
+				lines.add( line.toString() );
+				return false;
+			}
+		};
+		byte[] data = "QUIT\nHIT\n".getBytes();
+		assertEquals( 5, framer.feed( data, 0, data.length, stopper ) );
+		assertEquals( 1, lines.size() );
+		assertEquals( "QUIT", lines.get(0) );
+	}
+	
+	@Test
+	public void testLineView() throws IOException {
+		LineFramer.LineListener checker = new LineFramer.LineListener() {
+			@Override
+			public boolean lineReceived( CharSequence line ) {
+				assertEquals( 3, line.length() );
+				assertEquals( 'B', line.charAt(0) );
+				assertEquals( "ET", line.subSequence( 1, 3 ).toString() );
+				lines.add( line.toString() );
+				return true;
+			}
+		};
+		byte[] data = "BET\n".getBytes();
+		framer.feed( data, 0, data.length, checker );
+		assertEquals( 1, lines.size() );
+	}
+	
+	@Test
+	public void testLongestAllowedLine() throws IOException {
+		byte[] data = new byte[LIMIT];
+		for( int i = 0; i < LIMIT - 1; i++ ) {
+			data[i] = 'a';
+		}
+		data[LIMIT-1] = '\n';
+		framer.feed( data, 0, data.length, collector );
+		assertEquals( 1, lines.size() );
+		assertEquals( LIMIT - 1, lines.get(0).length() );
+	}
+	
+	@Test(expected=IOException.class)
+	public void testTooLongLineIsRejected() throws IOException {
+		byte[] data = new byte[LIMIT];
+		for( int i = 0; i < LIMIT; i++ ) {
+			data[i] = 'a';
+		}
+		framer.feed( data, 0, data.length, collector );
+	}
+
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - BinaryFramer.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Splits the raw bytes received over a connection that has switched
+ * to binary framing into frames. Each frame is a varint length followed by
+ * that many bytes.
+ ******************************************************************************/
+package drexel.edu.blackjack.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Assembles frames out of bytes pushed into it, and hands each
+ * complete frame body to a listener. A frame starts with its
+ * length, as an unsigned varint: seven bits per byte, least
+ * significant first, with the high bit set on every byte but
+ * the last.
+ * <P>
+ * When a whole frame is already in the bytes being fed, the
+ * listener is given it where it is; otherwise it is assembled
+ * in the framer's own buffer. Either way, the bytes are only
+ * valid until the listener returns.
+ * <P>
+ * <b>SECURITY:</b> A frame whose length is over the limit is
+ * rejected with an exception as soon as its length has been
+ * read, so no more than the limit is ever buffered.
+ *
+ * @author Jennifer
+ */
+public class BinaryFramer {
+
+	/**********************************************************************************
+	 * Listener interface here
+	 *********************************************************************************/
+
+	/**
+	 * Receives the frames that a framer assembles.
+	 */
+	public interface FrameListener {
+
+		/**
+		 * Called for each complete frame.
+		 *
+		 * @param data Where the frame body is. Only valid until
+		 * this method returns.
+		 * @param offset Where in the array it starts
+		 * @param length How long it is
+		 * @return true to keep going, false to stop framing
+		 * @throws IOException If handling the frame fails
+		 */
+		public boolean frameReceived( byte[] data, int offset, int length ) throws IOException;
+	}
+
+	/**********************************************************************************
+	 * Local variables here
+	 *********************************************************************************/
+
+	// A varint of more bytes than this can't be an int
+	private static final int MAX_LENGTH_BYTES	= 5;
+
+	// The frame body being assembled
+	private byte[] buffer = null;
+	private int filled = 0;
+
+	// The length of the frame being assembled, or -1 while it's still
+	// being read, in which case these hold what's been read of it
+	private int frameLength = -1;
+	private int lengthSoFar = 0;
+	private int lengthBytes = 0;
+
+	/**********************************************************************************
+	 * Constructor here
+	 *********************************************************************************/
+
+	/**
+	 * Creates a framer that limits how long a frame can be.
+	 *
+	 * @param byteLimit How many bytes, at most, a frame body can be
+	 */
+	public BinaryFramer( int byteLimit ) {
+		if( byteLimit < 1 ) {
+			throw new IllegalArgumentException( "The byte limit must be positive." );
+		}
+		this.buffer = new byte[byteLimit];
+	}
+
+	/**********************************************************************************
+	 * Public methods here
+	 *********************************************************************************/
+
+	/**
+	 * Frames bytes from an array.
+	 *
+	 * @param data Where the bytes are
+	 * @param offset Where in the array they start
+	 * @param count How many there are
+	 * @param listener Who gets the complete frames
+	 * @return How many bytes were consumed. This is less than
+	 * the count only if the listener asked to stop.
+	 * @throws IOException If a frame is longer than the limit,
+	 * or the listener threw one
+	 */
+	public int feed( byte[] data, int offset, int count, FrameListener listener ) throws IOException {
+
+		int end = offset + count;
+		int position = offset;
+		while( position < end ) {
+			if( frameLength < 0 ) {
+				readLengthByte( data[position++] );
+				if( frameLength != 0 ) {
+					continue;
+				}
+			} else if( filled == 0 && end - position >= frameLength ) {
+				// The whole frame is here, so there's no need to copy it
+				int start = position;
+				position += frameLength;
+				frameLength = -1;
+				if( !listener.frameReceived( data, start, position - start ) ) {
+					break;
+				}
+				continue;
+			} else {
+				int copy = Math.min( frameLength - filled, end - position );
+				System.arraycopy( data, position, buffer, filled, copy );
+				filled += copy;
+				position += copy;
+				if( filled < frameLength ) {
+					continue;
+				}
+			}
+
+			// A frame was completed in our buffer
+			int length = frameLength;
+			frameLength = -1;
+			filled = 0;
+			if( !listener.frameReceived( buffer, 0, length ) ) {
+				break;
+			}
+		}
+		return position - offset;
+	}
+
+	/**
+	 * Frames the remaining bytes in a buffer, advancing its
+	 * position past whatever was consumed.
+	 *
+	 * @param data The bytes, in read mode
+	 * @param listener Who gets the complete frames
+	 * @throws IOException If a frame is longer than the limit,
+	 * or the listener threw one
+	 */
+	public void feed( ByteBuffer data, FrameListener listener ) throws IOException {
+
+		if( data.hasArray() ) {
+			int consumed = feed( data.array(), data.arrayOffset() + data.position(), data.remaining(), listener );
+			data.position( data.position() + consumed );
+		} else {
+			byte[] copy = new byte[data.remaining()];
+			data.mark();
+			data.get( copy );
+			data.reset();
+			int consumed = feed( copy, 0, copy.length, listener );
+			data.position( data.position() + consumed );
+		}
+	}
+
+	/**
+	 * How many bytes of an incomplete frame are being held?
+	 *
+	 * @return The number of bytes, not counting its length
+	 */
+	public int getPendingLength() {
+		return filled;
+	}
+
+	/**********************************************************************************
+	 * Private methods here
+	 *********************************************************************************/
+
+	/**
+	 * Takes in one byte of a frame's length.
+	 *
+	 * @param b The byte
+	 * @throws IOException If the length is malformed or over the limit
+	 */
+	private void readLengthByte( byte b ) throws IOException {
+
+		lengthSoFar |= (b & 0x7F) << (7 * lengthBytes);
+		lengthBytes++;
+		if( (b & 0x80) != 0 ) {
+			if( lengthBytes == MAX_LENGTH_BYTES ) {
+				throw new IOException( "Malformed frame length." );
+			}
+			return;
+		}
+
+		// SECURITY: Refuse it before buffering any of it
+		if( lengthSoFar < 0 || lengthSoFar > buffer.length ) {
+			throw new IOException( "Frame of " + lengthSoFar + " bytes exceeds the limit of " + buffer.length + "." );
+		}
+		frameLength = lengthSoFar;
+		lengthSoFar = 0;
+		lengthBytes = 0;
+	}
+
+}
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - LineFramer.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Splits the raw bytes received from a client into protocol lines.
+ * It works on bytes rather than characters, reuses a single buffer for the
+ * line being assembled, and hands each complete line over as a reusable
+ * character view rather than a new String.
+ ******************************************************************************/
+package drexel.edu.blackjack.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Assembles lines out of bytes pushed into it, and hands each
+ * complete line (stripped of the delimiter) to a listener. The
+ * protocol is ASCII, so each byte is one character.
+ * <P>
+ * The line given to the listener is a view over the framer's own
+ * buffer. It is only valid until the listener returns; anything
+ * that needs to be kept has to be copied, e.g. with toString().
+ * <P>
+ * Since bytes are pushed in, the same framer works for a blocking
+ * socket (read into an array, then feed it) and a non-blocking
+ * one (feed whatever a channel read produced).
+ * <P>
+ * <b>SECURITY:</b> If more bytes than the limit arrive before the
+ * line delimiter, an exception is raised and the excess is never
+ * buffered. This prevents a possible form of DoS attack where a
+ * client sends a very long stream of data without an end-of-line
+ * delimiter, causing the server to buffer it in memory until it
+ * runs out of memory and crashes.
+ *
+ * @author Jennifer
+ */
+public class LineFramer {
+
+	/**********************************************************************************
+	 * Listener interface here
+	 *********************************************************************************/
+
+	/**
+	 * Receives the lines that a framer assembles.
+	 */
+	public interface LineListener {
+
+		/**
+		 * Called for each complete line.
+		 *
+		 * @param line The line, without its delimiter. Only valid
+		 * until this method returns.
+		 * @return true to keep going, false to stop framing (for
+		 * example, because the client is being disconnected)
+		 * @throws IOException If handling the line fails
+		 */
+		public boolean lineReceived( CharSequence line ) throws IOException;
+	}
+
+	/**********************************************************************************
+	 * Local variables here
+	 *********************************************************************************/
+
+	// The line being assembled
+	private byte[] buffer = null;
+	private int length = 0;
+
+	// What ends a line
+	private byte delimiter = 0;
+
+	// The view handed to listeners, reused for every line
+	private LineView view = new LineView();
+
+	/**********************************************************************************
+	 * Constructor here
+	 *********************************************************************************/
+
+	/**
+	 * Creates a framer that limits the number of bytes that are
+	 * read before the EOL character is encountered.
+	 *
+	 * @param byteLimit How many bytes, at most, a line can be, inclusive of the EOL
+	 * @param EOL What string delimits what a line is
+	 */
+	public LineFramer( int byteLimit, String EOL ) {
+		if( EOL == null || EOL.length() != 1 ) {
+			throw new IllegalArgumentException( "EOL string must be exactly 1 character long." );
+		}
+		this.buffer = new byte[byteLimit - EOL.length()];
+		this.delimiter = (byte)EOL.charAt(0);
+	}
+
+	/**********************************************************************************
+	 * Public methods here
+	 *********************************************************************************/
+
+	/**
+	 * Frames bytes from an array.
+	 *
+	 * @param data Where the bytes are
+	 * @param offset Where in the array they start
+	 * @param count How many there are
+	 * @param listener Who gets the complete lines
+	 * @return How many bytes were consumed. This is less than
+	 * the count only if the listener asked to stop.
+	 * @throws IOException If a line is longer than the limit,
+	 * or the listener threw one
+	 */
+	public int feed( byte[] data, int offset, int count, LineListener listener ) throws IOException {
+
+		int end = offset + count;
+		int position = offset;
+		while( position < end ) {
+			byte b = data[position++];
+			if( b == delimiter ) {
+				boolean keepGoing = listener.lineReceived( view );
+				length = 0;
+				if( !keepGoing ) {
+					break;
+				}
+			} else if( length == buffer.length ) {
+				throw new IOException( "Byte limit of " + (buffer.length + 1) + " exceeded while reading." );
+			} else {
+				buffer[length++] = b;
+			}
+		}
+		return position - offset;
+	}
+
+	/**
+	 * Frames the remaining bytes in a buffer, advancing its
+	 * position past whatever was consumed.
+	 *
+	 * @param data The bytes, in read mode
+	 * @param listener Who gets the complete lines
+	 * @throws IOException If a line is longer than the limit,
+	 * or the listener threw one
+	 */
+	public void feed( ByteBuffer data, LineListener listener ) throws IOException {
+
+		if( data.hasArray() ) {
+			int consumed = feed( data.array(), data.arrayOffset() + data.position(), data.remaining(), listener );
+			data.position( data.position() + consumed );
+		} else {
+			while( data.hasRemaining() ) {
+				byte b = data.get();
+				if( b == delimiter ) {
+					boolean keepGoing = listener.lineReceived( view );
+					length = 0;
+					if( !keepGoing ) {
+						break;
+					}
+				} else if( length == buffer.length ) {
+					throw new IOException( "Byte limit of " + (buffer.length + 1) + " exceeded while reading." );
+				} else {
+					buffer[length++] = b;
+				}
+			}
+		}
+	}
+
+	/**
+	 * How many bytes of an incomplete line are being held?
+	 *
+	 * @return The number of bytes
+	 */
+	public int getPendingLength() {
+		return length;
+	}
+
+	/**********************************************************************************
+	 * The reusable line view
+	 *********************************************************************************/
+
+	/**
+	 * A character view over the bytes of the line being handed
+	 * to a listener.
+	 */
+	private class LineView implements CharSequence {
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt( int index ) {
+			if( index < 0 || index >= length ) {
+				throw new IndexOutOfBoundsException( "Index " + index + " is outside a line of length " + length );
+			}
+			return (char)(buffer[index] & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence( int start, int end ) {
+			if( start < 0 || end > length || start > end ) {
+				throw new IndexOutOfBoundsException( "Range " + start + "-" + end + " is outside a line of length " + length );
+			}
+			return copy( start, end );
+		}
+
+		@Override
+		public String toString() {
+			return copy( 0, length );
+		}
+
+		/**
+		 * Copies part of the line out into a String.
+		 */
+		private String copy( int start, int end ) {
+			char[] chars = new char[end - start];
+			for( int i = start; i < end; i++ ) {
+				chars[i - start] = (char)(buffer[i] & 0xFF);
+			}
+			return new String( chars );
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * CS544 Computer Networks Spring 2013
+ * 5/26/2013 - ThreadMode.java
+ * Group Members
+ * o Jennifer Lautenschlager
+ * o Constantine Lazarakis
+ * o Carol Greco
+ * o Duc Anh Nguyen
+ *
+ * Purpose: Creates the long-running threads of the server (client sessions,
+ * the idle timeout daemon) as either platform threads or virtual
+ * threads, depending on a system property.
+ ******************************************************************************/
+package drexel.edu.blackjack.util;
+
+import java.lang.reflect.Method;
+import java.util.logging.Logger;
+
+/**
+ * Decides what kind of thread the server's blocking-style work
+ * runs on. By default it's ordinary platform threads. Setting
+ * the 'threads' system property to 'virtual' uses virtual
+ * threads instead, which are cheap enough to have one per
+ * client session even with many thousands of sessions.
+ * <P>
+ * Virtual threads need a Java 21 runtime. They are looked up
+ * by reflection, so the code still builds for, and runs
+ * platform threads on, older runtimes. Asking for them on one
+ * of those is a mistake in how the server was started, and
+ * {@link #isRequestedModeAvailable()} tells the server so it
+ * can refuse to start, rather than quietly running something
+ * other than what was asked for.
+ *
+ * @author Jennifer
+ */
+public class ThreadMode {
+
+	// The system property that picks the mode
+	public static final String THREADS_PROPERTY	= "threads";
+
+	// The values it can have
+	public static final String PLATFORM			= "platform";
+	public static final String VIRTUAL			= "virtual";
+
+	// The Thread.ofVirtual() method, and the builder methods we
+	// need from what it returns. Null if the runtime doesn't have them.
+	private static Method ofVirtualMethod		= null;
+	private static Method nameMethod			= null;
+	private static Method unstartedMethod		= null;
+
+	// Whether we're actually making virtual threads
+	private static boolean useVirtualThreads	= false;
+
+	// Whether they were asked for but can't be had
+	private static boolean unavailable			= false;
+
+	private final static Logger LOGGER = BlackjackLogger.createLogger(ThreadMode.class.getName());
+
+	static {
+		String mode = System.getProperty( THREADS_PROPERTY, PLATFORM );
+		if( mode.equalsIgnoreCase( VIRTUAL ) ) {
+			try {
+				ofVirtualMethod = Thread.class.getMethod( "ofVirtual" );
+				Class<?> builderClass = Class.forName( "java.lang.Thread$Builder" );
+				nameMethod = builderClass.getMethod( "name", String.class );
+				unstartedMethod = builderClass.getMethod( "unstarted", Runnable.class );
+				useVirtualThreads = true;
+				LOGGER.info( "Using virtual threads." );
+			} catch( NoSuchMethodException e ) {
+				unavailable = true;
+			} catch( ClassNotFoundException e ) {
+				unavailable = true;
+			}
+		} else if( !mode.equalsIgnoreCase( PLATFORM ) ) {
+			LOGGER.warning( "Unknown thread mode of '" + mode + "' ignored; using platform threads." );
+		}
+	}
+
+	/**
+	 * Are we making virtual threads?
+	 *
+	 * @return true if virtual, false if platform
+	 */
+	public static boolean isUsingVirtualThreads() {
+		return useVirtualThreads;
+	}
+
+	/**
+	 * Can we make the kind of thread that was asked for? If
+	 * not, it's virtual threads on a runtime older than Java 21,
+	 * and the server shouldn't start.
+	 *
+	 * @return false if virtual threads were asked for but this
+	 * runtime doesn't have them, true otherwise
+	 */
+	public static boolean isRequestedModeAvailable() {
+		return !unavailable;
+	}
+
+	/**
+	 * Creates, but does not start, a thread of whatever kind
+	 * the server is configured for.
+	 *
+	 * @param name What to name the thread
+	 * @param runnable What the thread should run
+	 * @return The unstarted thread
+	 * @throws IllegalStateException If a virtual thread was
+	 * asked for and couldn't be made
+	 */
+	public static Thread newThread( String name, Runnable runnable ) {
+		if( useVirtualThreads ) {
+			try {
+				Object builder = ofVirtualMethod.invoke( null );
+				builder = nameMethod.invoke( builder, name );
+				return (Thread)unstartedMethod.invoke( builder, runnable );
+			} catch( ReflectiveOperationException e ) {
+				throw new IllegalStateException( "Could not create a virtual thread: " + e, e );
+			}
+		}
+		return new Thread( runnable, name );
+	}
+
+}